@@ -145,6 +145,18 @@ public final class ClientProperties {
      */
     public static final String INCOMING_BUFFER_SIZE = "org.glassfish.tyrus.incomingBufferSize";
 
+    /**
+     * Property name for pool of buffers used for holding incomplete incoming frames.
+     * <p>
+     * Value must be instance of {@link org.glassfish.tyrus.core.ByteBufferPool}. The pool can be shared among
+     * multiple clients (and servers). Default value is {@link org.glassfish.tyrus.core.ByteBufferPool#getDefault()}.
+     * <p>
+     * Can be set in properties map (see {@link
+     * org.glassfish.tyrus.spi.ClientContainer#openClientSocket(javax.websocket.ClientEndpointConfig, java.util.Map,
+     * org.glassfish.tyrus.spi.ClientEngine)}.
+     */
+    public static final String BUFFER_POOL = "org.glassfish.tyrus.bufferPool";
+
     /**
      * When set to {@code true} (boolean value), client runtime preserves used container and reuses it for outgoing
      * connections.
@@ -304,7 +316,8 @@ public final class ClientProperties {
      * uses a synchronized singleton as a random entropy provider in its internals.
      * <p>
      * This property allows replacing the default {@link java.security.SecureRandom} with a more scalable provider
-     * of masking keys.
+     * of masking keys. Tyrus provides {@link org.glassfish.tyrus.core.ThreadLocalMaskingKeyGenerator}, which uses
+     * per-thread {@link java.security.SecureRandom} instances and generates masking keys in blocks.
      */
     public static final String MASKING_KEY_GENERATOR = "org.glassfish.tyrus.client.maskingKeyGenerator";
 }
@@ -66,9 +66,11 @@ import org.glassfish.tyrus.client.auth.AuthConfig;
 import org.glassfish.tyrus.client.auth.AuthenticationException;
 import org.glassfish.tyrus.client.auth.Authenticator;
 import org.glassfish.tyrus.client.auth.Credentials;
+import org.glassfish.tyrus.core.ByteBufferPool;
 import org.glassfish.tyrus.core.DebugContext;
 import org.glassfish.tyrus.core.Handshake;
 import org.glassfish.tyrus.core.HandshakeException;
+import org.glassfish.tyrus.core.IncomingBuffer;
 import org.glassfish.tyrus.core.MaskingKeyGenerator;
 import org.glassfish.tyrus.core.ProtocolHandler;
 import org.glassfish.tyrus.core.RequestContext;
@@ -105,7 +107,6 @@ public class TyrusClientEngine implements ClientEngine {
     private static final Logger LOGGER = Logger.getLogger(TyrusClientEngine.class.getName());
 
     private static final Version DEFAULT_VERSION = Version.DRAFT17;
-    private static final int BUFFER_STEP_SIZE = 256;
     private static final int DEFAULT_REDIRECT_THRESHOLD = 5;
 
     private final ProtocolHandler protocolHandler;
@@ -595,6 +596,11 @@ public class TyrusClientEngine implements ClientEngine {
         debugContext.appendLogMessage(LOGGER, Level.FINE, DebugContext.Type.OTHER, "Incoming buffer size: ",
                                       incomingBufferSize);
 
+        final ByteBufferPool configuredBufferPool =
+                Utils.getProperty(properties, ClientProperties.BUFFER_POOL, ByteBufferPool.class);
+        final ByteBufferPool bufferPool =
+                configuredBufferPool == null ? ByteBufferPool.getDefault() : configuredBufferPool;
+
         return new ClientUpgradeInfo() {
             @Override
             public ClientUpgradeStatus getUpgradeStatus() {
@@ -605,8 +611,8 @@ public class TyrusClientEngine implements ClientEngine {
             public Connection createConnection() {
                 return new Connection() {
 
-                    private final ReadHandler readHandler =
-                            new TyrusReadHandler(protocolHandler, socket, incomingBufferSize,
+                    private final TyrusReadHandler readHandler =
+                            new TyrusReadHandler(protocolHandler, socket, incomingBufferSize, bufferPool,
                                                  sessionForRemoteEndpoint.getNegotiatedExtensions(), extensionContext);
 
                     @Override
@@ -626,6 +632,8 @@ public class TyrusClientEngine implements ClientEngine {
 
                     @Override
                     public void close(CloseReason reason) {
+                        readHandler.close();
+
                         try {
                             writer.close();
                         } catch (IOException e) {
@@ -682,19 +690,18 @@ public class TyrusClientEngine implements ClientEngine {
 
     private static class TyrusReadHandler implements ReadHandler {
 
-        private final int incomingBufferSize;
+        private final IncomingBuffer incomingBuffer;
         private final ProtocolHandler handler;
         private final TyrusWebSocket socket;
         private final List<Extension> negotiatedExtensions;
         private final ExtendedExtension.ExtensionContext extensionContext;
 
-        private ByteBuffer buffer = null;
-
         TyrusReadHandler(final ProtocolHandler protocolHandler, final TyrusWebSocket socket, int incomingBufferSize,
-                         List<Extension> negotiatedExtensions, ExtendedExtension.ExtensionContext extensionContext) {
+                         ByteBufferPool bufferPool, List<Extension> negotiatedExtensions,
+                         ExtendedExtension.ExtensionContext extensionContext) {
             this.handler = protocolHandler;
             this.socket = socket;
-            this.incomingBufferSize = incomingBufferSize;
+            this.incomingBuffer = new IncomingBuffer(bufferPool, incomingBufferSize);
             this.negotiatedExtensions = negotiatedExtensions;
             this.extensionContext = extensionContext;
 
@@ -706,57 +713,56 @@ public class TyrusClientEngine implements ClientEngine {
             try {
                 if (data != null && data.hasRemaining()) {
 
-                    if (buffer != null) {
-                        data = Utils.appendBuffers(buffer, data, incomingBufferSize, BUFFER_STEP_SIZE);
-                    } else {
-                        int newSize = data.remaining();
-                        if (newSize > incomingBufferSize) {
-                            throw new IllegalArgumentException("Buffer overflow.");
-                        } else {
-                            final int roundedSize = (newSize % BUFFER_STEP_SIZE) > 0 ? ((newSize / BUFFER_STEP_SIZE)
-                                    + 1) * BUFFER_STEP_SIZE : newSize;
-                            final ByteBuffer result = ByteBuffer.allocate(roundedSize > incomingBufferSize ? newSize
-                                                                                  : roundedSize);
-                            result.flip();
-                            data = Utils.appendBuffers(result, data, incomingBufferSize, BUFFER_STEP_SIZE);
-                        }
-                    }
+                    final ByteBuffer buffer = incomingBuffer.append(data);
 
-                    do {
-                        Frame frame = handler.unframe(data);
-                        if (frame == null) {
-                            buffer = data;
-                            break;
-                        } else {
-                            for (Extension extension : negotiatedExtensions) {
-                                if (extension instanceof ExtendedExtension) {
-                                    try {
-                                        frame = ((ExtendedExtension) extension)
-                                                .processIncoming(extensionContext, frame);
-                                    } catch (Throwable t) {
-                                        LOGGER.log(
-                                                Level.FINE,
-                                                String.format(
-                                                        "Extension '%s' threw an exception during processIncoming "
-                                                                + "method invocation: \"%s\".",
-                                                        extension.getName(), t.getMessage()), t);
+                    try {
+                        do {
+                            Frame frame = handler.unframe(buffer);
+                            if (frame == null) {
+                                break;
+                            } else {
+                                for (Extension extension : negotiatedExtensions) {
+                                    if (extension instanceof ExtendedExtension) {
+                                        try {
+                                            frame = ((ExtendedExtension) extension)
+                                                    .processIncoming(extensionContext, frame);
+                                        } catch (Throwable t) {
+                                            LOGGER.log(
+                                                    Level.FINE,
+                                                    String.format(
+                                                            "Extension '%s' threw an exception during processIncoming "
+                                                                    + "method invocation: \"%s\".",
+                                                            extension.getName(), t.getMessage()), t);
+                                        }
                                     }
                                 }
-                            }
 
-                            handler.process(frame, socket);
-                        }
-                    } while (true);
+                                handler.process(frame, socket);
+                            }
+                        } while (true);
+                    } finally {
+                        // parsed frames are not referenced after this point, unparsed rest is kept (copied if needed).
+                        incomingBuffer.retainRemaining(buffer);
+                    }
                 }
             } catch (WebSocketException e) {
                 LOGGER.log(Level.FINE, e.getMessage(), e);
+                incomingBuffer.close();
                 socket.onClose(new CloseFrame(e.getCloseReason()));
             } catch (Exception e) {
                 LOGGER.log(Level.FINE, e.getMessage(), e);
+                incomingBuffer.close();
                 socket.onClose(new CloseFrame(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, e
                         .getMessage())));
             }
         }
+
+        /**
+         * Return buffer held by this handler to the pool, invoked when the connection is closed.
+         */
+        void close() {
+            incomingBuffer.close();
+        }
     }
 
     private static final ClientUpgradeInfo UPGRADE_INFO_FAILED = new ClientUpgradeInfo() {
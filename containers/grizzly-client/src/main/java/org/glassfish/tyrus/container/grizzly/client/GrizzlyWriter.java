@@ -52,6 +52,7 @@ import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.EmptyCompletionHandler;
 import org.glassfish.grizzly.WriteHandler;
 import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.MemoryManager;
 
 import static org.glassfish.tyrus.container.grizzly.client.TaskProcessor.Task;
 
@@ -104,6 +105,47 @@ public class GrizzlyWriter extends Writer {
         taskProcessor.processTask(new WriteTask(connection, message, emptyCompletionHandler));
     }
 
+    @Override
+    public void write(final ByteBuffer[] buffers, final CompletionHandler<ByteBuffer[]> completionHandler) {
+        if (!connection.isOpen()) {
+            completionHandler.failed(new IllegalStateException("Connection is not open."));
+            return;
+        }
+
+        final MemoryManager memoryManager = connection.getTransport().getMemoryManager();
+
+        // composite buffer - payload is not copied.
+        Buffer message = Buffers.wrap(memoryManager, buffers[0]);
+        for (int i = 1; i < buffers.length; i++) {
+            message = Buffers.appendBuffers(memoryManager, message, Buffers.wrap(memoryManager, buffers[i]));
+        }
+
+        final EmptyCompletionHandler emptyCompletionHandler = new EmptyCompletionHandler() {
+            @Override
+            public void cancelled() {
+                if (completionHandler != null) {
+                    completionHandler.cancelled();
+                }
+            }
+
+            @Override
+            public void completed(Object result) {
+                if (completionHandler != null) {
+                    completionHandler.completed(buffers);
+                }
+            }
+
+            @Override
+            public void failed(Throwable throwable) {
+                if (completionHandler != null) {
+                    completionHandler.failed(throwable);
+                }
+            }
+        };
+
+        taskProcessor.processTask(new WriteTask(connection, message, emptyCompletionHandler));
+    }
+
     private class WriterCondition implements TaskProcessor.Condition {
 
         private final AtomicBoolean writeHandlerRegistered = new AtomicBoolean(false);
@@ -51,6 +51,7 @@ import javax.websocket.server.ServerEndpointConfig;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 
+import org.glassfish.tyrus.core.ByteBufferPool;
 import org.glassfish.tyrus.core.DebugContext;
 import org.glassfish.tyrus.core.TyrusWebSocketEngine;
 import org.glassfish.tyrus.core.Utils;
@@ -130,6 +131,8 @@ public class GrizzlyServerContainer extends ServerContainerFactory {
         final DebugContext.TracingThreshold tracingThreshold =
                 Utils.getProperty(localProperties, TyrusWebSocketEngine.TRACING_THRESHOLD,
                                   DebugContext.TracingThreshold.class, DebugContext.TracingThreshold.TRACE);
+        final ByteBufferPool bufferPool =
+                Utils.getProperty(localProperties, TyrusWebSocketEngine.BUFFER_POOL, ByteBufferPool.class);
 
         return new TyrusServerContainer((Set<Class<?>>) null) {
 
@@ -143,6 +146,7 @@ public class GrizzlyServerContainer extends ServerContainerFactory {
                                         .parallelBroadcastEnabled(parallelBroadcastEnabled)
                                         .tracingType(tracingType)
                                         .tracingThreshold(tracingThreshold)
+                                        .bufferPool(bufferPool)
                                         .build();
 
             private HttpServer server;
@@ -45,17 +45,14 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.websocket.ClientEndpointConfig;
 import javax.websocket.DeploymentException;
 import javax.websocket.server.ServerApplicationConfig;
-import javax.websocket.server.ServerEndpointConfig;
 
-import org.glassfish.tyrus.client.ClientManager;
 import org.glassfish.tyrus.core.RequestContext;
 import org.glassfish.tyrus.core.TyrusUpgradeResponse;
-import org.glassfish.tyrus.core.TyrusWebSocketEngine;
-import org.glassfish.tyrus.server.TyrusServerContainer;
 import org.glassfish.tyrus.spi.ClientContainer;
 import org.glassfish.tyrus.spi.ClientEngine;
 import org.glassfish.tyrus.spi.CompletionHandler;
@@ -67,6 +64,9 @@ import org.glassfish.tyrus.spi.Writer;
 
 /**
  * In-Memory {@link org.glassfish.tyrus.spi.ClientContainer} implementation.
+ * <p>
+ * Client connections are upgraded by {@link InMemoryServer} shared by all connections using the same {@link
+ * #SERVER_CONFIG} instance and exchange the data directly, without any transport in between.
  *
  * @author Pavel Bucek (pavel.bucek at oracle.com)
  */
@@ -85,41 +85,9 @@ public class InMemoryClientContainer implements ClientContainer {
                                  final ClientEngine clientEngine) throws DeploymentException, IOException {
         final UpgradeRequest upgradeRequest = clientEngine.createUpgradeRequest(null);
 
-        final ServerApplicationConfig serverApplicationConfig = getServerApplicationConfig(cec);
-        final TyrusServerContainer tyrusServerContainer = new TyrusServerContainer(serverApplicationConfig) {
-            private final WebSocketEngine webSocketEngine = TyrusWebSocketEngine.builder(this).build();
-
-            private ClientManager clientManager = null;
-
-            @Override
-            public void register(Class<?> endpointClass) throws DeploymentException {
-                webSocketEngine.register(endpointClass, "/");
-            }
-
-            @Override
-            public void register(ServerEndpointConfig serverEndpointConfig) throws DeploymentException {
-                webSocketEngine.register(serverEndpointConfig, "/");
-            }
-
-            @Override
-            public WebSocketEngine getWebSocketEngine() {
-                return webSocketEngine;
-            }
-
-            // This has to be overridden, because Grizzly container is used by default
-            @Override
-            protected synchronized ClientManager getClientManager() {
-                if (clientManager == null) {
-                    clientManager = ClientManager.createClient(InMemoryClientContainer.class.getName(), this);
-                }
-
-                return clientManager;
-            }
-        };
-
-        tyrusServerContainer.doneDeployment();
-        // placeholder values, not used anywhere in this case.
-        tyrusServerContainer.start("/inmemory", 0);
+        // server is deployed only once and shared by all connections using the same server config.
+        final ServerReference serverReference =
+                new ServerReference(InMemoryServer.start(getServerApplicationConfig(cec)));
 
         final TyrusUpgradeResponse upgradeResponse = new TyrusUpgradeResponse();
 
@@ -137,28 +105,18 @@ public class InMemoryClientContainer implements ClientContainer {
         requestContext.getHeaders().putAll(upgradeRequest.getHeaders());
 
         final WebSocketEngine.UpgradeInfo upgradeInfo =
-                tyrusServerContainer.getWebSocketEngine().upgrade(requestContext, upgradeResponse);
+                serverReference.server.upgrade(requestContext, upgradeResponse);
         switch (upgradeInfo.getStatus()) {
             case HANDSHAKE_FAILED:
-                tyrusServerContainer.shutdown();
+                serverReference.release();
                 throw new DeploymentException("");
             case NOT_APPLICABLE:
-                tyrusServerContainer.shutdown();
+                serverReference.release();
                 throw new DeploymentException("");
             case SUCCESS:
 
-                final InMemoryWriter clientWriter = new InMemoryWriter() {
-                    @Override
-                    public void close() throws IOException {
-                        tyrusServerContainer.shutdown();
-                    }
-                };
-                final InMemoryWriter serverWriter = new InMemoryWriter() {
-                    @Override
-                    public void close() throws IOException {
-                        tyrusServerContainer.shutdown();
-                    }
-                };
+                final InMemoryWriter clientWriter = new InMemoryWriter(serverReference);
+                final InMemoryWriter serverWriter = new InMemoryWriter(serverReference);
 
                 final Connection serverConnection = upgradeInfo.createConnection(serverWriter, null);
                 final ClientEngine.ClientUpgradeInfo clientClientUpgradeInfo =
@@ -166,6 +124,7 @@ public class InMemoryClientContainer implements ClientContainer {
                 final Connection clientConnection = clientClientUpgradeInfo.createConnection();
 
                 if (clientConnection == null) {
+                    serverReference.release();
                     throw new DeploymentException("");
                 }
 
@@ -184,31 +143,95 @@ public class InMemoryClientContainer implements ClientContainer {
         throw new DeploymentException("ServerApplicationConfig not present.");
     }
 
-    private abstract static class InMemoryWriter extends Writer {
+    /**
+     * Reference to the shared server held by a single connection.
+     */
+    private static final class ServerReference {
+
+        private final InMemoryServer server;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private ServerReference(InMemoryServer server) {
+            this.server = server;
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                server.stop();
+            }
+        }
+    }
+
+    /**
+     * {@link Writer} which hands written buffers directly to the {@link ReadHandler} of the other side.
+     * <p>
+     * Buffers are not copied, apart from the data written before the read handler is known. Frame header and payload
+     * written by a gathering write are passed one after another, so the payload does not need to be coalesced with the
+     * header into a newly allocated buffer.
+     */
+    private static final class InMemoryWriter extends Writer {
 
         private final List<ByteBuffer> cache = new ArrayList<ByteBuffer>();
+        private final ServerReference serverReference;
         private volatile ReadHandler readHandler = null;
 
+        private InMemoryWriter(ServerReference serverReference) {
+            this.serverReference = serverReference;
+        }
+
         @Override
         public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
             synchronized (cache) {
                 if (readHandler == null) {
-                    cache.add(buffer);
+                    cache.add(copy(buffer));
                 } else {
                     readHandler.handle(buffer);
                 }
+            }
 
+            if (completionHandler != null) {
                 completionHandler.completed(buffer);
             }
         }
 
+        @Override
+        public void write(ByteBuffer[] buffers, CompletionHandler<ByteBuffer[]> completionHandler) {
+            synchronized (cache) {
+                for (ByteBuffer buffer : buffers) {
+                    if (readHandler == null) {
+                        cache.add(copy(buffer));
+                    } else {
+                        readHandler.handle(buffer);
+                    }
+                }
+            }
+
+            if (completionHandler != null) {
+                completionHandler.completed(buffers);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverReference.release();
+        }
+
         private void setReadHandler(ReadHandler readHandler) {
             synchronized (cache) {
                 for (ByteBuffer buffer : cache) {
                     readHandler.handle(buffer);
                 }
+                cache.clear();
                 this.readHandler = readHandler;
             }
         }
+
+        // buffer can be reused by the runtime once the write is completed.
+        private static ByteBuffer copy(ByteBuffer buffer) {
+            final ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+            copy.put(buffer.duplicate());
+            copy.flip();
+            return copy;
+        }
     }
 }
@@ -0,0 +1,190 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.container.inmemory;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.websocket.DeploymentException;
+import javax.websocket.server.ServerApplicationConfig;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.core.TyrusWebSocketEngine;
+import org.glassfish.tyrus.server.TyrusServerContainer;
+import org.glassfish.tyrus.spi.UpgradeRequest;
+import org.glassfish.tyrus.spi.UpgradeResponse;
+import org.glassfish.tyrus.spi.WebSocketEngine;
+
+/**
+ * Tyrus server deployed in memory.
+ * <p>
+ * There is at most one running server per {@link ServerApplicationConfig} instance; all in-memory client connections
+ * which are configured (see {@link InMemoryClientContainer#SERVER_CONFIG}) with the same instance are connected to
+ * the same server, so the endpoints are deployed only once.
+ * <p>
+ * The server is started by the first connection and it is stopped when the last connection is closed. Applications
+ * which open connections one after another (load tests, co-located modules) should keep the server running by
+ * {@link #start(ServerApplicationConfig)} and {@link #stop()}:
+ * <pre>
+ * final InMemoryServer server = InMemoryServer.start(serverApplicationConfig);
+ * try {
+ *     // connect clients
+ * } finally {
+ *     server.stop();
+ * }
+ * </pre>
+ */
+public final class InMemoryServer {
+
+    private static final Logger LOGGER = Logger.getLogger(InMemoryServer.class.getName());
+
+    // guarded by itself.
+    private static final Map<ServerApplicationConfig, InMemoryServer> SERVERS =
+            new IdentityHashMap<ServerApplicationConfig, InMemoryServer>();
+
+    private final ServerApplicationConfig serverApplicationConfig;
+    private final TyrusServerContainer serverContainer;
+
+    // guarded by SERVERS.
+    private int references = 0;
+
+    private InMemoryServer(ServerApplicationConfig serverApplicationConfig) throws DeploymentException {
+        this.serverApplicationConfig = serverApplicationConfig;
+        this.serverContainer = new TyrusServerContainer(serverApplicationConfig) {
+            private final WebSocketEngine webSocketEngine = TyrusWebSocketEngine.builder(this).build();
+
+            private ClientManager clientManager = null;
+
+            @Override
+            public void register(Class<?> endpointClass) throws DeploymentException {
+                webSocketEngine.register(endpointClass, "/");
+            }
+
+            @Override
+            public void register(ServerEndpointConfig serverEndpointConfig) throws DeploymentException {
+                webSocketEngine.register(serverEndpointConfig, "/");
+            }
+
+            @Override
+            public WebSocketEngine getWebSocketEngine() {
+                return webSocketEngine;
+            }
+
+            // This has to be overridden, because Grizzly container is used by default
+            @Override
+            protected synchronized ClientManager getClientManager() {
+                if (clientManager == null) {
+                    clientManager = ClientManager.createClient(InMemoryClientContainer.class.getName(), this);
+                }
+
+                return clientManager;
+            }
+        };
+
+        serverContainer.doneDeployment();
+        try {
+            // placeholder values, not used anywhere in this case.
+            serverContainer.start("/inmemory", 0);
+        } catch (IOException e) {
+            throw new DeploymentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Start (deploy) the server for given {@link ServerApplicationConfig} or get the running one.
+     * <p>
+     * The server is kept running at least until {@link #stop()} is called; every call of this method should be paired
+     * with one call of {@link #stop()}.
+     *
+     * @param serverApplicationConfig server configuration.
+     * @return running server.
+     * @throws DeploymentException when the endpoints cannot be deployed.
+     */
+    public static InMemoryServer start(ServerApplicationConfig serverApplicationConfig) throws DeploymentException {
+        if (serverApplicationConfig == null) {
+            throw new NullPointerException("serverApplicationConfig");
+        }
+
+        synchronized (SERVERS) {
+            InMemoryServer server = SERVERS.get(serverApplicationConfig);
+            if (server == null) {
+                server = new InMemoryServer(serverApplicationConfig);
+                SERVERS.put(serverApplicationConfig, server);
+            }
+
+            server.references++;
+            return server;
+        }
+    }
+
+    /**
+     * Release the server obtained by {@link #start(ServerApplicationConfig)}.
+     * <p>
+     * The server is stopped (undeployed) when it is not used by any other caller or connection.
+     */
+    public void stop() {
+        synchronized (SERVERS) {
+            if (references == 0 || --references > 0) {
+                return;
+            }
+
+            SERVERS.remove(serverApplicationConfig);
+        }
+
+        LOGGER.log(Level.FINE, "Stopping in-memory server for {0}", serverApplicationConfig);
+        serverContainer.stop();
+    }
+
+    /**
+     * Process an upgrade request by the server {@link WebSocketEngine}.
+     *
+     * @param upgradeRequest  upgrade request.
+     * @param upgradeResponse upgrade response.
+     * @return upgrade info.
+     */
+    WebSocketEngine.UpgradeInfo upgrade(UpgradeRequest upgradeRequest, UpgradeResponse upgradeResponse) {
+        return serverContainer.getWebSocketEngine().upgrade(upgradeRequest, upgradeResponse);
+    }
+}
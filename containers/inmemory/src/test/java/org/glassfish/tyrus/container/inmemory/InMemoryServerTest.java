@@ -0,0 +1,157 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.container.inmemory;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.MessageHandler;
+import javax.websocket.OnMessage;
+import javax.websocket.Session;
+import javax.websocket.server.ServerApplicationConfig;
+import javax.websocket.server.ServerEndpoint;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.glassfish.tyrus.client.ClientManager;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests sharing of {@link InMemoryServer} by in-memory client connections.
+ */
+public class InMemoryServerTest {
+
+    @Test
+    public void testSharedServer() throws Exception {
+        final CountingServerApplicationConfig serverConfig = new CountingServerApplicationConfig();
+        final ClientManager client = ClientManager.createClient(InMemoryClientContainer.class.getName());
+
+        final Session first = connect(client, serverConfig);
+        final Session second = connect(client, serverConfig);
+        assertEquals(1, serverConfig.deployments.get());
+
+        first.close();
+        second.close();
+
+        // last connection closed the server, new connection deploys it again.
+        connect(client, serverConfig).close();
+        assertEquals(2, serverConfig.deployments.get());
+    }
+
+    @Test
+    public void testStartedServer() throws Exception {
+        final CountingServerApplicationConfig serverConfig = new CountingServerApplicationConfig();
+        final ClientManager client = ClientManager.createClient(InMemoryClientContainer.class.getName());
+
+        final InMemoryServer server = InMemoryServer.start(serverConfig);
+        try {
+            assertSame(server, InMemoryServer.start(serverConfig));
+            server.stop();
+
+            for (int i = 0; i < 3; i++) {
+                connect(client, serverConfig).close();
+            }
+            assertEquals(1, serverConfig.deployments.get());
+        } finally {
+            server.stop();
+        }
+
+        connect(client, serverConfig).close();
+        assertEquals(2, serverConfig.deployments.get());
+    }
+
+    private static Session connect(ClientManager client, ServerApplicationConfig serverConfig) throws Exception {
+        final CountDownLatch messageLatch = new CountDownLatch(1);
+
+        final ClientEndpointConfig cec = ClientEndpointConfig.Builder.create().build();
+        cec.getUserProperties().put(InMemoryClientContainer.SERVER_CONFIG, serverConfig);
+
+        final Session session = client.connectToServer(new Endpoint() {
+            @Override
+            public void onOpen(Session session, EndpointConfig config) {
+                session.addMessageHandler(new MessageHandler.Whole<String>() {
+                    @Override
+                    public void onMessage(String message) {
+                        messageLatch.countDown();
+                    }
+                });
+            }
+        }, cec, URI.create("ws://inmemory/echo"));
+
+        session.getBasicRemote().sendText("echo");
+        assertTrue(messageLatch.await(1, TimeUnit.SECONDS));
+        return session;
+    }
+
+    private static class CountingServerApplicationConfig implements ServerApplicationConfig {
+
+        private final AtomicInteger deployments = new AtomicInteger(0);
+
+        @Override
+        public Set<ServerEndpointConfig> getEndpointConfigs(Set<Class<? extends Endpoint>> set) {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public Set<Class<?>> getAnnotatedEndpointClasses(Set<Class<?>> set) {
+            deployments.incrementAndGet();
+            return Collections.<Class<?>>singleton(EchoEndpoint.class);
+        }
+    }
+
+    @ServerEndpoint("/echo")
+    public static class EchoEndpoint {
+        @OnMessage
+        public String onMessage(String message) {
+            return message;
+        }
+    }
+}
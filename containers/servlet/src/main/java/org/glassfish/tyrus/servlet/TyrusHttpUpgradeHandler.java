@@ -71,6 +71,24 @@ public class TyrusHttpUpgradeHandler implements HttpUpgradeHandler, ReadListener
 
     public static final String FRAME_BUFFER_SIZE = "org.glassfish.tyrus.servlet.incoming-buffer-size";
 
+    /**
+     * Maximal number of outgoing frames queued per connection while the {@link ServletOutputStream} is not ready.
+     * <p>
+     * Data frame which would exceed this limit is not queued, its completion handler is failed instead and the
+     * connection is closed (with status code 1011), because the message stream cannot continue. Control frames are not
+     * limited. Value is expected to be positive integer, default value is {@code 0}, which means no limit.
+     */
+    public static final String MAX_QUEUED_FRAMES = "org.glassfish.tyrus.servlet.max-queued-frames";
+
+    /**
+     * Maximal number of outgoing bytes queued per connection while the {@link ServletOutputStream} is not ready.
+     * <p>
+     * Data frame which would exceed this limit is not queued, its completion handler is failed instead and the
+     * connection is closed (with status code 1011), because the message stream cannot continue. Control frames are not
+     * limited. Value is expected to be positive long, default value is {@code 0}, which means no limit.
+     */
+    public static final String MAX_QUEUED_BYTES = "org.glassfish.tyrus.servlet.max-queued-bytes";
+
     private final CountDownLatch connectionLatch = new CountDownLatch(1);
 
     private ServletInputStream is;
@@ -261,6 +279,61 @@ public class TyrusHttpUpgradeHandler implements HttpUpgradeHandler, ReadListener
         // else do nothing.
     }
 
+    /**
+     * Get number of frames currently waiting for the {@link ServletOutputStream} to become ready.
+     *
+     * @return number of queued frames, {@code 0} if the connection is not written by Servlet writer.
+     */
+    public int getQueuedFrames() {
+        final TyrusServletWriter servletWriter = getServletWriter();
+        return servletWriter == null ? 0 : servletWriter.getQueuedFrames();
+    }
+
+    /**
+     * Get number of bytes currently waiting for the {@link ServletOutputStream} to become ready.
+     *
+     * @return number of queued bytes, {@code 0} if the connection is not written by Servlet writer.
+     */
+    public long getQueuedBytes() {
+        final TyrusServletWriter servletWriter = getServletWriter();
+        return servletWriter == null ? 0 : servletWriter.getQueuedBytes();
+    }
+
+    /**
+     * Get the highest number of frames which were queued at once on this connection.
+     *
+     * @return peak number of queued frames, {@code 0} if the connection is not written by Servlet writer.
+     */
+    public int getPeakQueuedFrames() {
+        final TyrusServletWriter servletWriter = getServletWriter();
+        return servletWriter == null ? 0 : servletWriter.getPeakQueuedFrames();
+    }
+
+    /**
+     * Get the highest number of bytes which were queued at once on this connection.
+     *
+     * @return peak number of queued bytes, {@code 0} if the connection is not written by Servlet writer.
+     */
+    public long getPeakQueuedBytes() {
+        final TyrusServletWriter servletWriter = getServletWriter();
+        return servletWriter == null ? 0 : servletWriter.getPeakQueuedBytes();
+    }
+
+    /**
+     * Get number of frames which were failed, because the queue limit ({@link #MAX_QUEUED_FRAMES}, {@link
+     * #MAX_QUEUED_BYTES}) was reached.
+     *
+     * @return number of rejected frames, {@code 0} if the connection is not written by Servlet writer.
+     */
+    public long getRejectedFrames() {
+        final TyrusServletWriter servletWriter = getServletWriter();
+        return servletWriter == null ? 0 : servletWriter.getRejectedFrames();
+    }
+
+    private TyrusServletWriter getServletWriter() {
+        return writer instanceof TyrusServletWriter ? (TyrusServletWriter) writer : null;
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder("TyrusHttpUpgradeHandler{");
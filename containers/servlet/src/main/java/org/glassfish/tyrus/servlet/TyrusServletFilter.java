@@ -192,6 +192,31 @@ class TyrusServletFilter implements Filter, HttpSessionListener {
             return handler.getWebConnection();
         }
 
+        @Override
+        public int getQueuedFrames() {
+            return handler.getQueuedFrames();
+        }
+
+        @Override
+        public long getQueuedBytes() {
+            return handler.getQueuedBytes();
+        }
+
+        @Override
+        public int getPeakQueuedFrames() {
+            return handler.getPeakQueuedFrames();
+        }
+
+        @Override
+        public long getPeakQueuedBytes() {
+            return handler.getPeakQueuedBytes();
+        }
+
+        @Override
+        public long getRejectedFrames() {
+            return handler.getRejectedFrames();
+        }
+
         void setHandler(TyrusHttpUpgradeHandler handler) {
             this.handler = handler;
         }
@@ -268,6 +293,16 @@ class TyrusServletFilter implements Filter, HttpSessionListener {
                     if (frameBufferSize != null) {
                         handler.setIncomingBufferSize(Integer.parseInt(frameBufferSize));
                     }
+                    final String maxQueuedFrames =
+                            request.getServletContext().getInitParameter(TyrusHttpUpgradeHandler.MAX_QUEUED_FRAMES);
+                    if (maxQueuedFrames != null) {
+                        webSocketConnection.setMaxQueuedFrames(Integer.parseInt(maxQueuedFrames));
+                    }
+                    final String maxQueuedBytes =
+                            request.getServletContext().getInitParameter(TyrusHttpUpgradeHandler.MAX_QUEUED_BYTES);
+                    if (maxQueuedBytes != null) {
+                        webSocketConnection.setMaxQueuedBytes(Long.parseLong(maxQueuedBytes));
+                    }
 
                     handler.preInit(upgradeInfo, webSocketConnection, httpServletRequest.getUserPrincipal() != null);
 
@@ -41,8 +41,8 @@ package org.glassfish.tyrus.servlet;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.Deque;
-import java.util.LinkedList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -54,13 +54,37 @@ import org.glassfish.tyrus.spi.Writer;
 
 /**
  * {@link org.glassfish.tyrus.spi.Writer} implementation used in Servlet integration.
+ * <p>
+ * When the {@link ServletOutputStream} is not ready, frames are queued and written from {@link #onWritePossible()},
+ * where all queued frames (up to {@link #COALESCING_BUFFER_SIZE} bytes) are written by single write followed by single
+ * flush. Queue can be bounded by number of frames and/or bytes, see {@link
+ * TyrusHttpUpgradeHandler#MAX_QUEUED_FRAMES} and {@link TyrusHttpUpgradeHandler#MAX_QUEUED_BYTES}.
+ * <p>
+ * Frames cannot be simply dropped when the limit is reached - that could remove a part of fragmented message and
+ * corrupt the stream. Data frame which would exceed the limit is failed with {@link IOException}, as well as all data
+ * frames written after it; close frame is queued instead and the connection is closed once the queue is written.
+ * Control frames are never rejected because of the limit.
+ * <p>
+ * Queue-depth metrics of the connection are exposed by {@link TyrusHttpUpgradeHandler#getQueuedFrames()} and related
+ * methods.
  *
  * @author Pavel Bucek (pavel.bucek at oracle.com)
  */
 class TyrusServletWriter extends Writer implements WriteListener {
 
+    /**
+     * Maximal number of bytes written to {@link ServletOutputStream} at once when draining the queue.
+     */
+    static final int COALESCING_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Serialized (unmasked) close frame with status code 1011 (unexpected condition), sent when the queue limit is
+     * reached.
+     */
+    private static final byte[] OVERFLOW_CLOSE_FRAME = {(byte) 0x88, 0x02, 0x03, (byte) 0xF3};
+
     private final TyrusHttpUpgradeHandler tyrusHttpUpgradeHandler;
-    private final Deque<QueuedFrame> queue = new LinkedList<QueuedFrame>();
+    private final Deque<QueuedFrame> queue = new ArrayDeque<QueuedFrame>();
 
     private static final Logger LOGGER = Logger.getLogger(TyrusServletWriter.class.getName());
 
@@ -74,6 +98,19 @@ class TyrusServletWriter extends Writer implements WriteListener {
 
     private boolean isListenerSet;
 
+    private int maxQueuedFrames = 0;
+    private long maxQueuedBytes = 0;
+
+    private long queuedBytes = 0;
+    private int peakQueuedFrames = 0;
+    private long peakQueuedBytes = 0;
+    private long rejectedFrames = 0;
+    private byte[] coalescingBuffer = null;
+
+    // queue limit was reached, no more data frames are written, close frame is queued.
+    private boolean overflowed = false;
+    private boolean connectionClosed = false;
+
     private static class QueuedFrame {
         public final CompletionHandler<ByteBuffer> completionHandler;
         public final ByteBuffer dataFrame;
@@ -93,15 +130,172 @@ class TyrusServletWriter extends Writer implements WriteListener {
         this.tyrusHttpUpgradeHandler = tyrusHttpUpgradeHandler;
     }
 
+    /**
+     * Set maximal number of frames waiting for the {@link ServletOutputStream} to become ready.
+     *
+     * @param maxQueuedFrames maximal number of queued frames, {@code 0} or negative value means no limit.
+     */
+    synchronized void setMaxQueuedFrames(int maxQueuedFrames) {
+        this.maxQueuedFrames = maxQueuedFrames;
+    }
+
+    /**
+     * Set maximal number of bytes waiting for the {@link ServletOutputStream} to become ready.
+     *
+     * @param maxQueuedBytes maximal number of queued bytes, {@code 0} or negative value means no limit.
+     */
+    synchronized void setMaxQueuedBytes(long maxQueuedBytes) {
+        this.maxQueuedBytes = maxQueuedBytes;
+    }
+
+    /**
+     * Get number of frames currently waiting for the {@link ServletOutputStream} to become ready.
+     *
+     * @return number of queued frames.
+     */
+    public synchronized int getQueuedFrames() {
+        return queue.size();
+    }
+
+    /**
+     * Get number of bytes currently waiting for the {@link ServletOutputStream} to become ready.
+     *
+     * @return number of queued bytes.
+     */
+    public synchronized long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    /**
+     * Get the highest number of frames which were queued at once on this connection.
+     *
+     * @return peak number of queued frames.
+     */
+    public synchronized int getPeakQueuedFrames() {
+        return peakQueuedFrames;
+    }
+
+    /**
+     * Get the highest number of bytes which were queued at once on this connection.
+     *
+     * @return peak number of queued bytes.
+     */
+    public synchronized long getPeakQueuedBytes() {
+        return peakQueuedBytes;
+    }
+
+    /**
+     * Get number of frames which were failed, because the queue limit was reached (or was reached before).
+     *
+     * @return number of rejected frames.
+     */
+    public synchronized long getRejectedFrames() {
+        return rejectedFrames;
+    }
+
+    /**
+     * Get information whether the queue limit was reached and the connection is being closed.
+     *
+     * @return {@code true} if the queue limit was reached, {@code false} otherwise.
+     */
+    public synchronized boolean isOverflowed() {
+        return overflowed;
+    }
+
     @Override
-    public synchronized void onWritePossible() throws IOException {
+    public void onWritePossible() throws IOException {
         LOGGER.log(Level.FINEST, "OnWritePossible called");
 
+        final boolean close;
+        synchronized (this) {
+            drain();
+            close = closeAfterDrain();
+        }
+
+        // outside of the lock, closing the connection writes to this writer.
+        if (close) {
+            closeConnection();
+        }
+    }
+
+    /**
+     * Write queued frames while the {@link ServletOutputStream} is ready.
+     */
+    private void drain() {
         while (!queue.isEmpty() && servletOutputStream.isReady()) {
+            final QueuedFrame first = queue.peek();
+
+            if (queue.size() == 1 || first.dataFrame.remaining() >= COALESCING_BUFFER_SIZE) {
+                queue.poll();
+                queuedBytes -= first.dataFrame.remaining();
+                _write(first.dataFrame, first.completionHandler);
+            } else {
+                writeCoalesced();
+            }
+        }
+    }
+
+    /**
+     * Check whether the connection should be closed, because the queue limit was reached and all queued frames,
+     * including the close frame, are written.
+     *
+     * @return {@code true} if the connection should be closed now.
+     */
+    private boolean closeAfterDrain() {
+        if (overflowed && queue.isEmpty() && !connectionClosed) {
+            connectionClosed = true;
+            return true;
+        }
+
+        return false;
+    }
+
+    private void closeConnection() {
+        // closes both Tyrus connection (session) and the web connection.
+        tyrusHttpUpgradeHandler.onError(new IOException(
+                "Write queue limit reached, frames: " + maxQueuedFrames + ", bytes: " + maxQueuedBytes));
+    }
+
+    /**
+     * Write queued frames which fit into {@link #COALESCING_BUFFER_SIZE} by single write and flush.
+     */
+    private void writeCoalesced() {
+        if (coalescingBuffer == null) {
+            coalescingBuffer = new byte[COALESCING_BUFFER_SIZE];
+        }
+
+        final QueuedFrame[] frames = new QueuedFrame[queue.size()];
+        int frameCount = 0;
+        int length = 0;
+
+        while (!queue.isEmpty() && length + queue.peek().dataFrame.remaining() <= COALESCING_BUFFER_SIZE) {
             final QueuedFrame queuedFrame = queue.poll();
-            assert queuedFrame != null;
+            final ByteBuffer dataFrame = queuedFrame.dataFrame;
+            final int remaining = dataFrame.remaining();
+
+            dataFrame.duplicate().get(coalescingBuffer, length, remaining);
+            length += remaining;
+            frames[frameCount++] = queuedFrame;
+        }
+
+        queuedBytes -= length;
+
+        try {
+            servletOutputStream.write(coalescingBuffer, 0, length);
+            servletOutputStream.flush();
+        } catch (Exception e) {
+            for (int i = 0; i < frameCount; i++) {
+                if (frames[i].completionHandler != null) {
+                    frames[i].completionHandler.failed(e);
+                }
+            }
+            return;
+        }
 
-            _write(queuedFrame.dataFrame, queuedFrame.completionHandler);
+        for (int i = 0; i < frameCount; i++) {
+            if (frames[i].completionHandler != null) {
+                frames[i].completionHandler.completed(frames[i].dataFrame);
+            }
         }
     }
 
@@ -111,34 +305,93 @@ class TyrusServletWriter extends Writer implements WriteListener {
 
         QueuedFrame queuedFrame;
         while ((queuedFrame = queue.poll()) != null) {
-            queuedFrame.completionHandler.failed(t);
+            if (queuedFrame.completionHandler != null) {
+                queuedFrame.completionHandler.failed(t);
+            }
         }
+        queuedBytes = 0;
     }
 
     @Override
-    public synchronized void write(final ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+    public void write(final ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+        final boolean close;
+        synchronized (this) {
+            if (!writeOrQueue(buffer, completionHandler)) {
+                return;
+            }
+            close = closeAfterDrain();
+        }
+
+        // outside of the lock, closing the connection writes to this writer.
+        if (close) {
+            closeConnection();
+        }
+    }
 
+    /**
+     * Write the frame or add it to the queue.
+     *
+     * @return {@code false} if the output stream could not be obtained.
+     */
+    private boolean writeOrQueue(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
         // first write
         if (servletOutputStream == null) {
             try {
                 servletOutputStream = tyrusHttpUpgradeHandler.getWebConnection().getOutputStream();
             } catch (IOException e) {
                 LOGGER.log(Level.CONFIG, "ServletOutputStream cannot be obtained", e);
-                completionHandler.failed(e);
-                return;
+                if (completionHandler != null) {
+                    completionHandler.failed(e);
+                }
+                return false;
+            }
+        }
+
+        // first byte of serialized frame contains opcode, control frames have the highest opcode bit set.
+        final boolean controlFrame = buffer.hasRemaining() && (buffer.get(buffer.position()) & 0x08) == 0x08;
+
+        if (overflowed) {
+            // stream must not continue after a rejected data frame; close frame is already queued.
+            rejectedFrames++;
+            if (completionHandler != null) {
+                completionHandler.failed(new IOException("Write queue limit was reached, connection is closing."));
             }
+            return true;
         }
 
         if (queue.isEmpty() && servletOutputStream.isReady()) {
             _write(buffer, completionHandler);
-        } else {
-            final QueuedFrame queuedFrame = new QueuedFrame(completionHandler, buffer);
-            queue.offer(queuedFrame);
+            return true;
+        }
+
+        if (!controlFrame && ((maxQueuedFrames > 0 && queue.size() >= maxQueuedFrames)
+                || (maxQueuedBytes > 0 && queuedBytes + buffer.remaining() > maxQueuedBytes))) {
+            overflowed = true;
+            rejectedFrames++;
+            LOGGER.log(Level.WARNING, "Write queue limit reached, closing the connection: " + this);
 
-            if (!isListenerSet) {
-                isListenerSet = true;
-                servletOutputStream.setWriteListener(this);
+            if (completionHandler != null) {
+                completionHandler.failed(new IOException(
+                        "Write queue limit reached, frames: " + queue.size() + ", bytes: " + queuedBytes));
             }
+
+            enqueue(ByteBuffer.wrap(OVERFLOW_CLOSE_FRAME), null);
+            return true;
+        }
+
+        enqueue(buffer, completionHandler);
+        return true;
+    }
+
+    private void enqueue(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+        queue.offer(new QueuedFrame(completionHandler, buffer));
+        queuedBytes += buffer.remaining();
+        peakQueuedFrames = Math.max(peakQueuedFrames, queue.size());
+        peakQueuedBytes = Math.max(peakQueuedBytes, queuedBytes);
+
+        if (!isListenerSet) {
+            isListenerSet = true;
+            servletOutputStream.setWriteListener(this);
         }
     }
 
@@ -169,10 +422,27 @@ class TyrusServletWriter extends Writer implements WriteListener {
 
     @Override
     public void close() {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Closing connection, write queue statistics: " + this);
+        }
+
         try {
             tyrusHttpUpgradeHandler.getWebConnection().close();
         } catch (Exception e) {
             // do nothing.
         }
     }
+
+    @Override
+    public synchronized String toString() {
+        final StringBuilder sb = new StringBuilder("TyrusServletWriter{");
+        sb.append("queuedFrames=").append(queue.size());
+        sb.append(", queuedBytes=").append(queuedBytes);
+        sb.append(", peakQueuedFrames=").append(peakQueuedFrames);
+        sb.append(", peakQueuedBytes=").append(peakQueuedBytes);
+        sb.append(", rejectedFrames=").append(rejectedFrames);
+        sb.append(", overflowed=").append(overflowed);
+        sb.append('}');
+        return sb.toString();
+    }
 }
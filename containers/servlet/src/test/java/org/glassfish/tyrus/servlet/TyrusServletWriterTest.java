@@ -0,0 +1,287 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.WebConnection;
+
+import org.glassfish.tyrus.spi.CompletionHandler;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests queueing and coalescing of frames in {@link TyrusServletWriter}.
+ */
+public class TyrusServletWriterTest {
+
+    private static final byte[] TEXT_FRAME = {(byte) 0x81, 0x03, 'a', 'b', 'c'};
+    private static final byte[] FIRST_FRAGMENT = {0x01, 0x03, 'a', 'b', 'c'};
+    private static final byte[] PING_FRAME = {(byte) 0x89, 0x00};
+    private static final byte[] OVERFLOW_CLOSE_FRAME = {(byte) 0x88, 0x02, 0x03, (byte) 0xF3};
+
+    @Test
+    public void testDirectWrite() {
+        final TestUpgradeHandler handler = new TestUpgradeHandler();
+        final TyrusServletWriter writer = new TyrusServletWriter(handler);
+        final RecordingHandler completion = new RecordingHandler();
+
+        writer.write(ByteBuffer.wrap(TEXT_FRAME), completion);
+
+        assertTrue(completion.completed);
+        assertArrayEquals(TEXT_FRAME, handler.outputStream.written());
+        assertEquals(1, handler.outputStream.flushes);
+        assertEquals(0, writer.getQueuedFrames());
+    }
+
+    @Test
+    public void testQueuedFramesCoalesced() throws IOException {
+        final TestUpgradeHandler handler = new TestUpgradeHandler();
+        final TyrusServletWriter writer = new TyrusServletWriter(handler);
+        final List<RecordingHandler> completions = new ArrayList<RecordingHandler>();
+
+        handler.outputStream.ready = false;
+        for (int i = 0; i < 3; i++) {
+            final RecordingHandler completion = new RecordingHandler();
+            completions.add(completion);
+            writer.write(ByteBuffer.wrap(TEXT_FRAME), completion);
+        }
+
+        assertEquals(3, writer.getQueuedFrames());
+        assertEquals(15, writer.getQueuedBytes());
+        assertNotNull(handler.outputStream.writeListener);
+
+        handler.outputStream.ready = true;
+        writer.onWritePossible();
+
+        // single write and flush.
+        assertEquals(1, handler.outputStream.flushes);
+        assertEquals(15, handler.outputStream.written().length);
+        for (RecordingHandler completion : completions) {
+            assertTrue(completion.completed);
+        }
+        assertEquals(0, writer.getQueuedFrames());
+        assertEquals(0, writer.getQueuedBytes());
+        assertEquals(3, writer.getPeakQueuedFrames());
+        assertEquals(15, writer.getPeakQueuedBytes());
+    }
+
+    @Test
+    public void testOverflowClosesConnection() throws IOException {
+        final TestUpgradeHandler handler = new TestUpgradeHandler();
+        final TyrusServletWriter writer = new TyrusServletWriter(handler);
+        writer.setMaxQueuedFrames(2);
+
+        handler.outputStream.ready = false;
+        final RecordingHandler first = new RecordingHandler();
+        writer.write(ByteBuffer.wrap(FIRST_FRAGMENT), first);
+        writer.write(ByteBuffer.wrap(PING_FRAME), new RecordingHandler());
+
+        // control frames are not limited.
+        writer.write(ByteBuffer.wrap(PING_FRAME), new RecordingHandler());
+        assertEquals(3, writer.getQueuedFrames());
+        assertFalse(writer.isOverflowed());
+
+        final RecordingHandler rejected = new RecordingHandler();
+        writer.write(ByteBuffer.wrap(TEXT_FRAME), rejected);
+        assertTrue(rejected.failure instanceof IOException);
+        assertTrue(writer.isOverflowed());
+
+        // stream cannot continue after rejected frame, data frames which would fit are rejected too.
+        writer.setMaxQueuedFrames(0);
+        final RecordingHandler afterOverflow = new RecordingHandler();
+        writer.write(ByteBuffer.wrap(TEXT_FRAME), afterOverflow);
+        assertTrue(afterOverflow.failure instanceof IOException);
+        assertEquals(2, writer.getRejectedFrames());
+        assertNull(handler.error);
+
+        handler.outputStream.ready = true;
+        writer.onWritePossible();
+
+        // queued frames and the close frame are written, then the connection is closed.
+        assertTrue(first.completed);
+        final byte[] written = handler.outputStream.written();
+        assertEquals(FIRST_FRAGMENT.length + 2 * PING_FRAME.length + OVERFLOW_CLOSE_FRAME.length, written.length);
+        final byte[] closeFrame = new byte[OVERFLOW_CLOSE_FRAME.length];
+        System.arraycopy(written, written.length - closeFrame.length, closeFrame, 0, closeFrame.length);
+        assertArrayEquals(OVERFLOW_CLOSE_FRAME, closeFrame);
+        assertTrue(handler.error instanceof IOException);
+    }
+
+    @Test
+    public void testUpgradeHandlerMetrics() throws IOException {
+        final TestUpgradeHandler handler = new TestUpgradeHandler();
+        final TyrusServletWriter writer = new TyrusServletWriter(handler);
+        handler.preInit(null, writer, false);
+
+        handler.outputStream.ready = false;
+        writer.write(ByteBuffer.wrap(TEXT_FRAME), new RecordingHandler());
+        writer.write(ByteBuffer.wrap(PING_FRAME), new RecordingHandler());
+
+        assertEquals(2, handler.getQueuedFrames());
+        assertEquals(TEXT_FRAME.length + PING_FRAME.length, handler.getQueuedBytes());
+
+        handler.outputStream.ready = true;
+        writer.onWritePossible();
+
+        assertEquals(0, handler.getQueuedFrames());
+        assertEquals(0, handler.getQueuedBytes());
+        assertEquals(2, handler.getPeakQueuedFrames());
+        assertEquals(TEXT_FRAME.length + PING_FRAME.length, handler.getPeakQueuedBytes());
+        assertEquals(0, handler.getRejectedFrames());
+    }
+
+    @Test
+    public void testQueuedBytesLimit() throws IOException {
+        final TestUpgradeHandler handler = new TestUpgradeHandler();
+        final TyrusServletWriter writer = new TyrusServletWriter(handler);
+        writer.setMaxQueuedBytes(8);
+
+        // frame bigger than the limit is written when the stream is ready.
+        final RecordingHandler direct = new RecordingHandler();
+        writer.write(ByteBuffer.wrap(new byte[]{(byte) 0x82, 0x0A, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0}), direct);
+        assertTrue(direct.completed);
+
+        handler.outputStream.ready = false;
+        writer.write(ByteBuffer.wrap(TEXT_FRAME), new RecordingHandler());
+        final RecordingHandler rejected = new RecordingHandler();
+        writer.write(ByteBuffer.wrap(TEXT_FRAME), rejected);
+
+        assertTrue(rejected.failure instanceof IOException);
+        assertTrue(writer.isOverflowed());
+    }
+
+    private static class RecordingHandler extends CompletionHandler<ByteBuffer> {
+
+        private boolean completed = false;
+        private Throwable failure = null;
+
+        @Override
+        public void completed(ByteBuffer result) {
+            completed = true;
+        }
+
+        @Override
+        public void failed(Throwable throwable) {
+            failure = throwable;
+        }
+    }
+
+    private static class TestUpgradeHandler extends TyrusHttpUpgradeHandler {
+
+        private final TestOutputStream outputStream = new TestOutputStream();
+        private Throwable error = null;
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+        }
+
+        @Override
+        WebConnection getWebConnection() {
+            return new WebConnection() {
+                @Override
+                public ServletInputStream getInputStream() {
+                    return null;
+                }
+
+                @Override
+                public ServletOutputStream getOutputStream() {
+                    return outputStream;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+    }
+
+    private static class TestOutputStream extends ServletOutputStream {
+
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        private boolean ready = true;
+        private int flushes = 0;
+        private WriteListener writeListener = null;
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            this.writeListener = writeListener;
+        }
+
+        @Override
+        public void write(int b) {
+            data.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            data.write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+
+        private byte[] written() {
+            return data.toByteArray();
+        }
+    }
+}
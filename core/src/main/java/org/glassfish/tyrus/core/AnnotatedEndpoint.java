@@ -40,8 +40,12 @@
 package org.glassfish.tyrus.core;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -89,12 +93,9 @@ public class AnnotatedEndpoint extends Endpoint {
 
     private final Object annotatedInstance;
     private final Class<?> annotatedClass;
-    private final Method onOpenMethod;
-    private final Method onCloseMethod;
-    private final Method onErrorMethod;
-    private final ParameterExtractor[] onOpenParameters;
-    private final ParameterExtractor[] onCloseParameters;
-    private final ParameterExtractor[] onErrorParameters;
+    private final InvocableMethod onOpenMethod;
+    private final InvocableMethod onCloseMethod;
+    private final InvocableMethod onErrorMethod;
     private final EndpointConfig configuration;
     private final ComponentProviderService componentProvider;
     private final EndpointEventListener endpointEventListener;
@@ -246,8 +247,9 @@ public class AnnotatedEndpoint extends Endpoint {
                     if (unknownParams.size() == 1) {
                         Map.Entry<Integer, Class<?>> entry = unknownParams.entrySet().iterator().next();
                         extractors[entry.getKey()] = new ParamValue(0);
-                        handlerFactory = new WholeHandler(componentProvider.getInvocableMethod(m), extractors,
-                                                          entry.getValue(), maxMessageSize);
+                        handlerFactory = new WholeHandler(
+                                new InvocableMethod(componentProvider.getInvocableMethod(m), extractors),
+                                entry.getValue(), maxMessageSize);
                         messageHandlerFactories.add(handlerFactory);
                         validityChecker.checkOnMessageParams(m, handlerFactory.create(null));
                     } else if (unknownParams.size() == 2) {
@@ -263,8 +265,9 @@ public class AnnotatedEndpoint extends Endpoint {
                         extractors[message.getKey()] = new ParamValue(0);
                         extractors[last.getKey()] = new ParamValue(1);
                         if (last.getValue() == boolean.class || last.getValue() == Boolean.class) {
-                            handlerFactory = new PartialHandler(componentProvider.getInvocableMethod(m), extractors,
-                                                                message.getValue(), maxMessageSize);
+                            handlerFactory = new PartialHandler(
+                                    new InvocableMethod(componentProvider.getInvocableMethod(m), extractors),
+                                    message.getValue(), maxMessageSize);
                             messageHandlerFactories.add(handlerFactory);
                             validityChecker.checkOnMessageParams(m, handlerFactory.create(null));
                         } else {
@@ -279,12 +282,12 @@ public class AnnotatedEndpoint extends Endpoint {
             }
         }
 
-        this.onOpenMethod = onOpen == null ? null : componentProvider.getInvocableMethod(onOpen);
-        this.onErrorMethod = onError == null ? null : componentProvider.getInvocableMethod(onError);
-        this.onCloseMethod = onClose == null ? null : componentProvider.getInvocableMethod(onClose);
-        this.onOpenParameters = onOpenParameters;
-        this.onErrorParameters = onErrorParameters;
-        this.onCloseParameters = onCloseParameters;
+        this.onOpenMethod = onOpen == null
+                ? null : new InvocableMethod(componentProvider.getInvocableMethod(onOpen), onOpenParameters);
+        this.onErrorMethod = onError == null
+                ? null : new InvocableMethod(componentProvider.getInvocableMethod(onError), onErrorParameters);
+        this.onCloseMethod = onClose == null
+                ? null : new InvocableMethod(componentProvider.getInvocableMethod(onClose), onCloseParameters);
     }
 
     private EndpointConfig createEndpointConfig(Class<?> annotatedClass, boolean isServerEndpoint, ErrorCollector
@@ -437,7 +440,7 @@ public class AnnotatedEndpoint extends Endpoint {
                             .get(PrimitivesToWrappers.getPrimitiveWrapper(type));
 
                     @Override
-                    public Object value(Session session, Object... values) throws DecodeException {
+                    public Object value(Session session, Object first, Object second) throws DecodeException {
                         Object result = null;
 
                         if (decoder != null) {
@@ -458,25 +461,26 @@ public class AnnotatedEndpoint extends Endpoint {
                 }
                 result[i] = new ParameterExtractor() {
                     @Override
-                    public Object value(Session session, Object... values) {
+                    public Object value(Session session, Object first, Object second) {
                         return session;
                     }
                 };
             } else if (type == EndpointConfig.class) {
                 result[i] = new ParameterExtractor() {
                     @Override
-                    public Object value(Session session, Object... values) {
+                    public Object value(Session session, Object first, Object second) {
                         return getEndpointConfig();
                     }
                 };
             } else if (params.contains(type)) {
                 result[i] = new ParameterExtractor() {
                     @Override
-                    public Object value(Session session, Object... values) {
-                        for (Object value : values) {
-                            if (value != null && type.isAssignableFrom(value.getClass())) {
-                                return value;
-                            }
+                    public Object value(Session session, Object first, Object second) {
+                        if (first != null && type.isAssignableFrom(first.getClass())) {
+                            return first;
+                        }
+                        if (second != null && type.isAssignableFrom(second.getClass())) {
+                            return second;
                         }
 
                         return null;
@@ -499,10 +503,9 @@ public class AnnotatedEndpoint extends Endpoint {
         return null;
     }
 
-    private Object callMethod(Method method, ParameterExtractor[] extractors, Session session, boolean callOnError,
-                              Object... params) {
+    private Object callMethod(InvocableMethod method, Session session, boolean callOnError, Object first,
+                              Object second) {
         ErrorCollector collector = new ErrorCollector();
-        Object[] paramValues = new Object[extractors.length];
 
         try {
             final Object endpoint = annotatedInstance != null
@@ -527,16 +530,12 @@ public class AnnotatedEndpoint extends Endpoint {
                 throw collector.composeComprehensiveException();
             }
 
-            for (int i = 0; i < paramValues.length; i++) {
-                paramValues[i] = extractors[i].value(session, params);
-            }
-
-            return method.invoke(endpoint, paramValues);
-        } catch (Exception e) {
+            return method.invoke(endpoint, session, first, second);
+        } catch (Throwable t) {
             if (callOnError) {
-                onError(session, (e instanceof InvocationTargetException ? e.getCause() : e));
+                onError(session, (t instanceof InvocationTargetException ? t.getCause() : t));
             } else {
-                LOGGER.log(Level.INFO, LocalizationMessages.ENDPOINT_EXCEPTION_FROM_ON_ERROR(method), e);
+                LOGGER.log(Level.INFO, LocalizationMessages.ENDPOINT_EXCEPTION_FROM_ON_ERROR(method.method), t);
             }
         }
 
@@ -546,7 +545,7 @@ public class AnnotatedEndpoint extends Endpoint {
     void onClose(CloseReason closeReason, Session session) {
         try {
             if (onCloseMethod != null) {
-                callMethod(onCloseMethod, onCloseParameters, session, true, closeReason);
+                callMethod(onCloseMethod, session, true, closeReason, null);
             }
         } finally {
             componentProvider.removeSession(session);
@@ -561,7 +560,7 @@ public class AnnotatedEndpoint extends Endpoint {
     @Override
     public void onError(Session session, Throwable thr) {
         if (onErrorMethod != null) {
-            callMethod(onErrorMethod, onErrorParameters, session, false, thr);
+            callMethod(onErrorMethod, session, false, thr, null);
         } else {
             LOGGER.log(Level.INFO,
                        LocalizationMessages.ENDPOINT_UNHANDLED_EXCEPTION(annotatedClass.getCanonicalName()), thr);
@@ -581,12 +580,19 @@ public class AnnotatedEndpoint extends Endpoint {
         }
 
         if (onOpenMethod != null) {
-            callMethod(onOpenMethod, onOpenParameters, session, true);
+            callMethod(onOpenMethod, session, true, null, null);
         }
     }
 
+    /**
+     * Provides value of a single parameter of an annotated method.
+     * <p>
+     * {@code first} and {@code second} are the values passed by the runtime to the invoked method, i.e. message and
+     * "last" flag for {@link OnMessage}, {@link CloseReason} for {@link OnClose} and {@link Throwable} for {@link
+     * OnError}; unused values are {@code null}.
+     */
     static interface ParameterExtractor {
-        Object value(Session session, Object... paramValues) throws DecodeException;
+        Object value(Session session, Object first, Object second) throws DecodeException;
     }
 
     static class ParamValue implements ParameterExtractor {
@@ -597,20 +603,127 @@ public class AnnotatedEndpoint extends Endpoint {
         }
 
         @Override
-        public Object value(Session session, Object... paramValues) {
-            return paramValues[index];
+        public Object value(Session session, Object first, Object second) {
+            return index == 0 ? first : second;
         }
     }
 
-    private abstract class MessageHandlerFactory {
+    /**
+     * Annotated method compiled into a single {@link MethodHandle} with its {@link ParameterExtractor}s bound in.
+     * <p>
+     * The handle is created once, when the endpoint is deployed, and takes the endpoint instance, the session and
+     * the two values passed by the runtime (see {@link ParameterExtractor}). Invoking it does not go through
+     * reflection and does not need to allocate an array for the method arguments.
+     */
+    static final class InvocableMethod {
+
+        private static final MethodType INVOKER_TYPE =
+                MethodType.methodType(Object.class, Object.class, Session.class, Object.class, Object.class);
+        private static final MethodType EXTRACTOR_TYPE =
+                MethodType.methodType(Object.class, Session.class, Object.class, Object.class);
+
+        private static final MethodHandle EXTRACTOR_VALUE;
+        private static final MethodHandle METHOD_INVOKE;
+
+        static {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            try {
+                EXTRACTOR_VALUE = lookup.findVirtual(ParameterExtractor.class, "value", EXTRACTOR_TYPE);
+                METHOD_INVOKE = lookup.findStatic(InvocableMethod.class, "invokeReflectively", MethodType.methodType(
+                        Object.class, Method.class, Object.class, Object[].class));
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
         final Method method;
-        final ParameterExtractor[] extractors;
+        private final MethodHandle handle;
+
+        InvocableMethod(Method method, ParameterExtractor[] extractors) {
+            this.method = method;
+            this.handle = compile(method, extractors);
+        }
+
+        /**
+         * Invoke the method.
+         * <p>
+         * Exceptions thrown by the method are propagated as they are, unless the method had to be bound reflectively
+         * (see {@link #compile(Method, ParameterExtractor[])}); then they are wrapped in {@link
+         * InvocationTargetException}.
+         *
+         * @param endpoint endpoint instance, ignored for static methods.
+         * @param session  session.
+         * @param first    first value passed to the {@link ParameterExtractor}s.
+         * @param second   second value passed to the {@link ParameterExtractor}s.
+         * @return value returned by the method, {@code null} for {@code void} methods.
+         * @throws Throwable when the method or some of the parameter extractors fails.
+         */
+        Object invoke(Object endpoint, Session session, Object first, Object second) throws Throwable {
+            return handle.invokeExact(endpoint, session, first, second);
+        }
+
+        // Method#invoke is caller sensitive, so it is not looked up directly.
+        private static Object invokeReflectively(Method method, Object endpoint, Object[] parameters)
+                throws IllegalAccessException, InvocationTargetException {
+            return method.invoke(endpoint, parameters);
+        }
+
+        private static MethodHandle compile(Method method, ParameterExtractor[] extractors) {
+            final int count = extractors.length;
+
+            MethodHandle target;
+            try {
+                // the same access rules as for Method#invoke called on a method which is not made accessible.
+                target = MethodHandles.publicLookup().unreflect(method);
+                if (Modifier.isStatic(method.getModifiers())) {
+                    target = MethodHandles.dropArguments(target, 0, Object.class);
+                }
+            } catch (IllegalAccessException e) {
+                // public method of non-public class etc.; let Method#invoke decide whether it can be invoked.
+                target = METHOD_INVOKE.bindTo(method).asCollector(Object[].class, count);
+            }
+
+            // (Object, Object, ...)Object; return value is boxed, void methods return null.
+            target = target.asType(MethodType.genericMethodType(count + 1));
+
+            // each method parameter is replaced by (Session, Object, Object) parameters of its extractor
+            final int[] reorder = new int[1 + 3 * count];
+            for (int i = 0; i < count; i++) {
+                final int position = 1 + 3 * i;
+                target = MethodHandles.collectArguments(target, position, extractor(extractors[i]));
+                reorder[position] = 1;
+                reorder[position + 1] = 2;
+                reorder[position + 2] = 3;
+            }
+
+            // and all of the extractors then get the same invoker arguments.
+            return MethodHandles.permuteArguments(target, INVOKER_TYPE, reorder);
+        }
+
+        private static MethodHandle extractor(ParameterExtractor extractor) {
+            if (extractor instanceof ParamValue) {
+                final MethodHandle identity = MethodHandles.identity(Object.class);
+                return ((ParamValue) extractor).index == 0
+                        ? MethodHandles.dropArguments(
+                        MethodHandles.dropArguments(identity, 1, Object.class), 0, Session.class)
+                        : MethodHandles.dropArguments(identity, 0, Session.class, Object.class);
+            } else if (extractor == null) {
+                // parameter without extractor; deployment of such endpoint fails.
+                return MethodHandles.dropArguments(MethodHandles.constant(Object.class, null), 0,
+                                                   EXTRACTOR_TYPE.parameterList());
+            }
+
+            return EXTRACTOR_VALUE.bindTo(extractor);
+        }
+    }
+
+    private abstract class MessageHandlerFactory {
+        final InvocableMethod method;
         final Class<?> type;
         final long maxMessageSize;
 
-        MessageHandlerFactory(Method method, ParameterExtractor[] extractors, Class<?> type, long maxMessageSize) {
+        MessageHandlerFactory(InvocableMethod method, Class<?> type, long maxMessageSize) {
             this.method = method;
-            this.extractors = extractors;
             this.type = (PrimitivesToWrappers.getPrimitiveWrapper(type) == null)
                     ? type
                     : PrimitivesToWrappers.getPrimitiveWrapper(type);
@@ -621,8 +734,8 @@ public class AnnotatedEndpoint extends Endpoint {
     }
 
     private class WholeHandler extends MessageHandlerFactory {
-        WholeHandler(Method method, ParameterExtractor[] extractors, Class<?> type, long maxMessageSize) {
-            super(method, extractors, type, maxMessageSize);
+        WholeHandler(InvocableMethod method, Class<?> type, long maxMessageSize) {
+            super(method, type, maxMessageSize);
         }
 
         @Override
@@ -630,7 +743,7 @@ public class AnnotatedEndpoint extends Endpoint {
             return new BasicMessageHandler() {
                 @Override
                 public void onMessage(Object message) {
-                    Object result = callMethod(method, extractors, session, true, message);
+                    Object result = callMethod(method, session, true, message, null);
                     if (result != null) {
                         try {
                             session.getBasicRemote().sendObject(result);
@@ -654,8 +767,8 @@ public class AnnotatedEndpoint extends Endpoint {
     }
 
     private class PartialHandler extends MessageHandlerFactory {
-        PartialHandler(Method method, ParameterExtractor[] extractors, Class<?> type, long maxMessageSize) {
-            super(method, extractors, type, maxMessageSize);
+        PartialHandler(InvocableMethod method, Class<?> type, long maxMessageSize) {
+            super(method, type, maxMessageSize);
         }
 
         @Override
@@ -664,7 +777,7 @@ public class AnnotatedEndpoint extends Endpoint {
 
                 @Override
                 public void onMessage(Object partialMessage, boolean last) {
-                    Object result = callMethod(method, extractors, session, true, partialMessage, last);
+                    Object result = callMethod(method, session, true, partialMessage, last);
                     if (result != null) {
                         try {
                             session.getBasicRemote().sendObject(result);
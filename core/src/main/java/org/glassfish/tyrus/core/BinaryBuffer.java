@@ -49,7 +49,9 @@ import java.util.logging.Logger;
 import org.glassfish.tyrus.core.l10n.LocalizationMessages;
 
 /**
- * Save received partial messages to a list and concatenate them.
+ * Save received partial messages to a list and compose them into a {@link CompositeBuffer}.
+ * <p>
+ * Received parts are not copied, see {@link CompositeBuffer}.
  *
  * @author Stepan Kopriva (stepan.kopriva at oracle.com)
  * @author Pavel Bucek (pavel.bucek at oracle.com)
@@ -63,15 +65,17 @@ class BinaryBuffer {
     /**
      * Append buffer.
      * <p>
-     * Actual implementation just stores the buffer instance in list.
+     * Actual implementation just stores the buffer instance in list; the buffer must not be modified afterwards.
      *
      * @param message to be buffered.
      */
     void appendMessagePart(ByteBuffer message) {
 
         if ((currentlyBuffered + message.remaining()) <= bufferSize) {
-            currentlyBuffered += message.remaining();
-            list.add(message);
+            if (message.hasRemaining()) {
+                currentlyBuffered += message.remaining();
+                list.add(message);
+            }
         } else {
             final MessageTooBigException messageTooBigException = new MessageTooBigException(
                     LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW());
@@ -81,20 +85,15 @@ class BinaryBuffer {
     }
 
     /**
-     * Return concatenated list of buffers and reset internal state.
+     * Return buffered parts composed into one message and reset internal state.
      *
-     * @return concatenated buffer.
+     * @return composed message.
      */
-    ByteBuffer getBufferedContent() {
-        ByteBuffer b = ByteBuffer.allocate(currentlyBuffered);
-
-        for (ByteBuffer buffered : list) {
-            b.put(buffered);
-        }
-
-        b.flip();
+    CompositeBuffer getBufferedContent() {
+        final CompositeBuffer content =
+                new CompositeBuffer(list.toArray(new ByteBuffer[list.size()]), currentlyBuffered);
         resetBuffer(0);
-        return b;
+        return content;
     }
 
     /**
@@ -0,0 +1,159 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.websocket.Session;
+
+/**
+ * Outcome of an asynchronous broadcast.
+ * <p>
+ * Only exceptional sessions (skipped and failed ones) are recorded individually; per-session send futures are
+ * collected only when requested, see {@link TyrusSession#broadcastAsync(String, long, boolean,
+ * org.glassfish.tyrus.spi.CompletionHandler)}.
+ */
+public final class BroadcastResult {
+
+    private final AtomicInteger sentCount = new AtomicInteger(0);
+    private final Set<Session> skippedSessions =
+            Collections.newSetFromMap(new ConcurrentHashMap<Session, Boolean>());
+    private final Map<Session, Throwable> failedSessions = new ConcurrentHashMap<Session, Throwable>();
+    private final Map<Session, Future<?>> futures;
+
+    /**
+     * Create new broadcast result.
+     *
+     * @param collectFutures {@code true} if send futures should be collected.
+     */
+    BroadcastResult(boolean collectFutures) {
+        this.futures = collectFutures ? new ConcurrentHashMap<Session, Future<?>>() : null;
+    }
+
+    /**
+     * Get number of sessions to which the message was successfully written.
+     *
+     * @return number of sessions to which the message was written.
+     */
+    public int getSentCount() {
+        return sentCount.get();
+    }
+
+    /**
+     * Get sessions which were skipped, because they had more pending (not yet written) data than the limit passed to
+     * the broadcast.
+     *
+     * @return skipped sessions.
+     */
+    public Set<Session> getSkippedSessions() {
+        return Collections.unmodifiableSet(skippedSessions);
+    }
+
+    /**
+     * Get sessions for which the message could not be written, together with the cause.
+     *
+     * @return failed sessions and failure causes.
+     */
+    public Map<Session, Throwable> getFailedSessions() {
+        return Collections.unmodifiableMap(failedSessions);
+    }
+
+    /**
+     * Get send futures of all sessions to which the message was sent.
+     *
+     * @return map of sessions and send futures. Empty when futures collection was not requested.
+     */
+    public Map<Session, Future<?>> getFutures() {
+        if (futures == null) {
+            return Collections.emptyMap();
+        }
+
+        return Collections.unmodifiableMap(futures);
+    }
+
+    void sent() {
+        sentCount.incrementAndGet();
+    }
+
+    void skipped(Session session) {
+        skippedSessions.add(session);
+    }
+
+    void failed(Session session, Throwable throwable) {
+        failedSessions.put(session, throwable);
+    }
+
+    /**
+     * Record send future of a session.
+     *
+     * @param session session to which the message was sent.
+     * @param future  send future.
+     */
+    void future(Session session, Future<?> future) {
+        if (futures != null) {
+            futures.put(session, future);
+        }
+    }
+
+    /**
+     * Get collected futures for synchronous broadcast.
+     *
+     * @return mutable map of collected futures or {@code null} when futures are not collected.
+     */
+    Map<Session, Future<?>> collectedFutures() {
+        return futures;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("BroadcastResult{");
+        sb.append("sent=").append(sentCount.get());
+        sb.append(", skipped=").append(skippedSessions.size());
+        sb.append(", failed=").append(failedSessions.size());
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -42,32 +42,96 @@ package org.glassfish.tyrus.core;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.glassfish.tyrus.core.l10n.LocalizationMessages;
 
 /**
  * Passed to the (@link MessageHandler.Whole} in case that partial messages are being received.
+ * <p>
+ * Reads message parts from {@link MessagePartHandOff} filled by {@link InputStreamBuffer}; bytes are copied directly
+ * from the current part to the destination array.
  *
  * @author Danny Coward (danny.coward at oracle.com)
  * @author Stepan Kopriva (stepan.kopriva at oracle.com)
  */
 class BufferedInputStream extends InputStream {
-    private final InputStreamBuffer buffer;
+    private final MessagePartHandOff<ByteBuffer> chunks;
+
+    private ByteBuffer current = null;
+    private volatile boolean closed = false;
 
     /**
      * Constructor.
      *
-     * @param buffer underlying buffer.
+     * @param chunks queue of message parts.
      */
-    public BufferedInputStream(InputStreamBuffer buffer) {
-        this.buffer = buffer;
+    public BufferedInputStream(MessagePartHandOff<ByteBuffer> chunks) {
+        this.chunks = chunks;
     }
 
     @Override
     public int read() throws IOException {
-        return buffer.getNextByte();
+        if (!nextChunk()) {
+            return -1;
+        }
+
+        return current.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (len == 0) {
+            return 0;
+        }
+
+        if (!nextChunk()) {
+            return -1;
+        }
+
+        final int length = Math.min(len, current.remaining());
+        current.get(b, off, length);
+        return length;
+    }
+
+    @Override
+    public int available() throws IOException {
+        checkNotClosed();
+        return current == null ? 0 : current.remaining();
     }
 
     @Override
     public void close() {
-        this.buffer.finishReading();
+        closed = true;
+        current = null;
+        chunks.cancel();
+    }
+
+    /**
+     * Make sure there are unread bytes in the current part, take next part when needed.
+     *
+     * @return {@code false} when the whole message has been read, {@code true} otherwise.
+     */
+    private boolean nextChunk() throws IOException {
+        checkNotClosed();
+
+        while (current == null || !current.hasRemaining()) {
+            current = chunks.take();
+            if (current == null) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void checkNotClosed() throws IOException {
+        if (closed) {
+            throw new IOException(LocalizationMessages.STREAM_CLOSED());
+        }
     }
-}
\ No newline at end of file
+}
@@ -43,37 +43,97 @@ package org.glassfish.tyrus.core;
 import java.io.IOException;
 import java.io.Reader;
 
+import org.glassfish.tyrus.core.l10n.LocalizationMessages;
+
 /**
  * Passed to the (@link MessageHandler.Whole} in case that partial messages are being received.
+ * <p>
+ * Reads message parts from {@link MessagePartHandOff} filled by {@link ReaderBuffer}; chars are copied directly
+ * from the current part to the destination array.
  *
  * @author Danny Coward (danny.coward at oracle.com)
  * @author Stepan Kopriva (stepan.kopriva at oracle.com)
  */
 class BufferedStringReader extends Reader {
-    private final ReaderBuffer readerBuffer;
+    private final MessagePartHandOff<String> chunks;
+
+    private String current = null;
+    private int position = 0;
+    private volatile boolean closed = false;
 
     /**
      * Constructor.
      *
-     * @param readerBuffer underlying buffer.
+     * @param chunks queue of message parts.
      */
-    public BufferedStringReader(ReaderBuffer readerBuffer) {
-        this.readerBuffer = readerBuffer;
+    public BufferedStringReader(MessagePartHandOff<String> chunks) {
+        this.chunks = chunks;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextChunk()) {
+            return -1;
+        }
+
+        return current.charAt(position++);
     }
 
     @Override
     public int read(char[] destination, int offsetToStart, int numberOfChars) throws IOException {
-        char[] got = readerBuffer.getNextChars(numberOfChars);
-        if (got != null) {
-            System.arraycopy(got, 0, destination, offsetToStart, got.length);
-            return got.length;
-        } else {
+        if (offsetToStart < 0 || numberOfChars < 0 || numberOfChars > destination.length - offsetToStart) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (numberOfChars == 0) {
+            return 0;
+        }
+
+        if (!nextChunk()) {
             return -1;
         }
+
+        final int length = Math.min(numberOfChars, current.length() - position);
+        current.getChars(position, position + length, destination, offsetToStart);
+        position += length;
+        return length;
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        checkNotClosed();
+        return current != null && position < current.length();
     }
 
     @Override
     public void close() {
-        this.readerBuffer.finishReading();
+        closed = true;
+        current = null;
+        chunks.cancel();
+    }
+
+    /**
+     * Make sure there are unread chars in the current part, take next part when needed.
+     *
+     * @return {@code false} when the whole message has been read, {@code true} otherwise.
+     */
+    private boolean nextChunk() throws IOException {
+        checkNotClosed();
+
+        while (current == null || position == current.length()) {
+            current = chunks.take();
+            position = 0;
+            if (current == null) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void checkNotClosed() throws IOException {
+        if (closed) {
+            throw new IOException(LocalizationMessages.STREAM_CLOSED());
+        }
     }
-}
\ No newline at end of file
+}
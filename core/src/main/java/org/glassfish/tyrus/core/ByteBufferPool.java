@@ -0,0 +1,253 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared pool of {@link ByteBuffer}s organized into size classes.
+ * <p>
+ * Size classes are powers of two, starting at {@value #MIN_BUFFER_SIZE} bytes and ending at configured maximal pooled
+ * buffer size. Buffers bigger than that are allocated on demand and never pooled. Number of retained buffers of each
+ * size class is limited, so the pool never holds more than configured number of bytes per size class.
+ * <p>
+ * The pool is used for holding incoming data only while a partial frame is pending, see {@link IncomingBuffer}.
+ * Buffers can be allocated on heap or outside of it ({@link ByteBuffer#allocateDirect(int)}).
+ * <p>
+ * Instances are thread safe.
+ *
+ * @see TyrusWebSocketEngine#BUFFER_POOL
+ */
+public class ByteBufferPool {
+
+    /**
+     * Size of the smallest pooled buffer.
+     */
+    public static final int MIN_BUFFER_SIZE = 256;
+
+    /**
+     * Default maximal size of pooled buffer (1 MB).
+     */
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Default maximal number of bytes retained in each size class (4 MB).
+     */
+    public static final int DEFAULT_MAX_RETAINED_BYTES = 4 * 1024 * 1024;
+
+    private static final ByteBufferPool DEFAULT = new ByteBufferPool(false);
+
+    private final boolean direct;
+    private final int maxBufferSize;
+    private final Queue<ByteBuffer>[] sizeClasses;
+    private final AtomicInteger[] sizeClassCounts;
+    private final int[] sizeClassLimits;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Get default (shared) pool of heap buffers.
+     *
+     * @return default pool.
+     */
+    public static ByteBufferPool getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Create new pool with default limits.
+     *
+     * @param direct {@code true} if the pool should allocate direct buffers, {@code false} for heap buffers.
+     */
+    public ByteBufferPool(boolean direct) {
+        this(direct, DEFAULT_MAX_BUFFER_SIZE, DEFAULT_MAX_RETAINED_BYTES);
+    }
+
+    /**
+     * Create new pool.
+     *
+     * @param direct           {@code true} if the pool should allocate direct buffers, {@code false} for heap
+     *                         buffers.
+     * @param maxBufferSize    maximal size of pooled buffer. Bigger buffers are allocated, but not pooled.
+     * @param maxRetainedBytes maximal number of bytes retained in each size class. At least one buffer of each size
+     *                         class is retained.
+     */
+    @SuppressWarnings("unchecked")
+    public ByteBufferPool(boolean direct, int maxBufferSize, int maxRetainedBytes) {
+        if (maxBufferSize < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("maxBufferSize");
+        }
+
+        this.direct = direct;
+        this.maxBufferSize = sizeClassCapacity(sizeClassIndex(maxBufferSize));
+
+        final int classCount = sizeClassIndex(maxBufferSize) + 1;
+        this.sizeClasses = new Queue[classCount];
+        this.sizeClassCounts = new AtomicInteger[classCount];
+        this.sizeClassLimits = new int[classCount];
+
+        for (int i = 0; i < classCount; i++) {
+            sizeClasses[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+            sizeClassCounts[i] = new AtomicInteger();
+            sizeClassLimits[i] = Math.max(1, maxRetainedBytes / sizeClassCapacity(i));
+        }
+    }
+
+    /**
+     * Get a buffer with capacity at least {@code size} bytes.
+     * <p>
+     * Returned buffer is cleared (position is {@code 0}, limit is equal to capacity).
+     *
+     * @param size minimal required capacity.
+     * @return buffer from the pool or newly allocated buffer.
+     */
+    public ByteBuffer acquire(int size) {
+        if (size > maxBufferSize) {
+            missCount.incrementAndGet();
+            return allocate(size);
+        }
+
+        final int index = sizeClassIndex(size);
+        final ByteBuffer buffer = sizeClasses[index].poll();
+        if (buffer != null) {
+            sizeClassCounts[index].decrementAndGet();
+            hitCount.incrementAndGet();
+            buffer.clear();
+            return buffer;
+        }
+
+        missCount.incrementAndGet();
+        return allocate(sizeClassCapacity(index));
+    }
+
+    /**
+     * Return a buffer to the pool.
+     * <p>
+     * The buffer must not be used by the caller after it is returned. Buffers which do not belong to any size class
+     * (or of different kind than this pool allocates) are ignored.
+     *
+     * @param buffer buffer to be returned.
+     */
+    public void release(ByteBuffer buffer) {
+        final int capacity = buffer.capacity();
+        if (capacity > maxBufferSize || capacity < MIN_BUFFER_SIZE || Integer.bitCount(capacity) != 1
+                || buffer.isDirect() != direct || buffer.isReadOnly()) {
+            return;
+        }
+
+        final int index = sizeClassIndex(capacity);
+        if (sizeClassCounts[index].incrementAndGet() > sizeClassLimits[index]) {
+            sizeClassCounts[index].decrementAndGet();
+            return;
+        }
+
+        buffer.clear();
+        sizeClasses[index].offer(buffer);
+    }
+
+    /**
+     * Get number of {@link #acquire(int)} invocations served from the pool.
+     *
+     * @return pool hit count.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Get number of {@link #acquire(int)} invocations which had to allocate new buffer.
+     *
+     * @return pool miss count.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Get number of buffers currently held by the pool.
+     *
+     * @return number of pooled buffers.
+     */
+    public int getPooledBufferCount() {
+        int count = 0;
+        for (AtomicInteger sizeClassCount : sizeClassCounts) {
+            count += sizeClassCount.get();
+        }
+        return count;
+    }
+
+    /**
+     * Get information whether this pool allocates direct buffers.
+     *
+     * @return {@code true} when this pool allocates direct buffers, {@code false} otherwise.
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    @Override
+    public String toString() {
+        return "ByteBufferPool{direct=" + direct + ", hits=" + hitCount.get() + ", misses=" + missCount.get()
+                + ", pooled=" + getPooledBufferCount() + '}';
+    }
+
+    private ByteBuffer allocate(int size) {
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    private static int sizeClassIndex(int size) {
+        if (size <= MIN_BUFFER_SIZE) {
+            return 0;
+        }
+
+        // log2 of the nearest greater or equal power of two, relative to MIN_BUFFER_SIZE.
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - 8;
+    }
+
+    private static int sizeClassCapacity(int index) {
+        return MIN_BUFFER_SIZE << index;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary message composed of several buffers (usually payloads of the received fragments).
+ * <p>
+ * Buffers are not copied when the message is assembled; content is linearized into single {@link ByteBuffer} only
+ * when {@link #toByteBuffer()} is called, i.e. when a {@link javax.websocket.Decoder.Binary} needs it. Consumers
+ * which can read the content as a stream (see {@link #toInputStream()}) never need the linearized copy.
+ */
+class CompositeBuffer {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final ByteBuffer[] buffers;
+    private final int length;
+
+    private ByteBuffer linearized = null;
+
+    /**
+     * Constructor.
+     *
+     * @param buffers buffers forming the message; remaining bytes of every buffer are part of the message. Buffers
+     *                must not be modified afterwards.
+     * @param length  sum of remaining bytes of all buffers.
+     */
+    CompositeBuffer(ByteBuffer[] buffers, int length) {
+        this.buffers = buffers;
+        this.length = length;
+    }
+
+    /**
+     * Get message length.
+     *
+     * @return number of bytes in the message.
+     */
+    int remaining() {
+        return length;
+    }
+
+    /**
+     * Get the message as a single buffer.
+     * <p>
+     * When the message consists of one buffer, the buffer is returned; otherwise the content is copied into a new
+     * buffer. Result is cached, so subsequent calls return the same instance.
+     *
+     * @return message content.
+     */
+    ByteBuffer toByteBuffer() {
+        if (linearized == null) {
+            if (buffers.length == 0) {
+                linearized = EMPTY;
+            } else if (buffers.length == 1) {
+                linearized = buffers[0];
+            } else {
+                final ByteBuffer buffer = ByteBuffer.allocate(length);
+                for (ByteBuffer part : buffers) {
+                    buffer.put(part.duplicate());
+                }
+                buffer.flip();
+                linearized = buffer;
+            }
+        }
+
+        return linearized;
+    }
+
+    /**
+     * Get new {@link InputStream} reading the message content directly from the composing buffers.
+     *
+     * @return stream of the message content.
+     */
+    InputStream toInputStream() {
+        return new CompositeInputStream(buffers);
+    }
+
+    private static class CompositeInputStream extends InputStream {
+
+        private final ByteBuffer[] buffers;
+        private int index = 0;
+        private ByteBuffer current;
+
+        private CompositeInputStream(ByteBuffer[] buffers) {
+            this.buffers = buffers;
+            this.current = buffers.length == 0 ? EMPTY : buffers[0].duplicate();
+        }
+
+        @Override
+        public int read() {
+            if (!nextBuffer()) {
+                return -1;
+            }
+
+            return current.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (off < 0 || len < 0 || len > b.length - off) {
+                throw new IndexOutOfBoundsException();
+            }
+
+            if (len == 0) {
+                return 0;
+            }
+
+            int read = 0;
+            while (read < len && nextBuffer()) {
+                final int count = Math.min(len - read, current.remaining());
+                current.get(b, off + read, count);
+                read += count;
+            }
+
+            return read == 0 ? -1 : read;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = 0;
+            while (skipped < n && nextBuffer()) {
+                final int count = (int) Math.min(n - skipped, current.remaining());
+                current.position(current.position() + count);
+                skipped += count;
+            }
+
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            int available = current.remaining();
+            for (int i = index + 1; i < buffers.length; i++) {
+                available += buffers[i].remaining();
+            }
+
+            return available;
+        }
+
+        /**
+         * Move to the next buffer with remaining bytes when the current one has been read.
+         *
+         * @return {@code false} when the whole content has been read, {@code true} otherwise.
+         */
+        private boolean nextBuffer() {
+            while (!current.hasRemaining()) {
+                if (index + 1 >= buffers.length) {
+                    return false;
+                }
+                current = buffers[++index].duplicate();
+            }
+
+            return true;
+        }
+    }
+}
@@ -42,6 +42,7 @@ package org.glassfish.tyrus.core;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -59,15 +60,29 @@ import org.glassfish.tyrus.spi.UpgradeResponse;
  * <p>
  * Log records are provided with a session ID, so that log records from a single upgrade request can be easily linked
  * together in a log of a busy server or client.
+ * <p>
+ * Messages which would not be logged nor traced are dropped right away. The append methods taking one or two message
+ * parts do not allocate anything in such case; callers which need to compute a message part should guard the call
+ * with {@link #isLoggable(Logger, Level)}.
  *
  * @author Petr Janouch
  */
 public class DebugContext {
 
-    // is not thread safe - it is assumed that it will be used only in the "handshake phase"
-    private List<LogRecord> logRecords = new ArrayList<LogRecord>();
-    // is not thread safe - it is assumed that it will be used only in the "handshake phase"
-    private Map<String, List<String>> tracingHeaders = new HashMap<String, List<String>>();
+    /**
+     * Debug context which does not collect anything.
+     * <p>
+     * Tracing is OFF and there is no session ID; loggable messages are logged immediately. The instance is stateless
+     * and can be shared by all connections.
+     */
+    public static final DebugContext NO_OP = new NoOpDebugContext();
+
+    private static final Logger TYRUS_LOGGER = Logger.getLogger("org.glassfish.tyrus");
+
+    // is not thread safe - it is assumed that it will be used only in the "handshake phase"; created lazily.
+    private List<LogRecord> logRecords = null;
+    // is not thread safe - it is assumed that it will be used only in the "handshake phase"; created lazily.
+    private Map<String, List<String>> tracingHeaders = null;
     private final long startTimestamp;
     private final Level tracingLevel;
     private String sessionId = null;
@@ -94,6 +109,31 @@ public class DebugContext {
         this.tracingLevel = Level.OFF;
     }
 
+    /**
+     * Get debug context with tracing OFF.
+     * <p>
+     * Returns {@link #NO_OP} unless Tyrus loggers are configured to log {@link Level#FINE} messages, in which case
+     * a new {@link DebugContext} is created, so that postponed log records can be linked together by session ID.
+     *
+     * @return debug context with tracing OFF.
+     */
+    public static DebugContext create() {
+        return TYRUS_LOGGER.isLoggable(Level.FINE) ? new DebugContext() : NO_OP;
+    }
+
+    /**
+     * Check whether a message of given level would be logged or traced.
+     * <p>
+     * Should be used to guard calls which need to compute message parts (concatenate strings, etc.).
+     *
+     * @param logger       logger to be used to log the message.
+     * @param loggingLevel message level.
+     * @return {@code true} if the message would be logged or traced, {@code false} otherwise.
+     */
+    public boolean isLoggable(Logger logger, Level loggingLevel) {
+        return isTraced(loggingLevel) || logger.isLoggable(loggingLevel);
+    }
+
     /**
      * Append a message to the log, the logging will be postponed until the message can be provided with a session ID.
      * Randomly generated session ID is used if a session has not been created.
@@ -107,6 +147,36 @@ public class DebugContext {
         appendLogMessageWithThrowable(logger, loggingLevel, type, null, messageParts);
     }
 
+    /**
+     * Append a message to the log, see {@link #appendLogMessage(Logger, Level, Type, Object...)}.
+     *
+     * @param logger       logger to be used to log the message.
+     * @param loggingLevel message level.
+     * @param type         type of the message.
+     * @param message      message to be logged.
+     */
+    public void appendLogMessage(Logger logger, Level loggingLevel, Type type, Object message) {
+        if (logger.isLoggable(loggingLevel)) {
+            appendLogMessageWithThrowable(logger, loggingLevel, type, null, message);
+        }
+    }
+
+    /**
+     * Append a message consisting of two parts to the log, see {@link #appendLogMessage(Logger, Level, Type,
+     * Object...)}.
+     *
+     * @param logger       logger to be used to log the message.
+     * @param loggingLevel message level.
+     * @param type         type of the message.
+     * @param first        first part of the message.
+     * @param second       second part of the message.
+     */
+    public void appendLogMessage(Logger logger, Level loggingLevel, Type type, Object first, Object second) {
+        if (logger.isLoggable(loggingLevel)) {
+            appendLogMessageWithThrowable(logger, loggingLevel, type, null, first, second);
+        }
+    }
+
     /**
      * Append a message to the log and to the list of trace messages that are sent in handshake response.
      * The logging will be postponed until the message can be provided with a session ID. Randomly generated session ID
@@ -121,6 +191,37 @@ public class DebugContext {
         appendTraceMessageWithThrowable(logger, loggingLevel, type, null, messageParts);
     }
 
+    /**
+     * Append a message to the log and to the list of trace messages, see {@link #appendTraceMessage(Logger, Level,
+     * Type, Object...)}.
+     *
+     * @param logger       logger to be used to log the message.
+     * @param loggingLevel message level.
+     * @param type         type of the message.
+     * @param message      message to be logged and traced.
+     */
+    public void appendTraceMessage(Logger logger, Level loggingLevel, Type type, Object message) {
+        if (isLoggable(logger, loggingLevel)) {
+            appendTraceMessageWithThrowable(logger, loggingLevel, type, null, message);
+        }
+    }
+
+    /**
+     * Append a message consisting of two parts to the log and to the list of trace messages, see {@link
+     * #appendTraceMessage(Logger, Level, Type, Object...)}.
+     *
+     * @param logger       logger to be used to log the message.
+     * @param loggingLevel message level.
+     * @param type         type of the message.
+     * @param first        first part of the message.
+     * @param second       second part of the message.
+     */
+    public void appendTraceMessage(Logger logger, Level loggingLevel, Type type, Object first, Object second) {
+        if (isLoggable(logger, loggingLevel)) {
+            appendTraceMessageWithThrowable(logger, loggingLevel, type, null, first, second);
+        }
+    }
+
     /**
      * Append a message to the log, the logging will be postponed until the message can be provided with a session ID.
      * Randomly generated session ID is used if a session has not been created.
@@ -138,7 +239,7 @@ public class DebugContext {
             String message = stringifyMessageParts(messageParts);
 
             if (sessionId == null) {
-                logRecords.add(new LogRecord(logger, loggingLevel, type, message, t, false));
+                addLogRecord(new LogRecord(logger, loggingLevel, type, message, t, false));
             } else {
                 if (t != null) {
                     logger.log(loggingLevel, formatLogMessage(message, type, System.nanoTime()), t);
@@ -162,7 +263,7 @@ public class DebugContext {
      */
     public void appendTraceMessageWithThrowable(Logger logger, Level loggingLevel, Type type, Throwable t,
                                                 Object... messageParts) {
-        if (this.tracingLevel.intValue() <= loggingLevel.intValue()) {
+        if (isTraced(loggingLevel)) {
             String message = stringifyMessageParts(messageParts);
             appendTracingHeader(message);
         }
@@ -179,7 +280,7 @@ public class DebugContext {
      */
     public void appendStandardOutputMessage(Type type, String message) {
         if (sessionId == null) {
-            logRecords.add(new LogRecord(null, Level.OFF, type, message, null, true));
+            addLogRecord(new LogRecord(null, Level.OFF, type, message, null, true));
         } else {
             System.out.println(formatLogMessage(message, type, System.nanoTime()));
         }
@@ -205,6 +306,10 @@ public class DebugContext {
             sessionId = UUID.randomUUID().toString();
         }
 
+        if (logRecords == null) {
+            return;
+        }
+
         for (LogRecord logRecord : logRecords) {
             if (logRecord.printToSout) {
                 System.out.println(formatLogMessage(logRecord.message, logRecord.type, logRecord.timestamp));
@@ -229,10 +334,24 @@ public class DebugContext {
      * @return tracing headers.
      */
     public Map<String, List<String>> getTracingHeaders() {
-        return tracingHeaders;
+        return tracingHeaders == null ? Collections.<String, List<String>>emptyMap() : tracingHeaders;
+    }
+
+    private boolean isTraced(Level loggingLevel) {
+        return tracingLevel.intValue() <= loggingLevel.intValue();
+    }
+
+    private void addLogRecord(LogRecord logRecord) {
+        if (logRecords == null) {
+            logRecords = new ArrayList<LogRecord>();
+        }
+        logRecords.add(logRecord);
     }
 
     private void appendTracingHeader(String message) {
+        if (tracingHeaders == null) {
+            tracingHeaders = new HashMap<String, List<String>>();
+        }
         String headerName = UpgradeResponse.TRACING_HEADER_PREFIX + String.format("%02d", tracingHeaders.size());
         tracingHeaders.put(headerName,
                            Arrays.asList("[" + (System.nanoTime() - startTimestamp) / 1000000 + " ms] " + message));
@@ -276,7 +395,7 @@ public class DebugContext {
         return formattedMessage.toString();
     }
 
-    private String stringifyMessageParts(Object... messageParts) {
+    private static String stringifyMessageParts(Object... messageParts) {
         StringBuilder sb = new StringBuilder();
 
         for (Object messagePart : messageParts) {
@@ -286,6 +405,39 @@ public class DebugContext {
         return sb.toString();
     }
 
+    /**
+     * {@link DebugContext} which does not postpone, trace nor keep anything.
+     */
+    private static final class NoOpDebugContext extends DebugContext {
+
+        @Override
+        public void appendLogMessageWithThrowable(Logger logger, Level loggingLevel, Type type, Throwable t,
+                                                  Object... messageParts) {
+            if (logger.isLoggable(loggingLevel)) {
+                logger.log(loggingLevel, stringifyMessageParts(messageParts), t);
+            }
+        }
+
+        @Override
+        public void appendTraceMessageWithThrowable(Logger logger, Level loggingLevel, Type type, Throwable t,
+                                                    Object... messageParts) {
+            appendLogMessageWithThrowable(logger, loggingLevel, type, t, messageParts);
+        }
+
+        @Override
+        public void appendStandardOutputMessage(Type type, String message) {
+            System.out.println(message);
+        }
+
+        @Override
+        public void setSessionId(String sessionId) {
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+
     private static class LogRecord {
         /**
          * Logger that will be used to log the message.
@@ -0,0 +1,182 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.glassfish.tyrus.core.l10n.LocalizationMessages;
+
+/**
+ * Buffered {@link OutputStream} which sends written data as fragments of a binary message.
+ * <p>
+ * Data are accumulated in a buffer of fragment size; a fragment is sent when the buffer is full and more data are
+ * written, on {@link #flush()} and on {@link #close()} (last fragment). The buffer is reused for the whole message,
+ * unless {@link #sendFragment(byte[], int, boolean)} takes it over. Used by the local and the clustered
+ * {@link javax.websocket.RemoteEndpoint.Basic#getSendStream()}.
+ * <p>
+ * Instances are not thread safe.
+ */
+public abstract class FragmentingOutputStream extends OutputStream {
+
+    private final int fragmentSize;
+
+    private byte[] buffer;
+    private int position = 0;
+    private boolean closed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param fragmentSize maximal size of sent fragments in bytes.
+     */
+    protected FragmentingOutputStream(int fragmentSize) {
+        this.fragmentSize = fragmentSize;
+    }
+
+    /**
+     * Send a fragment.
+     *
+     * @param buffer buffer containing the fragment data, starting at index 0.
+     * @param length length of the fragment.
+     * @param last   {@code true} if this is the last fragment of the message.
+     * @return {@code true} when the buffer has been taken over and must not be reused, {@code false} when the data
+     * have been copied.
+     * @throws IOException when the fragment cannot be sent.
+     */
+    protected abstract boolean sendFragment(byte[] buffer, int length, boolean last) throws IOException;
+
+    /**
+     * Wait until all the sent fragments are written.
+     *
+     * @throws IOException when a fragment could not be written.
+     */
+    protected abstract void awaitFragments() throws IOException;
+
+    @Override
+    public void write(byte b[], int off, int len) throws IOException {
+        if (b == null) {
+            throw new NullPointerException();
+        } else if ((off < 0) || (off > b.length) || (len < 0) || ((off + len) > b.length) || ((off + len) < 0)) {
+            throw new IndexOutOfBoundsException();
+        } else if (len == 0) {
+            return;
+        }
+
+        checkNotClosed();
+
+        while (len > 0) {
+            // full fragment is sent when more data are written, so that close() has data to send.
+            if (position == fragmentSize) {
+                send(false);
+            }
+
+            final int length = Math.min(len, fragmentSize - position);
+            System.arraycopy(b, off, getBuffer(), position, length);
+            position += length;
+            off += length;
+            len -= length;
+        }
+    }
+
+    @Override
+    public void write(int i) throws IOException {
+        checkNotClosed();
+
+        if (position == fragmentSize) {
+            send(false);
+        }
+
+        getBuffer()[position++] = (byte) i;
+    }
+
+    /**
+     * Send buffered data (if any) as a fragment and wait until all the sent fragments are written.
+     *
+     * @throws IOException when a fragment could not be written.
+     */
+    @Override
+    public void flush() throws IOException {
+        checkNotClosed();
+
+        if (position > 0) {
+            send(false);
+        }
+        awaitFragments();
+    }
+
+    /**
+     * Send buffered data as the last fragment of the message and wait until all the sent fragments are written.
+     *
+     * @throws IOException when a fragment could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        send(true);
+        awaitFragments();
+        buffer = null;
+    }
+
+    private byte[] getBuffer() {
+        if (buffer == null) {
+            buffer = new byte[fragmentSize];
+        }
+        return buffer;
+    }
+
+    private void send(boolean last) throws IOException {
+        if (sendFragment(buffer == null ? new byte[0] : buffer, position, last)) {
+            buffer = null;
+        }
+        position = 0;
+    }
+
+    private void checkNotClosed() throws IOException {
+        if (closed) {
+            throw new IOException(LocalizationMessages.STREAM_CLOSED());
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.glassfish.tyrus.core.l10n.LocalizationMessages;
+
+/**
+ * Buffered {@link Writer} which sends written characters as fragments of a text message.
+ * <p>
+ * Characters are accumulated in a buffer of fragment size, which is reused for the whole message; a fragment is sent
+ * when the buffer is full and more characters are written, on {@link #flush()} and on {@link #close()} (last
+ * fragment). Surrogate pair is never split between two fragments, a high surrogate at the end of the buffer is held
+ * back until the low one is written. Used by the local and the clustered
+ * {@link javax.websocket.RemoteEndpoint.Basic#getSendWriter()}.
+ * <p>
+ * Instances are not thread safe.
+ */
+public abstract class FragmentingWriter extends Writer {
+
+    private final int fragmentSize;
+
+    private char[] buffer;
+    private int position = 0;
+    private boolean closed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param fragmentSize maximal size of sent fragments in characters.
+     */
+    protected FragmentingWriter(int fragmentSize) {
+        // surrogate pair has to fit into one fragment.
+        this.fragmentSize = Math.max(fragmentSize, 2);
+    }
+
+    /**
+     * Send a fragment.
+     *
+     * @param fragment fragment to be sent.
+     * @param last     {@code true} if this is the last fragment of the message.
+     * @throws IOException when the fragment cannot be sent.
+     */
+    protected abstract void sendFragment(String fragment, boolean last) throws IOException;
+
+    /**
+     * Wait until all the sent fragments are written.
+     *
+     * @throws IOException when a fragment could not be written.
+     */
+    protected abstract void awaitFragments() throws IOException;
+
+    @Override
+    public void write(char[] chars, int index, int len) throws IOException {
+        if ((index < 0) || (index > chars.length) || (len < 0) || ((index + len) > chars.length)
+                || ((index + len) < 0)) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        checkNotClosed();
+
+        while (len > 0) {
+            if (position == fragmentSize) {
+                send(false);
+            }
+
+            final int length = Math.min(len, fragmentSize - position);
+            System.arraycopy(chars, index, getBuffer(), position, length);
+            position += length;
+            index += length;
+            len -= length;
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        if ((off < 0) || (off > str.length()) || (len < 0) || ((off + len) > str.length()) || ((off + len) < 0)) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        checkNotClosed();
+
+        while (len > 0) {
+            if (position == fragmentSize) {
+                send(false);
+            }
+
+            final int length = Math.min(len, fragmentSize - position);
+            str.getChars(off, off + length, getBuffer(), position);
+            position += length;
+            off += length;
+            len -= length;
+        }
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        checkNotClosed();
+
+        if (position == fragmentSize) {
+            send(false);
+        }
+
+        getBuffer()[position++] = (char) c;
+    }
+
+    /**
+     * Send buffered characters (if any) as a fragment and wait until all the sent fragments are written.
+     *
+     * @throws IOException when a fragment could not be written.
+     */
+    @Override
+    public void flush() throws IOException {
+        checkNotClosed();
+
+        if (position > 0) {
+            send(false);
+        }
+        awaitFragments();
+    }
+
+    /**
+     * Send buffered characters as the last fragment of the message and wait until all the sent fragments are written.
+     *
+     * @throws IOException when a fragment could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        send(true);
+        awaitFragments();
+        buffer = null;
+    }
+
+    private char[] getBuffer() {
+        if (buffer == null) {
+            buffer = new char[fragmentSize];
+        }
+        return buffer;
+    }
+
+    private void send(boolean last) throws IOException {
+        int length = position;
+        if (!last && length > 0 && Character.isHighSurrogate(buffer[length - 1])) {
+            // low surrogate will be sent in the next fragment together with the high one.
+            length--;
+        }
+
+        if (length == 0 && !last) {
+            return;
+        }
+
+        sendFragment(length == 0 ? "" : new String(buffer, 0, length), last);
+
+        if (length < position) {
+            buffer[0] = buffer[length];
+        }
+        position -= length;
+    }
+
+    private void checkNotClosed() throws IOException {
+        if (closed) {
+            throw new IOException(LocalizationMessages.STREAM_CLOSED());
+        }
+    }
+}
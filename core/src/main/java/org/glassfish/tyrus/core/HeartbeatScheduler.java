@@ -0,0 +1,220 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends periodic heartbeats (unsolicited pong frames) for sessions with configured heartbeat interval.
+ * <p>
+ * Sessions are grouped into buckets by their heartbeat interval and each bucket is scheduled in {@link SessionTimer}
+ * as a single periodic timeout, so heartbeats for the whole bucket are sent in one sweep. To avoid sending heartbeats
+ * for all sessions with the same interval at once, every interval is divided into (up to {@value #MAX_PHASES}) phases
+ * and a session is assigned to the bucket which is going to send its next heartbeat approximately one interval after
+ * the session was registered.
+ *
+ * @see TyrusSession#setHeartbeatInterval(long)
+ */
+class HeartbeatScheduler {
+
+    private static final Logger LOGGER = Logger.getLogger(HeartbeatScheduler.class.getName());
+
+    /**
+     * Maximal number of buckets per heartbeat interval.
+     */
+    static final int MAX_PHASES = 16;
+
+    private final SessionTimer timer;
+    private final long origin = System.nanoTime();
+
+    // guarded by this.
+    private final Map<Long, Bucket[]> buckets = new HashMap<Long, Bucket[]>();
+
+    /**
+     * Constructor.
+     *
+     * @param timer timer used for scheduling buckets.
+     */
+    HeartbeatScheduler(SessionTimer timer) {
+        this.timer = timer;
+    }
+
+    /**
+     * Start sending heartbeats for the session.
+     *
+     * @param session           session to send heartbeats to.
+     * @param heartbeatInterval interval between heartbeats in milliseconds, must be positive.
+     * @return bucket the session was added to, used for {@link #unregister(TyrusSession, Bucket)}.
+     */
+    Bucket register(TyrusSession session, long heartbeatInterval) {
+        final long interval = TimeUnit.MILLISECONDS.toNanos(heartbeatInterval);
+        final int phases = (int) Math.max(1, Math.min(MAX_PHASES, heartbeatInterval / SessionTimer.TICK_DURATION));
+        final long step = interval / phases;
+
+        // first heartbeat should be sent one interval from now; pick the phase closest to that (not later).
+        final long target = System.nanoTime() + interval - origin;
+        final int phase = (int) Math.min(phases - 1, (target % interval) / step);
+
+        synchronized (this) {
+            Bucket[] intervalBuckets = buckets.get(heartbeatInterval);
+            if (intervalBuckets == null) {
+                intervalBuckets = new Bucket[phases];
+                buckets.put(heartbeatInterval, intervalBuckets);
+            }
+
+            Bucket bucket = intervalBuckets[phase];
+            if (bucket == null) {
+                bucket = new Bucket(heartbeatInterval, phase, interval);
+                intervalBuckets[phase] = bucket;
+                bucket.sessions.add(session);
+
+                final long firstHeartbeat = origin + (target / interval) * interval + phase * step;
+                bucket.nextHeartbeat = firstHeartbeat;
+                timer.schedule(bucket, firstHeartbeat);
+            } else {
+                bucket.sessions.add(session);
+            }
+
+            return bucket;
+        }
+    }
+
+    /**
+     * Stop sending heartbeats for the session.
+     * <p>
+     * Empty bucket is removed from the timer lazily.
+     *
+     * @param session session to be removed.
+     * @param bucket  bucket returned from {@link #register(TyrusSession, long)}.
+     */
+    void unregister(TyrusSession session, Bucket bucket) {
+        bucket.sessions.remove(session);
+    }
+
+    /**
+     * Get number of active buckets.
+     *
+     * @return number of buckets.
+     */
+    synchronized int getBucketCount() {
+        int count = 0;
+        for (Bucket[] intervalBuckets : buckets.values()) {
+            for (Bucket bucket : intervalBuckets) {
+                if (bucket != null) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Group of sessions with the same heartbeat interval and phase.
+     */
+    class Bucket extends SessionTimer.Timeout implements Runnable {
+
+        private final long heartbeatInterval;
+        private final int phase;
+        private final long interval;
+        private final Set<TyrusSession> sessions =
+                Collections.newSetFromMap(new ConcurrentHashMap<TyrusSession, Boolean>());
+
+        // accessed only from sweep.
+        private long nextHeartbeat;
+
+        private Bucket(long heartbeatInterval, int phase, long interval) {
+            this.heartbeatInterval = heartbeatInterval;
+            this.phase = phase;
+            this.interval = interval;
+        }
+
+        @Override
+        long expire(long now) {
+            synchronized (HeartbeatScheduler.this) {
+                if (sessions.isEmpty()) {
+                    final Bucket[] intervalBuckets = buckets.get(heartbeatInterval);
+                    intervalBuckets[phase] = null;
+
+                    boolean empty = true;
+                    for (Bucket bucket : intervalBuckets) {
+                        empty &= bucket == null;
+                    }
+                    if (empty) {
+                        buckets.remove(heartbeatInterval);
+                    }
+                    return -1;
+                }
+            }
+
+            timer.execute(this);
+
+            // keep the phase; skip missed heartbeats when the timer is late.
+            do {
+                nextHeartbeat += interval;
+            } while (nextHeartbeat - now <= 0);
+
+            return nextHeartbeat;
+        }
+
+        @Override
+        public void run() {
+            for (TyrusSession session : sessions) {
+                if (!session.isOpen()) {
+                    sessions.remove(session);
+                    continue;
+                }
+
+                try {
+                    session.sendHeartbeat();
+                } catch (Exception e) {
+                    LOGGER.log(Level.FINE, "Pong could not have been sent " + e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+
+import org.glassfish.tyrus.core.l10n.LocalizationMessages;
+
+/**
+ * Holds incoming data which could not be parsed yet (incomplete frame) between
+ * {@link org.glassfish.tyrus.spi.ReadHandler#handle(ByteBuffer)} invocations.
+ * <p>
+ * When there is no pending data, incoming buffer provided by the container is parsed directly without any copying.
+ * Only the unparsed remainder is copied into a buffer obtained from {@link ByteBufferPool}; that buffer is returned to
+ * the pool as soon as all its data are consumed.
+ * <p>
+ * Typical usage:
+ * <pre>
+ * ByteBuffer buffer = incomingBuffer.append(data);
+ * try {
+ *     // parse buffer
+ * } finally {
+ *     incomingBuffer.retainRemaining(buffer);
+ * }
+ * </pre>
+ * {@link org.glassfish.tyrus.spi.ReadHandler} invocations are expected to be serialized by the container, but
+ * {@link #close()} can be invoked from any thread (typically when the connection is closed); held buffer is returned
+ * to the pool as soon as it is not being parsed.
+ */
+public class IncomingBuffer {
+
+    private final ByteBufferPool pool;
+    private final int incomingBufferSize;
+
+    // pending (unparsed) data; position and limit delimit the data.
+    private ByteBuffer pending;
+    // buffer returned from append(...) is being parsed.
+    private boolean parsing = false;
+    private boolean closed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param pool               pool used for obtaining buffers for pending data.
+     * @param incomingBufferSize maximal number of bytes which can be held (size of the biggest frame which can be
+     *                           processed).
+     */
+    public IncomingBuffer(ByteBufferPool pool, int incomingBufferSize) {
+        this.pool = pool;
+        this.incomingBufferSize = incomingBufferSize;
+    }
+
+    /**
+     * Append newly read data to the pending data.
+     * <p>
+     * All remaining bytes of {@code data} are consumed, either by the returned buffer or by copying.
+     *
+     * @param data newly read data.
+     * @return buffer containing all unparsed data. Can be {@code data} itself, when there are no pending data.
+     * @throws IllegalArgumentException when the size of unparsed data would exceed incoming buffer size.
+     */
+    public synchronized ByteBuffer append(ByteBuffer data) {
+        final int size = (pending == null ? 0 : pending.remaining()) + data.remaining();
+        if (size > incomingBufferSize) {
+            // nothing is going to be parsed, close() must still be able to release the pending data.
+            throw new IllegalArgumentException(LocalizationMessages.BUFFER_OVERFLOW());
+        }
+
+        parsing = true;
+
+        if (pending == null) {
+            // read-only buffers cannot be unmasked in place.
+            if (!data.isReadOnly()) {
+                return data;
+            }
+
+            pending = pool.acquire(data.remaining());
+            pending.put(data);
+            pending.flip();
+            return pending;
+        }
+
+        if (pending.capacity() >= size) {
+            pending.compact();
+        } else {
+            final ByteBuffer grown = pool.acquire(Math.min(Math.max(size, pending.capacity() * 2), incomingBufferSize));
+            grown.put(pending);
+            pool.release(pending);
+            pending = grown;
+        }
+
+        pending.put(data);
+        pending.flip();
+        return pending;
+    }
+
+    /**
+     * Keep data which were not parsed for the next {@link #append(ByteBuffer)} invocation.
+     * <p>
+     * Must be called after parsing of the buffer returned from {@link #append(ByteBuffer)} stops. When all data were
+     * consumed, pooled buffer is returned to the pool. Frames parsed from the buffer must not be used after this call.
+     *
+     * @param buffer buffer returned by last {@link #append(ByteBuffer)} invocation.
+     */
+    public synchronized void retainRemaining(ByteBuffer buffer) {
+        parsing = false;
+
+        if (closed) {
+            // connection is closed, unparsed data won't be ever used.
+            release();
+        } else if (buffer == pending) {
+            if (!pending.hasRemaining()) {
+                release();
+            }
+        } else if (buffer.hasRemaining()) {
+            pending = pool.acquire(buffer.remaining());
+            pending.put(buffer);
+            pending.flip();
+        }
+    }
+
+    /**
+     * Discard pending data and return held buffer to the pool.
+     * <p>
+     * Must not be called while a buffer returned from {@link #append(ByteBuffer)} is being parsed, see
+     * {@link #close()}.
+     */
+    public synchronized void release() {
+        if (pending != null) {
+            pool.release(pending);
+            pending = null;
+        }
+    }
+
+    /**
+     * Close this buffer - discard pending data and return held buffer to the pool.
+     * <p>
+     * Should be invoked when the connection is closed. If invoked while a buffer returned from
+     * {@link #append(ByteBuffer)} is being parsed, the buffer is returned to the pool by
+     * {@link #retainRemaining(ByteBuffer)}.
+     */
+    public synchronized void close() {
+        closed = true;
+        if (!parsing) {
+            release();
+        }
+    }
+}
@@ -40,14 +40,9 @@
 
 package org.glassfish.tyrus.core;
 
-import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -60,6 +55,11 @@ import org.glassfish.tyrus.core.l10n.LocalizationMessages;
  * <p>
  * For the first received message {@link MessageHandler.Whole#onMessage(Object)} is called in a new {@link Thread} to
  * allow blocking reading of passed {@link java.io.InputStream}.
+ * <p>
+ * Message parts are handed to the stream through a {@link MessagePartHandOff}. Appending a part never blocks the
+ * calling (transport) thread and reading from the transport is not paused when the stream falls behind; parts not yet
+ * consumed are buffered up to the max message buffer size, bigger messages are rejected with
+ * {@link MessageTooBigException}.
  *
  * @author Danny Coward (danny.coward at oracle.com)
  * @author Stepan Kopriva (stepan.kopriva at oracle.com)
@@ -67,15 +67,11 @@ import org.glassfish.tyrus.core.l10n.LocalizationMessages;
  */
 class InputStreamBuffer {
 
-    private final ReentrantLock lock = new ReentrantLock();
-    private final Condition condition = lock.newCondition();
-
-    private final List<ByteBuffer> bufferedFragments = new ArrayList<ByteBuffer>();
     private final ExecutorService executorService;
 
     private static final Logger LOGGER = Logger.getLogger(InputStreamBuffer.class.getName());
 
-    private volatile boolean receivedLast = false;
+    private volatile MessagePartHandOff<ByteBuffer> queue;
     private volatile BufferedInputStream inputStream = null;
     private volatile MessageHandler.Whole<InputStream> messageHandler;
     private volatile int bufferSize;
@@ -90,64 +86,6 @@ class InputStreamBuffer {
         currentlyBuffered = 0;
     }
 
-    /**
-     * Get next received bytes.
-     *
-     * @return next received bytes.
-     */
-    public int getNextByte() throws IOException {
-        lock.lock();
-        try {
-            if (this.bufferedFragments.isEmpty()) {
-                if (receivedLast) {
-                    this.inputStream = null;
-                    this.currentlyBuffered = 0;
-                    return -1;
-                } else { // there's more to come...so wait here...
-                    // don't let the reader block on a closed session
-                    checkClosedSession();
-
-                    boolean interrupted;
-                    do {
-                        interrupted = false;
-                        try {
-                            condition.await();
-
-                            checkClosedSession();
-                        } catch (InterruptedException e) {
-                            interrupted = true;
-                        }
-                    } while (interrupted);
-                }
-            }
-
-            if (bufferedFragments.size() == 1 && !bufferedFragments.get(0).hasRemaining() && receivedLast) {
-                this.inputStream = null;
-                this.currentlyBuffered = 0;
-                return -1;
-            }
-
-            ByteBuffer firstBuffer = bufferedFragments.get(0);
-            byte result = firstBuffer.get();
-
-            if (!firstBuffer.hasRemaining()) {
-                bufferedFragments.remove(0);
-            }
-
-            return result & 0xFF;
-        } finally {
-            lock.unlock();
-        }
-    }
-
-    /**
-     * Finish reading of the buffer.
-     */
-    public void finishReading() {
-        this.bufferedFragments.clear();
-        this.inputStream = null;
-    }
-
     /**
      * Append next message part to the buffer.
      *
@@ -155,34 +93,40 @@ class InputStreamBuffer {
      * @param last    should be {@code true} iff this is the last part of the message, {@code false} otherwise.
      */
     public void appendMessagePart(ByteBuffer message, boolean last) {
-        lock.lock();
-        try {
-            currentlyBuffered += message.remaining();
-            if (currentlyBuffered <= bufferSize) {
-                bufferedFragments.add(message);
-            } else {
-                final MessageTooBigException messageTooBigException =
-                        new MessageTooBigException(LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW());
-                LOGGER.log(Level.FINE, LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW(), messageTooBigException);
-                receivedLast = true;
-                throw messageTooBigException;
-            }
-
-            this.receivedLast = last;
-            condition.signalAll();
-        } finally {
-            lock.unlock();
+        currentlyBuffered += message.remaining();
+        if (currentlyBuffered > bufferSize) {
+            final MessageTooBigException messageTooBigException =
+                    new MessageTooBigException(LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW());
+            LOGGER.log(Level.FINE, LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW(), messageTooBigException);
+            queue.finish();
+            throw messageTooBigException;
         }
 
-        if (this.inputStream == null) {
-            this.inputStream = new BufferedInputStream(this);
+        if (inputStream == null) {
+            final MessagePartHandOff<ByteBuffer> chunks = queue;
+            final MessageHandler.Whole<InputStream> handler = messageHandler;
+            final BufferedInputStream stream = new BufferedInputStream(chunks);
+            inputStream = stream;
             executorService.execute(new Runnable() {
                 @Override
                 public void run() {
-                    messageHandler.onMessage(inputStream);
+                    try {
+                        handler.onMessage(stream);
+                    } finally {
+                        // unread parts won't be consumed, discard them.
+                        chunks.cancel();
+                    }
                 }
             });
         }
+
+        if (message.hasRemaining()) {
+            queue.put(message);
+        }
+
+        if (last) {
+            queue.finish();
+        }
     }
 
     /**
@@ -195,30 +139,26 @@ class InputStreamBuffer {
     }
 
     /**
-     * Reset the buffer size.
+     * Reset the buffer size and prepare the buffer for a new message.
      *
      * @param bufferSize the size to be set.
      */
     public void resetBuffer(int bufferSize) {
         this.bufferSize = bufferSize;
         currentlyBuffered = 0;
-        bufferedFragments.clear();
+        inputStream = null;
+        queue = new MessagePartHandOff<ByteBuffer>();
+        if (sessionClosed) {
+            queue.close();
+        }
     }
 
     void onSessionClosed() {
         sessionClosed = true;
-        lock.lock();
-        try {
-            // wake up blocked thread
-            condition.signalAll();
-        } finally {
-            lock.unlock();
-        }
-    }
-
-    private void checkClosedSession() throws IOException {
-        if (sessionClosed) {
-            throw new IOException("Websocket session has been closed.");
+        final MessagePartHandOff<ByteBuffer> chunks = queue;
+        if (chunks != null) {
+            // wake up blocked reader
+            chunks.close();
         }
     }
 }
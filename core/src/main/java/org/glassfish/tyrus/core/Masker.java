@@ -42,10 +42,23 @@ package org.glassfish.tyrus.core;
 
 import java.nio.ByteBuffer;
 
+/**
+ * Masks and unmasks WebSocket frame payload (RFC 6455, chapter 5.3).
+ * <p>
+ * Payload is processed 8 bytes at a time (the 32 bit masking key is expanded to a long), only the tail which is
+ * shorter than 8 bytes is processed byte by byte. Masking and unmasking is the same operation.
+ * <p>
+ * Not thread safe - instance used for unmasking incoming frames is reused for all frames received by one connection,
+ * see {@link #reset()}.
+ */
 class Masker {
-    private volatile ByteBuffer buffer;
-    private volatile byte[] mask;
-    private volatile int index = 0;
+    private ByteBuffer buffer;
+    private byte[] mask;
+    private byte[] maskBuffer;
+    private int index = 0;
+
+    public Masker() {
+    }
 
     public Masker(ByteBuffer buffer) {
         this.buffer = buffer;
@@ -70,26 +83,121 @@ class Masker {
     }
 
     public byte[] unmask(int count) {
-        byte[] bytes = get(count);
         if (mask != null) {
-            for (int i = 0; i < bytes.length; i++) {
-                bytes[i] ^= mask[index++ % ProtocolHandler.MASK_SIZE];
+            // unmask in place, data are copied out of the buffer only once.
+            final ByteBuffer localBuffer = buffer;
+            final int position = localBuffer.position();
+            if (localBuffer.hasArray()) {
+                final byte[] bytes = new byte[count];
+                transform(ByteBuffer.wrap(localBuffer.array(), localBuffer.arrayOffset() + position, count),
+                          ByteBuffer.wrap(bytes), count);
+                localBuffer.position(position + count);
+                return bytes;
             }
+
+            final byte[] bytes = get(count);
+            final ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+            transform(wrapped, wrapped, count);
+            return bytes;
         }
 
-        return bytes;
+        return get(count);
+    }
+
+    /**
+     * Unmask next {@code count} bytes of the buffer in place, without copying them out of the buffer.
+     * <p>
+     * Buffer position is moved after the unmasked data.
+     *
+     * @param count number of bytes to be unmasked.
+     * @return view of the unmasked data. The view shares content with the buffer.
+     */
+    public ByteBuffer unmaskInPlace(int count) {
+        final ByteBuffer localBuffer = buffer;
+        final ByteBuffer slice = localBuffer.slice();
+        slice.limit(count);
+        localBuffer.position(localBuffer.position() + count);
+
+        if (mask != null) {
+            transform(slice, slice, count);
+        }
+
+        return slice;
+    }
+
+    /**
+     * Mask {@code length} remaining bytes of {@code source} and put them to {@code target} array.
+     * <p>
+     * Source buffer position is not changed.
+     *
+     * @param target   target array.
+     * @param location start index in target array.
+     * @param source   source buffer.
+     * @param length   number of bytes to be masked.
+     */
+    public void mask(byte[] target, int location, ByteBuffer source, int length) {
+        if (mask == null) {
+            source.duplicate().get(target, location, length);
+        } else {
+            transform(source, ByteBuffer.wrap(target, location, length), length);
+        }
     }
 
     public void mask(byte[] target, int location, byte[] bytes, int length) {
         if (bytes != null && target != null) {
-            for (int i = 0; i < length; i++) {
-                target[location + i] = mask == null
-                        ? bytes[i]
-                        : (byte) (bytes[i] ^ mask[index++ % ProtocolHandler.MASK_SIZE]);
+            if (mask == null) {
+                System.arraycopy(bytes, 0, target, location, length);
+            } else {
+                transform(ByteBuffer.wrap(bytes, 0, length), ByteBuffer.wrap(target, location, length), length);
             }
         }
     }
 
+    /**
+     * XOR {@code length} bytes from the current position of {@code source} with the mask and put the result to the
+     * current position of {@code target}. Source and target can be the same buffer. Positions of both buffers are not
+     * changed.
+     * <p>
+     * Both buffers are expected to use big endian byte order, which is the default for newly created (wrapped or
+     * sliced) buffers.
+     *
+     * @param source source buffer.
+     * @param target target buffer.
+     * @param length number of bytes to be processed.
+     */
+    private void transform(ByteBuffer source, ByteBuffer target, int length) {
+        final byte[] localMask = mask;
+        final int offset = index & 0x03;
+        final int sourcePosition = source.position();
+        final int targetPosition = target.position();
+
+        int i = 0;
+        if (length >= 8) {
+            final long longMask = getLongMask(localMask, offset);
+            final int longLength = length & ~0x07;
+
+            for (; i < longLength; i += 8) {
+                target.putLong(targetPosition + i, source.getLong(sourcePosition + i) ^ longMask);
+            }
+        }
+
+        for (; i < length; i++) {
+            target.put(targetPosition + i,
+                       (byte) (source.get(sourcePosition + i) ^ localMask[(offset + i) & 0x03]));
+        }
+
+        index = (offset + length) & 0x03;
+    }
+
+    private static long getLongMask(byte[] mask, int offset) {
+        final int intMask = ((mask[offset] & 0xFF) << 24)
+                | ((mask[(offset + 1) & 0x03] & 0xFF) << 16)
+                | ((mask[(offset + 2) & 0x03] & 0xFF) << 8)
+                | (mask[(offset + 3) & 0x03] & 0xFF);
+
+        return ((long) intMask << 32) | (intMask & 0xFFFFFFFFL);
+    }
+
     public void setBuffer(ByteBuffer buffer) {
         this.buffer = buffer;
     }
@@ -98,7 +206,28 @@ class Masker {
         return mask;
     }
 
+    /**
+     * Read masking key from the buffer.
+     * <p>
+     * The array holding the masking key is allocated only once per {@link Masker} instance.
+     */
     public void readMask() {
-        mask = get(ProtocolHandler.MASK_SIZE);
+        if (maskBuffer == null) {
+            maskBuffer = new byte[ProtocolHandler.MASK_SIZE];
+        }
+        buffer.get(maskBuffer);
+        mask = maskBuffer;
+        index = 0;
+    }
+
+    /**
+     * Reset this instance, so it can be used for processing another frame.
+     * <p>
+     * Masking key and buffer are cleared, data won't be unmasked until {@link #readMask()} is called.
+     */
+    public void reset() {
+        buffer = null;
+        mask = null;
+        index = 0;
     }
 }
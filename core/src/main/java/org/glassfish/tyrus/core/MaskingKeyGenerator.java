@@ -56,6 +56,8 @@ package org.glassfish.tyrus.core;
  *          }
  *      };
  * </pre>
+ * <p>
+ * {@link ThreadLocalMaskingKeyGenerator} can be used when the default implementation becomes a contention point.
  *
  * @author Petr Janouch
  */
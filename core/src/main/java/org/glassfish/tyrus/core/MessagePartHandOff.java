@@ -0,0 +1,171 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import org.glassfish.tyrus.core.l10n.LocalizationMessages;
+
+/**
+ * Unbounded single-producer/single-consumer hand-off of message parts.
+ * <p>
+ * Used by {@link ReaderBuffer} and {@link InputStreamBuffer} to hand parts of a streamed message from the thread
+ * reading the transport (producer) to the thread running the {@link javax.websocket.MessageHandler.Whole} (consumer).
+ * The producer never blocks, it is usually a container I/O thread and the consumer might not even be running yet
+ * when the executor is saturated; parts are buffered until they are taken. The hand-off itself is unbounded and
+ * provides no flow control - reading from the transport is not paused when the consumer falls behind, since the
+ * container SPI offers no way to suspend reads. The amount of buffered data is limited only by the caller, which fails
+ * the message once it exceeds the max message buffer size of the session. Consumer is parked while the hand-off is
+ * empty.
+ * <p>
+ * The hand-off serves one message; new instance has to be created for every message.
+ *
+ * @param <T> message part type.
+ */
+class MessagePartHandOff<T> {
+
+    // unbounded, see class javadoc.
+    private final Queue<T> chunks = new ConcurrentLinkedQueue<T>();
+
+    // set by producer after the last part has been put.
+    private volatile boolean last = false;
+    // set by consumer when it won't take any more parts.
+    private volatile boolean cancelled = false;
+    // set when the session is closed.
+    private volatile boolean closed = false;
+
+    private volatile Thread waitingConsumer = null;
+
+    /**
+     * Put next message part to the hand-off. Called by producer.
+     * <p>
+     * Never blocks. Part is discarded when the consumer has been cancelled or the hand-off closed.
+     *
+     * @param chunk message part.
+     */
+    void put(T chunk) {
+        if (cancelled || closed) {
+            return;
+        }
+
+        chunks.offer(chunk);
+        unpark(waitingConsumer);
+    }
+
+    /**
+     * Mark the message as complete. Called by producer after the last part has been put.
+     */
+    void finish() {
+        last = true;
+        unpark(waitingConsumer);
+    }
+
+    /**
+     * Take next message part. Called by consumer.
+     * <p>
+     * Blocks while the hand-off is empty and the last part has not been put yet.
+     *
+     * @return next message part or {@code null} when the whole message has been taken.
+     * @throws IOException when the session has been closed or the consumer has been cancelled.
+     */
+    T take() throws IOException {
+        boolean interrupted = false;
+
+        try {
+            while (true) {
+                final T chunk = chunks.poll();
+                if (chunk != null) {
+                    return chunk;
+                }
+
+                if (cancelled) {
+                    throw new IOException(LocalizationMessages.STREAM_CLOSED());
+                }
+
+                // last is set after the last part is published, poll again.
+                if (last) {
+                    return chunks.poll();
+                }
+
+                // don't let the consumer block on a closed session
+                if (closed) {
+                    throw new IOException(LocalizationMessages.SESSION_HAS_BEEN_CLOSED());
+                }
+
+                waitingConsumer = Thread.currentThread();
+                if (chunks.isEmpty() && !last && !closed && !cancelled) {
+                    LockSupport.park(this);
+                    interrupted |= Thread.interrupted();
+                }
+                waitingConsumer = null;
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Cancel the consumer. Parts put afterwards are discarded.
+     */
+    void cancel() {
+        cancelled = true;
+        chunks.clear();
+    }
+
+    /**
+     * Close the hand-off because the session has been closed. Waiting consumer is released.
+     */
+    void close() {
+        closed = true;
+        unpark(waitingConsumer);
+    }
+
+    private static void unpark(Thread thread) {
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
@@ -37,63 +37,61 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
+
 package org.glassfish.tyrus.core;
 
 import java.io.IOException;
-import java.io.OutputStream;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
 /**
- * Simple Writer that writes its data to an async sink.
+ * {@link FragmentingOutputStream} which sends the fragments of a binary message through a {@link TyrusWebSocket}.
+ * <p>
+ * Sending of a fragment does not block the caller, it waits only for completion of the previous fragment before the
+ * next one is sent, so at most one fragment is being written while the following one is being filled. Errors of the
+ * fragment writes are reported by subsequent {@code write}, {@code flush} or {@code close} invocations.
+ * <p>
+ * When batching is allowed ({@link javax.websocket.RemoteEndpoint#setBatchingAllowed(boolean)}), fragments are only
+ * added to the batch and nothing is awaited, like with other blocking send methods; fragments are written with the
+ * batch and errors are reported by {@link javax.websocket.RemoteEndpoint#flushBatch()}.
+ * <p>
+ * Instances are not thread safe.
  *
  * @author Danny Coward (danny.coward at oracle.com)
  */
-class OutputStreamToAsyncBinaryAdapter extends OutputStream {
+class OutputStreamToAsyncBinaryAdapter extends FragmentingOutputStream {
     private final TyrusWebSocket socket;
 
-    public OutputStreamToAsyncBinaryAdapter(TyrusWebSocket socket) {
-        this.socket = socket;
-    }
-
-    @Override
-    public void write(byte b[], int off, int len) throws IOException {
-        if (b == null) {
-            throw new NullPointerException();
-        } else if ((off < 0) || (off > b.length) || (len < 0) || ((off + len) > b.length) || ((off + len) < 0)) {
-            throw new IndexOutOfBoundsException();
-        } else if (len == 0) {
-            return;
-        }
+    private Future<?> pending = null;
 
-        final Future<?> future = socket.sendBinary(b, off, len, false);
-        try {
-            future.get();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        } catch (ExecutionException e) {
-            if (e.getCause() instanceof IOException) {
-                throw (IOException) e.getCause();
-            } else {
-                throw new IOException(e.getCause());
-            }
-        }
+    /**
+     * Constructor.
+     *
+     * @param socket       socket the message will be sent to.
+     * @param fragmentSize maximal size of sent fragments in bytes.
+     */
+    public OutputStreamToAsyncBinaryAdapter(TyrusWebSocket socket, int fragmentSize) {
+        super(fragmentSize);
+        this.socket = socket;
     }
 
     @Override
-    public void write(int i) throws IOException {
-        byte[] byteArray = new byte[]{(byte) i};
+    protected boolean sendFragment(byte[] buffer, int length, boolean last) throws IOException {
+        // previous fragment has to be written before the next one is sent.
+        awaitFragments();
 
-        write(byteArray, 0, byteArray.length);
+        // fragment data are copied when the frame is created, the buffer can be reused immediately.
+        pending = socket.sendBinary(buffer, 0, length, last);
+        return false;
     }
 
     @Override
-    public void flush() throws IOException {
-        // do nothing.
-    }
+    protected void awaitFragments() throws IOException {
+        final Future<?> future = pending;
+        pending = null;
 
-    @Override
-    public void close() throws IOException {
-        socket.sendBinary(new byte[]{}, true);
+        // batched fragment is written with the batch, which might not happen until flushBatch() is called.
+        if (future != null && !socket.getProtocolHandler().isBatchingAllowed()) {
+            TyrusRemoteEndpoint.processFuture(future);
+        }
     }
 }
@@ -43,11 +43,12 @@ package org.glassfish.tyrus.core;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -60,10 +61,12 @@ import javax.websocket.SendHandler;
 import javax.websocket.SendResult;
 import javax.websocket.server.HandshakeRequest;
 
+import org.glassfish.tyrus.core.extension.CacheableExtension;
 import org.glassfish.tyrus.core.extension.ExtendedExtension;
 import org.glassfish.tyrus.core.frame.BinaryFrame;
 import org.glassfish.tyrus.core.frame.CloseFrame;
 import org.glassfish.tyrus.core.frame.Frame;
+import org.glassfish.tyrus.core.frame.PongFrame;
 import org.glassfish.tyrus.core.frame.TextFrame;
 import org.glassfish.tyrus.core.frame.TyrusFrame;
 import org.glassfish.tyrus.core.l10n.LocalizationMessages;
@@ -88,10 +91,39 @@ public final class ProtocolHandler {
     private static final Logger LOGGER = Logger.getLogger(ProtocolHandler.class.getName());
     private static final int SEND_TIMEOUT = 3000; // millis.
 
+    /**
+     * Serialized unmasked pong frame without payload (FIN, opcode 0xA, length 0), shared by all server-side heartbeats.
+     */
+    private static final byte[] HEARTBEAT_FRAME = {(byte) 0x8A, 0x00};
+    private static final byte[] EMPTY_ARRAY = new byte[0];
+
+    /**
+     * Default size of the batch (in bytes), when reached, batched frames are written.
+     */
+    /* package */ static final int DEFAULT_MAX_BATCH_SIZE = 8192;
+
     private final boolean client;
     private final MaskingKeyGenerator maskingKeyGenerator;
     private final ParsingState parsingState = new ParsingState();
 
+    /**
+     * Number of bytes passed to the {@link Writer}, which were not yet reported as written.
+     */
+    private final AtomicLong pendingBytes = new AtomicLong(0);
+
+    /**
+     * Serialized frames waiting to be written when batching is allowed. Guarded by {@link #lock}.
+     */
+    private ByteBuffer batchBuffer = null;
+    private List<CompletionHandlerWrapper<ByteBuffer>> batchHandlers =
+            new ArrayList<CompletionHandlerWrapper<ByteBuffer>>();
+    private TyrusFuture<Void> batchFuture = new TyrusFuture<Void>();
+    // incremented when a batch is written, guarded by lock.
+    private long batchNumber = 0;
+    private volatile boolean batchingAllowed = false;
+    private volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private volatile BatchListener batchListener = null;
+
     private volatile TyrusWebSocket webSocket;
     private volatile byte outFragmentedType;
     private volatile Writer writer;
@@ -100,7 +132,7 @@ public final class ProtocolHandler {
     private volatile String subProtocol = null;
     private volatile List<Extension> extensions;
     private volatile ExtendedExtension.ExtensionContext extensionContext;
-    private volatile ByteBuffer remainder = null;
+    private final Utf8StreamDecoder utf8Decoder = new Utf8StreamDecoder();
     private volatile boolean hasExtensions = false;
     private volatile MessageEventListener messageEventListener = MessageEventListener.NO_OP;
     private volatile SendingFragmentState sendingFragment = SendingFragmentState.IDLE;
@@ -217,6 +249,40 @@ public final class ProtocolHandler {
         return extensions;
     }
 
+    /**
+     * Get key identifying the way how outgoing data frames are encoded by negotiated extensions.
+     * <p>
+     * Frames framed by protocol handlers with equal encoding keys are equal, so they can be shared (broadcast).
+     *
+     * @return encoding key or {@code null} if there is a negotiated {@link ExtendedExtension} which does not allow
+     * sharing of its output.
+     * @see CacheableExtension
+     */
+    /* package */ List<Object> getEncodingKey() {
+        final List<Object> key = new ArrayList<Object>();
+        if (extensions == null) {
+            return key;
+        }
+
+        for (Extension extension : extensions) {
+            if (extension instanceof ExtendedExtension) {
+                if (!(extension instanceof CacheableExtension)) {
+                    return null;
+                }
+
+                final Object extensionKey = ((CacheableExtension) extension).getEncodingKey(extensionContext);
+                if (extensionKey == null) {
+                    return null;
+                }
+
+                key.add(extension.getName());
+                key.add(extensionKey);
+            }
+        }
+
+        return key;
+    }
+
     /**
      * Client side. Set extensions negotiated for this WebSocket session/connection.
      *
@@ -266,6 +332,23 @@ public final class ProtocolHandler {
         return send(frame, null, true);
     }
 
+    /**
+     * Send unsolicited pong frame without payload (heartbeat).
+     * <p>
+     * Server-side, pre-encoded frame is written; client-side frames have to be masked, so new pong frame is created
+     * every time.
+     */
+    /* package */
+    final Future<Frame> sendHeartbeat() {
+        if (client) {
+            return send(new PongFrame(EMPTY_ARRAY));
+        }
+
+        final Future<Frame> future = write(ByteBuffer.wrap(HEARTBEAT_FRAME), null, true);
+        messageEventListener.onFrameSent(TyrusFrame.FrameType.PONG, 0);
+        return future;
+    }
+
     private Future<Frame> send(TyrusFrame frame, CompletionHandler<Frame> completionHandler, Boolean useTimeout) {
         return write(frame, completionHandler, useTimeout);
     }
@@ -347,17 +430,39 @@ public final class ProtocolHandler {
      * @return send future.
      */
     public Future<Frame> sendRawFrame(ByteBuffer data) {
+        return sendRawFrame(data, null);
+    }
+
+    /**
+     * Raw frame is always whole (not partial).
+     *
+     * @param data              serialized frame.
+     * @param completionHandler completion handler notified when the frame is written. Can be {@code null}.
+     * @return send future.
+     */
+    /* package */ Future<Frame> sendRawFrame(ByteBuffer data, CompletionHandler<Frame> completionHandler) {
         lock.lock();
 
         try {
             checkSendingFragment();
 
-            return send(data, null, true);
+            return send(data, completionHandler, true);
         } finally {
             lock.unlock();
         }
     }
 
+    /**
+     * Get number of bytes which were handed over to the {@link Writer}, but were not yet written.
+     * <p>
+     * Can be used to detect slow consumers (see {@link TyrusEndpointWrapper}).
+     *
+     * @return number of pending bytes.
+     */
+    /* package */ long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
     /**
      * Check whether current {@link ProtocolHandler} is sending a partial message.
      * <p>
@@ -480,8 +585,32 @@ public final class ProtocolHandler {
             throw new IllegalStateException(LocalizationMessages.CONNECTION_NULL());
         }
 
-        final ByteBuffer byteBuffer = frame(frame);
-        localWriter.write(byteBuffer, new CompletionHandlerWrapper(completionHandler, future, frame));
+        final ByteBuffer[] buffers = frameBuffers(frame);
+        long length = 0;
+        for (ByteBuffer buffer : buffers) {
+            length += buffer.remaining();
+        }
+
+        pendingBytes.addAndGet(length);
+
+        if (batchingAllowed && batch(buffers, length, new CompletionHandlerWrapper<ByteBuffer>(
+                completionHandler, future, frame, pendingBytes, length), frame.isControlFrame())) {
+            messageEventListener.onFrameSent(frame.getFrameType(), frame.getPayloadLength());
+            return future;
+        }
+
+        try {
+            if (buffers.length == 1) {
+                localWriter.write(buffers[0], new CompletionHandlerWrapper<ByteBuffer>(
+                        completionHandler, future, frame, pendingBytes, length));
+            } else {
+                localWriter.write(buffers, new CompletionHandlerWrapper<ByteBuffer[]>(
+                        completionHandler, future, frame, pendingBytes, length));
+            }
+        } catch (RuntimeException e) {
+            pendingBytes.addAndGet(-length);
+            throw e;
+        }
         messageEventListener.onFrameSent(frame.getFrameType(), frame.getPayloadLength());
 
         return future;
@@ -496,49 +625,314 @@ public final class ProtocolHandler {
             throw new IllegalStateException(LocalizationMessages.CONNECTION_NULL());
         }
 
-        localWriter.write(frame, new CompletionHandlerWrapper(completionHandler, future, null));
+        final long length = frame.remaining();
+        pendingBytes.addAndGet(length);
+
+        if (batchingAllowed) {
+            // first byte of serialized frame contains opcode, control frames have the highest opcode bit set.
+            final boolean controlFrame = length > 0 && (frame.get(frame.position()) & 0x08) == 0x08;
+            if (batch(new ByteBuffer[]{frame}, length, new CompletionHandlerWrapper<ByteBuffer>(
+                    completionHandler, future, null, pendingBytes, length), controlFrame)) {
+                return future;
+            }
+        }
+
+        try {
+            localWriter.write(frame, new CompletionHandlerWrapper<ByteBuffer>(
+                    completionHandler, future, null, pendingBytes, length));
+        } catch (RuntimeException e) {
+            pendingBytes.addAndGet(-length);
+            throw e;
+        }
 
         return future;
     }
 
     /**
-     * Convert a byte[] to a long. Used for rebuilding payload length.
+     * Add serialized frame to the current batch.
+     * <p>
+     * Batch is written when it reaches {@link #maxBatchSize} or when a control frame is added, so pings, pongs and
+     * close frames are not delayed. Frames which would not fit into an empty batch are not batched (copied) at all;
+     * current batch is written and the caller is expected to write the frame directly.
+     *
+     * @param buffers      serialized frame.
+     * @param length       length of the serialized frame.
+     * @param handler      handler to be notified when the batch containing the frame is written.
+     * @param controlFrame {@code true} if the frame is a control frame.
+     * @return {@code true} if the frame was added to the batch, {@code false} if it has to be written directly.
+     */
+    private boolean batch(ByteBuffer[] buffers, long length, CompletionHandlerWrapper<ByteBuffer> handler,
+                          boolean controlFrame) {
+        lock.lock();
+        try {
+            final int batchSize = maxBatchSize;
+
+            if (batchBuffer != null && batchBuffer.remaining() < length) {
+                flushBatchInternal();
+            }
+
+            if (length >= batchSize) {
+                // batched frames must be written before the frame.
+                flushBatchInternal();
+                return false;
+            }
+
+            final boolean started = batchHandlers.isEmpty();
+            if (batchBuffer == null) {
+                batchBuffer = ByteBuffer.allocate(batchSize);
+            }
+
+            for (ByteBuffer buffer : buffers) {
+                batchBuffer.put(buffer);
+            }
+            batchHandlers.add(handler);
+
+            if (controlFrame || batchBuffer.position() >= batchSize) {
+                flushBatchInternal();
+            } else if (started) {
+                final BatchListener listener = batchListener;
+                if (listener != null) {
+                    listener.batchStarted(batchNumber);
+                }
+            }
+
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write all batched frames. Must be called with {@link #lock} held.
      *
-     * @param bytes byte array to be converted.
-     * @return converted byte array.
+     * @return future completed when the batch is written.
      */
-    private long decodeLength(byte[] bytes) {
-        return Utils.toLong(bytes, 0, bytes.length);
+    private Future<Void> flushBatchInternal() {
+        if (batchHandlers.isEmpty()) {
+            final TyrusFuture<Void> future = new TyrusFuture<Void>();
+            future.setResult(null);
+            return future;
+        }
+
+        final TyrusFuture<Void> future = batchFuture;
+        final ByteBuffer buffer = batchBuffer;
+        final List<CompletionHandlerWrapper<ByteBuffer>> handlers = batchHandlers;
+
+        batchBuffer = null;
+        batchHandlers = new ArrayList<CompletionHandlerWrapper<ByteBuffer>>();
+        batchFuture = new TyrusFuture<Void>();
+        batchNumber++;
+
+        final BatchListener listener = batchListener;
+        if (listener != null) {
+            listener.batchFlushed();
+        }
+
+        buffer.flip();
+
+        final CompletionHandler<ByteBuffer> batchHandler = new CompletionHandler<ByteBuffer>() {
+            @Override
+            public void cancelled() {
+                for (CompletionHandlerWrapper<ByteBuffer> handler : handlers) {
+                    handler.cancelled();
+                }
+                future.setFailure(new RuntimeException(LocalizationMessages.FRAME_WRITE_CANCELLED()));
+            }
+
+            @Override
+            public void failed(Throwable throwable) {
+                for (CompletionHandlerWrapper<ByteBuffer> handler : handlers) {
+                    handler.failed(throwable);
+                }
+                future.setFailure(throwable);
+            }
+
+            @Override
+            public void completed(ByteBuffer result) {
+                for (CompletionHandlerWrapper<ByteBuffer> handler : handlers) {
+                    handler.completed(result);
+                }
+                future.setResult(null);
+            }
+        };
+
+        final Writer localWriter = writer;
+        try {
+            if (localWriter == null) {
+                throw new IllegalStateException(LocalizationMessages.CONNECTION_NULL());
+            }
+            localWriter.write(buffer, batchHandler);
+        } catch (RuntimeException e) {
+            batchHandler.failed(e);
+        }
+
+        return future;
     }
 
     /**
-     * Converts the length given to the appropriate framing data: <ol> <li>0-125 one element that is the payload
-     * length.
-     * <li>up to 0xFFFF, 3 element array starting with 126 with the following 2 bytes interpreted as a 16 bit unsigned
-     * integer showing the payload length. <li>else 9 element array starting with 127 with the following 8 bytes
-     * interpreted as a 64-bit unsigned integer (the high bit must be 0) showing the payload length. </ol>
+     * Allow or disallow batching of outgoing frames.
+     * <p>
+     * When batching is allowed, serialized frames are collected and written together when the batch reaches
+     * the maximal batch size, a control frame is sent or {@link #flushBatch()} is called. Disallowing batching writes
+     * all currently batched frames.
      *
-     * @param length the payload size
-     * @return the array
+     * @param batchingAllowed {@code true} if batching should be allowed.
      */
-    private byte[] encodeLength(final long length) {
-        byte[] lengthBytes;
+    /* package */ void setBatchingAllowed(boolean batchingAllowed) {
+        lock.lock();
+        try {
+            this.batchingAllowed = batchingAllowed;
+
+            if (!batchingAllowed) {
+                flushBatchInternal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* package */ boolean isBatchingAllowed() {
+        return batchingAllowed;
+    }
+
+    /**
+     * Write all batched frames.
+     *
+     * @return future completed when the frames are written.
+     */
+    /* package */ Future<Void> flushBatch() {
+        lock.lock();
+        try {
+            return flushBatchInternal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write batched frames if the current batch is the one identified by given number.
+     * <p>
+     * Used by delayed flushes, which must not write (prematurely) batches started after the one they were scheduled
+     * for.
+     *
+     * @param batchNumber number of the batch to be written, as passed to {@link BatchListener#batchStarted(long)}.
+     * @return future completed when the frames are written.
+     */
+    /* package */ Future<Void> flushBatch(long batchNumber) {
+        lock.lock();
+        try {
+            if (this.batchNumber != batchNumber) {
+                final TyrusFuture<Void> future = new TyrusFuture<Void>();
+                future.setResult(null);
+                return future;
+            }
+
+            return flushBatchInternal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Set size of the batch (in bytes), when reached, batched frames are written.
+     *
+     * @param maxBatchSize maximal batch size.
+     */
+    /* package */ void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /* package */ int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Set listener notified when a batch is started and written. Can be used for scheduling of delayed flush.
+     *
+     * @param batchListener listener to be notified, {@code null} to remove the listener.
+     */
+    /* package */ void setBatchListener(BatchListener batchListener) {
+        this.batchListener = batchListener;
+    }
+
+    /**
+     * Listener notified about the lifecycle of batches. Methods are invoked with the batch lock held, so they must
+     * not block.
+     */
+    /* package */ interface BatchListener {
+
+        /**
+         * Invoked when first frame is added to an empty batch.
+         *
+         * @param batchNumber number of the started batch, see {@link #flushBatch(long)}.
+         */
+        void batchStarted(long batchNumber);
+
+        /**
+         * Invoked when the current batch is written, no matter whether explicitly, because it is full or because
+         * batching was disallowed.
+         */
+        void batchFlushed();
+    }
+
+    /**
+     * Read extended payload length (16 or 64 bit unsigned integer in network byte order) from the buffer.
+     *
+     * @param buffer      buffer to read the length from.
+     * @param lengthBytes number of bytes to read.
+     * @return payload length.
+     */
+    private static long decodeLength(ByteBuffer buffer, int lengthBytes) {
+        long length = 0;
+        for (int i = 0; i < lengthBytes; i++) {
+            length = (length << 8) | (buffer.get() & 0xFF);
+        }
+        return length;
+    }
+
+    /**
+     * Get length of the frame header (without masking key) needed for given payload length: <ol> <li>0-125: 2 bytes,
+     * payload length is encoded directly in the second byte. <li>up to 0xFFFF: 4 bytes, second byte is 126 and the
+     * following 2 bytes are interpreted as a 16 bit unsigned integer showing the payload length. <li>else: 10 bytes,
+     * second byte is 127 and the following 8 bytes are interpreted as a 64-bit unsigned integer (the high bit must be
+     * 0) showing the payload length. </ol>
+     *
+     * @param length the payload size.
+     * @return header length.
+     */
+    private static int getHeaderLength(final long length) {
         if (length <= 125) {
-            lengthBytes = new byte[1];
-            lengthBytes[0] = (byte) length;
+            return 2;
+        } else if (length <= 0xFFFF) {
+            return 4;
         } else {
-            byte[] b = Utils.toArray(length);
-            if (length <= 0xFFFF) {
-                lengthBytes = new byte[3];
-                lengthBytes[0] = 126;
-                System.arraycopy(b, 6, lengthBytes, 1, 2);
-            } else {
-                lengthBytes = new byte[9];
-                lengthBytes[0] = 127;
-                System.arraycopy(b, 0, lengthBytes, 1, 8);
-            }
+            return 10;
+        }
+    }
+
+    /**
+     * Write frame header (opcode byte and encoded payload length) into given buffer.
+     *
+     * @param buffer target buffer.
+     * @param opcode first byte of the frame (flags and opcode).
+     * @param length the payload size.
+     * @param masked {@code true} when the frame payload will be masked.
+     * @see #getHeaderLength(long)
+     */
+    private static void putHeader(final ByteBuffer buffer, final byte opcode, final long length,
+                                  final boolean masked) {
+        final int maskBit = masked ? 0x80 : 0x00;
+
+        buffer.put(opcode);
+        if (length <= 125) {
+            buffer.put((byte) (maskBit | length));
+        } else if (length <= 0xFFFF) {
+            buffer.put((byte) (maskBit | 126));
+            buffer.putShort((short) length);
+        } else {
+            buffer.put((byte) (maskBit | 127));
+            buffer.putLong(length);
         }
-        return lengthBytes;
     }
 
     private void validate(final byte fragmentType, byte opcode) {
@@ -586,6 +980,31 @@ public final class ProtocolHandler {
     }
 
     /* package */ ByteBuffer frame(Frame frame) {
+        final ByteBuffer[] buffers = frameBuffers(frame);
+
+        if (buffers.length == 1) {
+            return buffers[0];
+        }
+
+        final ByteBuffer header = buffers[0];
+        final ByteBuffer payload = buffers[1];
+        final ByteBuffer packet = ByteBuffer.allocate(header.remaining() + payload.remaining());
+        packet.put(header).put(payload);
+        packet.flip();
+        return packet;
+    }
+
+    /**
+     * Serialize frame into one or more buffers, which are supposed to be written in the returned order.
+     * <p>
+     * Server side (unmasked) frame is returned as a header buffer followed by a view of the frame payload, so the
+     * payload is never copied. Client side frame has to be masked, so header and masked payload are written into
+     * single buffer.
+     *
+     * @param frame frame to be serialized.
+     * @return serialized frame.
+     */
+    /* package */ ByteBuffer[] frameBuffers(Frame frame) {
 
         if (client) {
             frame = Frame.builder(frame).maskingKey(maskingKeyGenerator.nextInt()).mask(true).build();
@@ -616,18 +1035,12 @@ public final class ProtocolHandler {
             opcode |= 0x10;
         }
 
-        final byte[] bytes = frame.getPayloadData();
-        final byte[] lengthBytes = encodeLength(frame.getPayloadLength());
-
         // TODO - length limited to int, it should be long (see RFC 9788, chapter 5.2)
         // TODO - in that case, we will need to NOT store dataframe inmemory - introduce maskingByteStream or
         // TODO   maskingByteBuffer
         final int payloadLength = (int) frame.getPayloadLength();
-        int length = 1 + lengthBytes.length + payloadLength + (client ? MASK_SIZE : 0);
-        int payloadStart = 1 + lengthBytes.length + (client ? MASK_SIZE : 0);
-        final byte[] packet = new byte[length];
-        packet[0] = opcode;
-        System.arraycopy(lengthBytes, 0, packet, 1, lengthBytes.length);
+        final ByteBuffer payload = frame.getPayloadBuffer();
+
         // if client, then we need to mask data.
         if (client) {
             Integer maskingKey = frame.getMaskingKey();
@@ -636,28 +1049,50 @@ public final class ProtocolHandler {
                 // TODO: related to ExtendedExtension
                 throw new ProtocolException("Masking key cannot be null when sending message from client to server.");
             }
+
+            final int payloadStart = getHeaderLength(payloadLength) + MASK_SIZE;
+            final byte[] packet = new byte[payloadStart + payloadLength];
+            final ByteBuffer buffer = ByteBuffer.wrap(packet);
+            putHeader(buffer, opcode, payloadLength, true);
+            buffer.putInt(maskingKey);
+
             Masker masker = new Masker(maskingKey);
-            packet[1] |= 0x80;
-            masker.mask(packet, payloadStart, bytes, payloadLength);
-            System.arraycopy(masker.getMask(), 0, packet, payloadStart - MASK_SIZE, MASK_SIZE);
-        } else {
-            System.arraycopy(bytes, 0, packet, payloadStart, payloadLength);
+            masker.mask(packet, payloadStart, payload, payloadLength);
+            buffer.rewind();
+            return new ByteBuffer[]{buffer};
+        }
+
+        final ByteBuffer header = ByteBuffer.allocate(getHeaderLength(payloadLength));
+        putHeader(header, opcode, payloadLength, false);
+        header.flip();
+
+        if (payloadLength == 0) {
+            return new ByteBuffer[]{header};
         }
-        return ByteBuffer.wrap(packet);
+
+        return new ByteBuffer[]{header, payload};
     }
 
     /**
-     * TODO!
+     * Parse next frame from given buffer.
+     * <p>
+     * Parsing is incremental - when the buffer does not contain whole frame, already parsed part of the frame header is
+     * consumed, stored in the parsing state and {@code null} is returned; parsing continues with the next invocation.
+     * <p>
+     * Frame payload is unmasked in place and returned frame shares it with the provided buffer (payload is not
+     * copied), so the buffer content must not be modified until the frame is processed. This method is expected to be
+     * invoked by one thread at a time (the one which is reading from the connection).
      *
-     * @param buffer TODO.
-     * @return TODO.
+     * @param buffer buffer containing (part of) the frame.
+     * @return parsed frame or {@code null} when the frame is not complete.
      */
     public Frame unframe(ByteBuffer buffer) {
+        final ParsingState parsingState = this.parsingState;
 
         try {
             // this do { .. } while cycle was forced by findbugs check - complained about missing break statements.
             do {
-                switch (parsingState.state.get()) {
+                switch (parsingState.state) {
                     case 0:
                         if (buffer.remaining() < 2) {
                             // Don't have enough bytes to read opcode and lengthCode
@@ -666,7 +1101,6 @@ public final class ProtocolHandler {
 
                         byte opcode = buffer.get();
 
-
                         parsingState.finalFragment = isBitSet(opcode, 7);
                         parsingState.controlFrame = isControlFrame(opcode);
                         parsingState.opcode = (byte) (opcode & 0x7f);
@@ -677,13 +1111,12 @@ public final class ProtocolHandler {
                         byte lengthCode = buffer.get();
 
                         parsingState.masked = (lengthCode & 0x80) == 0x80;
-                        parsingState.masker = new Masker(buffer);
                         if (parsingState.masked) {
                             lengthCode ^= 0x80;
                         }
                         parsingState.lengthCode = lengthCode;
 
-                        parsingState.state.incrementAndGet();
+                        parsingState.state++;
                         break;
                     case 1:
                         if (parsingState.lengthCode <= 125) {
@@ -698,10 +1131,9 @@ public final class ProtocolHandler {
                                 // Don't have enough bytes to read length
                                 return null;
                             }
-                            parsingState.masker.setBuffer(buffer);
-                            parsingState.length = decodeLength(parsingState.masker.unmask(lengthBytes));
+                            parsingState.length = decodeLength(buffer, lengthBytes);
                         }
-                        parsingState.state.incrementAndGet();
+                        parsingState.state++;
                         break;
                     case 2:
                         if (parsingState.masked) {
@@ -712,28 +1144,29 @@ public final class ProtocolHandler {
                             parsingState.masker.setBuffer(buffer);
                             parsingState.masker.readMask();
                         }
-                        parsingState.state.incrementAndGet();
+                        parsingState.state++;
                         break;
                     case 3:
+                        if (parsingState.length < 0 || parsingState.length > Integer.MAX_VALUE) {
+                            throw new ProtocolException(
+                                    LocalizationMessages.DATA_UNEXPECTED_LENGTH(buffer.remaining(),
+                                                                                parsingState.length));
+                        }
+
                         if (buffer.remaining() < parsingState.length) {
                             return null;
                         }
 
                         parsingState.masker.setBuffer(buffer);
-                        final byte[] data = parsingState.masker.unmask((int) parsingState.length);
-                        if (data.length != parsingState.length) {
-                            throw new ProtocolException(
-                                    LocalizationMessages.DATA_UNEXPECTED_LENGTH(data.length, parsingState.length));
-                        }
+                        final ByteBuffer payload = parsingState.masker.unmaskInPlace((int) parsingState.length);
 
-                        final Frame frame = Frame.builder().fin(parsingState.finalFragment)
-                                                 .rsv1(isBitSet(parsingState.opcode, 6))
-                                                 .rsv2(isBitSet(parsingState.opcode, 5))
-                                                 .rsv3(isBitSet(parsingState.opcode, 4))
-                                                 .opcode((byte) (parsingState.opcode & 0xf))
-                                                 .payloadLength(parsingState.length)
-                                                 .payloadData(data)
-                                                 .build();
+                        final Frame frame = parsingState.frameBuilder.fin(parsingState.finalFragment)
+                                                                     .rsv1(isBitSet(parsingState.opcode, 6))
+                                                                     .rsv2(isBitSet(parsingState.opcode, 5))
+                                                                     .rsv3(isBitSet(parsingState.opcode, 4))
+                                                                     .opcode((byte) (parsingState.opcode & 0xf))
+                                                                     .payloadData(payload)
+                                                                     .build();
 
                         parsingState.recycle();
 
@@ -784,13 +1217,8 @@ public final class ProtocolHandler {
             }
         }
 
-        TyrusFrame tyrusFrame = TyrusFrame.wrap(frame, inFragmentedType, remainder);
-
-        // TODO - utf8 decoder needs this state to be shared among decoded frames.
-        // TODO - investigate whether it can be removed; (this effectively denies lazy decoding)
-        if (tyrusFrame instanceof TextFrame) {
-            remainder = ((TextFrame) tyrusFrame).getRemainder();
-        }
+        // utf8 decoder keeps incomplete code point between fragments of the text message
+        TyrusFrame tyrusFrame = TyrusFrame.wrap(frame, inFragmentedType, utf8Decoder);
 
         // server should not allow receiving 1012 or 1013 from the client
         // (SERVICE_RESTART and TRY_AGAIN_LATER does not make sense from the client side.
@@ -823,21 +1251,27 @@ public final class ProtocolHandler {
     /**
      * Handler passed to the {@link org.glassfish.tyrus.spi.Writer}.
      */
-    private static class CompletionHandlerWrapper extends CompletionHandler<ByteBuffer> {
+    private static class CompletionHandlerWrapper<T> extends CompletionHandler<T> {
 
         private final CompletionHandler<Frame> frameCompletionHandler;
         private final TyrusFuture<Frame> future;
         private final Frame frame;
+        private final AtomicLong pendingBytes;
+        private final long length;
 
         private CompletionHandlerWrapper(CompletionHandler<Frame> frameCompletionHandler, TyrusFuture<Frame> future,
-                                         Frame frame) {
+                                         Frame frame, AtomicLong pendingBytes, long length) {
             this.frameCompletionHandler = frameCompletionHandler;
             this.future = future;
             this.frame = frame;
+            this.pendingBytes = pendingBytes;
+            this.length = length;
         }
 
         @Override
         public void cancelled() {
+            pendingBytes.addAndGet(-length);
+
             if (frameCompletionHandler != null) {
                 frameCompletionHandler.cancelled();
             }
@@ -849,6 +1283,8 @@ public final class ProtocolHandler {
 
         @Override
         public void failed(Throwable throwable) {
+            pendingBytes.addAndGet(-length);
+
             if (frameCompletionHandler != null) {
                 frameCompletionHandler.failed(throwable);
             }
@@ -859,7 +1295,9 @@ public final class ProtocolHandler {
         }
 
         @Override
-        public void completed(ByteBuffer result) {
+        public void completed(T result) {
+            pendingBytes.addAndGet(-length);
+
             if (frameCompletionHandler != null) {
                 frameCompletionHandler.completed(frame);
             }
@@ -870,31 +1308,43 @@ public final class ProtocolHandler {
         }
 
         @Override
-        public void updated(ByteBuffer result) {
+        public void updated(T result) {
             if (frameCompletionHandler != null) {
                 frameCompletionHandler.updated(frame);
             }
         }
     }
 
+    /**
+     * State of the incoming frame parser.
+     * <p>
+     * Frames of one connection are parsed by one thread at a time, so plain fields are sufficient. {@link Masker} and
+     * {@link Frame.Builder} are reused for all parsed frames.
+     */
     private static class ParsingState {
-        final AtomicInteger state = new AtomicInteger(0);
-        volatile byte opcode = (byte) -1;
-        volatile long length = -1;
-        volatile boolean masked;
-        volatile Masker masker;
-        volatile boolean finalFragment;
-        volatile boolean controlFrame;
+        private static final ByteBuffer EMPTY_PAYLOAD = ByteBuffer.allocate(0);
+
+        final Masker masker = new Masker();
+        final Frame.Builder frameBuilder = Frame.builder();
+
+        int state = 0;
+        byte opcode = (byte) -1;
+        long length = -1;
+        boolean masked;
+        boolean finalFragment;
+        boolean controlFrame;
 
-        private volatile byte lengthCode = -1;
+        private byte lengthCode = -1;
 
         void recycle() {
-            state.set(0);
+            state = 0;
             opcode = (byte) -1;
             length = -1;
             lengthCode = -1;
             masked = false;
-            masker = null;
+            masker.reset();
+            // do not keep reference to the last parsed payload (and the whole read buffer).
+            frameBuilder.payloadData(EMPTY_PAYLOAD);
             finalFragment = false;
             controlFrame = false;
         }
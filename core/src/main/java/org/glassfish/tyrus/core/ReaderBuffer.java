@@ -40,12 +40,8 @@
 
 package org.glassfish.tyrus.core;
 
-import java.io.IOException;
 import java.io.Reader;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -58,6 +54,11 @@ import org.glassfish.tyrus.core.l10n.LocalizationMessages;
  * <p>
  * For the first received message {@link MessageHandler.Whole#onMessage(Object)} is called within a new executor to
  * allow blocking reading of passed {@link Reader}.
+ * <p>
+ * Message parts are handed to the reader through a {@link MessagePartHandOff}. Appending a part never blocks the
+ * calling (transport) thread and reading from the transport is not paused when the reader falls behind; parts not yet
+ * consumed are buffered up to the max message buffer size, bigger messages are rejected with
+ * {@link MessageTooBigException}.
  *
  * @author Danny Coward (danny.coward at oracle.com)
  * @author Stepan Kopriva (stepan.kopriva at oracle.com)
@@ -65,17 +66,14 @@ import org.glassfish.tyrus.core.l10n.LocalizationMessages;
  */
 class ReaderBuffer {
 
-    private final AtomicBoolean buffering = new AtomicBoolean(true);
     private final ExecutorService executorService;
-    private final ReentrantLock lock = new ReentrantLock();
-    private final Condition condition = lock.newCondition();
 
     private static final Logger LOGGER = Logger.getLogger(ReaderBuffer.class.getName());
 
-    private volatile boolean receivedLast = false;
+    private volatile boolean buffering = true;
     private volatile int bufferSize;
     private volatile int currentlyBuffered;
-    private volatile StringBuffer buffer;
+    private volatile MessagePartHandOff<String> queue;
     private volatile BufferedStringReader reader = null;
     private volatile MessageHandler.Whole<Reader> messageHandler;
     private volatile boolean sessionClosed = false;
@@ -84,63 +82,10 @@ class ReaderBuffer {
      * Constructor.
      */
     public ReaderBuffer(ExecutorService executorService) {
-        this.buffer = new StringBuffer();
         this.executorService = executorService;
         currentlyBuffered = 0;
     }
 
-    /**
-     * Get next received chars.
-     *
-     * @return next received chars.
-     */
-    public char[] getNextChars(int number) throws IOException {
-        lock.lock();
-        try {
-            if (buffer.length() == 0) {
-                if (receivedLast) {
-                    this.reader = null;
-                    buffering.set(true);
-                    this.currentlyBuffered = 0;
-                    return null;
-                } else { // there's more to come...so wait here...
-                    // don't let the reader block on a closed session
-                    checkClosedSession();
-
-                    boolean interrupted;
-                    do {
-                        interrupted = false;
-                        try {
-                            condition.await();
-
-                            checkClosedSession();
-                        } catch (InterruptedException e) {
-                            interrupted = true;
-                        }
-                    } while (interrupted);
-                }
-            }
-
-            int size = number > buffer.length() ? buffer.length() : number;
-
-            char[] result = new char[size];
-            buffer.getChars(0, size, result, 0);
-            buffer.delete(0, size);
-
-            return result;
-        } finally {
-            lock.unlock();
-        }
-    }
-
-    /**
-     * Finish reading of the buffer.
-     */
-    public void finishReading() {
-        buffer = new StringBuffer();
-        reader = null;
-    }
-
     /**
      * Append next message part to the buffer.
      *
@@ -148,38 +93,45 @@ class ReaderBuffer {
      * @param last    should be {@code true} iff this is the last part of the message, {@code false} otherwise.
      */
     public void appendMessagePart(String message, boolean last) {
-        lock.lock();
-        try {
-            currentlyBuffered += message.length();
-            if (currentlyBuffered <= bufferSize) {
-                buffer.append(message);
-            } else {
-                if (buffering.get()) {
-                    buffering.set(false);
-                    final MessageTooBigException messageTooBigException =
-                            new MessageTooBigException(LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW());
-                    LOGGER.log(Level.FINE, LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW(),
-                               messageTooBigException);
-                    receivedLast = true;
-                    throw messageTooBigException;
-                }
+        currentlyBuffered += message.length();
+        if (currentlyBuffered > bufferSize) {
+            if (buffering) {
+                buffering = false;
+                final MessageTooBigException messageTooBigException =
+                        new MessageTooBigException(LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW());
+                LOGGER.log(Level.FINE, LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW(),
+                           messageTooBigException);
+                queue.finish();
+                throw messageTooBigException;
             }
-
-            this.receivedLast = last;
-            condition.signalAll();
-        } finally {
-            lock.unlock();
+            return;
         }
 
-        if (this.reader == null) {
-            this.reader = new BufferedStringReader(this);
+        if (reader == null) {
+            final MessagePartHandOff<String> chunks = queue;
+            final MessageHandler.Whole<Reader> handler = messageHandler;
+            final BufferedStringReader bufferedReader = new BufferedStringReader(chunks);
+            reader = bufferedReader;
             executorService.execute(new Runnable() {
                 @Override
                 public void run() {
-                    messageHandler.onMessage(reader);
+                    try {
+                        handler.onMessage(bufferedReader);
+                    } finally {
+                        // unread parts won't be consumed, discard them.
+                        chunks.cancel();
+                    }
                 }
             });
         }
+
+        if (!message.isEmpty()) {
+            queue.put(message);
+        }
+
+        if (last) {
+            queue.finish();
+        }
     }
 
     /**
@@ -192,31 +144,27 @@ class ReaderBuffer {
     }
 
     /**
-     * Reset the buffer size.
+     * Reset the buffer size and prepare the buffer for a new message.
      *
      * @param bufferSize the size to be set.
      */
     public void resetBuffer(int bufferSize) {
         this.bufferSize = bufferSize;
-        buffering.set(true);
+        buffering = true;
         currentlyBuffered = 0;
-        buffer.delete(0, buffer.length());
+        reader = null;
+        queue = new MessagePartHandOff<String>();
+        if (sessionClosed) {
+            queue.close();
+        }
     }
 
     void onSessionClosed() {
         sessionClosed = true;
-        lock.lock();
-        try {
-            // wake up blocked thread
-            condition.signalAll();
-        } finally {
-            lock.unlock();
-        }
-    }
-
-    private void checkClosedSession() throws IOException {
-        if (sessionClosed) {
-            throw new IOException("Websocket session has been closed.");
+        final MessagePartHandOff<String> chunks = queue;
+        if (chunks != null) {
+            // wake up blocked reader
+            chunks.close();
         }
     }
 }
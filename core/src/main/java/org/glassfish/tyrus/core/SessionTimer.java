@@ -0,0 +1,355 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hashed timing wheel used for session idle timeouts and heartbeats.
+ * <p>
+ * Scheduling a {@link Timeout} is cheap (lock-free enqueue) and the timeouts are expired lazily by a single periodic
+ * sweep task running on provided {@link ScheduledExecutorService}. The sweep task is running only when there is at
+ * least one scheduled {@link Timeout}.
+ * <p>
+ * Each {@link Timeout} decides what to do when its deadline is reached - it can either finish or return new deadline,
+ * which is the way how frequently updated deadlines (like idle timeout, which is postponed by every sent or received
+ * message) are handled without rescheduling on every update.
+ * <p>
+ * Timeouts with deadline further than one wheel revolution are kept in their slot and "remaining rounds" counter is
+ * decremented every time the slot is visited.
+ */
+class SessionTimer {
+
+    private static final Logger LOGGER = Logger.getLogger(SessionTimer.class.getName());
+
+    /**
+     * Tick duration in milliseconds. Timeouts are expired with this precision.
+     */
+    static final long TICK_DURATION = 10;
+
+    private static final int WHEEL_SIZE = 512;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private static final Map<ScheduledExecutorService, SessionTimer> TIMERS =
+            new WeakHashMap<ScheduledExecutorService, SessionTimer>();
+
+    private final WeakReference<ScheduledExecutorService> executor;
+    private final long tickNanos = TimeUnit.MILLISECONDS.toNanos(TICK_DURATION);
+    private final long origin = System.nanoTime();
+
+    // wheel is accessed only from sweep (guarded by wheel).
+    private final Timeout[] wheel = new Timeout[WHEEL_SIZE];
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<Timeout>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final HeartbeatScheduler heartbeatScheduler = new HeartbeatScheduler(this);
+
+    private final Runnable sweepTask = new Runnable() {
+        @Override
+        public void run() {
+            sweep(System.nanoTime());
+        }
+    };
+
+    private long lastTick;
+    private int placed;
+    private ScheduledFuture<?> sweepFuture;
+
+    /**
+     * Get timer which uses given executor for running the sweep task.
+     * <p>
+     * Timers are shared - all sessions using the same executor share single timer instance.
+     *
+     * @param executor executor used for running the sweep task and expired timeouts.
+     * @return shared timer instance.
+     */
+    static SessionTimer get(ScheduledExecutorService executor) {
+        synchronized (TIMERS) {
+            SessionTimer timer = TIMERS.get(executor);
+            if (timer == null) {
+                timer = new SessionTimer(executor);
+                TIMERS.put(executor, timer);
+            }
+            return timer;
+        }
+    }
+
+    /**
+     * Create new timer.
+     *
+     * @param executor executor used for running the sweep task and expired timeouts.
+     */
+    SessionTimer(ScheduledExecutorService executor) {
+        // timer must not prevent the executor (map key) from being garbage collected.
+        this.executor = new WeakReference<ScheduledExecutorService>(executor);
+    }
+
+    /**
+     * Schedule a timeout.
+     * <p>
+     * {@link Timeout} instance can be scheduled only once.
+     *
+     * @param timeout  timeout to be scheduled.
+     * @param deadline deadline in nanoseconds, as returned from {@link System#nanoTime()}.
+     */
+    void schedule(Timeout timeout, long deadline) {
+        timeout.deadline = deadline;
+        size.incrementAndGet();
+        pending.add(timeout);
+        ensureRunning();
+    }
+
+    /**
+     * Get heartbeat scheduler which uses this timer.
+     *
+     * @return heartbeat scheduler.
+     */
+    HeartbeatScheduler getHeartbeatScheduler() {
+        return heartbeatScheduler;
+    }
+
+    /**
+     * Get number of scheduled (not yet finished or removed) timeouts.
+     *
+     * @return number of scheduled timeouts.
+     */
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Expire timeouts which deadline is before the provided time.
+     * <p>
+     * Invoked periodically by the sweep task.
+     *
+     * @param now current time in nanoseconds, as returned from {@link System#nanoTime()}.
+     */
+    void sweep(long now) {
+        synchronized (wheel) {
+            final long currentTick = (now - origin) / tickNanos;
+
+            if (placed == 0) {
+                // nothing to expire, skip ticks elapsed since the timer was stopped.
+                lastTick = Math.max(lastTick, currentTick - 1);
+            }
+
+            Timeout timeout;
+            while ((timeout = pending.poll()) != null) {
+                if (timeout.cancelled) {
+                    size.decrementAndGet();
+                } else {
+                    place(timeout);
+                }
+            }
+
+            while (lastTick < currentTick) {
+                lastTick++;
+                expireSlot((int) (lastTick & WHEEL_MASK), now);
+            }
+        }
+
+        if (size.get() == 0) {
+            synchronized (this) {
+                if (size.get() == 0 && sweepFuture != null) {
+                    sweepFuture.cancel(false);
+                    sweepFuture = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Execute a task produced by an expired {@link Timeout}.
+     * <p>
+     * Task is executed using the executor of this timer, so the sweep is not blocked by (possibly blocking) tasks
+     * like closing a session. If the executor is not available, the task is executed in the current thread.
+     *
+     * @param task task to be executed.
+     */
+    void execute(Runnable task) {
+        final ScheduledExecutorService executorService = executor.get();
+        if (executorService != null) {
+            try {
+                executorService.execute(task);
+                return;
+            } catch (RejectedExecutionException e) {
+                // executor is shut down, run in the current thread.
+            }
+        }
+
+        task.run();
+    }
+
+    private void ensureRunning() {
+        synchronized (this) {
+            if (sweepFuture != null && !sweepFuture.isDone()) {
+                return;
+            }
+
+            final ScheduledExecutorService executorService = executor.get();
+            if (executorService == null) {
+                return;
+            }
+
+            try {
+                sweepFuture = executorService
+                        .scheduleAtFixedRate(sweepTask, TICK_DURATION, TICK_DURATION, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                LOGGER.log(Level.FINE, "Session timer could not be started, executor is shut down.", e);
+            }
+        }
+    }
+
+    private void place(Timeout timeout) {
+        // round up, timeout must not be visited before its deadline.
+        final long deadlineTick = Math.max((timeout.deadline - origin + tickNanos - 1) / tickNanos, lastTick + 1);
+        timeout.rounds = (deadlineTick - lastTick - 1) / WHEEL_SIZE;
+
+        final int slot = (int) (deadlineTick & WHEEL_MASK);
+        final Timeout head = wheel[slot];
+        timeout.prev = null;
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        wheel[slot] = timeout;
+        placed++;
+    }
+
+    private void expireSlot(int slot, long now) {
+        Timeout timeout = wheel[slot];
+        while (timeout != null) {
+            final Timeout next = timeout.next;
+
+            if (timeout.cancelled) {
+                remove(slot, timeout);
+                size.decrementAndGet();
+            } else if (timeout.rounds > 0) {
+                timeout.rounds--;
+            } else {
+                remove(slot, timeout);
+
+                long deadline;
+                try {
+                    deadline = timeout.expire(now);
+                } catch (Throwable t) {
+                    LOGGER.log(Level.FINE, "Timeout expiration failed.", t);
+                    deadline = -1;
+                }
+
+                if (deadline < 0 || timeout.cancelled) {
+                    size.decrementAndGet();
+                } else {
+                    timeout.deadline = deadline;
+                    place(timeout);
+                }
+            }
+
+            timeout = next;
+        }
+    }
+
+    private void remove(int slot, Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            wheel[slot] = timeout.next;
+        }
+
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+
+        timeout.prev = null;
+        timeout.next = null;
+        placed--;
+    }
+
+    /**
+     * Timeout scheduled in {@link SessionTimer}.
+     */
+    abstract static class Timeout {
+
+        private volatile boolean cancelled = false;
+
+        // accessed only from sweep.
+        private long deadline;
+        private long rounds;
+        private Timeout prev;
+        private Timeout next;
+
+        /**
+         * Invoked when the deadline of this timeout is reached.
+         * <p>
+         * Implementations must not block, see {@link SessionTimer#execute(Runnable)}.
+         *
+         * @param now current time in nanoseconds, as returned from {@link System#nanoTime()}.
+         * @return new deadline in nanoseconds or negative value if the timeout should be removed from the timer.
+         */
+        abstract long expire(long now);
+
+        /**
+         * Cancel this timeout. Cancelled timeout is removed from the timer lazily.
+         */
+        void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Get information whether this timeout was cancelled.
+         *
+         * @return {@code true} if the timeout was cancelled, {@code false} otherwise.
+         */
+        boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
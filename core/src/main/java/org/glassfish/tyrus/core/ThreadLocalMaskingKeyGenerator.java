@@ -0,0 +1,139 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * {@link MaskingKeyGenerator} intended for clients sending high volume of frames from many threads.
+ * <p>
+ * Default masking key generator shares single {@link SecureRandom} instance among all connections and asks it for
+ * every outgoing frame, which makes it a contention point under multi-threaded load. This implementation keeps
+ * a {@link SecureRandom} instance per thread, each seeded from a shared {@link SecureRandom}, and takes the masking
+ * keys from it in blocks of {@link #BLOCK_SIZE} keys, so the generator itself is accessed only once per block.
+ * <p>
+ * Masking keys are still produced by a cryptographically strong random number generator, as required by RFC 6455.
+ * The generator can be registered on the client using {@code ClientProperties.MASKING_KEY_GENERATOR}:
+ * <pre>
+ *     client.getProperties().put(ClientProperties.MASKING_KEY_GENERATOR, new ThreadLocalMaskingKeyGenerator());
+ * </pre>
+ * One instance can be shared among multiple clients.
+ */
+@Beta
+public class ThreadLocalMaskingKeyGenerator implements MaskingKeyGenerator {
+
+    /**
+     * Number of masking keys generated at once by per-thread random number generator.
+     */
+    public static final int BLOCK_SIZE = 64;
+
+    private static final String PRNG_ALGORITHM = "SHA1PRNG";
+    private static final int SEED_LENGTH = 32;
+
+    private final SecureRandom seedSource = new SecureRandom();
+
+    private final ThreadLocal<KeyBlock> keyBlocks = new ThreadLocal<KeyBlock>() {
+        @Override
+        protected KeyBlock initialValue() {
+            return new KeyBlock(createSecureRandom());
+        }
+    };
+
+    @Override
+    public int nextInt() {
+        return keyBlocks.get().nextInt();
+    }
+
+    private SecureRandom createSecureRandom() {
+        final byte[] seed = new byte[SEED_LENGTH];
+        synchronized (seedSource) {
+            seedSource.nextBytes(seed);
+        }
+
+        SecureRandom secureRandom;
+        try {
+            secureRandom = SecureRandom.getInstance(PRNG_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            secureRandom = new SecureRandom();
+        }
+
+        // SHA1PRNG is seeded only by the provided seed when setSeed is called before any output is generated
+        secureRandom.setSeed(seed);
+        return secureRandom;
+    }
+
+    /**
+     * Block of masking keys owned by single thread.
+     */
+    private static class KeyBlock {
+
+        private final SecureRandom secureRandom;
+        private final byte[] bytes = new byte[BLOCK_SIZE * 4];
+        private final int[] keys = new int[BLOCK_SIZE];
+        private int index = BLOCK_SIZE;
+
+        KeyBlock(SecureRandom secureRandom) {
+            this.secureRandom = secureRandom;
+        }
+
+        int nextInt() {
+            if (index == BLOCK_SIZE) {
+                refill();
+            }
+
+            return keys[index++];
+        }
+
+        private void refill() {
+            secureRandom.nextBytes(bytes);
+
+            for (int i = 0, j = 0; i < BLOCK_SIZE; i++, j += 4) {
+                keys[i] = ((bytes[j] & 0xff) << 24)
+                        | ((bytes[j + 1] & 0xff) << 16)
+                        | ((bytes[j + 2] & 0xff) << 8)
+                        | (bytes[j + 3] & 0xff);
+            }
+
+            index = 0;
+        }
+    }
+}
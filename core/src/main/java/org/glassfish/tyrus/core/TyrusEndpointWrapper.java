@@ -60,11 +60,14 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -102,6 +105,7 @@ import org.glassfish.tyrus.core.frame.TextFrame;
 import org.glassfish.tyrus.core.frame.TyrusFrame;
 import org.glassfish.tyrus.core.l10n.LocalizationMessages;
 import org.glassfish.tyrus.core.monitoring.EndpointEventListener;
+import org.glassfish.tyrus.spi.CompletionHandler;
 import org.glassfish.tyrus.spi.UpgradeRequest;
 import org.glassfish.tyrus.spi.UpgradeResponse;
 
@@ -120,10 +124,11 @@ public class TyrusEndpointWrapper {
     private static final Logger LOGGER = Logger.getLogger(TyrusEndpointWrapper.class.getName());
 
     /**
-     * Used as threshold for parallel broadcast. When the sessions are divided between threads, number of sessions per
-     * thread should not be lower than this constant.
+     * Used as threshold for parallel broadcast. When the sessions are divided between threads, number of sessions
+     * processed by one thread at once should not be lower than this constant.
      */
     private static final int MIN_SESSIONS_PER_THREAD = 16;
+
     /**
      * The container for this session.
      */
@@ -133,6 +138,13 @@ public class TyrusEndpointWrapper {
     private final String serverEndpointPath;
     private final List<CoderWrapper<Decoder>> decoders = new ArrayList<CoderWrapper<Decoder>>();
     private final List<CoderWrapper<Encoder>> encoders = new ArrayList<CoderWrapper<Encoder>>();
+    // decoders of text (Text, TextStream) and binary (Binary, BinaryStream) messages, in the order of registration
+    private final List<CoderWrapper<Decoder>> textDecoders = new ArrayList<CoderWrapper<Decoder>>();
+    private final List<CoderWrapper<Decoder>> binaryDecoders = new ArrayList<CoderWrapper<Decoder>>();
+    // registered handler type -> which of the text/binary decoders produce instances of that type
+    private final ConcurrentMap<Class<?>, boolean[]> textDecoderTable = new ConcurrentHashMap<Class<?>, boolean[]>();
+    private final ConcurrentMap<Class<?>, boolean[]> binaryDecoderTable =
+            new ConcurrentHashMap<Class<?>, boolean[]>();
     private final EndpointConfig configuration;
     private final Class<? extends Endpoint> endpointClass;
     private final Endpoint endpoint;
@@ -344,6 +356,17 @@ public class TyrusEndpointWrapper {
         encoders.add(new CoderWrapper<Encoder>(new NoOpByteArrayCoder(), byte[].class));
         encoders.add(new CoderWrapper<Encoder>(new ToStringEncoder(), Object.class));
 
+        for (CoderWrapper<Decoder> decoder : decoders) {
+            final Class<? extends Decoder> decoderClass = decoder.getCoderClass();
+            if (Decoder.Text.class.isAssignableFrom(decoderClass)
+                    || Decoder.TextStream.class.isAssignableFrom(decoderClass)) {
+                textDecoders.add(decoder);
+            } else if (Decoder.Binary.class.isAssignableFrom(decoderClass)
+                    || Decoder.BinaryStream.class.isAssignableFrom(decoderClass)) {
+                binaryDecoders.add(decoder);
+            }
+        }
+
         // clustered mode
         if (clusterContext != null) {
             clusterContext
@@ -423,13 +446,138 @@ public class TyrusEndpointWrapper {
         return coder;
     }
 
-    Object decodeCompleteMessage(TyrusSession session, Object message, Class<?> type,
-                                 CoderWrapper<Decoder> selectedDecoder) throws DecodeException, IOException {
+    /**
+     * Get coder instance, cached in the session.
+     * <p>
+     * Instances of coders registered as classes are created (and registered for destroy) by {@link
+     * ComponentProviderService} once per session and kept in {@link TyrusSession#getCoderInstances()} on index
+     * {@code slot}, so the subsequent lookups do not need any synchronization.
+     *
+     * @param session session.
+     * @param wrapper coder wrapper.
+     * @param slot    index of the coder in the session coder cache, see {@link #getCoderSlotCount()}.
+     * @return coder instance or {@code null} when it cannot be created.
+     */
+    private <T> Object getCoderInstance(TyrusSession session, CoderWrapper<T> wrapper, int slot) {
+        final Object coder = wrapper.getCoder();
+        if (coder != null) {
+            return coder;
+        }
+
+        final AtomicReferenceArray<Object> coderInstances = session.getCoderInstances();
+        Object coderInstance = coderInstances.get(slot);
+        if (coderInstance == null) {
+            // component provider returns the same instance for the session, so racing threads will store same value
+            coderInstance = getCoderInstance((Session) session, wrapper);
+            if (coderInstance != null) {
+                coderInstances.set(slot, coderInstance);
+            }
+        }
+
+        return coderInstance;
+    }
+
+    /**
+     * Get number of coders which can be cached per session.
+     *
+     * @return size of the session coder cache.
+     */
+    int getCoderSlotCount() {
+        return textDecoders.size() + binaryDecoders.size() + encoders.size();
+    }
+
+    private int getDecoderSlot(boolean text, int index) {
+        return text ? index : textDecoders.size() + index;
+    }
+
+    /**
+     * Get number of registered decoders of text or binary messages.
+     *
+     * @param text {@code true} for text decoders, {@code false} for binary decoders.
+     * @return number of decoders.
+     */
+    int getDecoderCount(boolean text) {
+        return text ? textDecoders.size() : binaryDecoders.size();
+    }
+
+    /**
+     * Get dispatch table row of given message handler type.
+     * <p>
+     * Item {@code i} of returned array is {@code true} when the text (or binary) decoder with index {@code i}
+     * produces instances of the handler type. Rows are computed once per handler type and shared by all sessions.
+     *
+     * @param handlerType type of the registered whole message handler.
+     * @param text        {@code true} for text decoders, {@code false} for binary decoders.
+     * @return decoders applicable to the handler type. Returned array must not be modified.
+     */
+    boolean[] getDecoderTable(Class<?> handlerType, boolean text) {
+        final ConcurrentMap<Class<?>, boolean[]> table = text ? textDecoderTable : binaryDecoderTable;
+
+        boolean[] row = table.get(handlerType);
+        if (row == null) {
+            final List<CoderWrapper<Decoder>> candidates = text ? textDecoders : binaryDecoders;
+            row = new boolean[candidates.size()];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = handlerType.isAssignableFrom(candidates.get(i).getType());
+            }
+
+            final boolean[] previous = table.putIfAbsent(handlerType, row);
+            if (previous != null) {
+                row = previous;
+            }
+        }
+
+        return row;
+    }
+
+    /**
+     * Check whether the text (or binary) decoder with given index will decode the message.
+     * <p>
+     * Stream decoders always accept the message.
+     *
+     * @param session session.
+     * @param message text ({@link String}) or binary ({@link ByteBuffer} or {@link CompositeBuffer}) message.
+     * @param text    {@code true} for text decoders, {@code false} for binary decoders.
+     * @param index   index of the decoder.
+     * @return {@code true} when the decoder is applicable.
+     */
+    boolean willDecode(TyrusSession session, Object message, boolean text, int index) {
+        final CoderWrapper<Decoder> wrapper = text ? textDecoders.get(index) : binaryDecoders.get(index);
+        final Class<? extends Decoder> decoderClass = wrapper.getCoderClass();
+
+        if (Decoder.Text.class.isAssignableFrom(decoderClass)) {
+            final Decoder.Text decoder = (Decoder.Text) getCoderInstance(session, wrapper, getDecoderSlot(text, index));
+            return decoder.willDecode((String) message);
+        } else if (Decoder.Binary.class.isAssignableFrom(decoderClass)) {
+            final Decoder.Binary decoder =
+                    (Decoder.Binary) getCoderInstance(session, wrapper, getDecoderSlot(text, index));
+            return decoder.willDecode(toByteBuffer(message));
+        }
+
+        return true;
+    }
+
+    /**
+     * Decode the message using the text (or binary) decoder with given index.
+     *
+     * @param session session.
+     * @param message text ({@link String}) or binary ({@link ByteBuffer} or {@link CompositeBuffer}) message.
+     * @param type    type of the message handler.
+     * @param text    {@code true} for text decoders, {@code false} for binary decoders.
+     * @param index   index of the decoder.
+     * @return decoded message or {@code null} when the decoder is not applicable.
+     * @throws DecodeException when the decoder fails.
+     * @throws IOException     when stream decoder fails.
+     */
+    Object decodeCompleteMessage(TyrusSession session, Object message, Class<?> type, boolean text, int index)
+            throws DecodeException, IOException {
+        final CoderWrapper<Decoder> selectedDecoder = text ? textDecoders.get(index) : binaryDecoders.get(index);
+        final int slot = getDecoderSlot(text, index);
         final Class<? extends Decoder> decoderClass = selectedDecoder.getCoderClass();
 
         if (Decoder.Text.class.isAssignableFrom(decoderClass)) {
             if (type != null && type.isAssignableFrom(selectedDecoder.getType())) {
-                final Decoder.Text decoder = (Decoder.Text) getCoderInstance(session, selectedDecoder);
+                final Decoder.Text decoder = (Decoder.Text) getCoderInstance(session, selectedDecoder, slot);
 
                 session.getDebugContext()
                        .appendLogMessage(LOGGER, Level.FINEST, DebugContext.Type.MESSAGE_IN, "Decoding with ",
@@ -440,13 +588,13 @@ public class TyrusEndpointWrapper {
             }
         } else if (Decoder.Binary.class.isAssignableFrom(decoderClass)) {
             if (type != null && type.isAssignableFrom(selectedDecoder.getType())) {
-                final Decoder.Binary decoder = (Decoder.Binary) getCoderInstance(session, selectedDecoder);
+                final Decoder.Binary decoder = (Decoder.Binary) getCoderInstance(session, selectedDecoder, slot);
 
                 session.getDebugContext()
                        .appendLogMessage(LOGGER, Level.FINEST, DebugContext.Type.MESSAGE_IN, "Decoding with ",
                                          selectedDecoder);
                 // TYRUS-210: willDecode was already called
-                return decoder.decode((ByteBuffer) message);
+                return decoder.decode(toByteBuffer(message));
             }
         } else if (Decoder.TextStream.class.isAssignableFrom(decoderClass)) {
             if (type != null && type.isAssignableFrom(selectedDecoder.getType())) {
@@ -455,63 +603,64 @@ public class TyrusEndpointWrapper {
                        .appendLogMessage(LOGGER, Level.FINEST, DebugContext.Type.MESSAGE_IN, "Decoding with ",
                                          selectedDecoder);
 
-                return ((Decoder.TextStream) getCoderInstance(session, selectedDecoder))
+                return ((Decoder.TextStream) getCoderInstance(session, selectedDecoder, slot))
                         .decode(new StringReader((String) message));
             }
         } else if (Decoder.BinaryStream.class.isAssignableFrom(decoderClass)) {
             if (type != null && type.isAssignableFrom(selectedDecoder.getType())) {
-                byte[] array = ((ByteBuffer) message).array();
-
                 session.getDebugContext()
                        .appendLogMessage(LOGGER, Level.FINEST, DebugContext.Type.MESSAGE_IN, "Decoding with ",
                                          selectedDecoder);
 
-                return ((Decoder.BinaryStream) getCoderInstance(session, selectedDecoder))
-                        .decode(new ByteArrayInputStream(array));
+                return ((Decoder.BinaryStream) getCoderInstance(session, selectedDecoder, slot))
+                        .decode(toInputStream(message));
             }
         }
 
         return null;
     }
 
-    private ArrayList<CoderWrapper<Decoder>> findApplicableDecoders(TyrusSession session, Object message,
-                                                                    boolean isString) {
-        ArrayList<CoderWrapper<Decoder>> result = new ArrayList<CoderWrapper<Decoder>>();
-
-        for (CoderWrapper<Decoder> dec : decoders) {
-            if (isString && (Decoder.Text.class.isAssignableFrom(dec.getCoderClass()))) {
-                final Decoder.Text decoder = (Decoder.Text) getCoderInstance(session, dec);
+    /**
+     * Get binary message as a single buffer, {@link CompositeBuffer} is linearized.
+     *
+     * @param message {@link ByteBuffer} or {@link CompositeBuffer}.
+     * @return message content.
+     */
+    private static ByteBuffer toByteBuffer(Object message) {
+        if (message instanceof CompositeBuffer) {
+            return ((CompositeBuffer) message).toByteBuffer();
+        }
 
-                if (decoder.willDecode((String) message)) {
-                    result.add(dec);
-                }
-            } else if (!isString && (Decoder.Binary.class.isAssignableFrom(dec.getCoderClass()))) {
-                final Decoder.Binary decoder = (Decoder.Binary) getCoderInstance(session, dec);
+        return (ByteBuffer) message;
+    }
 
-                if (decoder.willDecode((ByteBuffer) message)) {
-                    result.add(dec);
-                }
-            } else if (isString && (Decoder.TextStream.class.isAssignableFrom(dec.getCoderClass()))) {
-                result.add(dec);
-            } else if (!isString && (Decoder.BinaryStream.class.isAssignableFrom(dec.getCoderClass()))) {
-                result.add(dec);
-            }
+    /**
+     * Get binary message as a stream; neither {@link ByteBuffer} nor {@link CompositeBuffer} content is copied.
+     *
+     * @param message {@link ByteBuffer} or {@link CompositeBuffer}.
+     * @return stream of the message content.
+     */
+    private static InputStream toInputStream(Object message) {
+        if (message instanceof CompositeBuffer) {
+            return ((CompositeBuffer) message).toInputStream();
         }
 
-        session.getDebugContext()
-               .appendLogMessage(LOGGER, Level.FINEST, DebugContext.Type.MESSAGE_IN, "Applicable decoders: ", result);
-
-        return result;
+        final ByteBuffer buffer = (ByteBuffer) message;
+        return new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
     }
 
     @SuppressWarnings("unchecked")
     public Object doEncode(Session session, Object message) throws EncodeException, IOException {
-        for (CoderWrapper<Encoder> enc : encoders) {
+        final int encoderSlotOffset = textDecoders.size() + binaryDecoders.size();
+
+        for (int i = 0; i < encoders.size(); i++) {
+            final CoderWrapper<Encoder> enc = encoders.get(i);
             final Class<? extends Encoder> encoderClass = enc.getCoderClass();
+            final int slot = encoderSlotOffset + i;
 
             if (Encoder.Binary.class.isAssignableFrom(encoderClass)) {
                 if (enc.getType().isAssignableFrom(message.getClass())) {
-                    final Encoder.Binary encoder = (Encoder.Binary) getCoderInstance(session, enc);
+                    final Encoder.Binary encoder = (Encoder.Binary) getEncoderInstance(session, enc, slot);
 
                     logUsedEncoder(enc, session);
 
@@ -519,7 +668,7 @@ public class TyrusEndpointWrapper {
                 }
             } else if (Encoder.Text.class.isAssignableFrom(encoderClass)) {
                 if (enc.getType().isAssignableFrom(message.getClass())) {
-                    final Encoder.Text encoder = (Encoder.Text) getCoderInstance(session, enc);
+                    final Encoder.Text encoder = (Encoder.Text) getEncoderInstance(session, enc, slot);
 
                     logUsedEncoder(enc, session);
 
@@ -528,7 +677,7 @@ public class TyrusEndpointWrapper {
             } else if (Encoder.BinaryStream.class.isAssignableFrom(encoderClass)) {
                 if (enc.getType().isAssignableFrom(message.getClass())) {
                     final ByteArrayOutputStream stream = new ByteArrayOutputStream();
-                    final Encoder.BinaryStream encoder = (Encoder.BinaryStream) getCoderInstance(session, enc);
+                    final Encoder.BinaryStream encoder = (Encoder.BinaryStream) getEncoderInstance(session, enc, slot);
 
                     logUsedEncoder(enc, session);
 
@@ -538,7 +687,7 @@ public class TyrusEndpointWrapper {
             } else if (Encoder.TextStream.class.isAssignableFrom(encoderClass)) {
                 if (enc.getType().isAssignableFrom(message.getClass())) {
                     final Writer writer = new StringWriter();
-                    final Encoder.TextStream encoder = (Encoder.TextStream) getCoderInstance(session, enc);
+                    final Encoder.TextStream encoder = (Encoder.TextStream) getEncoderInstance(session, enc, slot);
 
                     logUsedEncoder(enc, session);
 
@@ -551,6 +700,13 @@ public class TyrusEndpointWrapper {
         throw new EncodeException(message, LocalizationMessages.ENCODING_FAILED());
     }
 
+    private Object getEncoderInstance(Session session, CoderWrapper<Encoder> wrapper, int slot) {
+        if (session instanceof TyrusSession) {
+            return getCoderInstance((TyrusSession) session, wrapper, slot);
+        }
+        return getCoderInstance(session, wrapper);
+    }
+
     private void logUsedEncoder(CoderWrapper<Encoder> encoder, Session session) {
         if (LOGGER.isLoggable(Level.FINEST)) {
             if (session instanceof TyrusSession) {
@@ -815,13 +971,13 @@ public class TyrusEndpointWrapper {
                .appendLogMessage(LOGGER, Level.FINEST, DebugContext.Type.MESSAGE_IN, "Received binary message");
 
         try {
-            session.restartIdleTimeoutExecutor();
+            session.updateLastActivity();
             final TyrusSession.State state = session.getState();
             if (state == TyrusSession.State.RECEIVING_BINARY || state == TyrusSession.State.RECEIVING_TEXT) {
                 session.setState(TyrusSession.State.RUNNING);
             }
             if (session.isWholeBinaryHandlerPresent()) {
-                session.notifyMessageHandlers(messageBytes, findApplicableDecoders(session, messageBytes, false));
+                session.notifyWholeMessageHandlers(messageBytes, false);
             } else if (session.isPartialBinaryHandlerPresent()) {
                 session.notifyMessageHandlers(messageBytes, true);
             } else {
@@ -870,13 +1026,13 @@ public class TyrusEndpointWrapper {
                .appendLogMessage(LOGGER, Level.FINEST, DebugContext.Type.MESSAGE_IN, "Received text message");
 
         try {
-            session.restartIdleTimeoutExecutor();
+            session.updateLastActivity();
             final TyrusSession.State state = session.getState();
             if (state == TyrusSession.State.RECEIVING_BINARY || state == TyrusSession.State.RECEIVING_TEXT) {
                 session.setState(TyrusSession.State.RUNNING);
             }
             if (session.isWholeTextHandlerPresent()) {
-                session.notifyMessageHandlers(messageString, findApplicableDecoders(session, messageString, true));
+                session.notifyWholeMessageHandlers(messageString, true);
             } else if (session.isPartialTextHandlerPresent()) {
                 session.notifyMessageHandlers(messageString, true);
             } else {
@@ -929,7 +1085,7 @@ public class TyrusEndpointWrapper {
                .appendLogMessage(LOGGER, Level.FINEST, DebugContext.Type.MESSAGE_IN, "Received partial text message");
 
         try {
-            session.restartIdleTimeoutExecutor();
+            session.updateLastActivity();
             final TyrusSession.State state = session.getState();
             if (session.isPartialTextHandlerPresent()) {
                 session.notifyMessageHandlers(partialString, last);
@@ -974,7 +1130,7 @@ public class TyrusEndpointWrapper {
                         session.getTextBuffer().appendMessagePart(partialString);
                         if (last) {
                             final String message = session.getTextBuffer().getBufferedContent();
-                            session.notifyMessageHandlers(message, findApplicableDecoders(session, message, true));
+                            session.notifyWholeMessageHandlers(message, true);
                             session.setState(TyrusSession.State.RUNNING);
                         }
                         break;
@@ -1032,7 +1188,7 @@ public class TyrusEndpointWrapper {
                .appendLogMessage(LOGGER, Level.FINEST, DebugContext.Type.MESSAGE_IN, "Received partial binary message");
 
         try {
-            session.restartIdleTimeoutExecutor();
+            session.updateLastActivity();
             final TyrusSession.State state = session.getState();
             if (session.isPartialBinaryHandlerPresent()) {
                 session.notifyMessageHandlers(partialBytes, last);
@@ -1076,8 +1232,8 @@ public class TyrusEndpointWrapper {
                     case RECEIVING_BINARY:
                         session.getBinaryBuffer().appendMessagePart(partialBytes);
                         if (last) {
-                            ByteBuffer bb = session.getBinaryBuffer().getBufferedContent();
-                            session.notifyMessageHandlers(bb, findApplicableDecoders(session, bb, false));
+                            final CompositeBuffer content = session.getBinaryBuffer().getBufferedContent();
+                            session.notifyWholeMessageHandlers(content, false);
                             session.setState(TyrusSession.State.RUNNING);
                         }
                         break;
@@ -1157,7 +1313,7 @@ public class TyrusEndpointWrapper {
         session.getDebugContext()
                .appendLogMessage(LOGGER, Level.FINEST, DebugContext.Type.MESSAGE_IN, "Received pong message");
 
-        session.restartIdleTimeoutExecutor();
+        session.updateLastActivity();
 
         if (session.isPongHandlerPresent()) {
             try {
@@ -1221,7 +1377,7 @@ public class TyrusEndpointWrapper {
         session.getDebugContext()
                .appendLogMessage(LOGGER, Level.FINEST, DebugContext.Type.MESSAGE_IN, "Received ping message");
 
-        session.restartIdleTimeoutExecutor();
+        session.updateLastActivity();
         try {
             session.getBasicRemote().sendPong(bytes);
         } catch (IOException e) {
@@ -1330,32 +1486,7 @@ public class TyrusEndpointWrapper {
                 return new HashMap<Session, Future<?>>();
             }
 
-            TyrusWebSocket webSocket = webSocketToSession.keySet().iterator().next();
-            final Frame dataFrame = new TextFrame(message, false, true);
-            final ByteBuffer byteBuffer = webSocket.getProtocolHandler().frame(dataFrame);
-            final byte[] frame = new byte[byteBuffer.remaining()];
-            byteBuffer.get(frame);
-            final long payloadLength = dataFrame.getPayloadLength();
-
-            SessionCallable broadcastCallable = new SessionCallable() {
-
-                @Override
-                public Future<?> call(TyrusWebSocket webSocket, TyrusSession session) {
-                    final ProtocolHandler protocolHandler = webSocket.getProtocolHandler();
-
-                    // we need to let protocol handler execute extensions if there are any
-                    if (protocolHandler.hasExtensions()) {
-                        final Frame dataFrame = new TextFrame(message, false, true);
-                        return sendBroadcast(webSocket, dataFrame, TyrusFrame.FrameType.TEXT);
-                    } else {
-                        final Future<Frame> frameFuture = webSocket.sendRawFrame(ByteBuffer.wrap(frame));
-                        webSocket.getMessageEventListener().onFrameSent(TyrusFrame.FrameType.TEXT, payloadLength);
-                        return frameFuture;
-                    }
-                }
-            };
-
-            return broadcast(broadcastCallable);
+            return broadcast(new EncodedFrameCache(new TextFrame(message, false, true), TyrusFrame.FrameType.TEXT));
         }
     }
 
@@ -1384,56 +1515,85 @@ public class TyrusEndpointWrapper {
                 return new HashMap<Session, Future<?>>();
             }
 
-            TyrusWebSocket webSocket = webSocketToSession.keySet().iterator().next();
-            final Frame dataFrame = new BinaryFrame(byteArrayMessage, false, true);
-            final ByteBuffer byteBuffer = webSocket.getProtocolHandler().frame(dataFrame);
-            final byte[] frame = new byte[byteBuffer.remaining()];
-            byteBuffer.get(frame);
-            final long payloadLength = dataFrame.getPayloadLength();
+            return broadcast(
+                    new EncodedFrameCache(new BinaryFrame(byteArrayMessage, false, true), TyrusFrame.FrameType.BINARY));
+        }
+    }
 
-            SessionCallable broadcastCallable = new SessionCallable() {
+    /**
+     * Broadcasts text message to all connected clients without waiting for the message to be passed to all sessions.
+     *
+     * @param message           message to be broadcasted.
+     * @param maxPendingBytes   sessions with more pending (not yet written) bytes are skipped. Value lower than
+     *                          {@code 1} means no limit.
+     * @param collectFutures    {@code true} if per-session send futures should be collected into the result.
+     * @param completionHandler handler notified when the broadcast is completed. Can be {@code null}.
+     * @return future completed when the message is written (or failed to be written) to all sessions. Messages send
+     * from other cluster nodes are not included.
+     */
+    Future<BroadcastResult> broadcastAsync(String message, long maxPendingBytes, boolean collectFutures,
+                                           CompletionHandler<BroadcastResult> completionHandler) {
+        if (clusterContext != null) {
+            clusterContext.broadcastText(getEndpointPath(), message);
+            return new ParallelBroadcast(null, 0, collectFutures, completionHandler).complete();
+        }
 
-                @Override
-                public Future<?> call(TyrusWebSocket webSocket, TyrusSession session) {
-                    final ProtocolHandler protocolHandler = webSocket.getProtocolHandler();
+        return broadcastAsync(new EncodedFrameCache(new TextFrame(message, false, true), TyrusFrame.FrameType.TEXT),
+                              maxPendingBytes, collectFutures, completionHandler);
+    }
 
-                    // we need to let protocol handler execute extensions if there are any
-                    if (protocolHandler.hasExtensions()) {
-                        final Frame dataFrame = new BinaryFrame(byteArrayMessage, false, true);
-                        return sendBroadcast(webSocket, dataFrame, TyrusFrame.FrameType.BINARY);
-                    } else {
-                        final Future<Frame> frameFuture = webSocket.sendRawFrame(ByteBuffer.wrap(frame));
-                        webSocket.getMessageEventListener().onFrameSent(TyrusFrame.FrameType.BINARY, payloadLength);
-                        return frameFuture;
-                    }
-                }
-            };
+    /**
+     * Broadcasts binary message to all connected clients without waiting for the message to be passed to all
+     * sessions.
+     *
+     * @param message           message to be broadcasted.
+     * @param maxPendingBytes   sessions with more pending (not yet written) bytes are skipped. Value lower than
+     *                          {@code 1} means no limit.
+     * @param collectFutures    {@code true} if per-session send futures should be collected into the result.
+     * @param completionHandler handler notified when the broadcast is completed. Can be {@code null}.
+     * @return future completed when the message is written (or failed to be written) to all sessions. Messages send
+     * from other cluster nodes are not included.
+     */
+    Future<BroadcastResult> broadcastAsync(ByteBuffer message, long maxPendingBytes, boolean collectFutures,
+                                           CompletionHandler<BroadcastResult> completionHandler) {
+        final byte[] byteArrayMessage = Utils.getRemainingArray(message);
 
-            return broadcast(broadcastCallable);
+        if (clusterContext != null) {
+            clusterContext.broadcastBinary(getEndpointPath(), byteArrayMessage);
+            return new ParallelBroadcast(null, 0, collectFutures, completionHandler).complete();
         }
+
+        return broadcastAsync(
+                new EncodedFrameCache(new BinaryFrame(byteArrayMessage, false, true), TyrusFrame.FrameType.BINARY),
+                maxPendingBytes, collectFutures, completionHandler);
     }
 
     /**
      * Perform broadcast.
      *
-     * @param broadcastCallable callable which serializes a frame to byte[] and passes it to
-     *                          {@link org.glassfish.tyrus.core.TyrusWebSocket}. The {@link
-     *                          org.glassfish.tyrus.core.TyrusEndpointWrapper.SessionCallable} also handles extensions,
-     *                          if any.
+     * @param encodedFrames frames serialized for the broadcast, shared among sessions when possible.
      * @return map of send futures.
      * @see #broadcast(java.nio.ByteBuffer)
      * @see #broadcast(java.lang.String)
      */
-    private Map<Session, Future<?>> broadcast(SessionCallable broadcastCallable) {
+    private Map<Session, Future<?>> broadcast(EncodedFrameCache encodedFrames) {
         if (parallelBroadcastEnabled) {
-            return executeInParallel(broadcastCallable);
+            final ParallelBroadcast broadcast = new ParallelBroadcast(encodedFrames, 0, true, null);
+            final BroadcastDispatcher dispatcher =
+                    new BroadcastDispatcher(broadcast, getSessionsSnapshot(), MIN_SESSIONS_PER_THREAD);
+
+            // current thread takes part in the broadcast, so it is finished even when the executor is saturated.
+            dispatch(dispatcher, dispatcher.getThreadCount() - 1);
+            dispatcher.run();
+            dispatcher.await();
+            return broadcast.result.collectedFutures();
         }
 
         Map<Session, Future<?>> futures = new HashMap<Session, Future<?>>();
 
         for (Map.Entry<TyrusWebSocket, TyrusSession> e : webSocketToSession.entrySet()) {
             if (e.getValue().isOpen()) {
-                Future<?> future = broadcastCallable.call(e.getKey(), e.getValue());
+                Future<?> future = encodedFrames.send(e.getKey(), null);
                 futures.put(e.getValue(), future);
             }
         }
@@ -1442,100 +1602,289 @@ public class TyrusEndpointWrapper {
     }
 
     /**
-     * Serialize dataframe and send it to {@link org.glassfish.tyrus.core.TyrusWebSocket}.
+     * Perform broadcast without blocking the caller.
+     * <p>
+     * Sessions are processed by the container executor; when parallel broadcast is enabled, they are split into
+     * chunks of {@link #MIN_SESSIONS_PER_THREAD} sessions, which are taken by the dispatching threads one by one, so
+     * one slow chunk does not hold the others.
      *
-     * @param webSocket {@link org.glassfish.tyrus.core.TyrusWebSocket} instance used for sending the frame.
-     * @param dataFrame frame to be sent.
-     * @param frameType type of the frame (monitoring).
-     * @return future representing outcome of the send operation.
+     * @param encodedFrames     frames serialized for the broadcast, shared among sessions when possible.
+     * @param maxPendingBytes   sessions with more pending bytes are skipped, {@code 0} or less means no limit.
+     * @param collectFutures    {@code true} if per-session send futures should be collected.
+     * @param completionHandler handler notified when the broadcast is completed. Can be {@code null}.
+     * @return aggregate broadcast future.
      */
-    private Future<?> sendBroadcast(TyrusWebSocket webSocket, Frame dataFrame, TyrusFrame.FrameType frameType) {
-        byte[] tempFrame;
-        final ByteBuffer byteBuffer = webSocket.getProtocolHandler().frame(dataFrame);
-        tempFrame = new byte[byteBuffer.remaining()];
-        byteBuffer.get(tempFrame);
-
-        final Future<Frame> frameFuture = webSocket.sendRawFrame(ByteBuffer.wrap(tempFrame));
-        webSocket.getMessageEventListener()
-                 .onFrameSent(frameType, dataFrame.getPayloadLength());
-        return frameFuture;
+    private Future<BroadcastResult> broadcastAsync(EncodedFrameCache encodedFrames, long maxPendingBytes,
+                                                   boolean collectFutures,
+                                                   CompletionHandler<BroadcastResult> completionHandler) {
+        final ParallelBroadcast broadcast =
+                new ParallelBroadcast(encodedFrames, maxPendingBytes, collectFutures, completionHandler);
+        final Map.Entry<TyrusWebSocket, TyrusSession>[] sessions = getSessionsSnapshot();
+
+        if (sessions.length == 0) {
+            return broadcast.complete();
+        }
+
+        final BroadcastDispatcher dispatcher = new BroadcastDispatcher(
+                broadcast, sessions, parallelBroadcastEnabled ? MIN_SESSIONS_PER_THREAD : sessions.length);
+
+        if (dispatch(dispatcher, dispatcher.getThreadCount()) == 0) {
+            // no executor available.
+            dispatcher.run();
+        }
+
+        return broadcast.future;
     }
 
     /**
-     * Divides open sessions into subsets on which an operation passed as {@code broadcastCallable} will be executed in
-     * parallel.
+     * Submit broadcast dispatcher to the container executor.
      *
-     * @param broadcastCallable operation to be executed on open sessions.
-     * @return futures of the operations executed on each session.
+     * @param dispatcher  dispatcher to be submitted.
+     * @param threadCount number of threads which should run the dispatcher.
+     * @return number of actually submitted tasks.
      */
-    private Map<Session, Future<?>> executeInParallel(final SessionCallable broadcastCallable) {
-        final List<Map.Entry<TyrusWebSocket, TyrusSession>> sessions =
-                new ArrayList<Map.Entry<TyrusWebSocket, TyrusSession>>();
+    private int dispatch(BroadcastDispatcher dispatcher, int threadCount) {
+        if (threadCount < 1 || !(container instanceof BaseContainer)) {
+            return 0;
+        }
 
-        for (Map.Entry<TyrusWebSocket, TyrusSession> e : webSocketToSession.entrySet()) {
-            if (e.getValue().isOpen()) {
-                sessions.add(e);
+        final ExecutorService executorService = ((BaseContainer) container).getExecutorService();
+        int submitted = 0;
+        try {
+            for (; submitted < threadCount; submitted++) {
+                executorService.execute(dispatcher);
             }
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.FINE, "Broadcast task rejected by the executor.", e);
         }
 
-        if (sessions.isEmpty()) {
-            return new HashMap<Session, Future<?>>();
+        return submitted;
+    }
+
+    /**
+     * Frames serialized during one broadcast, shared by all sessions with the same negotiated extension configuration.
+     * <p>
+     * Data frame is encoded once per distinct {@link ProtocolHandler#getEncodingKey() encoding key}, so a broadcast
+     * to sessions without extensions or with {@link org.glassfish.tyrus.core.extension.CacheableExtension cacheable
+     * extensions} costs as many encodings as there are distinct configurations, not one per session. Sessions with
+     * extensions which do not support sharing of encoded frames get their own serialized frame.
+     */
+    private static class EncodedFrameCache {
+
+        private final ConcurrentHashMap<List<Object>, byte[]> frames = new ConcurrentHashMap<List<Object>, byte[]>();
+        private final Frame dataFrame;
+        private final TyrusFrame.FrameType frameType;
+
+        private EncodedFrameCache(Frame dataFrame, TyrusFrame.FrameType frameType) {
+            this.dataFrame = dataFrame;
+            this.frameType = frameType;
         }
 
-        ExecutorService executor = ((BaseContainer) sessions.get(0).getValue().getContainer()).getExecutorService();
-        Map<Future<Map<Session, Future<?>>>, int[]> submitFutures =
-                new HashMap<Future<Map<Session, Future<?>>>, int[]>();
+        /**
+         * Serialize data frame (or reuse already serialized one) and send it to {@link
+         * org.glassfish.tyrus.core.TyrusWebSocket}.
+         *
+         * @param webSocket         {@link org.glassfish.tyrus.core.TyrusWebSocket} instance used for sending the frame.
+         * @param completionHandler completion handler notified when the frame is written. Can be {@code null}.
+         * @return future representing outcome of the send operation.
+         */
+        private Future<?> send(TyrusWebSocket webSocket, CompletionHandler<Frame> completionHandler) {
+            final ProtocolHandler protocolHandler = webSocket.getProtocolHandler();
+            final List<Object> encodingKey = protocolHandler.getEncodingKey();
+
+            byte[] frame;
+            if (encodingKey == null) {
+                // we need to let protocol handler execute extensions for every session
+                frame = encode(protocolHandler);
+            } else {
+                frame = frames.get(encodingKey);
+                if (frame == null) {
+                    frame = encode(protocolHandler);
+                    final byte[] previous = frames.putIfAbsent(encodingKey, frame);
+                    if (previous != null) {
+                        frame = previous;
+                    }
+                }
+            }
 
-        int sessionCount = sessions.size();
-        int maxThreadCount = sessionCount / MIN_SESSIONS_PER_THREAD == 0 ? 1 : sessionCount / MIN_SESSIONS_PER_THREAD;
-        int threadCount = Math.min(Runtime.getRuntime().availableProcessors(), maxThreadCount);
+            final Future<Frame> frameFuture = webSocket.sendRawFrame(ByteBuffer.wrap(frame), completionHandler);
+            webSocket.getMessageEventListener().onFrameSent(frameType, dataFrame.getPayloadLength());
+            return frameFuture;
+        }
 
-        for (int i = 0; i < threadCount; i++) {
+        private byte[] encode(ProtocolHandler protocolHandler) {
+            final ByteBuffer byteBuffer = protocolHandler.frame(dataFrame);
+            final byte[] frame = new byte[byteBuffer.remaining()];
+            byteBuffer.get(frame);
+            return frame;
+        }
+    }
 
-            final int lowerBound = (sessionCount + threadCount - 1) / threadCount * i;
-            final int upperBound = Math.min((sessionCount + threadCount - 1) / threadCount * (i + 1), sessionCount);
+    @SuppressWarnings("unchecked")
+    private Map.Entry<TyrusWebSocket, TyrusSession>[] getSessionsSnapshot() {
+        return webSocketToSession.entrySet().toArray(new Map.Entry[webSocketToSession.size()]);
+    }
 
-            Future<Map<Session, Future<?>>> submitFuture = executor.submit(new Callable<Map<Session, Future<?>>>() {
+    /**
+     * State of one broadcast shared by all threads running its {@link BroadcastDispatcher}.
+     * <p>
+     * Aggregate future is completed when all frames handed over to the sessions are written (or failed) and all
+     * sessions are processed by the dispatcher.
+     */
+    private static class ParallelBroadcast {
 
-                @Override
-                public Map<Session, Future<?>> call() throws Exception {
-                    Map<Session, Future<?>> futures = new HashMap<Session, Future<?>>();
+        private final EncodedFrameCache encodedFrames;
+        private final long maxPendingBytes;
+        private final BroadcastResult result;
+        private final CompletionHandler<BroadcastResult> completionHandler;
+        private final TyrusFuture<BroadcastResult> future = new TyrusFuture<BroadcastResult>();
 
-                    for (int j = lowerBound; j < upperBound; j++) {
-                        Map.Entry<TyrusWebSocket, TyrusSession> e = sessions.get(j);
-                        Future<?> future = broadcastCallable.call(e.getKey(), e.getValue());
-                        futures.put(e.getValue(), future);
-                    }
-                    return futures;
-                }
-            });
+        /**
+         * Number of not yet completed writes, plus one for the dispatching phase.
+         */
+        private final AtomicInteger outstanding = new AtomicInteger(1);
 
-            submitFutures.put(submitFuture, new int[]{lowerBound, upperBound});
+        private ParallelBroadcast(EncodedFrameCache encodedFrames, long maxPendingBytes, boolean collectFutures,
+                                  CompletionHandler<BroadcastResult> completionHandler) {
+            this.encodedFrames = encodedFrames;
+            this.maxPendingBytes = maxPendingBytes;
+            this.result = new BroadcastResult(collectFutures);
+            this.completionHandler = completionHandler;
         }
 
-        final Map<Session, Future<?>> futures = new HashMap<Session, Future<?>>();
+        private void send(TyrusWebSocket webSocket, final TyrusSession session) {
+            if (!session.isOpen()) {
+                return;
+            }
+
+            if (maxPendingBytes > 0 && webSocket.getProtocolHandler().getPendingBytes() > maxPendingBytes) {
+                result.skipped(session);
+                return;
+            }
+
+            outstanding.incrementAndGet();
 
-        for (Future<Map<Session, Future<?>>> submitFuture : submitFutures.keySet()) {
             try {
-                futures.putAll(submitFuture.get());
-            } catch (InterruptedException e) {
-                handleSubmitException(futures, sessions, submitFutures.get(submitFuture), e);
-            } catch (ExecutionException e) {
-                handleSubmitException(futures, sessions, submitFutures.get(submitFuture), e);
+                result.future(session, encodedFrames.send(webSocket, new CompletionHandler<Frame>() {
+                    @Override
+                    public void completed(Frame frame) {
+                        result.sent();
+                        complete();
+                    }
+
+                    @Override
+                    public void failed(Throwable throwable) {
+                        result.failed(session, throwable);
+                        complete();
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        result.failed(session, new RuntimeException(LocalizationMessages.FRAME_WRITE_CANCELLED()));
+                        complete();
+                    }
+                }));
+            } catch (Exception e) {
+                final TyrusFuture<Void> future = new TyrusFuture<Void>();
+                future.setFailure(e);
+                result.future(session, future);
+                result.failed(session, e);
+                complete();
             }
         }
 
-        return futures;
+        private Future<BroadcastResult> complete() {
+            if (outstanding.decrementAndGet() == 0) {
+                future.setResult(result);
+
+                if (completionHandler != null) {
+                    completionHandler.completed(result);
+                }
+            }
+
+            return future;
+        }
     }
 
-    private void handleSubmitException(Map<Session, Future<?>> futures,
-                                       List<Map.Entry<TyrusWebSocket, TyrusSession>> sessions,
-                                       int[] bounds, Exception e) {
+    /**
+     * Sends the broadcasted message to the sessions.
+     * <p>
+     * Sessions are divided into chunks which are claimed by the threads running this dispatcher one by one. Dispatch
+     * phase of the broadcast is completed when all chunks are processed, regardless of how many threads took part.
+     */
+    private static class BroadcastDispatcher implements Runnable {
+
+        private final ParallelBroadcast broadcast;
+        private final Map.Entry<TyrusWebSocket, TyrusSession>[] sessions;
+        private final int chunkSize;
+        private final int chunkCount;
+        private final AtomicInteger nextChunk = new AtomicInteger();
+        private final AtomicInteger remainingChunks;
+        private final CountDownLatch dispatched = new CountDownLatch(1);
+
+        private BroadcastDispatcher(ParallelBroadcast broadcast, Map.Entry<TyrusWebSocket, TyrusSession>[] sessions,
+                                    int chunkSize) {
+            this.broadcast = broadcast;
+            this.sessions = sessions;
+            this.chunkSize = Math.max(chunkSize, 1);
+            this.chunkCount = (sessions.length + this.chunkSize - 1) / this.chunkSize;
+            this.remainingChunks = new AtomicInteger(chunkCount);
+
+            if (chunkCount == 0) {
+                finish();
+            }
+        }
+
+        /**
+         * Get number of threads which can be used for processing the sessions.
+         *
+         * @return number of threads.
+         */
+        private int getThreadCount() {
+            return Math.min(Runtime.getRuntime().availableProcessors(), chunkCount);
+        }
 
-        for (int j = bounds[0]; j < bounds[1]; j++) {
-            TyrusFuture<Void> future = new TyrusFuture<Void>();
-            future.setFailure(e);
-            futures.put(sessions.get(j).getValue(), future);
+        @Override
+        public void run() {
+            int chunk;
+            while ((chunk = nextChunk.getAndIncrement()) < chunkCount) {
+                final int lowerBound = chunk * chunkSize;
+                final int upperBound = Math.min(lowerBound + chunkSize, sessions.length);
+
+                try {
+                    for (int i = lowerBound; i < upperBound; i++) {
+                        broadcast.send(sessions[i].getKey(), sessions[i].getValue());
+                    }
+                } finally {
+                    if (remainingChunks.decrementAndGet() == 0) {
+                        finish();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Wait until all sessions are processed.
+         */
+        private void await() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    dispatched.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void finish() {
+            broadcast.complete();
+            dispatched.countDown();
         }
     }
 
@@ -1900,9 +2249,4 @@ public class TyrusEndpointWrapper {
             return null;
         }
     };
-
-    private static interface SessionCallable {
-
-        Future<?> call(TyrusWebSocket tyrusWebSocket, TyrusSession session);
-    }
 }
@@ -100,9 +100,9 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
 
             final Future<?> future = webSocket.sendText(text);
             try {
-                processFuture(future);
+                processSendFuture(future);
             } finally {
-                session.restartIdleTimeoutExecutor();
+                session.updateLastActivity();
             }
         }
 
@@ -115,9 +115,9 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
 
             final Future<?> future = webSocket.sendBinary(Utils.getRemainingArray(data));
             try {
-                processFuture(future);
+                processSendFuture(future);
             } finally {
-                session.restartIdleTimeoutExecutor();
+                session.updateLastActivity();
             }
         }
 
@@ -130,9 +130,9 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
 
             final Future<?> future = webSocket.sendText(partialMessage, isLast);
             try {
-                processFuture(future);
+                processSendFuture(future);
             } finally {
-                session.restartIdleTimeoutExecutor();
+                session.updateLastActivity();
             }
         }
 
@@ -145,33 +145,24 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
 
             final Future<?> future = webSocket.sendBinary(Utils.getRemainingArray(partialByte), isLast);
             try {
-                processFuture(future);
+                processSendFuture(future);
             } finally {
-                session.restartIdleTimeoutExecutor();
+                session.updateLastActivity();
             }
         }
 
         /**
-         * Wait for the future to be completed.
+         * Wait for the send future to be completed, unless batching is allowed.
          * <p>
-         * {@link java.util.concurrent.Future#get()} will be invoked and exception processed (if thrown).
+         * When batching is allowed, message is only added to the batch and this method returns immediately; errors
+         * are reported by {@link #flushBatch()}.
          *
          * @param future to be processed.
-         * @throws IOException when {@link java.io.IOException} is the cause of thrown {@link
-         *                     java.util.concurrent.ExecutionException} it will be extracted and rethrown. Otherwise
-         *                     whole ExecutionException will be rethrown wrapped in {@link java.io.IOException}.
+         * @throws IOException see {@link TyrusRemoteEndpoint#processFuture(Future)}.
          */
-        private void processFuture(Future<?> future) throws IOException {
-            try {
-                future.get();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            } catch (ExecutionException e) {
-                if (e.getCause() instanceof IOException) {
-                    throw (IOException) e.getCause();
-                } else {
-                    throw new IOException(e.getCause());
-                }
+        private void processSendFuture(Future<?> future) throws IOException {
+            if (!getBatchingAllowed()) {
+                processFuture(future);
             }
         }
 
@@ -179,6 +170,11 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         public void sendObject(Object data) throws IOException, EncodeException {
             checkNotNull(data, "data");
             final Future<?> future = sendSyncObject(data);
+            if (getBatchingAllowed()) {
+                session.updateLastActivity();
+                return;
+            }
+
             try {
                 future.get();
             } catch (InterruptedException e) {
@@ -192,17 +188,17 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
                     throw new IOException(e.getCause());
                 }
             }
-            session.restartIdleTimeoutExecutor();
+            session.updateLastActivity();
         }
 
         @Override
         public OutputStream getSendStream() throws IOException {
-            return new OutputStreamToAsyncBinaryAdapter(webSocket);
+            return new OutputStreamToAsyncBinaryAdapter(webSocket, session.getSendStreamFragmentSize());
         }
 
         @Override
         public Writer getSendWriter() throws IOException {
-            return new WriterToAsyncTextAdapter(webSocket);
+            return new WriterToAsyncTextAdapter(webSocket, session.getSendStreamFragmentSize());
         }
     }
 
@@ -221,21 +217,21 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         public void sendText(String text, SendHandler handler) {
             checkNotNull(text, "text");
             checkNotNull(handler, "handler");
-            session.restartIdleTimeoutExecutor();
+            session.updateLastActivity();
             sendAsync(text, handler, AsyncMessageType.TEXT);
         }
 
         @Override
         public Future<Void> sendText(String text) {
             checkNotNull(text, "text");
-            session.restartIdleTimeoutExecutor();
+            session.updateLastActivity();
             return sendAsync(text, AsyncMessageType.TEXT);
         }
 
         @Override
         public Future<Void> sendBinary(ByteBuffer data) {
             checkNotNull(data, "data");
-            session.restartIdleTimeoutExecutor();
+            session.updateLastActivity();
             return sendAsync(data, AsyncMessageType.BINARY);
         }
 
@@ -243,7 +239,7 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         public void sendBinary(ByteBuffer data, SendHandler handler) {
             checkNotNull(data, "data");
             checkNotNull(handler, "handler");
-            session.restartIdleTimeoutExecutor();
+            session.updateLastActivity();
             sendAsync(data, handler, AsyncMessageType.BINARY);
         }
 
@@ -251,14 +247,14 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         public void sendObject(Object data, SendHandler handler) {
             checkNotNull(data, "data");
             checkNotNull(handler, "handler");
-            session.restartIdleTimeoutExecutor();
+            session.updateLastActivity();
             sendAsync(data, handler, AsyncMessageType.OBJECT);
         }
 
         @Override
         public Future<Void> sendObject(Object data) {
             checkNotNull(data, "data");
-            session.restartIdleTimeoutExecutor();
+            session.updateLastActivity();
             return sendAsync(data, AsyncMessageType.OBJECT);
         }
 
@@ -457,7 +453,7 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         if (applicationData != null && applicationData.remaining() > 125) {
             throw new IllegalArgumentException(LocalizationMessages.APPLICATION_DATA_TOO_LONG("Ping"));
         }
-        session.restartIdleTimeoutExecutor();
+        session.updateLastActivity();
         webSocket.sendPing(Utils.getRemainingArray(applicationData));
     }
 
@@ -466,28 +462,69 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         if (applicationData != null && applicationData.remaining() > 125) {
             throw new IllegalArgumentException(LocalizationMessages.APPLICATION_DATA_TOO_LONG("Pong"));
         }
-        session.restartIdleTimeoutExecutor();
+        session.updateLastActivity();
         webSocket.sendPong(Utils.getRemainingArray(applicationData));
     }
 
+    /**
+     * Send heartbeat (unsolicited pong without payload). Does not wait for the result.
+     */
+    void sendHeartbeat() {
+        session.updateLastActivity();
+        webSocket.sendHeartbeat();
+    }
+
     @Override
     public String toString() {
         return "Wrapped: " + getClass().getSimpleName();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Batching is shared by {@link javax.websocket.RemoteEndpoint.Basic} and {@link
+     * javax.websocket.RemoteEndpoint.Async} of the same session. Batched messages are written when the batch reaches
+     * {@link TyrusSession#getMaxBatchSize()}, when {@link TyrusSession#getMaxBatchDelay()} elapses, when a control
+     * frame is sent or when {@link #flushBatch()} is called. Blocking send methods return as soon as the message is
+     * added to the batch.
+     */
     @Override
-    public void setBatchingAllowed(boolean allowed) {
-        // TODO: Implement.
+    public void setBatchingAllowed(boolean allowed) throws IOException {
+        webSocket.getProtocolHandler().setBatchingAllowed(allowed);
     }
 
     @Override
     public boolean getBatchingAllowed() {
-        return false;  // TODO: Implement.
+        return webSocket.getProtocolHandler().isBatchingAllowed();
     }
 
     @Override
-    public void flushBatch() {
-        // TODO: Implement.
+    public void flushBatch() throws IOException {
+        processFuture(webSocket.getProtocolHandler().flushBatch());
+    }
+
+    /**
+     * Wait for the future to be completed.
+     * <p>
+     * {@link java.util.concurrent.Future#get()} will be invoked and exception processed (if thrown).
+     *
+     * @param future to be processed.
+     * @throws IOException when {@link java.io.IOException} is the cause of thrown {@link
+     *                     java.util.concurrent.ExecutionException} it will be extracted and rethrown. Otherwise
+     *                     whole ExecutionException will be rethrown wrapped in {@link java.io.IOException}.
+     */
+    static void processFuture(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else {
+                throw new IOException(e.getCause());
+            }
+        }
     }
 
     public void close(CloseReason cr) {
@@ -54,15 +54,14 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.websocket.CloseReason;
 import javax.websocket.DecodeException;
-import javax.websocket.Decoder;
 import javax.websocket.Extension;
 import javax.websocket.MessageHandler;
 import javax.websocket.PongMessage;
@@ -73,8 +72,8 @@ import org.glassfish.tyrus.core.cluster.ClusterContext;
 import org.glassfish.tyrus.core.cluster.DistributedSession;
 import org.glassfish.tyrus.core.cluster.RemoteSession;
 import org.glassfish.tyrus.core.cluster.SessionEventListener;
-import org.glassfish.tyrus.core.coder.CoderWrapper;
 import org.glassfish.tyrus.core.l10n.LocalizationMessages;
+import org.glassfish.tyrus.spi.CompletionHandler;
 
 /**
  * Implementation of the {@link Session}.
@@ -103,6 +102,9 @@ public class TyrusSession implements Session, DistributedSession {
     private final String connectionId;
     private final Map<String, Object> userProperties;
     private final MessageHandlerManager handlerManager;
+    private final AtomicReferenceArray<Object> coderInstances;
+    // rebuilt after message handlers are changed
+    private volatile DispatchTable dispatchTable;
     private final AtomicReference<State> state = new AtomicReference<State>(State.RUNNING);
     private final TextBuffer textBuffer = new TextBuffer();
     private final BinaryBuffer binaryBuffer = new BinaryBuffer();
@@ -115,14 +117,17 @@ public class TyrusSession implements Session, DistributedSession {
     private final Map<String, Object> distributedUserProperties;
 
     private volatile long maxIdleTimeout = 0;
-    private volatile ScheduledFuture<?> idleTimeoutFuture = null;
+    private volatile long lastActivity = System.nanoTime();
+    private volatile SessionTimer.Timeout idleTimeout = null;
     private int maxBinaryMessageBufferSize = Integer.MAX_VALUE;
     private int maxTextMessageBufferSize = Integer.MAX_VALUE;
-    private ScheduledExecutorService service;
+    private SessionTimer timer;
     private ReaderBuffer readerBuffer;
     private InputStreamBuffer inputStreamBuffer;
     private volatile long heartbeatInterval;
-    private volatile ScheduledFuture<?> heartbeatTask;
+    private volatile HeartbeatScheduler.Bucket heartbeatBucket;
+    private volatile long maxBatchDelay = 0;
+    private volatile int sendStreamFragmentSize = 8192;
 
     TyrusSession(WebSocketContainer container, TyrusWebSocket socket, TyrusEndpointWrapper endpointWrapper,
                  String subprotocol, List<Extension> extensions, boolean isSecure,
@@ -142,6 +147,7 @@ public class TyrusSession implements Session, DistributedSession {
         this.basicRemote = new TyrusRemoteEndpoint.Basic(this, socket, endpointWrapper);
         this.asyncRemote = new TyrusRemoteEndpoint.Async(this, socket, endpointWrapper);
         this.handlerManager = MessageHandlerManager.fromDecoderInstances(endpointWrapper.getDecoders());
+        this.coderInstances = new AtomicReferenceArray<Object>(endpointWrapper.getCoderSlotCount());
         this.userPrincipal = principal;
         this.requestParameterMap = requestParameterMap == null ? Collections.<String, List<String>>emptyMap()
                 : Collections.unmodifiableMap(new HashMap<String, List<String>>(requestParameterMap));
@@ -152,7 +158,9 @@ public class TyrusSession implements Session, DistributedSession {
         if (container != null) {
             maxTextMessageBufferSize = container.getDefaultMaxTextMessageBufferSize();
             maxBinaryMessageBufferSize = container.getDefaultMaxBinaryMessageBufferSize();
-            service = ((ExecutorServiceProvider) container).getScheduledExecutorService();
+            final ScheduledExecutorService service =
+                    ((ExecutorServiceProvider) container).getScheduledExecutorService();
+            timer = service == null ? null : SessionTimer.get(service);
             setMaxIdleTimeout(container.getDefaultMaxSessionIdleTimeout());
         }
 
@@ -313,7 +321,8 @@ public class TyrusSession implements Session, DistributedSession {
     public void setMaxIdleTimeout(long maxIdleTimeout) {
         checkConnectionState(State.CLOSED);
         this.maxIdleTimeout = maxIdleTimeout;
-        restartIdleTimeoutExecutor();
+        updateLastActivity();
+        scheduleIdleTimeout();
         if (distributedPropertyMap != null) {
             distributedPropertyMap.put(RemoteSession.DistributedMapKey.MAX_IDLE_TIMEOUT, maxIdleTimeout);
         }
@@ -340,6 +349,7 @@ public class TyrusSession implements Session, DistributedSession {
         checkConnectionState(State.CLOSED);
         synchronized (handlerManager) {
             handlerManager.addMessageHandler(handler);
+            dispatchTable = null;
         }
     }
 
@@ -364,6 +374,7 @@ public class TyrusSession implements Session, DistributedSession {
         checkConnectionState(State.CLOSED);
         synchronized (handlerManager) {
             handlerManager.addMessageHandler(clazz, handler);
+            dispatchTable = null;
         }
     }
 
@@ -388,6 +399,7 @@ public class TyrusSession implements Session, DistributedSession {
         checkConnectionState(State.CLOSED);
         synchronized (handlerManager) {
             handlerManager.addMessageHandler(clazz, handler);
+            dispatchTable = null;
         }
     }
 
@@ -403,6 +415,7 @@ public class TyrusSession implements Session, DistributedSession {
         checkConnectionState(State.CLOSED);
         synchronized (handlerManager) {
             handlerManager.removeMessageHandler(handler);
+            dispatchTable = null;
         }
     }
 
@@ -474,6 +487,75 @@ public class TyrusSession implements Session, DistributedSession {
         return endpointWrapper.broadcast(message);
     }
 
+    /**
+     * Broadcasts text message to all connected clients without blocking the caller.
+     * <p>
+     * Same as {@code broadcastAsync(message, 0, false, null)}.
+     *
+     * @param message message to be broadcasted.
+     * @return future completed when the message is written to all local sessions.
+     * @see #broadcastAsync(String, long, boolean, CompletionHandler)
+     */
+    public Future<BroadcastResult> broadcastAsync(String message) {
+        return endpointWrapper.broadcastAsync(message, 0, false, null);
+    }
+
+    /**
+     * Broadcasts text message to all connected clients without blocking the caller.
+     * <p>
+     * Message is serialized and passed to the sessions by the container executor. If
+     * {@link org.glassfish.tyrus.core.TyrusWebSocketEngine#PARALLEL_BROADCAST_ENABLED} is set to {@code true}, sessions
+     * are processed in parallel.
+     * <p>
+     * Sessions which have more than {@code maxPendingBytes} of not yet written data (slow consumers) are skipped and
+     * reported in {@link BroadcastResult#getSkippedSessions()}.
+     *
+     * @param message           message to be broadcasted.
+     * @param maxPendingBytes   maximal number of pending bytes of a session the message will be still sent to. Value
+     *                          lower than {@code 1} means no limit.
+     * @param collectFutures    {@code true} if per-session send futures should be available in {@link
+     *                          BroadcastResult#getFutures()}.
+     * @param completionHandler handler notified when the message is written to all local sessions. Can be {@code
+     *                          null}.
+     * @return future completed when the message is written (or failed to be written) to all local sessions.
+     */
+    public Future<BroadcastResult> broadcastAsync(String message, long maxPendingBytes, boolean collectFutures,
+                                                  CompletionHandler<BroadcastResult> completionHandler) {
+        return endpointWrapper.broadcastAsync(message, maxPendingBytes, collectFutures, completionHandler);
+    }
+
+    /**
+     * Broadcasts binary message to all connected clients without blocking the caller.
+     * <p>
+     * Same as {@code broadcastAsync(message, 0, false, null)}.
+     *
+     * @param message message to be broadcasted.
+     * @return future completed when the message is written to all local sessions.
+     * @see #broadcastAsync(ByteBuffer, long, boolean, CompletionHandler)
+     */
+    public Future<BroadcastResult> broadcastAsync(ByteBuffer message) {
+        return endpointWrapper.broadcastAsync(message, 0, false, null);
+    }
+
+    /**
+     * Broadcasts binary message to all connected clients without blocking the caller.
+     * <p>
+     * See {@link #broadcastAsync(String, long, boolean, CompletionHandler)}.
+     *
+     * @param message           message to be broadcasted.
+     * @param maxPendingBytes   maximal number of pending bytes of a session the message will be still sent to. Value
+     *                          lower than {@code 1} means no limit.
+     * @param collectFutures    {@code true} if per-session send futures should be available in {@link
+     *                          BroadcastResult#getFutures()}.
+     * @param completionHandler handler notified when the message is written to all local sessions. Can be {@code
+     *                          null}.
+     * @return future completed when the message is written (or failed to be written) to all local sessions.
+     */
+    public Future<BroadcastResult> broadcastAsync(ByteBuffer message, long maxPendingBytes, boolean collectFutures,
+                                                  CompletionHandler<BroadcastResult> completionHandler) {
+        return endpointWrapper.broadcastAsync(message, maxPendingBytes, collectFutures, completionHandler);
+    }
+
     /**
      * Return an interval in milliseconds between scheduled periodic Pong messages.
      * A negative value or 0 means that sending of periodic Pong messages is not turned on.
@@ -495,31 +577,145 @@ public class TyrusSession implements Session, DistributedSession {
         this.heartbeatInterval = heartbeatInterval;
         cancelHeartBeatTask();
 
-        if (heartbeatInterval < 1) {
+        if (heartbeatInterval < 1 || timer == null) {
             return;
         }
 
-        heartbeatTask = service.scheduleAtFixedRate(new HeartbeatCommand(), heartbeatInterval, heartbeatInterval,
-                                                    TimeUnit.MILLISECONDS);
+        heartbeatBucket = timer.getHeartbeatScheduler().register(this, heartbeatInterval);
     }
 
-    void restartIdleTimeoutExecutor() {
-        if (this.maxIdleTimeout < 1) {
-            synchronized (idleTimeoutLock) {
-                if (idleTimeoutFuture != null) {
-                    idleTimeoutFuture.cancel(true);
+    /**
+     * Send heartbeat (unsolicited pong without payload).
+     */
+    void sendHeartbeat() {
+        basicRemote.sendHeartbeat();
+    }
+
+    /**
+     * Get size of the batch in bytes. When batching is allowed (see {@link
+     * javax.websocket.RemoteEndpoint#setBatchingAllowed(boolean)}) and batched messages reach this size, they are
+     * written.
+     *
+     * @return maximal batch size in bytes.
+     */
+    public int getMaxBatchSize() {
+        return basicRemote.webSocket.getProtocolHandler().getMaxBatchSize();
+    }
+
+    /**
+     * Set size of the batch in bytes. When batching is allowed (see {@link
+     * javax.websocket.RemoteEndpoint#setBatchingAllowed(boolean)}) and batched messages reach this size, they are
+     * written. Default value is {@code 8192}.
+     *
+     * @param maxBatchSize maximal batch size in bytes.
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException(LocalizationMessages.BATCH_SIZE_INVALID(maxBatchSize));
+        }
+
+        basicRemote.webSocket.getProtocolHandler().setMaxBatchSize(maxBatchSize);
+    }
+
+    /**
+     * Get maximal time in milliseconds for which a message can stay in the batch before it is written.
+     *
+     * @return maximal batch delay in milliseconds. {@code 0} or negative value means that batched messages are
+     * written only when the batch is full or flushed explicitly.
+     */
+    public long getMaxBatchDelay() {
+        return maxBatchDelay;
+    }
+
+    /**
+     * Set maximal time in milliseconds for which a message can stay in the batch before it is written.
+     * <p>
+     * The delay is measured from the moment the first message is added to an empty batch and its precision is limited
+     * by the resolution of the session timer (tens of milliseconds). Setting the delay to {@code 0} or negative value
+     * means that batched messages are written only when the batch is full or flushed explicitly.
+     *
+     * @param maxBatchDelay maximal batch delay in milliseconds.
+     */
+    public void setMaxBatchDelay(long maxBatchDelay) {
+        this.maxBatchDelay = maxBatchDelay;
+
+        final ProtocolHandler protocolHandler = basicRemote.webSocket.getProtocolHandler();
+        if (maxBatchDelay < 1 || timer == null) {
+            protocolHandler.setBatchListener(null);
+            return;
+        }
+
+        protocolHandler.setBatchListener(new ProtocolHandler.BatchListener() {
+
+            // flush scheduled for the current batch, accessed with the batch lock held.
+            private BatchFlush batchFlush = null;
+
+            @Override
+            public void batchStarted(long batchNumber) {
+                batchFlush = new BatchFlush(batchNumber);
+                timer.schedule(batchFlush, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(
+                        TyrusSession.this.maxBatchDelay));
+            }
+
+            @Override
+            public void batchFlushed() {
+                if (batchFlush != null) {
+                    batchFlush.cancel();
+                    batchFlush = null;
                 }
-                return;
             }
+        });
+    }
+
+    /**
+     * Get maximal size of message fragments sent by {@link javax.websocket.RemoteEndpoint.Basic#getSendStream()} and
+     * {@link javax.websocket.RemoteEndpoint.Basic#getSendWriter()}.
+     *
+     * @return maximal fragment size in bytes (binary messages) or characters (text messages).
+     */
+    public int getSendStreamFragmentSize() {
+        return sendStreamFragmentSize;
+    }
+
+    /**
+     * Set maximal size of message fragments sent by {@link javax.websocket.RemoteEndpoint.Basic#getSendStream()} and
+     * {@link javax.websocket.RemoteEndpoint.Basic#getSendWriter()}.
+     * <p>
+     * Written data are buffered and sent as a fragment when the fragment size is reached (or when the stream is
+     * flushed or closed). Default value is {@code 8192}. The value is used by streams obtained after it is set.
+     *
+     * @param sendStreamFragmentSize maximal fragment size in bytes (binary messages) or characters (text messages).
+     */
+    public void setSendStreamFragmentSize(int sendStreamFragmentSize) {
+        if (sendStreamFragmentSize < 1) {
+            throw new IllegalArgumentException(LocalizationMessages.FRAGMENT_SIZE_INVALID(sendStreamFragmentSize));
         }
 
+        this.sendStreamFragmentSize = sendStreamFragmentSize;
+    }
+
+    /**
+     * Record activity (sent or received message) on this session, which postpones the idle timeout.
+     * <p>
+     * Only the timestamp is updated, idle timeout is checked lazily by {@link SessionTimer}.
+     */
+    void updateLastActivity() {
+        lastActivity = System.nanoTime();
+    }
+
+    private void scheduleIdleTimeout() {
         synchronized (idleTimeoutLock) {
-            if (idleTimeoutFuture != null) {
-                idleTimeoutFuture.cancel(false);
+            if (idleTimeout != null) {
+                idleTimeout.cancel();
+                idleTimeout = null;
+            }
+
+            if (maxIdleTimeout < 1 || timer == null) {
+                return;
             }
 
-            idleTimeoutFuture =
-                    service.schedule(new IdleTimeoutCommand(), this.getMaxIdleTimeout(), TimeUnit.MILLISECONDS);
+            idleTimeout = new IdleTimeout();
+            timer.schedule(idleTimeout, lastActivity + TimeUnit.MILLISECONDS.toNanos(maxIdleTimeout));
         }
     }
 
@@ -536,6 +732,7 @@ public class TyrusSession implements Session, DistributedSession {
         if (maxMessageSize != -1) {
             final long messageSize =
                     (message instanceof String ? ((String) message).getBytes(Charset.defaultCharset()).length
+                            : message instanceof CompositeBuffer ? ((CompositeBuffer) message).remaining()
                             : ((ByteBuffer) message).remaining());
 
             if (messageSize > maxMessageSize) {
@@ -544,46 +741,73 @@ public class TyrusSession implements Session, DistributedSession {
         }
     }
 
-    void notifyMessageHandlers(Object message, List<CoderWrapper<Decoder>> availableDecoders) throws DecodeException,
-            IOException {
-        boolean decoded = false;
-
-        if (availableDecoders.isEmpty()) {
-            LOGGER.warning(LocalizationMessages.NO_DECODER_FOUND());
-        }
-
-        List<Map.Entry<Class<?>, MessageHandler>> orderedMessageHandlers;
-        synchronized (handlerManager) {
-            orderedMessageHandlers = handlerManager.getOrderedWholeMessageHandlers();
-        }
+    /**
+     * Decode whole message and pass it to the registered whole message handler.
+     * <p>
+     * Decoders are tried in the order of registration, each one only with the handlers which accept the type it
+     * produces (see {@link DispatchTable}). Message is passed to the first handler for which a decoder returns
+     * non-{@code null} value.
+     *
+     * @param message text ({@link String}) or binary ({@link ByteBuffer} or {@link CompositeBuffer}) message.
+     * @param text    {@code true} when the message is a text message.
+     * @throws DecodeException when the decoder fails.
+     * @throws IOException     when stream decoder fails.
+     */
+    void notifyWholeMessageHandlers(Object message, boolean text) throws DecodeException, IOException {
+        final DispatchTable table = getDispatchTable();
+        final int[][] dispatch = text ? table.text : table.binary;
+        boolean decoderFound = false;
+
+        for (int i = 0; i < dispatch.length; i++) {
+            final int[] handlers = dispatch[i];
+            if (handlers.length == 0 || !endpointWrapper.willDecode(this, message, text, i)) {
+                continue;
+            }
 
-        for (CoderWrapper<Decoder> decoder : availableDecoders) {
-            for (Map.Entry<Class<?>, MessageHandler> entry : orderedMessageHandlers) {
-                MessageHandler mh = entry.getValue();
+            decoderFound = true;
 
-                Class<?> type = entry.getKey();
-                if (type.isAssignableFrom(decoder.getType())) {
+            for (int handler : handlers) {
+                final MessageHandler mh = table.handlers[handler];
 
-                    if (mh instanceof BasicMessageHandler) {
-                        checkMessageSize(message, ((BasicMessageHandler) mh).getMaxMessageSize());
-                    }
+                if (mh instanceof BasicMessageHandler) {
+                    checkMessageSize(message, ((BasicMessageHandler) mh).getMaxMessageSize());
+                }
 
-                    Object object = endpointWrapper.decodeCompleteMessage(this, message, type, decoder);
-                    if (object != null) {
-                        final State currentState = state.get();
-                        if (currentState != State.CLOSED) {
-                            //noinspection unchecked
-                            ((MessageHandler.Whole) mh).onMessage(object);
-                        }
-                        decoded = true;
-                        break;
+                Object object = endpointWrapper.decodeCompleteMessage(this, message, table.types[handler], text, i);
+                if (object != null) {
+                    final State currentState = state.get();
+                    if (currentState != State.CLOSED) {
+                        //noinspection unchecked
+                        ((MessageHandler.Whole) mh).onMessage(object);
                     }
+                    return;
                 }
             }
-            if (decoded) {
-                break;
+        }
+
+        if (!decoderFound) {
+            LOGGER.warning(LocalizationMessages.NO_DECODER_FOUND());
+        }
+    }
+
+    private DispatchTable getDispatchTable() {
+        DispatchTable table = dispatchTable;
+        if (table == null) {
+            synchronized (handlerManager) {
+                table = new DispatchTable(handlerManager.getOrderedWholeMessageHandlers(), endpointWrapper);
+                dispatchTable = table;
             }
         }
+        return table;
+    }
+
+    /**
+     * Coder instances used by this session, see {@link TyrusEndpointWrapper#getCoderSlotCount()}.
+     *
+     * @return coder instances.
+     */
+    AtomicReferenceArray<Object> getCoderInstances() {
+        return coderInstances;
     }
 
     <T> MessageHandler.Whole<T> getMessageHandler(Class<T> c) {
@@ -738,8 +962,18 @@ public class TyrusSession implements Session, DistributedSession {
     }
 
     private void cancelHeartBeatTask() {
-        if (heartbeatTask != null && !heartbeatTask.isCancelled()) {
-            heartbeatTask.cancel(true);
+        if (heartbeatBucket != null) {
+            timer.getHeartbeatScheduler().unregister(this, heartbeatBucket);
+            heartbeatBucket = null;
+        }
+    }
+
+    private void cancelIdleTimeout() {
+        synchronized (idleTimeoutLock) {
+            if (idleTimeout != null) {
+                idleTimeout.cancel();
+                idleTimeout = null;
+            }
         }
     }
 
@@ -753,6 +987,10 @@ public class TyrusSession implements Session, DistributedSession {
         }
 
         cancelHeartBeatTask();
+        cancelIdleTimeout();
+
+        // messages which are still batched won't be written, but their handlers have to be notified.
+        basicRemote.webSocket.getProtocolHandler().flushBatch();
     }
 
     /**
@@ -791,6 +1029,59 @@ public class TyrusSession implements Session, DistributedSession {
         CLOSED
     }
 
+    /**
+     * Whole message handlers of the session combined with the endpoint decoder tables.
+     * <p>
+     * {@code text[i]} (or {@code binary[i]}) contains indexes of the handlers (in the handler precedence order), which
+     * accept the type produced by the text (or binary) decoder with index {@code i}.
+     */
+    private static class DispatchTable {
+
+        private final MessageHandler[] handlers;
+        private final Class<?>[] types;
+        private final int[][] text;
+        private final int[][] binary;
+
+        DispatchTable(List<Map.Entry<Class<?>, MessageHandler>> orderedMessageHandlers,
+                      TyrusEndpointWrapper endpointWrapper) {
+            handlers = new MessageHandler[orderedMessageHandlers.size()];
+            types = new Class<?>[orderedMessageHandlers.size()];
+            for (int i = 0; i < handlers.length; i++) {
+                types[i] = orderedMessageHandlers.get(i).getKey();
+                handlers[i] = orderedMessageHandlers.get(i).getValue();
+            }
+
+            text = build(endpointWrapper, true);
+            binary = build(endpointWrapper, false);
+        }
+
+        private int[][] build(TyrusEndpointWrapper endpointWrapper, boolean text) {
+            final boolean[][] rows = new boolean[types.length][];
+            for (int i = 0; i < types.length; i++) {
+                rows[i] = endpointWrapper.getDecoderTable(types[i], text);
+            }
+
+            final int[][] dispatch = new int[endpointWrapper.getDecoderCount(text)][];
+            for (int decoder = 0; decoder < dispatch.length; decoder++) {
+                int count = 0;
+                for (boolean[] row : rows) {
+                    if (row[decoder]) {
+                        count++;
+                    }
+                }
+
+                dispatch[decoder] = new int[count];
+                count = 0;
+                for (int handler = 0; handler < rows.length; handler++) {
+                    if (rows[handler][decoder]) {
+                        dispatch[decoder][count++] = handler;
+                    }
+                }
+            }
+            return dispatch;
+        }
+    }
+
     private class IdleTimeoutCommand implements Runnable {
 
         @Override
@@ -809,20 +1100,44 @@ public class TyrusSession implements Session, DistributedSession {
         }
     }
 
-    private class HeartbeatCommand implements Runnable {
+    private class BatchFlush extends SessionTimer.Timeout implements Runnable {
+
+        private final long batchNumber;
+
+        private BatchFlush(long batchNumber) {
+            this.batchNumber = batchNumber;
+        }
+
+        @Override
+        long expire(long now) {
+            timer.execute(this);
+            return -1;
+        }
 
         @Override
         public void run() {
-            TyrusSession session = TyrusSession.this;
-            if (session.isOpen() && session.getHeartbeatInterval() > 0) {
-                try {
-                    session.getBasicRemote().sendPong(null);
-                } catch (IOException e) {
-                    LOGGER.log(Level.FINE, "Pong could not have been sent " + e.getMessage());
-                }
-            } else {
-                cancelHeartBeatTask();
+            // batch could have been written (and another one started) in the meantime.
+            basicRemote.webSocket.getProtocolHandler().flushBatch(batchNumber);
+        }
+    }
+
+    private class IdleTimeout extends SessionTimer.Timeout {
+
+        @Override
+        long expire(long now) {
+            if (!isOpen()) {
+                return -1;
             }
+
+            // activity postpones the deadline, reschedule instead of closing the session.
+            final long deadline = lastActivity + TimeUnit.MILLISECONDS.toNanos(maxIdleTimeout);
+            if (deadline - now > 0) {
+                return deadline;
+            }
+
+            timer.execute(new IdleTimeoutCommand());
+            return -1;
         }
     }
+
 }
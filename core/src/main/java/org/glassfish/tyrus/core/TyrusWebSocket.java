@@ -62,6 +62,7 @@ import org.glassfish.tyrus.core.frame.TextFrame;
 import org.glassfish.tyrus.core.frame.TyrusFrame;
 import org.glassfish.tyrus.core.l10n.LocalizationMessages;
 import org.glassfish.tyrus.core.monitoring.MessageEventListener;
+import org.glassfish.tyrus.spi.CompletionHandler;
 import org.glassfish.tyrus.spi.UpgradeRequest;
 
 /**
@@ -329,6 +330,18 @@ public class TyrusWebSocket {
         return protocolHandler.sendRawFrame(data);
     }
 
+    /**
+     * Send a frame to the remote endpoint.
+     *
+     * @param data              complete data frame.
+     * @param completionHandler completion handler notified when the frame is written. Can be {@code null}.
+     * @return {@link Future} which could be used to control/check the sending completion state.
+     */
+    Future<Frame> sendRawFrame(ByteBuffer data, CompletionHandler<Frame> completionHandler) {
+        checkConnectedState();
+        return protocolHandler.sendRawFrame(data, completionHandler);
+    }
+
     /**
      * Sends a <code>ping</code> frame with the specified payload (if any).
      *
@@ -355,6 +368,16 @@ public class TyrusWebSocket {
         return send(new PongFrame(data));
     }
 
+    /**
+     * Sends a <code>pong</code> frame without payload, used as a heartbeat.
+     *
+     * @return {@link Future} which could be used to control/check the sending completion state.
+     * @see #sendPong(byte[])
+     */
+    Future<Frame> sendHeartbeat() {
+        return protocolHandler.sendHeartbeat();
+    }
+
     // return boolean, check return value
     private void awaitOnConnect() {
         try {
@@ -68,6 +68,7 @@ import org.glassfish.tyrus.core.l10n.LocalizationMessages;
 import org.glassfish.tyrus.core.monitoring.ApplicationEventListener;
 import org.glassfish.tyrus.core.monitoring.EndpointEventListener;
 import org.glassfish.tyrus.core.monitoring.MessageEventListener;
+import org.glassfish.tyrus.core.uri.EndpointPathTrie;
 import org.glassfish.tyrus.core.uri.Match;
 import org.glassfish.tyrus.core.wsadl.model.Application;
 import org.glassfish.tyrus.spi.Connection;
@@ -164,7 +165,16 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
      */
     public static final String PARALLEL_BROADCAST_ENABLED = "org.glassfish.tyrus.server.parallelBroadcastEnabled";
 
-    private static final int BUFFER_STEP_SIZE = 256;
+    /**
+     * Pool of buffers used for holding incomplete incoming frames.
+     * <p>
+     * The value must be instance of {@link org.glassfish.tyrus.core.ByteBufferPool}. Pool can be shared among multiple
+     * engines (and clients).
+     * <p>
+     * Default value is {@link ByteBufferPool#getDefault()} (heap buffers).
+     */
+    public static final String BUFFER_POOL = "org.glassfish.tyrus.bufferPool";
+
     private static final Logger LOGGER = Logger.getLogger(TyrusWebSocketEngine.class.getName());
 
     private static final UpgradeInfo NOT_APPLICABLE_UPGRADE_INFO =
@@ -177,10 +187,12 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
 
     private final Set<TyrusEndpointWrapper> endpointWrappers =
             Collections.newSetFromMap(new ConcurrentHashMap<TyrusEndpointWrapper, Boolean>());
+    private final EndpointPathTrie endpointPathTrie = new EndpointPathTrie();
     private final ComponentProviderService componentProviderService = ComponentProviderService.create();
     private final WebSocketContainer webSocketContainer;
 
     private int incomingBufferSize = 4194315; // 4M (payload) + 11 (frame overhead)
+    private final ByteBufferPool bufferPool;
 
     private final ClusterContext clusterContext;
     private final ApplicationEventListener applicationEventListener;
@@ -217,15 +229,18 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
      * @param tracingType              type of tracing.
      * @param tracingThreshold         tracing threshold.
      * @param parallelBroadcastEnabled {@code true} if parallel broadcast should be enabled, {@code true} is default.
+     * @param bufferPool               pool of buffers for incomplete incoming frames. If {@code null}, default pool
+     *                                 will be used.
      */
     private TyrusWebSocketEngine(WebSocketContainer webSocketContainer, Integer incomingBufferSize,
                                  ClusterContext clusterContext, ApplicationEventListener applicationEventListener,
                                  final Integer maxSessionsPerApp, final Integer maxSessionsPerRemoteAddr,
                                  DebugContext.TracingType tracingType, DebugContext.TracingThreshold tracingThreshold,
-                                 Boolean parallelBroadcastEnabled) {
+                                 Boolean parallelBroadcastEnabled, ByteBufferPool bufferPool) {
         if (incomingBufferSize != null) {
             this.incomingBufferSize = incomingBufferSize;
         }
+        this.bufferPool = bufferPool == null ? ByteBufferPool.getDefault() : bufferPool;
         this.webSocketContainer = webSocketContainer;
         this.clusterContext = clusterContext;
         this.parallelBroadcastEnabled = parallelBroadcastEnabled;
@@ -330,7 +345,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
 
         final String requestPath = request.getRequestUri();
 
-        for (Match m : Match.getAllMatches(requestPath, endpointWrappers, debugContext)) {
+        for (Match m : endpointPathTrie.getAllMatches(requestPath, debugContext)) {
             final TyrusEndpointWrapper endpointWrapper = m.getEndpointWrapper();
 
             for (Map.Entry<String, String> parameter : m.getParameters().entrySet()) {
@@ -424,8 +439,8 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
             }
 
             response.getHeaders().putAll(debugContext.getTracingHeaders());
-            return new SuccessfulUpgradeInfo(endpointWrapper, protocolHandler, incomingBufferSize, request, response,
-                                             extensionContext, debugContext);
+            return new SuccessfulUpgradeInfo(endpointWrapper, protocolHandler, incomingBufferSize, bufferPool, request,
+                                             response, extensionContext, debugContext);
         }
 
         response.setStatus(500);
@@ -472,7 +487,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
                 && upgradeRequest.getHeader(UpgradeRequest.ENABLE_TRACING_HEADER) != null) {
             debugContext = new DebugContext(threshold);
         } else {
-            debugContext = new DebugContext();
+            debugContext = DebugContext.create();
         }
 
         if (thresholdHeaderParsingError != null) {
@@ -497,20 +512,19 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
         private final ProtocolHandler protocolHandler;
         private final TyrusWebSocket socket;
         private final TyrusEndpointWrapper endpointWrapper;
-        private final int incomingBufferSize;
+        private final IncomingBuffer incomingBuffer;
         private final ExtendedExtension.ExtensionContext extensionContext;
         private final DebugContext debugContext;
 
-        private volatile ByteBuffer buffer;
-
         private TyrusReadHandler(ProtocolHandler protocolHandler, TyrusWebSocket socket,
                                  TyrusEndpointWrapper endpointWrapper, int incomingBufferSize,
-                                 ExtendedExtension.ExtensionContext extensionContext, DebugContext debugContext) {
+                                 ByteBufferPool bufferPool, ExtendedExtension.ExtensionContext extensionContext,
+                                 DebugContext debugContext) {
             this.extensionContext = extensionContext;
             this.protocolHandler = protocolHandler;
             this.socket = socket;
             this.endpointWrapper = endpointWrapper;
-            this.incomingBufferSize = incomingBufferSize;
+            this.incomingBuffer = new IncomingBuffer(bufferPool, incomingBufferSize);
             this.debugContext = debugContext;
         }
 
@@ -519,53 +533,44 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
             try {
                 if (data != null && data.hasRemaining()) {
 
-                    if (buffer != null) {
-                        data = Utils.appendBuffers(buffer, data, incomingBufferSize, BUFFER_STEP_SIZE);
-                    } else {
-                        int newSize = data.remaining();
-                        if (newSize > incomingBufferSize) {
-                            throw new IllegalArgumentException(LocalizationMessages.BUFFER_OVERFLOW());
-                        } else {
-                            final int roundedSize = (newSize % BUFFER_STEP_SIZE) > 0
-                                    ? ((newSize / BUFFER_STEP_SIZE) + 1) * BUFFER_STEP_SIZE : newSize;
-                            final ByteBuffer result =
-                                    ByteBuffer.allocate(roundedSize > incomingBufferSize ? newSize : roundedSize);
-                            result.flip();
-                            data = Utils.appendBuffers(result, data, incomingBufferSize, BUFFER_STEP_SIZE);
-                        }
-                    }
-
-                    do {
-                        final Frame incomingFrame = protocolHandler.unframe(data);
+                    final ByteBuffer buffer = incomingBuffer.append(data);
 
-                        if (incomingFrame == null) {
-                            buffer = data;
-                            break;
-                        } else {
-                            Frame frame = incomingFrame;
-
-                            for (Extension extension : protocolHandler.getExtensions()) {
-                                if (extension instanceof ExtendedExtension) {
-                                    try {
-                                        frame = ((ExtendedExtension) extension)
-                                                .processIncoming(extensionContext, frame);
-                                    } catch (Throwable t) {
-                                        debugContext.appendLogMessageWithThrowable(
-                                                LOGGER, Level.FINE, DebugContext.Type.MESSAGE_IN, t, "Extension '",
-                                                extension.getName(),
-                                                "' threw an exception during processIncoming method invocation: ",
-                                                t.getMessage());
+                    try {
+                        do {
+                            final Frame incomingFrame = protocolHandler.unframe(buffer);
+
+                            if (incomingFrame == null) {
+                                break;
+                            } else {
+                                Frame frame = incomingFrame;
+
+                                for (Extension extension : protocolHandler.getExtensions()) {
+                                    if (extension instanceof ExtendedExtension) {
+                                        try {
+                                            frame = ((ExtendedExtension) extension)
+                                                    .processIncoming(extensionContext, frame);
+                                        } catch (Throwable t) {
+                                            debugContext.appendLogMessageWithThrowable(
+                                                    LOGGER, Level.FINE, DebugContext.Type.MESSAGE_IN, t,
+                                                    "Extension '", extension.getName(),
+                                                    "' threw an exception during processIncoming method invocation: ",
+                                                    t.getMessage());
+                                        }
                                     }
                                 }
-                            }
 
-                            protocolHandler.process(frame, socket);
-                        }
-                    } while (true);
+                                protocolHandler.process(frame, socket);
+                            }
+                        } while (true);
+                    } finally {
+                        // parsed frames are not referenced after this point, unparsed rest is kept (copied if needed).
+                        incomingBuffer.retainRemaining(buffer);
+                    }
                 }
             } catch (WebSocketException e) {
                 debugContext.appendLogMessageWithThrowable(LOGGER, Level.FINE, DebugContext.Type.MESSAGE_IN, e,
                                                            e.getMessage());
+                incomingBuffer.close();
                 socket.onClose(new CloseFrame(e.getCloseReason()));
             } catch (Exception e) {
                 String message = e.getMessage();
@@ -576,11 +581,19 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
                         // reason phrase length is limited.
                         message = message.substring(0, 123);
                     }
+                    incomingBuffer.close();
                     socket.onClose(
                             new CloseFrame(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, message)));
                 }
             }
         }
+
+        /**
+         * Return buffer held by this handler to the pool, invoked when the connection is closed.
+         */
+        void close() {
+            incomingBuffer.close();
+        }
     }
 
     /**
@@ -605,6 +618,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
         checkPath(endpointWrapper);
         LOGGER.log(Level.FINER, "Registered endpoint: " + endpointWrapper);
         endpointWrappers.add(endpointWrapper);
+        endpointPathTrie.add(endpointWrapper);
     }
 
     @Override
@@ -703,6 +717,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
      */
     public void unregister(TyrusEndpointWrapper endpointWrapper) {
         endpointWrappers.remove(endpointWrapper);
+        endpointPathTrie.remove(endpointWrapper);
         applicationEventListener.onEndpointUnregistered(endpointWrapper.getEndpointPath());
     }
 
@@ -729,18 +744,20 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
         private final TyrusEndpointWrapper endpointWrapper;
         private final ProtocolHandler protocolHandler;
         private final int incomingBufferSize;
+        private final ByteBufferPool bufferPool;
         private final UpgradeRequest upgradeRequest;
         private final UpgradeResponse upgradeResponse;
         private final ExtendedExtension.ExtensionContext extensionContext;
         private final DebugContext debugContext;
 
         SuccessfulUpgradeInfo(TyrusEndpointWrapper endpointWrapper, ProtocolHandler protocolHandler,
-                              int incomingBufferSize,
+                              int incomingBufferSize, ByteBufferPool bufferPool,
                               UpgradeRequest upgradeRequest, UpgradeResponse upgradeResponse,
                               ExtendedExtension.ExtensionContext extensionContext, DebugContext debugContext) {
             this.endpointWrapper = endpointWrapper;
             this.protocolHandler = protocolHandler;
             this.incomingBufferSize = incomingBufferSize;
+            this.bufferPool = bufferPool;
             this.upgradeRequest = upgradeRequest;
             this.upgradeResponse = upgradeResponse;
             this.extensionContext = extensionContext;
@@ -755,8 +772,9 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
         @Override
         public Connection createConnection(Writer writer, Connection.CloseListener closeListener) {
             TyrusConnection tyrusConnection =
-                    new TyrusConnection(endpointWrapper, protocolHandler, incomingBufferSize, writer, closeListener,
-                                        upgradeRequest, upgradeResponse, extensionContext, debugContext);
+                    new TyrusConnection(endpointWrapper, protocolHandler, incomingBufferSize, bufferPool, writer,
+                                        closeListener, upgradeRequest, upgradeResponse, extensionContext,
+                                        debugContext);
             debugContext.flush();
             return tyrusConnection;
         }
@@ -792,7 +810,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
 
     static class TyrusConnection implements Connection {
 
-        private final ReadHandler readHandler;
+        private final TyrusReadHandler readHandler;
         private final Writer writer;
         private final CloseListener closeListener;
         private final TyrusWebSocket socket;
@@ -800,7 +818,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
         private final List<Extension> extensions;
 
         TyrusConnection(TyrusEndpointWrapper endpointWrapper, ProtocolHandler protocolHandler, int incomingBufferSize,
-                        Writer writer, CloseListener closeListener,
+                        ByteBufferPool bufferPool, Writer writer, CloseListener closeListener,
                         UpgradeRequest upgradeRequest, UpgradeResponse upgradeResponse,
                         ExtendedExtension.ExtensionContext extensionContext, DebugContext debugContext) {
             protocolHandler.setWriter(writer);
@@ -822,8 +840,8 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
                                   debugContext);
 
             this.readHandler =
-                    new TyrusReadHandler(protocolHandler, socket, endpointWrapper, incomingBufferSize, extensionContext,
-                                         debugContext);
+                    new TyrusReadHandler(protocolHandler, socket, endpointWrapper, incomingBufferSize, bufferPool,
+                                         extensionContext, debugContext);
             this.writer = writer;
             this.closeListener = closeListener;
             this.extensionContext = extensionContext;
@@ -846,6 +864,8 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
 
         @Override
         public void close(CloseReason reason) {
+            readHandler.close();
+
             if (!socket.isConnected()) {
                 return;
             }
@@ -879,6 +899,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
         private DebugContext.TracingType tracingType = null;
         private DebugContext.TracingThreshold tracingThreshold = null;
         private Boolean parallelBroadcastEnabled = null;
+        private ByteBufferPool bufferPool = null;
 
         /**
          * Create new {@link org.glassfish.tyrus.core.TyrusWebSocketEngine} instance with current set of parameters.
@@ -909,7 +930,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
 
             return new TyrusWebSocketEngine(webSocketContainer, incomingBufferSize, clusterContext,
                                             applicationEventListener, maxSessionsPerApp, maxSessionsPerRemoteAddr,
-                                            tracingType, tracingThreshold, parallelBroadcastEnabled);
+                                            tracingType, tracingThreshold, parallelBroadcastEnabled, bufferPool);
         }
 
         TyrusWebSocketEngineBuilder(WebSocketContainer webSocketContainer) {
@@ -1009,6 +1030,18 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
             this.parallelBroadcastEnabled = parallelBroadcastEnabled;
             return this;
         }
+
+        /**
+         * Set pool of buffers used for holding incomplete incoming frames.
+         *
+         * @param bufferPool buffer pool. If {@code null}, {@link ByteBufferPool#getDefault()} will be used.
+         * @return updated builder.
+         * @see TyrusWebSocketEngine#BUFFER_POOL
+         */
+        public TyrusWebSocketEngineBuilder bufferPool(ByteBufferPool bufferPool) {
+            this.bufferPool = bufferPool;
+            return this;
+        }
     }
 
     /**
@@ -0,0 +1,297 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental strict UTF-8 decoder of fragmented text messages.
+ * <p>
+ * One instance is supposed to be used for all text frames received on single connection. Code point split between
+ * two frames is kept in a fixed buffer of at most 3 bytes and completed by the next frame, so payload is never copied
+ * to be concatenated with previous remainder, and it is the only state kept per connection. Decoded characters are
+ * written into a scratch char array shared by all decoders used by the current thread (arrays bigger than
+ * {@link #MAX_RETAINED_CHARS} are not retained), so idle connections do not hold any decoding buffer.
+ * <p>
+ * Decoding is as strict as {@link StrictUtf8} - overlong forms, surrogates and code points above U+10FFFF are
+ * rejected. Invalid sequence is reported as soon as its first invalid byte is seen, even if the sequence is not
+ * complete yet.
+ * <p>
+ * Instances are not thread safe.
+ */
+public class Utf8StreamDecoder {
+
+    /**
+     * Size of the biggest char array kept (per thread) for decoding of the subsequent frames.
+     */
+    static final int MAX_RETAINED_CHARS = 64 * 1024;
+
+    private static final int INITIAL_CHARS = 1024;
+
+    /**
+     * Scratch array for decoded characters; its content is copied into the returned {@link String}, so it can be
+     * shared by all decoders used by the same thread.
+     */
+    private static final ThreadLocal<char[]> CHARS = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[INITIAL_CHARS];
+        }
+    };
+
+    private final byte[] carry = new byte[3];
+    private int carryLength = 0;
+
+    /**
+     * Decode next part of the text message.
+     *
+     * @param data bytes to be decoded (remaining bytes of the buffer are decoded, buffer position is not changed).
+     * @param last {@code true} when {@code data} is the last part of the message.
+     * @return decoded text. Does not contain code point which is not complete yet.
+     * @throws Utf8DecodingException when the data are not valid UTF-8 or when the last part ends with incomplete code
+     *                               point.
+     */
+    public String decode(ByteBuffer data, boolean last) {
+        if (data.hasArray()) {
+            return decode(data.array(), data.arrayOffset() + data.position(), data.remaining(), last);
+        }
+
+        final byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        return decode(bytes, 0, bytes.length, last);
+    }
+
+    /**
+     * Decode next part of the text message.
+     *
+     * @param data   bytes to be decoded.
+     * @param offset offset of the first byte to be decoded.
+     * @param length number of bytes to be decoded.
+     * @param last   {@code true} when {@code data} is the last part of the message.
+     * @return decoded text. Does not contain code point which is not complete yet.
+     * @throws Utf8DecodingException when the data are not valid UTF-8 or when the last part ends with incomplete code
+     *                               point.
+     */
+    public String decode(byte[] data, int offset, int length, boolean last) {
+        // every byte produces at most one char, completed remainder at most two
+        final char[] dst = chars(length + carryLength);
+        final int sl = offset + length;
+        int sp = offset;
+        int dp = 0;
+
+        if (carryLength > 0) {
+            final int b1 = carry[0] & 0xff;
+            final int n = sequenceLength(b1);
+
+            while (carryLength < n - 1 && sp < sl) {
+                final int b = data[sp++] & 0xff;
+                if (!isValid(b1, carryLength, b)) {
+                    throw malformed();
+                }
+                carry[carryLength++] = (byte) b;
+            }
+
+            if (carryLength == n - 1 && sp < sl) {
+                final int b = data[sp++] & 0xff;
+                if (!isValid(b1, n - 1, b)) {
+                    throw malformed();
+                }
+
+                switch (n) {
+                    case 2:
+                        dp = decode(n, b1, b, 0, 0, dst, dp);
+                        break;
+                    case 3:
+                        dp = decode(n, b1, carry[1] & 0xff, b, 0, dst, dp);
+                        break;
+                    default:
+                        dp = decode(n, b1, carry[1] & 0xff, carry[2] & 0xff, b, dst, dp);
+                        break;
+                }
+                carryLength = 0;
+            }
+        }
+
+        while (sp < sl) {
+            int b1 = data[sp];
+
+            if (b1 >= 0) {
+                // ASCII fast path
+                dst[dp++] = (char) b1;
+                sp++;
+                while (sp < sl && (b1 = data[sp]) >= 0) {
+                    dst[dp++] = (char) b1;
+                    sp++;
+                }
+                continue;
+            }
+
+            b1 &= 0xff;
+            final int n = sequenceLength(b1);
+            if (n < 0) {
+                throw malformed();
+            }
+
+            final int available = Math.min(n, sl - sp);
+            for (int i = 1; i < available; i++) {
+                if (!isValid(b1, i, data[sp + i] & 0xff)) {
+                    throw malformed();
+                }
+            }
+
+            if (available < n) {
+                // incomplete code point - keep it for the next part
+                System.arraycopy(data, sp, carry, 0, available);
+                carryLength = available;
+                sp = sl;
+                break;
+            }
+
+            dp = decode(n, b1, data[sp + 1] & 0xff, n > 2 ? data[sp + 2] & 0xff : 0, n > 3 ? data[sp + 3] & 0xff : 0,
+                        dst, dp);
+            sp += n;
+        }
+
+        if (last && carryLength > 0) {
+            throw malformed();
+        }
+
+        return dp == 0 ? "" : new String(dst, 0, dp);
+    }
+
+    /**
+     * Discard incomplete code point kept from the previously decoded data.
+     */
+    public void reset() {
+        carryLength = 0;
+    }
+
+    /**
+     * Get number of bytes of incomplete code point kept from the previously decoded data.
+     *
+     * @return number of remaining bytes, {@code 0} - {@code 3}.
+     */
+    public int getRemaining() {
+        return carryLength;
+    }
+
+    private static char[] chars(int required) {
+        char[] chars = CHARS.get();
+        if (chars.length >= required) {
+            return chars;
+        }
+
+        if (required > MAX_RETAINED_CHARS) {
+            return new char[required];
+        }
+
+        chars = new char[Math.max(required, Math.min(chars.length * 2, MAX_RETAINED_CHARS))];
+        CHARS.set(chars);
+        return chars;
+    }
+
+    private Utf8DecodingException malformed() {
+        carryLength = 0;
+        return new Utf8DecodingException();
+    }
+
+    /**
+     * Get length of UTF-8 sequence starting with given (non-ASCII) byte.
+     *
+     * @param b1 first byte of the sequence.
+     * @return length of the sequence or {@code -1} when the byte cannot start a sequence.
+     */
+    private static int sequenceLength(int b1) {
+        if (b1 >= 0xc2 && b1 <= 0xdf) {
+            return 2;
+        } else if (b1 >= 0xe0 && b1 <= 0xef) {
+            return 3;
+        } else if (b1 >= 0xf0 && b1 <= 0xf4) {
+            return 4;
+        }
+        return -1;
+    }
+
+    /**
+     * Check byte following the first byte of the sequence.
+     * <p>
+     * Ranges of the second byte exclude overlong forms, surrogates and code points above U+10FFFF.
+     *
+     * @param b1    first byte of the sequence.
+     * @param index index of the checked byte in the sequence.
+     * @param b     checked byte.
+     * @return {@code true} when the byte is valid on given position.
+     */
+    private static boolean isValid(int b1, int index, int b) {
+        if (index == 1) {
+            switch (b1) {
+                case 0xe0:
+                    return b >= 0xa0 && b <= 0xbf;
+                case 0xed:
+                    return b >= 0x80 && b <= 0x9f;
+                case 0xf0:
+                    return b >= 0x90 && b <= 0xbf;
+                case 0xf4:
+                    return b >= 0x80 && b <= 0x8f;
+                default:
+                    break;
+            }
+        }
+        return (b & 0xc0) == 0x80;
+    }
+
+    private static int decode(int n, int b1, int b2, int b3, int b4, char[] dst, int dp) {
+        switch (n) {
+            case 2:
+                dst[dp++] = (char) (((b1 & 0x1f) << 6) | (b2 & 0x3f));
+                break;
+            case 3:
+                dst[dp++] = (char) (((b1 & 0x0f) << 12) | ((b2 & 0x3f) << 6) | (b3 & 0x3f));
+                break;
+            default:
+                final int codePoint = ((b1 & 0x07) << 18) | ((b2 & 0x3f) << 12) | ((b3 & 0x3f) << 6) | (b4 & 0x3f);
+                dst[dp++] = Character.highSurrogate(codePoint);
+                dst[dp++] = Character.lowSurrogate(codePoint);
+                break;
+        }
+        return dp;
+    }
+}
@@ -37,47 +37,59 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
+
 package org.glassfish.tyrus.core;
 
 import java.io.IOException;
-import java.io.Writer;
+import java.util.concurrent.Future;
 
 /**
- * Simple Writer that writes its data to an async sink.
+ * {@link FragmentingWriter} which sends the fragments of a text message through a {@link TyrusWebSocket}.
+ * <p>
+ * Sending of a fragment does not block the caller, it waits only for completion of the previous fragment before the
+ * next one is sent. Errors of the fragment writes are reported by subsequent {@code write}, {@code flush} or
+ * {@code close} invocations.
+ * <p>
+ * When batching is allowed ({@link javax.websocket.RemoteEndpoint#setBatchingAllowed(boolean)}), fragments are only
+ * added to the batch and nothing is awaited, like with other blocking send methods; fragments are written with the
+ * batch and errors are reported by {@link javax.websocket.RemoteEndpoint#flushBatch()}.
+ * <p>
+ * Instances are not thread safe.
  *
  * @author Danny Coward (danny.coward at oracle.com)
  */
-class WriterToAsyncTextAdapter extends Writer {
+class WriterToAsyncTextAdapter extends FragmentingWriter {
     private final TyrusWebSocket socket;
-    private String buffer = null;
 
-    public WriterToAsyncTextAdapter(TyrusWebSocket socket) {
-        this.socket = socket;
-    }
+    private Future<?> pending = null;
 
-    private void sendBuffer(boolean last) {
-        socket.sendText(buffer, last);
+    /**
+     * Constructor.
+     *
+     * @param socket       socket the message will be sent to.
+     * @param fragmentSize maximal size of sent fragments in characters.
+     */
+    public WriterToAsyncTextAdapter(TyrusWebSocket socket, int fragmentSize) {
+        super(fragmentSize);
+        this.socket = socket;
     }
 
     @Override
-    public void write(char[] chars, int index, int len) throws IOException {
-        if (buffer != null) {
-            this.sendBuffer(false);
-        }
-        buffer = (new String(chars)).substring(index, index + len);
+    protected void sendFragment(String fragment, boolean last) throws IOException {
+        // previous fragment has to be written before the next one is sent.
+        awaitFragments();
 
+        pending = socket.sendText(fragment, last);
     }
 
     @Override
-    public void flush() throws IOException {
-        if (buffer != null) {
-            this.sendBuffer(false);
-        }
-        buffer = null;
-    }
+    protected void awaitFragments() throws IOException {
+        final Future<?> future = pending;
+        pending = null;
 
-    @Override
-    public void close() throws IOException {
-        this.sendBuffer(true);
+        // batched fragment is written with the batch, which might not happen until flushBatch() is called.
+        if (future != null && !socket.getProtocolHandler().isBatchingAllowed()) {
+            TyrusRemoteEndpoint.processFuture(future);
+        }
     }
 }
@@ -49,6 +49,7 @@ import java.io.Writer;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.security.Principal;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -67,7 +68,10 @@ import javax.websocket.SendResult;
 import javax.websocket.Session;
 import javax.websocket.WebSocketContainer;
 
+import org.glassfish.tyrus.core.FragmentingOutputStream;
+import org.glassfish.tyrus.core.FragmentingWriter;
 import org.glassfish.tyrus.core.TyrusEndpointWrapper;
+import org.glassfish.tyrus.core.TyrusFuture;
 import org.glassfish.tyrus.core.Utils;
 
 import static org.glassfish.tyrus.core.Utils.checkNotNull;
@@ -80,6 +84,8 @@ import static org.glassfish.tyrus.core.Utils.checkNotNull;
 public class RemoteSession implements Session, DistributedSession {
 
     private static final Integer SYNC_SEND_TIMEOUT = 30;
+    private static final int SEND_STREAM_FRAGMENT_SIZE = 8192;
+    private static final int MAX_IN_FLIGHT = 64;
 
     private final RemoteEndpoint.Basic basicRemote;
     private final RemoteEndpoint.Async asyncRemote;
@@ -88,6 +94,9 @@ public class RemoteSession implements Session, DistributedSession {
     private final ClusterContext clusterContext;
     private final Map<DistributedMapKey, Object> distributedPropertyMap;
     private final TyrusEndpointWrapper endpointWrapper;
+    private final SendPipeline pipeline = new SendPipeline(MAX_IN_FLIGHT, SYNC_SEND_TIMEOUT);
+
+    private volatile boolean batchingAllowed = false;
 
     public static enum DistributedMapKey implements Serializable {
         /**
@@ -225,29 +234,58 @@ public class RemoteSession implements Session, DistributedSession {
             public void sendText(String text) throws IOException {
                 checkNotNull(text, "text");
                 final Future<?> future = clusterContext.sendText(sessionId, text);
-                processFuture(future);
+                processSendFuture(future);
             }
 
             @Override
             public void sendBinary(ByteBuffer data) throws IOException {
                 checkNotNull(data, "data");
-                final Future<?> future = clusterContext.sendBinary(sessionId, Utils.getRemainingArray(data));
-                processFuture(future);
+                final boolean batching = batchingAllowed;
+                final Future<?> future = clusterContext.sendBinary(sessionId, toArray(data, !batching));
+                processSendFuture(future, batching);
             }
 
             @Override
             public void sendText(String partialMessage, boolean isLast) throws IOException {
                 checkNotNull(partialMessage, "partialMessage");
                 final Future<?> future = clusterContext.sendText(sessionId, partialMessage, isLast);
-                processFuture(future);
+                processSendFuture(future);
             }
 
             @Override
             public void sendBinary(ByteBuffer partialByte, boolean isLast) throws IOException {
                 checkNotNull(partialByte, "partialByte");
-                final Future<?> future =
-                        clusterContext.sendBinary(sessionId, Utils.getRemainingArray(partialByte), isLast);
-                processFuture(future);
+                final boolean batching = batchingAllowed;
+                final Future<?> future = clusterContext.sendBinary(sessionId, toArray(partialByte, !batching), isLast);
+                processSendFuture(future, batching);
+            }
+
+            /**
+             * Wait for the send future to be completed, unless batching is allowed.
+             * <p>
+             * When batching is allowed, the send is only added to the pipeline and this method returns immediately;
+             * errors are reported by {@link #flushBatch()}.
+             *
+             * @param future to be processed.
+             * @throws IOException see {@link #processFuture(Future)}.
+             */
+            private void processSendFuture(Future<?> future) throws IOException {
+                processSendFuture(future, batchingAllowed);
+            }
+
+            /**
+             * Wait for the send future to be completed, unless batching is used.
+             *
+             * @param future   to be processed.
+             * @param batching {@code true} when the future should be only added to the pipeline.
+             * @throws IOException see {@link #processFuture(Future)}.
+             */
+            private void processSendFuture(Future<?> future, boolean batching) throws IOException {
+                if (batching) {
+                    pipeline.add(future);
+                } else {
+                    processFuture(future);
+                }
             }
 
             /**
@@ -308,122 +346,64 @@ public class RemoteSession implements Session, DistributedSession {
 
                 checkNotNull(data, "data");
 
-                final Future<Void> future;
-                final Object toSend = endpointWrapper.doEncode(session, data);
-                if (toSend instanceof String) {
-                    future = clusterContext.sendText(sessionId, (String) toSend);
-                } else if (toSend instanceof ByteBuffer) {
-                    future = clusterContext.sendBinary(sessionId, Utils.getRemainingArray((ByteBuffer) toSend));
-                } else if (toSend instanceof StringWriter) {
-                    StringWriter writer = (StringWriter) toSend;
-                    StringBuffer sb = writer.getBuffer();
-                    future = clusterContext.sendText(sessionId, sb.toString());
-                } else if (toSend instanceof ByteArrayOutputStream) {
-                    ByteArrayOutputStream baos = (ByteArrayOutputStream) toSend;
-                    future = clusterContext.sendBinary(sessionId, baos.toByteArray());
-                } else {
-                    // will never happen.
-                    return;
+                final boolean batching = batchingAllowed;
+                final Future<Void> future = sendEncoded(endpointWrapper.doEncode(session, data), !batching);
+                if (future != null) {
+                    processSendFuture(future, batching);
                 }
-
-                processFuture(future);
             }
 
             @Override
             public OutputStream getSendStream() throws IOException {
-                return new OutputStream() {
-                    @Override
-                    public void write(byte b[], int off, int len) throws IOException {
-                        if (b == null) {
-                            throw new NullPointerException();
-                        } else if ((off < 0) || (off > b.length) || (len < 0)
-                                || ((off + len) > b.length) || ((off + len) < 0)) {
-                            throw new IndexOutOfBoundsException();
-                        } else if (len == 0) {
-                            return;
-                        }
-
-                        byte[] toSend = new byte[len];
-                        System.arraycopy(b, off, toSend, 0, len);
-
-                        final Future<?> future = clusterContext.sendBinary(sessionId, toSend, false);
-                        try {
-                            future.get();
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                        } catch (ExecutionException e) {
-                            if (e.getCause() instanceof IOException) {
-                                throw (IOException) e.getCause();
-                            } else {
-                                throw new IOException(e.getCause());
-                            }
-                        }
-                    }
-
-                    @Override
-                    public void write(int i) throws IOException {
-                        byte[] byteArray = new byte[]{(byte) i};
-
-                        write(byteArray, 0, byteArray.length);
-                    }
+                return new FragmentingOutputStream(SEND_STREAM_FRAGMENT_SIZE) {
+                    private final SendPipeline fragments = new SendPipeline(MAX_IN_FLIGHT, SYNC_SEND_TIMEOUT);
 
                     @Override
-                    public void flush() throws IOException {
-                        // do nothing.
+                    protected boolean sendFragment(byte[] buffer, int length, boolean last) {
+                        // full buffer is taken over by the cluster context, partial fragment is copied.
+                        final boolean takeOver = length == buffer.length;
+                        final byte[] fragment = takeOver ? buffer : Arrays.copyOf(buffer, length);
+                        fragments.add(clusterContext.sendBinary(sessionId, fragment, last));
+                        return takeOver;
                     }
 
                     @Override
-                    public void close() throws IOException {
-                        clusterContext.sendBinary(sessionId, new byte[]{}, true);
+                    protected void awaitFragments() throws IOException {
+                        fragments.flush();
                     }
                 };
             }
 
             @Override
             public Writer getSendWriter() throws IOException {
-                return new Writer() {
-                    private String buffer = null;
-
-                    private void sendBuffer(boolean last) {
-                        clusterContext.sendText(sessionId, buffer, last);
-                    }
-
-                    @Override
-                    public void write(char[] chars, int index, int len) throws IOException {
-                        if (buffer != null) {
-                            this.sendBuffer(false);
-                        }
-                        buffer = (new String(chars)).substring(index, index + len);
-
-                    }
+                return new FragmentingWriter(SEND_STREAM_FRAGMENT_SIZE) {
+                    private final SendPipeline fragments = new SendPipeline(MAX_IN_FLIGHT, SYNC_SEND_TIMEOUT);
 
                     @Override
-                    public void flush() throws IOException {
-                        this.sendBuffer(false);
-                        buffer = null;
+                    protected void sendFragment(String fragment, boolean last) {
+                        fragments.add(clusterContext.sendText(sessionId, fragment, last));
                     }
 
                     @Override
-                    public void close() throws IOException {
-                        this.sendBuffer(true);
+                    protected void awaitFragments() throws IOException {
+                        fragments.flush();
                     }
                 };
             }
 
-
             @Override
             public void setBatchingAllowed(boolean allowed) throws IOException {
-
+                RemoteSession.this.setBatchingAllowed(allowed);
             }
 
             @Override
             public boolean getBatchingAllowed() {
-                return false;
+                return batchingAllowed;
             }
 
             @Override
             public void flushBatch() throws IOException {
-
+                pipeline.flush();
             }
         };
 
@@ -457,14 +437,14 @@ public class RemoteSession implements Session, DistributedSession {
             @Override
             public Future<Void> sendBinary(ByteBuffer data) {
                 checkNotNull(data, "data");
-                return clusterContext.sendBinary(sessionId, Utils.getRemainingArray(data));
+                return clusterContext.sendBinary(sessionId, toArray(data, false));
             }
 
             @Override
             public void sendBinary(ByteBuffer data, SendHandler handler) {
                 checkNotNull(data, "data");
                 checkNotNull(handler, "handler");
-                clusterContext.sendBinary(sessionId, Utils.getRemainingArray(data), handler);
+                clusterContext.sendBinary(sessionId, toArray(data, false), handler);
             }
 
             @Override
@@ -481,52 +461,19 @@ public class RemoteSession implements Session, DistributedSession {
                 checkNotNull(data, "data");
 
                 final Future<Void> future;
-                final Object toSend;
                 try {
-                    toSend = endpointWrapper.doEncode(session, data);
+                    future = sendEncoded(endpointWrapper.doEncode(session, data), false);
                 } catch (final Exception e) {
-                    return new Future<Void>() {
-                        @Override
-                        public boolean cancel(boolean mayInterruptIfRunning) {
-                            return false;
-                        }
-
-                        @Override
-                        public boolean isCancelled() {
-                            return false;
-                        }
-
-                        @Override
-                        public boolean isDone() {
-                            return true;
-                        }
-
-                        @Override
-                        public Void get() throws InterruptedException, ExecutionException {
-                            throw new ExecutionException(e);
-                        }
-
-                        @Override
-                        public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
-                                TimeoutException {
-                            throw new ExecutionException(e);
-                        }
-                    };
+                    final TyrusFuture<Void> failed = new TyrusFuture<Void>();
+                    failed.setFailure(e);
+                    return failed;
                 }
-                if (toSend instanceof String) {
-                    future = clusterContext.sendText(sessionId, (String) toSend);
-                } else if (toSend instanceof ByteBuffer) {
-                    future = clusterContext.sendBinary(sessionId, Utils.getRemainingArray((ByteBuffer) toSend));
-                } else if (toSend instanceof StringWriter) {
-                    StringWriter writer = (StringWriter) toSend;
-                    StringBuffer sb = writer.getBuffer();
-                    future = clusterContext.sendText(sessionId, sb.toString());
-                } else if (toSend instanceof ByteArrayOutputStream) {
-                    ByteArrayOutputStream baos = (ByteArrayOutputStream) toSend;
-                    future = clusterContext.sendBinary(sessionId, baos.toByteArray());
-                } else {
+
+                if (future == null) {
                     // will never happen.
-                    future = null;
+                    final TyrusFuture<Void> completed = new TyrusFuture<Void>();
+                    completed.setResult(null);
+                    return completed;
                 }
 
                 return future;
@@ -558,7 +505,7 @@ public class RemoteSession implements Session, DistributedSession {
                     if (toSend instanceof String) {
                         clusterContext.sendText(sessionId, (String) toSend, handler);
                     } else if (toSend instanceof ByteBuffer) {
-                        clusterContext.sendBinary(sessionId, Utils.getRemainingArray((ByteBuffer) toSend), handler);
+                        clusterContext.sendBinary(sessionId, toArray((ByteBuffer) toSend, false), handler);
                     } else if (toSend instanceof StringWriter) {
                         StringWriter writer = (StringWriter) toSend;
                         StringBuffer sb = writer.getBuffer();
@@ -591,21 +538,85 @@ public class RemoteSession implements Session, DistributedSession {
 
             @Override
             public void setBatchingAllowed(boolean allowed) throws IOException {
-
+                RemoteSession.this.setBatchingAllowed(allowed);
             }
 
             @Override
             public boolean getBatchingAllowed() {
-                return false;
+                return batchingAllowed;
             }
 
             @Override
             public void flushBatch() throws IOException {
-
+                pipeline.flush();
             }
         };
     }
 
+    /**
+     * Allow or disallow batching; shared by {@link javax.websocket.RemoteEndpoint.Basic} and {@link
+     * javax.websocket.RemoteEndpoint.Async} of this session.
+     * <p>
+     * When batching is allowed, blocking send methods do not wait for the other node to confirm each message; they
+     * return as soon as the message is passed to the {@link ClusterContext}, so messages for the session are pipelined
+     * instead of requiring one cluster round-trip each. Blocking send waits only when there are too many unconfirmed
+     * messages. Failures are reported by {@code flushBatch()}; disallowing batching flushes the batch.
+     *
+     * @param allowed {@code true} if batching should be allowed.
+     * @throws IOException when some of the batched messages could not be sent.
+     */
+    private void setBatchingAllowed(boolean allowed) throws IOException {
+        batchingAllowed = allowed;
+        if (!allowed) {
+            pipeline.flush();
+        }
+    }
+
+    /**
+     * Send message produced by an encoder.
+     *
+     * @param toSend  encoded message.
+     * @param awaited {@code true} when the caller waits for the send to be completed.
+     * @return send future or {@code null} when the encoded message has unsupported type.
+     */
+    private Future<Void> sendEncoded(Object toSend, boolean awaited) {
+        if (toSend instanceof String) {
+            return clusterContext.sendText(sessionId, (String) toSend);
+        } else if (toSend instanceof ByteBuffer) {
+            return clusterContext.sendBinary(sessionId, toArray((ByteBuffer) toSend, awaited));
+        } else if (toSend instanceof StringWriter) {
+            StringWriter writer = (StringWriter) toSend;
+            StringBuffer sb = writer.getBuffer();
+            return clusterContext.sendText(sessionId, sb.toString());
+        } else if (toSend instanceof ByteArrayOutputStream) {
+            ByteArrayOutputStream baos = (ByteArrayOutputStream) toSend;
+            return clusterContext.sendBinary(sessionId, baos.toByteArray());
+        }
+
+        return null;
+    }
+
+    /**
+     * Get remaining bytes of the buffer.
+     * <p>
+     * Backing array of the buffer is returned only when the caller waits for the send to be completed and the buffer
+     * covers the array entirely (for example the buffer has been created by {@link ByteBuffer#wrap(byte[])}). The
+     * cluster context may hold the array until the message is written, so the remaining bytes are copied whenever
+     * the caller can change the buffer before that happens.
+     *
+     * @param buffer  buffer to be sent.
+     * @param awaited {@code true} when the caller waits for the send to be completed.
+     * @return remaining bytes of the buffer.
+     */
+    private static byte[] toArray(ByteBuffer buffer, boolean awaited) {
+        if (awaited && buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0
+                && buffer.remaining() == buffer.array().length) {
+            return buffer.array();
+        }
+
+        return Utils.getRemainingArray(buffer);
+    }
+
     /**
      * Get the version of the websocket protocol currently being used. This is taken as the value of the
      * Sec-WebSocket-Version header used in the opening handshake. i.e. "13".
@@ -0,0 +1,155 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core.cluster;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Sends issued to other cluster nodes without waiting for each of them to be completed.
+ * <p>
+ * Sends are pipelined: the caller continues while previous sends are in flight and waits only when the number of
+ * uncompleted sends exceeds the limit (which bounds memory used by queued messages) or when the pipeline is
+ * {@link #flush() flushed}. Failures are reported by {@link #flush()}.
+ * <p>
+ * Pipelining relies on {@link ClusterContext} delivering messages sent to one session in the order in which they
+ * were sent.
+ */
+class SendPipeline {
+
+    private final int maxInFlight;
+    private final long timeout;
+    private final Deque<Future<?>> inFlight = new ArrayDeque<Future<?>>();
+
+    private Throwable failure;
+
+    /**
+     * Constructor.
+     *
+     * @param maxInFlight maximal number of uncompleted sends.
+     * @param timeout     maximal time to wait for a send to be completed, in seconds.
+     */
+    SendPipeline(int maxInFlight, long timeout) {
+        this.maxInFlight = maxInFlight;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Add send to the pipeline. Blocks when there are too many uncompleted sends.
+     *
+     * @param future send to be added.
+     */
+    void add(Future<?> future) {
+        Future<?> oldest;
+        synchronized (this) {
+            inFlight.add(future);
+
+            // completed sends don't count.
+            while (!inFlight.isEmpty() && inFlight.peek().isDone()) {
+                complete(inFlight.poll());
+            }
+
+            oldest = inFlight.size() > maxInFlight ? inFlight.poll() : null;
+        }
+
+        if (oldest != null) {
+            complete(oldest);
+        }
+    }
+
+    /**
+     * Wait for all sends in the pipeline to be completed.
+     *
+     * @throws IOException the first failure of a send added since the last flush.
+     */
+    void flush() throws IOException {
+        while (true) {
+            final Future<?> future;
+            synchronized (this) {
+                future = inFlight.poll();
+            }
+
+            if (future == null) {
+                break;
+            }
+            complete(future);
+        }
+
+        final Throwable failure;
+        synchronized (this) {
+            failure = this.failure;
+            this.failure = null;
+        }
+
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure != null) {
+            throw new IOException(failure);
+        }
+    }
+
+    private void complete(Future<?> future) {
+        Throwable throwable = null;
+        try {
+            future.get(timeout, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throwable = e;
+        } catch (ExecutionException e) {
+            throwable = e.getCause();
+        } catch (TimeoutException e) {
+            throwable = e;
+        }
+
+        if (throwable != null) {
+            synchronized (this) {
+                if (failure == null) {
+                    failure = throwable;
+                }
+            }
+        }
+    }
+}
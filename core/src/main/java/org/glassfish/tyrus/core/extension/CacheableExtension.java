@@ -0,0 +1,67 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core.extension;
+
+/**
+ * {@link ExtendedExtension} which is able to tell whether its outgoing processing depends on per-connection state.
+ * <p>
+ * Broadcast encodes a message only once per distinct negotiated extension configuration. Sessions for which all
+ * negotiated extended extensions return equal encoding keys share the same encoded frame, so processing of the outgoing
+ * frame is done only for the first of them. Extensions which are not implementing this interface are considered to be
+ * stateful and frames for sessions using them are always encoded separately.
+ */
+public interface CacheableExtension extends ExtendedExtension {
+
+    /**
+     * Get the key identifying output of {@link #processOutgoing(ExtensionContext, org.glassfish.tyrus.core.frame.Frame)}
+     * for given context.
+     * <p>
+     * Outgoing processing of a whole message must produce the same result for all contexts with equal keys and must
+     * not leave any state in the context which would influence subsequent messages. Keys are compared together with
+     * the extension name, so the key has to reflect all configuration which influences the output (for example
+     * compression level).
+     *
+     * @param context per-connection/session context.
+     * @return key of the encoding used for given context or {@code null} when the encoded frame cannot be shared with
+     * other sessions (for example when the context carries state from previously sent messages).
+     */
+    Object getEncodingKey(ExtensionContext context);
+}
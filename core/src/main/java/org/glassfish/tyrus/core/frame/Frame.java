@@ -40,6 +40,8 @@
 
 package org.glassfish.tyrus.core.frame;
 
+import java.nio.ByteBuffer;
+
 /**
  * WebSocket frame representation.
  * <pre>TODO:
@@ -61,7 +63,7 @@ public class Frame {
     private final long payloadLength;
     private final Integer maskingKey;
 
-    private final byte[] payloadData;
+    private final ByteBuffer payloadData;
 
     private final boolean controlFrame;
 
@@ -87,7 +89,7 @@ public class Frame {
     }
 
     private Frame(boolean fin, boolean rsv1, boolean rsv2, boolean rsv3, boolean mask, byte opcode, long payloadLength,
-                  Integer maskingKey, byte[] payloadData) {
+                  Integer maskingKey, ByteBuffer payloadData) {
         this.fin = fin;
         this.rsv1 = rsv1;
         this.rsv2 = rsv2;
@@ -184,10 +186,38 @@ public class Frame {
      */
     public byte[] getPayloadData() {
         byte[] tmp = new byte[(int) payloadLength];
-        System.arraycopy(payloadData, 0, tmp, 0, (int) payloadLength);
+        if (payloadData == null) {
+            return tmp;
+        }
+
+        if (payloadData.hasArray()) {
+            System.arraycopy(payloadData.array(), payloadData.arrayOffset() + payloadData.position(), tmp, 0,
+                             (int) payloadLength);
+        } else {
+            payloadData.duplicate().get(tmp);
+        }
         return tmp;
     }
 
+    /**
+     * Get payload data as a {@link ByteBuffer}.
+     * <p>
+     * Unlike {@link #getPayloadData()}, payload is *not* copied; returned buffer is a view of the payload held by this
+     * {@link Frame} instance and must not be modified. Remaining bytes of returned buffer will be always same as
+     * {@link #getPayloadLength()}.
+     *
+     * @return payload data view.
+     */
+    public ByteBuffer getPayloadBuffer() {
+        if (payloadData == null) {
+            return ByteBuffer.allocate(0);
+        }
+
+        final ByteBuffer buffer = payloadData.duplicate();
+        buffer.limit(buffer.position() + (int) payloadLength);
+        return buffer;
+    }
+
     /**
      * Get information about frame type.
      *
@@ -246,7 +276,7 @@ public class Frame {
         private long payloadLength;
         private Integer maskingKey = null;
 
-        private byte[] payloadData;
+        private ByteBuffer payloadData;
 
         /**
          * Constructor.
@@ -380,9 +410,25 @@ public class Frame {
          * @see #payloadLength(long)
          */
         public Builder payloadData(byte[] payloadData) {
-            this.payloadData = payloadData;
+            this.payloadData = ByteBuffer.wrap(payloadData);
             this.payloadLength = payloadData.length;
             return this;
         }
+
+        /**
+         * Set payload data. {@link #payloadLength(long)} is also updated with payloadData.remaining().
+         * <p>
+         * Payload is *not* copied, built frame will share the content of provided buffer (remaining bytes). Content,
+         * position and limit of the buffer must not be changed while the frame is in use.
+         *
+         * @param payloadData data to be set.
+         * @return updated {@link Builder} instance.
+         * @see #payloadLength(long)
+         */
+        public Builder payloadData(ByteBuffer payloadData) {
+            this.payloadData = payloadData;
+            this.payloadLength = payloadData.remaining();
+            return this;
+        }
     }
 }
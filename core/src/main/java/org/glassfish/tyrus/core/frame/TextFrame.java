@@ -43,7 +43,6 @@ package org.glassfish.tyrus.core.frame;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.CharacterCodingException;
-import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CoderResult;
@@ -51,6 +50,7 @@ import java.nio.charset.CoderResult;
 import org.glassfish.tyrus.core.StrictUtf8;
 import org.glassfish.tyrus.core.TyrusWebSocket;
 import org.glassfish.tyrus.core.Utf8DecodingException;
+import org.glassfish.tyrus.core.Utf8StreamDecoder;
 
 /**
  * Text frame representation.
@@ -59,8 +59,13 @@ import org.glassfish.tyrus.core.Utf8DecodingException;
  */
 public class TextFrame extends TyrusFrame {
 
-    private final Charset utf8 = new StrictUtf8();
-    private final CharsetDecoder currentDecoder = utf8.newDecoder();
+    private static final ThreadLocal<CharsetEncoder> ENCODER = new ThreadLocal<CharsetEncoder>() {
+        @Override
+        protected CharsetEncoder initialValue() {
+            return new StrictUtf8().newEncoder();
+        }
+    };
+
     private final String textPayload;
     private final boolean continuation;
 
@@ -91,6 +96,22 @@ public class TextFrame extends TyrusFrame {
         this.continuation = continuation;
     }
 
+    /**
+     * Constructor.
+     * <p>
+     * Payload is decoded by provided decoder, which keeps the state (incomplete code point) between fragments of the
+     * message, {@link #getRemainder()} returns {@code null}.
+     *
+     * @param frame        original (text) frame.
+     * @param decoder      UTF-8 decoder of the connection this frame was received on.
+     * @param continuation {@code true} when this frame is continuation frame, {@code false} otherwise.
+     */
+    public TextFrame(Frame frame, Utf8StreamDecoder decoder, boolean continuation) {
+        super(frame, continuation ? FrameType.TEXT_CONTINUATION : FrameType.TEXT);
+        this.textPayload = decoder.decode(getPayloadBuffer(), isFin());
+        this.continuation = continuation;
+    }
+
     /**
      * Constructor.
      *
@@ -101,7 +122,7 @@ public class TextFrame extends TyrusFrame {
      */
     public TextFrame(String message, boolean continuation, boolean fin) {
         super(Frame.builder()
-                   .payloadData(encode(new StrictUtf8(), message))
+                   .payloadData(encode(message))
                    .opcode(continuation ? (byte) 0x00 : (byte) 0x01)
                    .fin(fin)
                    .build(), continuation ? FrameType.TEXT_CONTINUATION : FrameType.TEXT);
@@ -145,6 +166,7 @@ public class TextFrame extends TyrusFrame {
     }
 
     private String utf8Decode(boolean finalFragment, byte[] data, ByteBuffer remainder) {
+        final CharsetDecoder currentDecoder = new StrictUtf8().newDecoder();
         final ByteBuffer b = getByteBuffer(data, remainder);
         int n = (int) (b.remaining() * currentDecoder.averageCharsPerByte());
         CharBuffer cb = CharBuffer.allocate(n);
@@ -203,12 +225,53 @@ public class TextFrame extends TyrusFrame {
         return sb.toString();
     }
 
-    private static byte[] encode(Charset charset, String string) {
+    /**
+     * Encode text using strict UTF-8 encoding.
+     * <p>
+     * Strings containing only ASCII and Latin-1 characters (which is the case for most JSON payloads) are encoded
+     * directly, other strings are encoded by per-thread cached {@link StrictUtf8} encoder.
+     *
+     * @param string string to be encoded.
+     * @return encoded string.
+     */
+    private static byte[] encode(String string) {
         if (string == null || string.isEmpty()) {
             return new byte[0];
         }
 
-        CharsetEncoder ce = charset.newEncoder();
+        final int length = string.length();
+        int encodedLength = length;
+        for (int i = 0; i < length; i++) {
+            final char c = string.charAt(i);
+            if (c >= 0x80) {
+                if (c >= 0x100) {
+                    return encode(ENCODER.get(), string);
+                }
+                encodedLength++;
+            }
+        }
+
+        final byte[] ba = new byte[encodedLength];
+        if (encodedLength == length) {
+            for (int i = 0; i < length; i++) {
+                ba[i] = (byte) string.charAt(i);
+            }
+        } else {
+            int j = 0;
+            for (int i = 0; i < length; i++) {
+                final char c = string.charAt(i);
+                if (c < 0x80) {
+                    ba[j++] = (byte) c;
+                } else {
+                    ba[j++] = (byte) (0xc0 | (c >> 6));
+                    ba[j++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+        }
+        return ba;
+    }
+
+    private static byte[] encode(CharsetEncoder ce, String string) {
         int en = scale(string.length(), ce.maxBytesPerChar());
         byte[] ba = new byte[en];
         if (string.length() == 0) {
@@ -45,6 +45,7 @@ import java.util.Locale;
 
 import org.glassfish.tyrus.core.ProtocolException;
 import org.glassfish.tyrus.core.TyrusWebSocket;
+import org.glassfish.tyrus.core.Utf8StreamDecoder;
 
 /**
  * Frame representation used in Tyrus runtime.
@@ -120,6 +121,30 @@ public abstract class TyrusFrame extends Frame {
         }
     }
 
+    /**
+     * {@link TyrusFrame} factory method.
+     *
+     * @param frame            original plain frame.
+     * @param inFragmentedType type of fragment (text or binary).
+     * @param decoder          UTF-8 decoder of the connection. Used only for text frames.
+     * @return new TyrusFrame.
+     */
+    public static TyrusFrame wrap(Frame frame, byte inFragmentedType, Utf8StreamDecoder decoder) {
+
+        switch (frame.getOpcode()) {
+            case 0x00:
+                if ((inFragmentedType & 0x01) == 0x01) {
+                    return new TextFrame(frame, decoder, true);
+                } else {
+                    return new BinaryFrame(frame, true);
+                }
+            case 0x01:
+                return new TextFrame(frame, decoder, false);
+            default:
+                return wrap(frame, inFragmentedType, (ByteBuffer) null);
+        }
+    }
+
     /**
      * An Enumeration of frame types.
      */
@@ -0,0 +1,230 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core.uri;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.glassfish.tyrus.core.DebugContext;
+import org.glassfish.tyrus.core.TyrusEndpointWrapper;
+import org.glassfish.tyrus.core.uri.internal.PathSegment;
+import org.glassfish.tyrus.core.uri.internal.UriComponent;
+
+/**
+ * Registered endpoint paths precompiled into a trie of path segments.
+ * <p>
+ * Endpoint paths are decoded once, when the endpoint is added. Request path is then matched segment by segment, so
+ * only the nodes on the path of the request are visited. Literal children of a node are visited before its template
+ * (variable) child, which produces the matches in the order of {@link MatchComparator} precedence. The (usually very
+ * short) list of matches is still sorted by {@link MatchComparator} to handle request segments which are equal to the
+ * template segment text the same way as {@link Match#getAllMatches(String, java.util.Set, DebugContext)}.
+ * <p>
+ * Returned matches are the same as the ones returned by {@code Match#getAllMatches(...)} for the set of added
+ * endpoints.
+ * <p>
+ * The trie is rebuilt when an endpoint is added or removed, lookups do not need any locking.
+ */
+public class EndpointPathTrie {
+
+    private static final Logger LOGGER = Logger.getLogger(EndpointPathTrie.class.getName());
+
+    private final List<Entry> entries = new ArrayList<Entry>();
+    private volatile Node root = new Node();
+
+    /**
+     * Add endpoint to the trie.
+     *
+     * @param endpointWrapper endpoint to be added.
+     */
+    public synchronized void add(TyrusEndpointWrapper endpointWrapper) {
+        entries.add(new Entry(endpointWrapper));
+        rebuild();
+    }
+
+    /**
+     * Remove endpoint from the trie.
+     *
+     * @param endpointWrapper endpoint to be removed.
+     * @return {@code true} when the endpoint was removed, {@code false} when it was not present.
+     */
+    public synchronized boolean remove(TyrusEndpointWrapper endpointWrapper) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).endpointWrapper == endpointWrapper) {
+                entries.remove(i);
+                rebuild();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return a list of all endpoints with path matching the request path. The endpoints are in order of match
+     * preference, best match first.
+     *
+     * @param requestPath  request path.
+     * @param debugContext debug context.
+     * @return a list of all endpoints with path matching the request path. The endpoints are in order of match
+     * preference, best match first.
+     */
+    public List<Match> getAllMatches(String requestPath, DebugContext debugContext) {
+        final List<PathSegment> pathSegments = UriComponent.decodePath(requestPath, true);
+        final String[] requestSegments = new String[pathSegments.size()];
+        for (int i = 0; i < requestSegments.length; i++) {
+            requestSegments[i] = pathSegments.get(i).getPath();
+        }
+
+        final List<Match> matches;
+        if (requestSegments.length == 0) {
+            matches = Collections.emptyList();
+        } else {
+            matches = new ArrayList<Match>(1);
+            collect(root, requestSegments, 0, matches);
+
+            if (matches.size() > 1) {
+                Collections.sort(matches, new MatchComparator(debugContext));
+            }
+        }
+
+        debugContext.appendTraceMessage(LOGGER, Level.FINE, DebugContext.Type.MESSAGE_IN,
+                                        "Endpoints matched to the request URI: ", matches);
+        return matches;
+    }
+
+    private static void collect(Node node, String[] requestSegments, int index, List<Match> matches) {
+        if (index == requestSegments.length) {
+            for (Entry entry : node.entries) {
+                matches.add(entry.match(requestSegments));
+            }
+            return;
+        }
+
+        final Node literal = node.literals.get(requestSegments[index]);
+        if (literal != null) {
+            collect(literal, requestSegments, index + 1, matches);
+        }
+
+        if (node.variable != null) {
+            collect(node.variable, requestSegments, index + 1, matches);
+        }
+    }
+
+    private void rebuild() {
+        final Node newRoot = new Node();
+
+        for (Entry entry : entries) {
+            Node node = newRoot;
+            for (String segment : entry.segments) {
+                node = node.child(segment);
+            }
+            node.entries.add(entry);
+        }
+
+        root = newRoot;
+    }
+
+    private static boolean isVariable(String segment) {
+        return segment.startsWith("{") && segment.endsWith("}");
+    }
+
+    /**
+     * Trie node, represents one segment of the endpoint path.
+     */
+    private static class Node {
+
+        private final Map<String, Node> literals = new HashMap<String, Node>();
+        private final List<Entry> entries = new ArrayList<Entry>(1);
+        private Node variable;
+
+        private Node child(String segment) {
+            if (isVariable(segment)) {
+                if (variable == null) {
+                    variable = new Node();
+                }
+                return variable;
+            }
+
+            Node child = literals.get(segment);
+            if (child == null) {
+                child = new Node();
+                literals.put(segment, child);
+            }
+            return child;
+        }
+    }
+
+    /**
+     * Endpoint with its decoded path.
+     */
+    private static class Entry {
+
+        private final TyrusEndpointWrapper endpointWrapper;
+        private final String[] segments;
+
+        private Entry(TyrusEndpointWrapper endpointWrapper) {
+            this.endpointWrapper = endpointWrapper;
+
+            final List<PathSegment> pathSegments = UriComponent.decodePath(endpointWrapper.getEndpointPath(), true);
+            this.segments = new String[pathSegments.size()];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = pathSegments.get(i).getPath();
+            }
+        }
+
+        private Match match(String[] requestSegments) {
+            final Match match = new Match(endpointWrapper);
+
+            for (int i = 0; i < segments.length; i++) {
+                // request segment equal to the template is an exact match, see Match#getAllMatches
+                if (isVariable(segments[i]) && !segments[i].equals(requestSegments[i])) {
+                    match.addParameter(segments[i].substring(1, segments[i].length() - 1), requestSegments[i], i);
+                }
+            }
+
+            return match;
+        }
+    }
+}
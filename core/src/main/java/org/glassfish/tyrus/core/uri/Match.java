@@ -75,7 +75,7 @@ public class Match {
      *
      * @param endpointWrapper {@link TyrusEndpointWrapper} instance.
      */
-    private Match(TyrusEndpointWrapper endpointWrapper) {
+    Match(TyrusEndpointWrapper endpointWrapper) {
         this.endpointWrapper = endpointWrapper;
     }
 
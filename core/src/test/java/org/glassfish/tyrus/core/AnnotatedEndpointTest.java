@@ -0,0 +1,211 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import javax.websocket.CloseReason;
+import javax.websocket.EndpointConfig;
+import javax.websocket.OnClose;
+import javax.websocket.OnError;
+import javax.websocket.OnMessage;
+import javax.websocket.OnOpen;
+import javax.websocket.Session;
+import javax.websocket.server.PathParam;
+import javax.websocket.server.ServerEndpoint;
+
+import org.glassfish.tyrus.core.frame.Frame;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests invocation of {@link AnnotatedEndpoint} methods.
+ */
+public class AnnotatedEndpointTest {
+
+    @Test
+    public void testInvocation() throws Exception {
+        final ParameterEndpoint instance = new ParameterEndpoint();
+        final TestRemoteEndpoint remoteEndpoint = new TestRemoteEndpoint();
+        final AnnotatedEndpoint endpoint = createEndpoint(instance);
+        final TyrusSession session = open(endpoint, remoteEndpoint);
+
+        assertEquals(42, instance.openedId);
+        assertSame(endpoint.getEndpointConfig(), instance.config);
+
+        session.notifyWholeMessageHandlers("echo", true);
+        assertEquals(Collections.singletonList("echo42"), remoteEndpoint.sent);
+
+        session.notifyMessageHandlers(ByteBuffer.wrap(new byte[3]), false);
+        session.notifyMessageHandlers(ByteBuffer.wrap(new byte[2]), true);
+        assertEquals(Arrays.asList("3:false", "2:true"), instance.partial);
+
+        // exception thrown from the method is passed to @OnError as it is.
+        session.notifyWholeMessageHandlers("fail", true);
+        assertSame(ParameterEndpoint.FAILURE, instance.error);
+
+        final CloseReason closeReason = CloseReasons.GOING_AWAY.getCloseReason();
+        endpoint.onClose(session, closeReason);
+        assertSame(closeReason, instance.closeReason);
+    }
+
+    @Test
+    public void testNonPublicEndpoint() throws Exception {
+        final NonPublicEndpoint instance = new NonPublicEndpoint();
+        final TestRemoteEndpoint remoteEndpoint = new TestRemoteEndpoint();
+        final TyrusSession session = open(createEndpoint(instance), remoteEndpoint);
+
+        session.notifyWholeMessageHandlers("echo", true);
+        assertEquals(Collections.singletonList("echo"), remoteEndpoint.sent);
+
+        session.notifyWholeMessageHandlers("fail", true);
+        assertSame(ParameterEndpoint.FAILURE, instance.error);
+    }
+
+    private static AnnotatedEndpoint createEndpoint(Object instance) {
+        final ErrorCollector collector = new ErrorCollector();
+        final AnnotatedEndpoint endpoint =
+                AnnotatedEndpoint.fromInstance(instance, ComponentProviderService.create(), true, Integer.MAX_VALUE,
+                                               collector);
+        assertTrue(collector.isEmpty());
+        return endpoint;
+    }
+
+    private static TyrusSession open(AnnotatedEndpoint endpoint, TyrusWebSocket socket) throws Exception {
+        final TyrusEndpointWrapper endpointWrapper =
+                new TyrusEndpointWrapper(endpoint, endpoint.getEndpointConfig(), ComponentProviderService.create(),
+                                         null, "", null, null, null, null, null);
+        final TyrusSession session =
+                new TyrusSession(null, socket, endpointWrapper, null, null, false, null, null,
+                                 Collections.singletonMap("id", "42"), null, new HashMap<String, List<String>>(),
+                                 null, null, null, new DebugContext());
+        endpoint.onOpen(session, endpoint.getEndpointConfig());
+        return session;
+    }
+
+    @ServerEndpoint("/echo/{id}")
+    public static class ParameterEndpoint {
+
+        static final RuntimeException FAILURE = new RuntimeException("fail");
+
+        volatile int openedId;
+        volatile EndpointConfig config;
+        volatile Throwable error;
+        volatile CloseReason closeReason;
+        final List<String> partial = new ArrayList<String>();
+
+        @OnOpen
+        public void onOpen(Session session, EndpointConfig config, @PathParam("id") int id) {
+            assertNotNull(session);
+            this.config = config;
+            this.openedId = id;
+        }
+
+        @OnMessage
+        public String echo(String message, @PathParam("id") Integer id, Session session) {
+            if ("fail".equals(message)) {
+                throw FAILURE;
+            }
+            return message + id;
+        }
+
+        @OnMessage
+        public void partial(boolean last, ByteBuffer buffer) {
+            partial.add(buffer.remaining() + ":" + last);
+        }
+
+        @OnError
+        public void onError(Throwable t, Session session) {
+            this.error = t;
+        }
+
+        @OnClose
+        public void onClose(CloseReason closeReason) {
+            this.closeReason = closeReason;
+        }
+    }
+
+    @ServerEndpoint("/echo")
+    static class NonPublicEndpoint {
+
+        volatile Throwable error;
+
+        @OnMessage
+        public String echo(String message) {
+            if ("fail".equals(message)) {
+                throw ParameterEndpoint.FAILURE;
+            }
+            return message;
+        }
+
+        @OnError
+        public void onError(Throwable t) {
+            this.error = t;
+        }
+    }
+
+    private static class TestRemoteEndpoint extends TyrusWebSocket {
+
+        private final List<String> sent = new ArrayList<String>();
+
+        private TestRemoteEndpoint() {
+            super(new ProtocolHandler(false, null), null);
+        }
+
+        @Override
+        public Future<Frame> sendText(String text) {
+            sent.add(text);
+            final TyrusFuture<Frame> future = new TyrusFuture<Frame>();
+            future.setResult(null);
+            return future;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Extension;
+import javax.websocket.Session;
+import javax.websocket.WebSocketContainer;
+import javax.websocket.server.ServerEndpoint;
+
+import org.glassfish.tyrus.spi.CompletionHandler;
+import org.glassfish.tyrus.spi.Writer;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests broadcast to sessions of one {@link TyrusEndpointWrapper}.
+ */
+public class BroadcastTest {
+
+    private static final byte[] HELLO_FRAME = {(byte) 0x81, 0x05, 'h', 'e', 'l', 'l', 'o'};
+
+    @Test
+    public void testBroadcastAsync() throws Exception {
+        final TyrusEndpointWrapper endpointWrapper = createEndpointWrapper(true);
+        final List<ByteBuffer> written = new ArrayList<ByteBuffer>();
+
+        for (int i = 0; i < 100; i++) {
+            createSession(endpointWrapper, new RecordingWriter(written));
+        }
+
+        final BroadcastResult result = endpointWrapper.broadcastAsync("hello", 0, false, null).get(5, TimeUnit.SECONDS);
+
+        assertEquals(100, result.getSentCount());
+        assertTrue(result.getSkippedSessions().isEmpty());
+        assertTrue(result.getFailedSessions().isEmpty());
+        assertTrue(result.getFutures().isEmpty());
+
+        assertEquals(100, written.size());
+        for (ByteBuffer buffer : written) {
+            assertArrayEquals(HELLO_FRAME, Utils.getRemainingArray(buffer));
+        }
+    }
+
+    @Test
+    public void testBroadcastAsyncCollectFutures() throws Exception {
+        final TyrusEndpointWrapper endpointWrapper = createEndpointWrapper(false);
+        final List<ByteBuffer> written = new ArrayList<ByteBuffer>();
+
+        for (int i = 0; i < 10; i++) {
+            createSession(endpointWrapper, new RecordingWriter(written));
+        }
+
+        final CountDownLatch completionLatch = new CountDownLatch(1);
+        final BroadcastResult result = endpointWrapper.broadcastAsync(
+                ByteBuffer.wrap("hello".getBytes(Charset.forName("UTF-8"))), 0, true,
+                new CompletionHandler<BroadcastResult>() {
+                    @Override
+                    public void completed(BroadcastResult result) {
+                        completionLatch.countDown();
+                    }
+                }).get(5, TimeUnit.SECONDS);
+
+        assertTrue(completionLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(10, result.getSentCount());
+        assertEquals(10, result.getFutures().size());
+        for (Future<?> future : result.getFutures().values()) {
+            assertTrue(future.isDone());
+        }
+    }
+
+    @Test
+    public void testSlowSessionSkipped() throws Exception {
+        final TyrusEndpointWrapper endpointWrapper = createEndpointWrapper(true);
+        final List<ByteBuffer> written = new ArrayList<ByteBuffer>();
+        final List<CompletionHandler<ByteBuffer>> pending = new ArrayList<CompletionHandler<ByteBuffer>>();
+
+        for (int i = 0; i < 20; i++) {
+            createSession(endpointWrapper, new RecordingWriter(written));
+        }
+
+        final TyrusSession slowSession = createSession(endpointWrapper, new Writer() {
+            @Override
+            public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+                synchronized (pending) {
+                    pending.add(completionHandler);
+                }
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        final Future<BroadcastResult> first = endpointWrapper.broadcastAsync("hello", 0, false, null);
+
+        // aggregate future is not completed until the slow session writes the frame.
+        try {
+            first.get(200, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // expected
+        }
+        assertFalse(first.isDone());
+
+        final BroadcastResult second = endpointWrapper.broadcastAsync("hello", 1, false, null).get(5, TimeUnit.SECONDS);
+        assertEquals(20, second.getSentCount());
+        assertEquals(1, second.getSkippedSessions().size());
+        assertTrue(second.getSkippedSessions().contains(slowSession));
+
+        synchronized (pending) {
+            assertEquals(1, pending.size());
+            pending.get(0).completed(null);
+        }
+
+        assertEquals(21, first.get(5, TimeUnit.SECONDS).getSentCount());
+    }
+
+    @Test
+    public void testParallelBroadcast() throws Exception {
+        final TyrusEndpointWrapper endpointWrapper = createEndpointWrapper(true);
+        final List<ByteBuffer> written = new ArrayList<ByteBuffer>();
+
+        for (int i = 0; i < 100; i++) {
+            createSession(endpointWrapper, new RecordingWriter(written));
+        }
+
+        final Map<Session, Future<?>> futures = endpointWrapper.broadcast("hello");
+
+        assertEquals(100, futures.size());
+        for (Future<?> future : futures.values()) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(100, written.size());
+    }
+
+    @Test
+    public void testBroadcastSaturatedExecutor() throws Exception {
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        final CountDownLatch blocked = new CountDownLatch(1);
+
+        try {
+            // the only executor thread is busy.
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        blocked.await();
+                    } catch (InterruptedException e) {
+                        // ignore.
+                    }
+                }
+            });
+
+            final TyrusEndpointWrapper endpointWrapper =
+                    createEndpointWrapper(new TestContainer(executorService), true);
+            final List<ByteBuffer> written = new ArrayList<ByteBuffer>();
+
+            for (int i = 0; i < 100; i++) {
+                createSession(endpointWrapper, new RecordingWriter(written));
+            }
+
+            // blocking broadcast is performed by the calling thread.
+            final Map<Session, Future<?>> futures = endpointWrapper.broadcast("hello");
+            assertEquals(100, futures.size());
+            for (Future<?> future : futures.values()) {
+                assertTrue(future.isDone());
+            }
+
+            final Future<BroadcastResult> result = endpointWrapper.broadcastAsync("hello", 0, false, null);
+            assertFalse(result.isDone());
+
+            blocked.countDown();
+            assertEquals(100, result.get(5, TimeUnit.SECONDS).getSentCount());
+            assertEquals(200, written.size());
+        } finally {
+            blocked.countDown();
+            executorService.shutdownNow();
+        }
+    }
+
+    private TyrusEndpointWrapper createEndpointWrapper(boolean parallelBroadcastEnabled) throws DeploymentException {
+        return createEndpointWrapper(null, parallelBroadcastEnabled);
+    }
+
+    private TyrusEndpointWrapper createEndpointWrapper(WebSocketContainer container, boolean parallelBroadcastEnabled)
+            throws DeploymentException {
+        return new TyrusEndpointWrapper(EchoEndpoint.class, null, ComponentProviderService.create(), container, "/",
+                                        null, null, null, null, parallelBroadcastEnabled);
+    }
+
+    private TyrusSession createSession(TyrusEndpointWrapper endpointWrapper, Writer writer) {
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false, null);
+        protocolHandler.setWriter(writer);
+
+        final TyrusWebSocket webSocket = new TyrusWebSocket(protocolHandler, null);
+        webSocket.onConnect(null, null, null, null, null);
+
+        return (TyrusSession) endpointWrapper.createSessionForRemoteEndpoint(webSocket, null, null,
+                                                                             new DebugContext());
+    }
+
+    private static class RecordingWriter extends Writer {
+
+        private final List<ByteBuffer> written;
+
+        private RecordingWriter(List<ByteBuffer> written) {
+            this.written = written;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+            synchronized (written) {
+                written.add(buffer.duplicate());
+            }
+            completionHandler.completed(buffer);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class TestContainer extends BaseContainer {
+
+        private final ExecutorService executorService;
+
+        private TestContainer(ExecutorService executorService) {
+            this.executorService = executorService;
+        }
+
+        @Override
+        public ExecutorService getExecutorService() {
+            return executorService;
+        }
+
+        @Override
+        public long getDefaultAsyncSendTimeout() {
+            return 0;
+        }
+
+        @Override
+        public void setAsyncSendTimeout(long l) {
+        }
+
+        @Override
+        public Session connectToServer(Object o, URI uri) {
+            return null;
+        }
+
+        @Override
+        public Session connectToServer(Class<?> aClass, URI uri) {
+            return null;
+        }
+
+        @Override
+        public Session connectToServer(Endpoint endpoint, ClientEndpointConfig clientEndpointConfig, URI uri) {
+            return null;
+        }
+
+        @Override
+        public Session connectToServer(Class<? extends Endpoint> aClass, ClientEndpointConfig clientEndpointConfig,
+                                       URI uri) {
+            return null;
+        }
+
+        @Override
+        public long getDefaultMaxSessionIdleTimeout() {
+            return 0;
+        }
+
+        @Override
+        public void setDefaultMaxSessionIdleTimeout(long l) {
+        }
+
+        @Override
+        public int getDefaultMaxBinaryMessageBufferSize() {
+            return 0;
+        }
+
+        @Override
+        public void setDefaultMaxBinaryMessageBufferSize(int i) {
+        }
+
+        @Override
+        public int getDefaultMaxTextMessageBufferSize() {
+            return 0;
+        }
+
+        @Override
+        public void setDefaultMaxTextMessageBufferSize(int i) {
+        }
+
+        @Override
+        public Set<Extension> getInstalledExtensions() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public ScheduledExecutorService getScheduledExecutorService() {
+            return null;
+        }
+    }
+
+    @ServerEndpoint(value = "/broadcast")
+    private static class EchoEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link ByteBufferPool} and {@link IncomingBuffer}.
+ */
+public class ByteBufferPoolTest {
+
+    @Test
+    public void testSizeClasses() {
+        final ByteBufferPool pool = new ByteBufferPool(false);
+
+        assertEquals(256, pool.acquire(1).capacity());
+        assertEquals(256, pool.acquire(256).capacity());
+        assertEquals(512, pool.acquire(257).capacity());
+        assertEquals(1024 * 1024, pool.acquire(1024 * 1024).capacity());
+        assertEquals(1024 * 1024 + 1, pool.acquire(1024 * 1024 + 1).capacity());
+        assertTrue(new ByteBufferPool(true).acquire(10).isDirect());
+    }
+
+    @Test
+    public void testReuse() {
+        final ByteBufferPool pool = new ByteBufferPool(false);
+
+        final ByteBuffer buffer = pool.acquire(1000);
+        buffer.put((byte) 1);
+        pool.release(buffer);
+        assertEquals(1, pool.getPooledBufferCount());
+
+        final ByteBuffer reused = pool.acquire(600);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(reused.capacity(), reused.limit());
+        assertEquals(1, pool.getHitCount());
+        assertEquals(1, pool.getMissCount());
+        assertEquals(0, pool.getPooledBufferCount());
+
+        // different size class.
+        assertNotSame(buffer, pool.acquire(2000));
+    }
+
+    @Test
+    public void testRetainedLimit() {
+        final ByteBufferPool pool = new ByteBufferPool(false, 1024, 1024);
+
+        for (int i = 0; i < 10; i++) {
+            pool.release(ByteBuffer.allocate(256));
+        }
+        pool.release(ByteBuffer.allocate(300));
+        pool.release(ByteBuffer.allocate(2048));
+        pool.release(ByteBuffer.allocateDirect(256));
+
+        assertEquals(4, pool.getPooledBufferCount());
+    }
+
+    @Test
+    public void testIncomingBufferNoPendingData() {
+        final ByteBufferPool pool = new ByteBufferPool(false);
+        final IncomingBuffer incomingBuffer = new IncomingBuffer(pool, 1000);
+
+        final ByteBuffer data = ByteBuffer.wrap(new byte[]{1, 2, 3});
+        final ByteBuffer buffer = incomingBuffer.append(data);
+        assertSame(data, buffer);
+
+        buffer.position(3);
+        incomingBuffer.retainRemaining(buffer);
+        assertEquals(0, pool.getMissCount());
+    }
+
+    @Test
+    public void testIncomingBufferPendingData() {
+        final ByteBufferPool pool = new ByteBufferPool(false);
+        final IncomingBuffer incomingBuffer = new IncomingBuffer(pool, 1000);
+
+        ByteBuffer buffer = incomingBuffer.append(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        buffer.get();
+        incomingBuffer.retainRemaining(buffer);
+
+        buffer = incomingBuffer.append(ByteBuffer.wrap(new byte[]{4, 5}));
+        assertEquals(4, buffer.remaining());
+        assertEquals(2, buffer.get());
+        assertEquals(3, buffer.get());
+        assertEquals(4, buffer.get());
+        incomingBuffer.retainRemaining(buffer);
+        assertEquals(0, pool.getPooledBufferCount());
+
+        buffer = incomingBuffer.append(ByteBuffer.wrap(new byte[600]));
+        assertEquals(601, buffer.remaining());
+        assertEquals(5, buffer.get());
+        buffer.position(buffer.limit());
+        incomingBuffer.retainRemaining(buffer);
+
+        // both buffers (256 and 1024 B) are back in the pool.
+        assertEquals(2, pool.getPooledBufferCount());
+    }
+
+    @Test
+    public void testIncomingBufferClose() {
+        final ByteBufferPool pool = new ByteBufferPool(false);
+        final IncomingBuffer incomingBuffer = new IncomingBuffer(pool, 1000);
+
+        final ByteBuffer buffer = incomingBuffer.append(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        buffer.get();
+        incomingBuffer.retainRemaining(buffer);
+        assertEquals(0, pool.getPooledBufferCount());
+
+        incomingBuffer.close();
+        assertEquals(1, pool.getPooledBufferCount());
+    }
+
+    @Test
+    public void testIncomingBufferCloseWhileParsing() {
+        final ByteBufferPool pool = new ByteBufferPool(false);
+        final IncomingBuffer incomingBuffer = new IncomingBuffer(pool, 1000);
+
+        ByteBuffer buffer = incomingBuffer.append(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        buffer.get();
+        incomingBuffer.retainRemaining(buffer);
+
+        buffer = incomingBuffer.append(ByteBuffer.wrap(new byte[]{4, 5}));
+        incomingBuffer.close();
+        // buffer is still being parsed.
+        assertEquals(0, pool.getPooledBufferCount());
+
+        buffer.get();
+        incomingBuffer.retainRemaining(buffer);
+        assertEquals(1, pool.getPooledBufferCount());
+    }
+
+    @Test
+    public void testIncomingBufferOverflow() {
+        final IncomingBuffer incomingBuffer = new IncomingBuffer(new ByteBufferPool(false), 10);
+
+        final ByteBuffer buffer = incomingBuffer.append(ByteBuffer.wrap(new byte[8]));
+        incomingBuffer.retainRemaining(buffer);
+
+        try {
+            incomingBuffer.append(ByteBuffer.wrap(new byte[3]));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected.
+        }
+    }
+
+    @Test
+    public void testIncomingBufferCloseAfterOverflow() {
+        final ByteBufferPool pool = new ByteBufferPool(false);
+        final IncomingBuffer incomingBuffer = new IncomingBuffer(pool, 10);
+
+        final ByteBuffer buffer = incomingBuffer.append(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        buffer.get();
+        incomingBuffer.retainRemaining(buffer);
+
+        try {
+            incomingBuffer.append(ByteBuffer.wrap(new byte[9]));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected.
+        }
+
+        // pending data are released on close, although the overflowing data were not parsed.
+        incomingBuffer.close();
+        assertEquals(1, pool.getPooledBufferCount());
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests {@link CompositeBuffer} and {@link BinaryBuffer}.
+ */
+public class CompositeBufferTest {
+
+    @Test
+    public void testSinglePartNotCopied() {
+        final BinaryBuffer binaryBuffer = new BinaryBuffer();
+        final ByteBuffer part = ByteBuffer.wrap(new byte[]{1, 2, 3});
+
+        binaryBuffer.resetBuffer(100);
+        // empty fragments are not stored.
+        binaryBuffer.appendMessagePart(ByteBuffer.allocate(0));
+        binaryBuffer.appendMessagePart(part);
+        binaryBuffer.appendMessagePart(ByteBuffer.allocate(0));
+
+        final CompositeBuffer content = binaryBuffer.getBufferedContent();
+        assertEquals(3, content.remaining());
+        assertSame(part, content.toByteBuffer());
+    }
+
+    @Test
+    public void testToByteBuffer() {
+        final CompositeBuffer content = createContent();
+
+        final ByteBuffer buffer = content.toByteBuffer();
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6}, Utils.getRemainingArray(buffer));
+        assertSame(buffer, content.toByteBuffer());
+    }
+
+    @Test
+    public void testToInputStream() throws IOException {
+        final CompositeBuffer content = createContent();
+
+        final InputStream stream = content.toInputStream();
+        assertEquals(6, stream.available());
+        assertEquals(1, stream.read());
+
+        final byte[] bytes = new byte[4];
+        assertEquals(4, stream.read(bytes, 0, 4));
+        assertArrayEquals(new byte[]{2, 3, 4, 5}, bytes);
+        assertEquals(1, stream.available());
+        assertEquals(6, stream.read());
+        assertEquals(-1, stream.read());
+        assertEquals(-1, stream.read(bytes, 0, 4));
+
+        // every stream reads the whole content.
+        final InputStream other = content.toInputStream();
+        assertEquals(3, other.skip(3));
+        assertEquals(4, other.read());
+    }
+
+    private static CompositeBuffer createContent() {
+        final ByteBuffer first = ByteBuffer.wrap(new byte[]{0, 1, 2});
+        first.position(1);
+        return new CompositeBuffer(new ByteBuffer[]{first, ByteBuffer.wrap(new byte[]{3, 4}),
+                ByteBuffer.wrap(new byte[]{5, 6})}, 6);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link DebugContext}.
+ */
+public class DebugContextTest {
+
+    private static final Logger LOGGER = Logger.getLogger(DebugContextTest.class.getName());
+
+    @Test
+    public void testNoOp() {
+        // default logging configuration does not log FINE messages.
+        assertSame(DebugContext.NO_OP, DebugContext.create());
+
+        final DebugContext debugContext = DebugContext.NO_OP;
+        debugContext.appendTraceMessage(LOGGER, Level.FINE, DebugContext.Type.MESSAGE_IN, "Endpoint: ", "/echo");
+        debugContext.setSessionId("session");
+        debugContext.flush();
+
+        assertFalse(debugContext.isLoggable(LOGGER, Level.FINE));
+        assertTrue(debugContext.getTracingHeaders().isEmpty());
+    }
+
+    @Test
+    public void testTracing() {
+        final DebugContext debugContext = new DebugContext(DebugContext.TracingThreshold.SUMMARY);
+
+        assertTrue(debugContext.isLoggable(LOGGER, Level.FINE));
+        assertFalse(debugContext.isLoggable(LOGGER, Level.FINER));
+        assertTrue(debugContext.getTracingHeaders().isEmpty());
+
+        debugContext.appendTraceMessage(LOGGER, Level.FINE, DebugContext.Type.MESSAGE_IN, "Endpoint: ", "/echo");
+        debugContext.appendTraceMessage(LOGGER, Level.FINER, DebugContext.Type.MESSAGE_IN, "Not traced");
+        debugContext.appendTraceMessage(LOGGER, Level.FINE, DebugContext.Type.MESSAGE_IN, "Matched ", 1, " endpoint");
+
+        assertEquals(2, debugContext.getTracingHeaders().size());
+        assertTrue(debugContext.getTracingHeaders().get("X-Tyrus-Tracing-00").get(0).endsWith("Endpoint: /echo"));
+        assertTrue(debugContext.getTracingHeaders().get("X-Tyrus-Tracing-01").get(0).endsWith("Matched 1 endpoint"));
+    }
+}
@@ -40,11 +40,15 @@
 
 package org.glassfish.tyrus.core;
 
+import java.nio.charset.Charset;
 import java.util.Arrays;
 
 import org.glassfish.tyrus.core.frame.Frame;
+import org.glassfish.tyrus.core.frame.TextFrame;
 
 import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -95,6 +99,18 @@ public class FrameTest {
 
     }
 
+    @Test
+    public void testTextFrameEncoding() {
+        final String[] messages = {"", "{\"ascii\": 1}", "latin-1 \u00e9\u00ff\u0080", "\u20ac \u4e2d",
+                "emoji \ud83d\ude00", "mixed \u00e9 \u20ac \ud83d\ude00 \u007f"};
+
+        for (String message : messages) {
+            final TextFrame frame = new TextFrame(message, false, true);
+            assertArrayEquals(message.getBytes(Charset.forName("UTF-8")), frame.getPayloadData());
+            assertEquals(message, new Utf8StreamDecoder().decode(frame.getPayloadBuffer(), true));
+        }
+    }
+
     /**
      * TODO: test validation when added to Frame.
      */
@@ -0,0 +1,158 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Session;
+import javax.websocket.server.ServerEndpoint;
+
+import org.glassfish.tyrus.spi.CompletionHandler;
+import org.glassfish.tyrus.spi.Writer;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests {@link HeartbeatScheduler}.
+ */
+public class HeartbeatSchedulerTest {
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testBucket() throws DeploymentException {
+        final SessionTimer timer = new SessionTimer(executor);
+        final HeartbeatScheduler scheduler = timer.getHeartbeatScheduler();
+        final TyrusEndpointWrapper endpointWrapper = createEndpointWrapper();
+
+        final List<ByteBuffer> written = new ArrayList<ByteBuffer>();
+        final TyrusSession session1 = createSession(endpointWrapper, written);
+        final TyrusSession session2 = createSession(endpointWrapper, written);
+
+        // long interval, heartbeat won't be sent by the timer during the test.
+        final HeartbeatScheduler.Bucket bucket1 = scheduler.register(session1, 3600000);
+        final HeartbeatScheduler.Bucket bucket2 = scheduler.register(session2, 3600000);
+
+        assertSame(bucket1, bucket2);
+        assertEquals(1, scheduler.getBucketCount());
+
+        bucket1.run();
+
+        assertEquals(2, written.size());
+        for (ByteBuffer buffer : written) {
+            final byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            assertArrayEquals(new byte[]{(byte) 0x8A, 0x00}, bytes);
+        }
+
+        scheduler.unregister(session1, bucket1);
+        written.clear();
+        bucket1.run();
+        assertEquals(1, written.size());
+
+        scheduler.unregister(session2, bucket2);
+        assertEquals(-1, bucket1.expire(System.nanoTime()));
+        assertEquals(0, scheduler.getBucketCount());
+    }
+
+    @Test
+    public void testDifferentIntervals() throws DeploymentException {
+        final SessionTimer timer = new SessionTimer(executor);
+        final HeartbeatScheduler scheduler = timer.getHeartbeatScheduler();
+        final TyrusEndpointWrapper endpointWrapper = createEndpointWrapper();
+
+        scheduler.register(createSession(endpointWrapper, new ArrayList<ByteBuffer>()), 3600000);
+        scheduler.register(createSession(endpointWrapper, new ArrayList<ByteBuffer>()), 7200000);
+
+        assertEquals(2, scheduler.getBucketCount());
+    }
+
+    private TyrusEndpointWrapper createEndpointWrapper() throws DeploymentException {
+        return new TyrusEndpointWrapper(EchoEndpoint.class, null, ComponentProviderService.create(), null, null, null,
+                                        null, null, null, null);
+    }
+
+    private TyrusSession createSession(TyrusEndpointWrapper endpointWrapper, final List<ByteBuffer> written) {
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false, null);
+        protocolHandler.setWriter(new Writer() {
+            @Override
+            public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+                synchronized (written) {
+                    written.add(buffer);
+                }
+                completionHandler.completed(buffer);
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        return new TyrusSession(null, new TyrusWebSocket(protocolHandler, null), endpointWrapper, null, null, false,
+                                null, null, null, null, new HashMap<String, List<String>>(), null, null, null,
+                                new DebugContext());
+    }
+
+    @ServerEndpoint(value = "/heartbeat")
+    private static class EchoEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+        }
+    }
+}
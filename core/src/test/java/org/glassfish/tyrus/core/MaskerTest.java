@@ -0,0 +1,140 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests {@link Masker}.
+ */
+public class MaskerTest {
+
+    private static final int MASKING_KEY = 0x12345678;
+    private static final byte[] MASK = {0x12, 0x34, 0x56, 0x78};
+
+    @Test
+    public void testMask() {
+        for (int length = 0; length < 70; length++) {
+            final byte[] payload = payload(length);
+            final byte[] target = new byte[length + 3];
+
+            new Masker(MASKING_KEY).mask(target, 3, payload, length);
+
+            final byte[] expected = new byte[length + 3];
+            System.arraycopy(mask(payload, 0), 0, expected, 3, length);
+            assertArrayEquals(expected, target);
+        }
+    }
+
+    @Test
+    public void testUnmask() {
+        for (int length = 0; length < 70; length++) {
+            final byte[] masked = mask(payload(length), 0);
+
+            final ByteBuffer buffer = ByteBuffer.allocate(length + 4 + 2);
+            buffer.put((byte) 1).put(MASK).put(masked).put((byte) 2).flip();
+            buffer.get();
+
+            final Masker masker = new Masker(buffer);
+            masker.readMask();
+
+            assertArrayEquals(payload(length), masker.unmask(length));
+            assertEquals(2, buffer.get());
+        }
+    }
+
+    @Test
+    public void testUnmaskInPlace() {
+        for (int length = 0; length < 70; length++) {
+            final byte[] masked = mask(payload(length), 0);
+
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(length + 4 + 1);
+            buffer.put(MASK).put(masked).put((byte) 2).flip();
+
+            final Masker masker = new Masker(buffer);
+            masker.readMask();
+
+            final ByteBuffer unmasked = masker.unmaskInPlace(length);
+            final byte[] bytes = new byte[unmasked.remaining()];
+            unmasked.get(bytes);
+
+            assertArrayEquals(payload(length), bytes);
+            assertEquals(2, buffer.get());
+        }
+    }
+
+    @Test
+    public void testMaskContinuation() {
+        final byte[] payload = payload(100);
+        final byte[] target = new byte[100];
+
+        // masking key offset has to be preserved between invocations.
+        final Masker masker = new Masker(MASKING_KEY);
+        int position = 0;
+        for (int chunk : new int[]{3, 9, 1, 17, 70}) {
+            final byte[] part = new byte[chunk];
+            System.arraycopy(payload, position, part, 0, chunk);
+            masker.mask(target, position, part, chunk);
+            position += chunk;
+        }
+
+        assertArrayEquals(mask(payload, 0), target);
+    }
+
+    private static byte[] payload(int length) {
+        final byte[] payload = new byte[length];
+        new Random(length).nextBytes(payload);
+        return payload;
+    }
+
+    private static byte[] mask(byte[] data, int offset) {
+        final byte[] result = new byte[data.length];
+        for (int i = 0; i < data.length; i++) {
+            result[i] = (byte) (data[i] ^ MASK[(offset + i) % 4]);
+        }
+        return result;
+    }
+}
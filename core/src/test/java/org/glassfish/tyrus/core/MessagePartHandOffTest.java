@@ -0,0 +1,303 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.websocket.MessageHandler;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link MessagePartHandOff}, {@link InputStreamBuffer} and {@link ReaderBuffer}.
+ */
+public class MessagePartHandOffTest {
+
+    @Test
+    public void testOrder() throws IOException {
+        final MessagePartHandOff<String> queue = new MessagePartHandOff<String>();
+
+        queue.put("a");
+        queue.put("b");
+        queue.put("c");
+        queue.put("d");
+        queue.finish();
+
+        assertEquals("a", queue.take());
+        assertEquals("b", queue.take());
+        assertEquals("c", queue.take());
+        assertEquals("d", queue.take());
+        assertNull(queue.take());
+        assertNull(queue.take());
+    }
+
+    @Test
+    public void testProducerDoesNotBlock() throws Exception {
+        final MessagePartHandOff<String> queue = new MessagePartHandOff<String>();
+
+        // no consumer is running.
+        for (int i = 0; i < 1000; i++) {
+            queue.put(Integer.toString(i));
+        }
+        queue.finish();
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Integer.toString(i), queue.take());
+        }
+        assertNull(queue.take());
+    }
+
+    @Test
+    public void testCancelDiscardsParts() throws Exception {
+        final MessagePartHandOff<String> queue = new MessagePartHandOff<String>();
+
+        queue.put("a");
+        queue.cancel();
+        queue.put("b");
+
+        try {
+            queue.take();
+            fail("IOException expected.");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCloseReleasesConsumer() throws Exception {
+        final MessagePartHandOff<String> queue = new MessagePartHandOff<String>();
+        final AtomicReference<Throwable> thrown = new AtomicReference<Throwable>();
+        final CountDownLatch takeLatch = new CountDownLatch(1);
+
+        final Thread consumer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    queue.take();
+                } catch (Throwable t) {
+                    thrown.set(t);
+                }
+                takeLatch.countDown();
+            }
+        };
+        consumer.start();
+
+        assertFalse(takeLatch.await(100, TimeUnit.MILLISECONDS));
+        queue.close();
+        assertTrue(takeLatch.await(1, TimeUnit.SECONDS));
+        assertTrue(thrown.get() instanceof IOException);
+    }
+
+    @Test
+    public void testInputStreamBuffer() throws Exception {
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            final InputStreamBuffer buffer = new InputStreamBuffer(executorService);
+            final AtomicReference<byte[]> received = new AtomicReference<byte[]>();
+            final CountDownLatch messageLatch = new CountDownLatch(1);
+
+            buffer.resetBuffer(1000);
+            buffer.setMessageHandler(new MessageHandler.Whole<InputStream>() {
+                @Override
+                public void onMessage(InputStream message) {
+                    try {
+                        final byte[] data = new byte[100];
+                        int read = 0;
+                        int count;
+                        // single byte and bulk reads.
+                        data[read++] = (byte) message.read();
+                        while ((count = message.read(data, read, data.length - read)) != -1) {
+                            read += count;
+                        }
+                        final byte[] result = new byte[read];
+                        System.arraycopy(data, 0, result, 0, read);
+                        received.set(result);
+                        messageLatch.countDown();
+                    } catch (IOException e) {
+                        fail(e.getMessage());
+                    }
+                }
+            });
+
+            final int parts = 32;
+            final byte[] expected = new byte[parts * 3];
+            for (int i = 0; i < parts; i++) {
+                final byte[] part = {(byte) i, (byte) (i + 1), (byte) (i + 2)};
+                System.arraycopy(part, 0, expected, i * 3, 3);
+                buffer.appendMessagePart(ByteBuffer.wrap(part), i == parts - 1);
+            }
+
+            assertTrue(messageLatch.await(1, TimeUnit.SECONDS));
+            assertArrayEquals(expected, received.get());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testReaderBufferHandlerReturnsEarly() throws Exception {
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            final ReaderBuffer buffer = new ReaderBuffer(executorService);
+            final AtomicReference<String> received = new AtomicReference<String>();
+            final CountDownLatch messageLatch = new CountDownLatch(1);
+
+            buffer.resetBuffer(1000);
+            buffer.setMessageHandler(new MessageHandler.Whole<Reader>() {
+                @Override
+                public void onMessage(Reader message) {
+                    try {
+                        final char[] chars = new char[10];
+                        received.set(new String(chars, 0, message.read(chars)));
+                        messageLatch.countDown();
+                    } catch (IOException e) {
+                        fail(e.getMessage());
+                    }
+                }
+            });
+
+            // handler reads just the first part; the rest is discarded.
+            for (int i = 0; i < 32; i++) {
+                buffer.appendMessagePart("abc", false);
+            }
+            buffer.appendMessagePart("abc", true);
+
+            assertTrue(messageLatch.await(1, TimeUnit.SECONDS));
+            assertEquals("abc", received.get());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testReaderBufferConsumerNotStarted() throws Exception {
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        try {
+            // the only executor thread is busy, the consumer cannot start.
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        blocked.await();
+                    } catch (InterruptedException e) {
+                        // ignore.
+                    }
+                }
+            });
+
+            final ReaderBuffer buffer = new ReaderBuffer(executorService);
+            final AtomicReference<String> received = new AtomicReference<String>();
+            final CountDownLatch messageLatch = new CountDownLatch(1);
+
+            buffer.resetBuffer(1000);
+            buffer.setMessageHandler(new MessageHandler.Whole<Reader>() {
+                @Override
+                public void onMessage(Reader message) {
+                    try {
+                        final StringBuilder sb = new StringBuilder();
+                        int c;
+                        while ((c = message.read()) != -1) {
+                            sb.append((char) c);
+                        }
+                        received.set(sb.toString());
+                        messageLatch.countDown();
+                    } catch (IOException e) {
+                        fail(e.getMessage());
+                    }
+                }
+            });
+
+            // producer must not block while the consumer is not running.
+            final StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                buffer.appendMessagePart("abc", i == 99);
+                expected.append("abc");
+            }
+
+            blocked.countDown();
+            assertTrue(messageLatch.await(1, TimeUnit.SECONDS));
+            assertEquals(expected.toString(), received.get());
+        } finally {
+            blocked.countDown();
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testReaderBufferTooBig() throws Exception {
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            final ReaderBuffer buffer = new ReaderBuffer(executorService);
+
+            buffer.resetBuffer(10);
+            buffer.setMessageHandler(new MessageHandler.Whole<Reader>() {
+                @Override
+                public void onMessage(Reader message) {
+                }
+            });
+
+            buffer.appendMessagePart("abcdef", false);
+            try {
+                buffer.appendMessagePart("abcdef", false);
+                fail("MessageTooBigException expected.");
+            } catch (MessageTooBigException e) {
+                // expected
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.glassfish.tyrus.core.frame.BinaryFrame;
+import org.glassfish.tyrus.core.frame.Frame;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests framing and unframing done by {@link ProtocolHandler}.
+ */
+public class ProtocolHandlerTest {
+
+    @Test
+    public void testServerFramePayloadNotCopied() {
+        final byte[] payload = new byte[200];
+        Arrays.fill(payload, (byte) 7);
+
+        final ByteBuffer[] buffers = new ProtocolHandler(false, null).frameBuffers(new BinaryFrame(payload, false,
+                                                                                                     true));
+
+        assertEquals(2, buffers.length);
+        assertEquals(4, buffers[0].remaining());
+        assertSame(payload, buffers[1].array());
+        assertEquals(payload.length, buffers[1].remaining());
+    }
+
+    @Test
+    public void testGatheredFrameEqualsCoalesced() {
+        for (int length : new int[]{0, 1, 125, 126, 0xFFFF, 0x10000}) {
+            final byte[] payload = new byte[length];
+            for (int i = 0; i < length; i++) {
+                payload[i] = (byte) i;
+            }
+
+            final ProtocolHandler protocolHandler = new ProtocolHandler(false, null);
+            final ByteBuffer[] buffers = protocolHandler.frameBuffers(new BinaryFrame(payload, false, true));
+            final ByteBuffer coalesced = protocolHandler.frame(new BinaryFrame(payload, false, true));
+
+            final ByteBuffer gathered = ByteBuffer.allocate(coalesced.remaining());
+            for (ByteBuffer buffer : buffers) {
+                gathered.put(buffer);
+            }
+            gathered.flip();
+
+            assertEquals(coalesced, gathered);
+            assertArrayEquals(payload, new ProtocolHandler(true, null).unframe(coalesced).getPayloadData());
+        }
+    }
+
+    @Test
+    public void testMaskedFrameRoundTrip() {
+        for (int length : new int[]{0, 1, 7, 8, 125, 126, 1000, 0x10000}) {
+            final byte[] payload = new byte[length];
+            for (int i = 0; i < length; i++) {
+                payload[i] = (byte) (i * 31);
+            }
+
+            final ByteBuffer[] buffers = new ProtocolHandler(true, null).frameBuffers(new BinaryFrame(payload, false,
+                                                                                                        true));
+            assertEquals(1, buffers.length);
+
+            final Frame frame = new ProtocolHandler(false, null).unframe(buffers[0]);
+            assertEquals(0x02, frame.getOpcode());
+            assertArrayEquals(payload, frame.getPayloadData());
+        }
+    }
+
+    @Test
+    public void testIncrementalUnframe() {
+        final ByteBuffer[] frames = new ByteBuffer[]{
+                new ProtocolHandler(true, null).frame(new BinaryFrame(new byte[]{1, 2, 3}, false, true)),
+                new ProtocolHandler(true, null).frame(new BinaryFrame(new byte[300], false, true)),
+                new ProtocolHandler(true, null).frame(new BinaryFrame(new byte[0], false, true))};
+
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false, null);
+        for (ByteBuffer frame : frames) {
+            final int length = frame.remaining();
+            final ByteBuffer buffer = ByteBuffer.allocate(length);
+
+            // feed the parser byte by byte, as when the frame is split across many reads.
+            for (int i = 0; i < length - 1; i++) {
+                buffer.put(frame.get());
+                buffer.flip();
+                assertNull(protocolHandler.unframe(buffer));
+                buffer.compact();
+            }
+
+            buffer.put(frame.get());
+            buffer.flip();
+            final Frame parsed = protocolHandler.unframe(buffer);
+            assertNotNull(parsed);
+            assertEquals(length - frameHeaderLength(parsed), parsed.getPayloadLength());
+            assertFalse(buffer.hasRemaining());
+        }
+    }
+
+    @Test
+    public void testUnframePayloadNotCopied() {
+        final ByteBuffer buffer = new ProtocolHandler(true, null).frame(new BinaryFrame(new byte[]{1, 2, 3}, false,
+                                                                                          true));
+
+        final Frame frame = new ProtocolHandler(false, null).unframe(buffer);
+        final ByteBuffer payload = frame.getPayloadBuffer();
+
+        assertSame(buffer.array(), payload.array());
+        assertEquals(3, payload.remaining());
+        assertArrayEquals(new byte[]{1, 2, 3}, frame.getPayloadData());
+    }
+
+    private static int frameHeaderLength(Frame frame) {
+        final long payloadLength = frame.getPayloadLength();
+        return (payloadLength <= 125 ? 2 : payloadLength <= 0xFFFF ? 4 : 10) + ProtocolHandler.MASK_SIZE;
+    }
+}
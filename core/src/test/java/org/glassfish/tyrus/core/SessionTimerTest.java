@@ -0,0 +1,175 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link SessionTimer}.
+ */
+public class SessionTimerTest {
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Wait until the sweep currently in progress (if any) finishes.
+     * <p>
+     * Executor is single threaded, so the submitted task is executed after the running sweep.
+     */
+    private void awaitSweep() throws InterruptedException {
+        try {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw new AssertionError(e);
+        } catch (TimeoutException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    public void testExpire() throws InterruptedException {
+        final SessionTimer timer = new SessionTimer(executor);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.MILLISECONDS.toNanos(50);
+
+        timer.schedule(new SessionTimer.Timeout() {
+            @Override
+            long expire(long now) {
+                assertTrue(now - deadline >= 0);
+                latch.countDown();
+                return -1;
+            }
+        }, deadline);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        // timeout is removed from the timer after expire(...) returns
+        awaitSweep();
+        assertEquals(0, timer.size());
+    }
+
+    @Test
+    public void testReschedule() throws InterruptedException {
+        final SessionTimer timer = new SessionTimer(executor);
+        final CountDownLatch latch = new CountDownLatch(3);
+        final AtomicInteger expirations = new AtomicInteger();
+
+        timer.schedule(new SessionTimer.Timeout() {
+            @Override
+            long expire(long now) {
+                expirations.incrementAndGet();
+                latch.countDown();
+                return latch.getCount() == 0 ? -1 : now + TimeUnit.MILLISECONDS.toNanos(20);
+            }
+        }, System.nanoTime());
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        awaitSweep();
+        assertEquals(3, expirations.get());
+        assertEquals(0, timer.size());
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        final SessionTimer timer = new SessionTimer(executor);
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        final SessionTimer.Timeout cancelled = new SessionTimer.Timeout() {
+            @Override
+            long expire(long now) {
+                latch.countDown();
+                return -1;
+            }
+        };
+        timer.schedule(cancelled, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50));
+        cancelled.cancel();
+
+        assertFalse(latch.await(200, TimeUnit.MILLISECONDS));
+        awaitSweep();
+        assertEquals(0, timer.size());
+    }
+
+    @Test
+    public void testLongTimeout() {
+        final SessionTimer timer = new SessionTimer(executor);
+        final AtomicInteger expirations = new AtomicInteger();
+        final long start = System.nanoTime();
+
+        // more than one wheel revolution.
+        final long deadline = start + TimeUnit.MILLISECONDS.toNanos(SessionTimer.TICK_DURATION * 2000);
+        timer.schedule(new SessionTimer.Timeout() {
+            @Override
+            long expire(long now) {
+                expirations.incrementAndGet();
+                return -1;
+            }
+        }, deadline);
+
+        timer.sweep(start + TimeUnit.MILLISECONDS.toNanos(SessionTimer.TICK_DURATION * 1000));
+        assertEquals(0, expirations.get());
+        assertEquals(1, timer.size());
+
+        timer.sweep(deadline + TimeUnit.MILLISECONDS.toNanos(SessionTimer.TICK_DURATION));
+        assertEquals(1, expirations.get());
+        assertEquals(0, timer.size());
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link ThreadLocalMaskingKeyGenerator}.
+ */
+public class ThreadLocalMaskingKeyGeneratorTest {
+
+    private static final int THREADS = 4;
+    private static final int KEYS_PER_THREAD = ThreadLocalMaskingKeyGenerator.BLOCK_SIZE * 3 + 1;
+
+    @Test
+    public void testKeysAcrossBlocks() {
+        final MaskingKeyGenerator generator = new ThreadLocalMaskingKeyGenerator();
+        final Set<Integer> keys = new HashSet<Integer>();
+
+        for (int i = 0; i < KEYS_PER_THREAD; i++) {
+            keys.add(generator.nextInt());
+        }
+
+        // 2^32 possible values, collision is very unlikely
+        assertTrue(keys.size() > KEYS_PER_THREAD - 2);
+    }
+
+    @Test
+    public void testThreadsDoNotShareKeys() throws InterruptedException {
+        final MaskingKeyGenerator generator = new ThreadLocalMaskingKeyGenerator();
+        final Set<Integer> keys = Collections.synchronizedSet(new HashSet<Integer>());
+        final CountDownLatch latch = new CountDownLatch(THREADS);
+
+        for (int i = 0; i < THREADS; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < KEYS_PER_THREAD; j++) {
+                        keys.add(generator.nextInt());
+                    }
+                    latch.countDown();
+                }
+            }.start();
+        }
+
+        latch.await();
+        assertTrue(keys.size() > THREADS * KEYS_PER_THREAD - 2);
+    }
+
+    @Test
+    public void testAllBitsUsed() {
+        final MaskingKeyGenerator generator = new ThreadLocalMaskingKeyGenerator();
+        int or = 0;
+        int and = -1;
+
+        for (int i = 0; i < KEYS_PER_THREAD; i++) {
+            final int key = generator.nextInt();
+            or |= key;
+            and &= key;
+        }
+
+        assertEquals(-1, or);
+        assertEquals(0, and);
+    }
+}
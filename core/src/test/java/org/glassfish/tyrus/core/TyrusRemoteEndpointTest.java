@@ -41,6 +41,7 @@
 package org.glassfish.tyrus.core;
 
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Writer;
@@ -51,11 +52,15 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.websocket.ClientEndpointConfig;
 import javax.websocket.DeploymentException;
@@ -71,6 +76,7 @@ import javax.websocket.Session;
 import javax.websocket.server.ServerEndpoint;
 
 import org.glassfish.tyrus.core.frame.Frame;
+import org.glassfish.tyrus.spi.CompletionHandler;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -128,9 +134,10 @@ public class TyrusRemoteEndpointTest {
         OutputStream stream = rew.getSendStream();
 
         stream.write(sentBytesComplete);
-        Assert.assertEquals(6, tre.getLastSentMessageSize());
-        stream.close();
+        // data are buffered until the stream is closed.
         Assert.assertEquals(0, tre.getLastSentMessageSize());
+        stream.close();
+        Assert.assertEquals(6, tre.getLastSentMessageSize());
 
         Assert.assertArrayEquals("Writing byte[] to stream and flushing.", sentBytesComplete,
                                  tre.getBytesAndClearBuffer());
@@ -145,11 +152,11 @@ public class TyrusRemoteEndpointTest {
         OutputStream stream = rew.getSendStream();
 
         stream.write(sentBytes);
-        Assert.assertEquals(3, tre.getLastSentMessageSize());
+        Assert.assertEquals(0, tre.getLastSentMessageSize());
         stream.write(sentBytes);
-        Assert.assertEquals(3, tre.getLastSentMessageSize());
-        stream.close();
         Assert.assertEquals(0, tre.getLastSentMessageSize());
+        stream.close();
+        Assert.assertEquals(6, tre.getLastSentMessageSize());
 
         Assert.assertArrayEquals("Writing byte[] to stream and flushing.", sentBytesComplete,
                                  tre.getBytesAndClearBuffer());
@@ -179,6 +186,126 @@ public class TyrusRemoteEndpointTest {
         Assert.assertEquals("Writing first character.", String.valueOf(toSend[2]), tre.getStringAndCleanBuilder());
     }
 
+    @Test
+    public void testSendStreamFragments() throws Exception {
+        final List<ByteBuffer> written = new ArrayList<ByteBuffer>();
+        final TyrusSession session = createBatchingSession(written, null);
+        session.setSendStreamFragmentSize(4);
+
+        final OutputStream stream = session.getBasicRemote().getSendStream();
+        for (byte b : "abcdefghij".getBytes("UTF-8")) {
+            stream.write(b);
+        }
+
+        // fragment is sent when the buffer is full and more data are written.
+        Assert.assertEquals(2, written.size());
+        Assert.assertArrayEquals(new byte[]{0x02, 0x04, 'a', 'b', 'c', 'd'}, Utils.getRemainingArray(written.get(0)));
+        Assert.assertArrayEquals(new byte[]{0x00, 0x04, 'e', 'f', 'g', 'h'}, Utils.getRemainingArray(written.get(1)));
+
+        stream.close();
+        Assert.assertEquals(3, written.size());
+        Assert.assertArrayEquals(new byte[]{(byte) 0x80, 0x02, 'i', 'j'}, Utils.getRemainingArray(written.get(2)));
+
+        // closing again does nothing, writing fails.
+        stream.close();
+        Assert.assertEquals(3, written.size());
+        try {
+            stream.write(sentBytes);
+            Assert.fail("IOException expected.");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSendWriterFragments() throws Exception {
+        final List<ByteBuffer> written = new ArrayList<ByteBuffer>();
+        final TyrusSession session = createBatchingSession(written, null);
+        session.setSendStreamFragmentSize(4);
+
+        final Writer writer = session.getBasicRemote().getSendWriter();
+        writer.write("abcdefghij");
+        Assert.assertEquals(2, written.size());
+        Assert.assertArrayEquals(new byte[]{0x01, 0x04, 'a', 'b', 'c', 'd'}, Utils.getRemainingArray(written.get(0)));
+        Assert.assertArrayEquals(new byte[]{0x00, 0x04, 'e', 'f', 'g', 'h'}, Utils.getRemainingArray(written.get(1)));
+
+        writer.flush();
+        Assert.assertEquals(3, written.size());
+        Assert.assertArrayEquals(new byte[]{0x00, 0x02, 'i', 'j'}, Utils.getRemainingArray(written.get(2)));
+
+        writer.close();
+        Assert.assertEquals(4, written.size());
+        Assert.assertArrayEquals(new byte[]{(byte) 0x80, 0x00}, Utils.getRemainingArray(written.get(3)));
+    }
+
+    @Test
+    public void testSendWriterSurrogatePair() throws Exception {
+        final List<ByteBuffer> written = new ArrayList<ByteBuffer>();
+        final TyrusSession session = createBatchingSession(written, null);
+        session.setSendStreamFragmentSize(4);
+
+        final String message = "abc\uD83D\uDE00def";
+        final Writer writer = session.getBasicRemote().getSendWriter();
+        for (char c : message.toCharArray()) {
+            writer.write(c);
+        }
+        writer.close();
+
+        // high surrogate is not sent without the low one.
+        Assert.assertArrayEquals(new byte[]{0x01, 0x03, 'a', 'b', 'c'}, Utils.getRemainingArray(written.get(0)));
+
+        final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        for (ByteBuffer frame : written) {
+            payload.write(Utils.getRemainingArray(frame), 2, frame.remaining() - 2);
+        }
+        Assert.assertEquals(message, new String(payload.toByteArray(), "UTF-8"));
+    }
+
+    @Test(timeout = 5000)
+    public void testSendWriterBatching() throws Exception {
+        final List<ByteBuffer> written = new ArrayList<ByteBuffer>();
+        final TyrusSession session = createBatchingSession(written, null);
+        session.setSendStreamFragmentSize(4);
+        session.getBasicRemote().setBatchingAllowed(true);
+
+        // fragments are batched, the writer does not wait for them.
+        final Writer writer = session.getBasicRemote().getSendWriter();
+        writer.write("hello");
+        writer.flush();
+        writer.close();
+        Assert.assertTrue(written.isEmpty());
+
+        session.getBasicRemote().flushBatch();
+        Assert.assertEquals(1, written.size());
+        Assert.assertArrayEquals(new byte[]{0x01, 0x04, 'h', 'e', 'l', 'l', 0x00, 0x01, 'o', (byte) 0x80, 0x00},
+                                 Utils.getRemainingArray(written.get(0)));
+    }
+
+    @Test(timeout = 5000)
+    public void testSendStreamBatching() throws Exception {
+        final List<ByteBuffer> written = new ArrayList<ByteBuffer>();
+        final TyrusSession session = createBatchingSession(written, null);
+        session.setSendStreamFragmentSize(4);
+        session.getBasicRemote().setBatchingAllowed(true);
+
+        final OutputStream stream = session.getBasicRemote().getSendStream();
+        stream.write("hello".getBytes("UTF-8"));
+        stream.close();
+        Assert.assertTrue(written.isEmpty());
+
+        // disabling batching writes the batched fragments.
+        session.getBasicRemote().setBatchingAllowed(false);
+        Assert.assertEquals(1, written.size());
+        Assert.assertArrayEquals(new byte[]{0x02, 0x04, 'h', 'e', 'l', 'l', (byte) 0x80, 0x01, 'o'},
+                                 Utils.getRemainingArray(written.get(0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSendStreamFragmentSizeInvalid() {
+        final TyrusSession session = createBatchingSession(new ArrayList<ByteBuffer>(), null);
+        session.setSendStreamFragmentSize(0);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testBasicSendText() throws IOException {
         TestRemoteEndpoint tre = new TestRemoteEndpoint();
@@ -320,12 +447,247 @@ public class TyrusRemoteEndpointTest {
         rew.sendObject(null);
     }
 
+    @Test
+    public void testBatching() throws Exception {
+        final List<ByteBuffer> written = new ArrayList<ByteBuffer>();
+        final TyrusSession session = createBatchingSession(written, null);
+        final javax.websocket.RemoteEndpoint.Basic basic = session.getBasicRemote();
+        final CountDownLatch handlerLatch = new CountDownLatch(1);
+
+        basic.setBatchingAllowed(true);
+        Assert.assertTrue(basic.getBatchingAllowed());
+        Assert.assertTrue(session.getAsyncRemote().getBatchingAllowed());
+
+        // blocking sends return immediately, message is only batched.
+        basic.sendText("abc");
+        basic.sendBinary(ByteBuffer.wrap(sentBytes));
+        session.getAsyncRemote().sendText("abc", new SendHandler() {
+            @Override
+            public void onResult(SendResult result) {
+                if (result.isOK()) {
+                    handlerLatch.countDown();
+                }
+            }
+        });
+        Assert.assertTrue(written.isEmpty());
+        Assert.assertEquals(1, handlerLatch.getCount());
+
+        basic.flushBatch();
+
+        Assert.assertTrue(handlerLatch.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals(1, written.size());
+        Assert.assertArrayEquals(new byte[]{(byte) 0x81, 0x03, 'a', 'b', 'c', (byte) 0x82, 0x03, 'a', 'b', 'c',
+                                         (byte) 0x81, 0x03, 'a', 'b', 'c'}, Utils.getRemainingArray(written.get(0)));
+    }
+
+    @Test
+    public void testBatchingMaxBatchSize() throws Exception {
+        final List<ByteBuffer> written = new ArrayList<ByteBuffer>();
+        final TyrusSession session = createBatchingSession(written, null);
+        final javax.websocket.RemoteEndpoint.Basic basic = session.getBasicRemote();
+
+        session.setMaxBatchSize(16);
+        basic.setBatchingAllowed(true);
+
+        // 5 bytes per frame; batch is written when it would not fit into max batch size.
+        for (int i = 0; i < 4; i++) {
+            basic.sendText("abc");
+        }
+
+        Assert.assertEquals(1, written.size());
+        Assert.assertEquals(15, written.get(0).remaining());
+
+        // disabling batching writes batched messages.
+        basic.setBatchingAllowed(false);
+        Assert.assertEquals(2, written.size());
+        Assert.assertEquals(5, written.get(1).remaining());
+
+        basic.sendText("abc");
+        Assert.assertEquals(3, written.size());
+    }
+
+    @Test
+    public void testBatchingControlFrame() throws Exception {
+        final List<ByteBuffer> written = new ArrayList<ByteBuffer>();
+        final TyrusSession session = createBatchingSession(written, null);
+        final javax.websocket.RemoteEndpoint.Basic basic = session.getBasicRemote();
+
+        basic.setBatchingAllowed(true);
+        basic.sendText("abc");
+        basic.sendPing(null);
+
+        Assert.assertEquals(1, written.size());
+        Assert.assertArrayEquals(new byte[]{(byte) 0x81, 0x03, 'a', 'b', 'c', (byte) 0x89, 0x00},
+                                 Utils.getRemainingArray(written.get(0)));
+    }
+
+    @Test
+    public void testBatchingMaxBatchDelay() throws Exception {
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            final List<ByteBuffer> written = new ArrayList<ByteBuffer>();
+            final TyrusSession session = createBatchingSession(written, executor);
+
+            session.setMaxBatchDelay(20);
+            session.getBasicRemote().setBatchingAllowed(true);
+            session.getAsyncRemote().sendText("abc").get(1, TimeUnit.SECONDS);
+
+            Assert.assertEquals(1, written.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBatchingFailureAfterEmptyFlush() throws Exception {
+        final List<ByteBuffer> written = new ArrayList<ByteBuffer>();
+        final AtomicBoolean fail = new AtomicBoolean(false);
+        final TyrusSession session = createBatchingSession(new RecordingWriter(written) {
+            @Override
+            public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+                if (fail.get()) {
+                    completionHandler.failed(new IOException("write failed"));
+                } else {
+                    super.write(buffer, completionHandler);
+                }
+            }
+        }, null);
+        final javax.websocket.RemoteEndpoint.Basic basic = session.getBasicRemote();
+
+        basic.setBatchingAllowed(true);
+        // nothing to flush.
+        basic.flushBatch();
+
+        fail.set(true);
+        basic.sendText("abc");
+        try {
+            basic.flushBatch();
+            Assert.fail("IOException expected.");
+        } catch (IOException e) {
+            Assert.assertEquals("write failed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testBatchingLargeFrame() throws Exception {
+        final List<ByteBuffer> written = new ArrayList<ByteBuffer>();
+        final TyrusSession session = createBatchingSession(written, null);
+        final javax.websocket.RemoteEndpoint.Basic basic = session.getBasicRemote();
+
+        session.setMaxBatchSize(16);
+        basic.setBatchingAllowed(true);
+
+        basic.sendText("abc");
+        Assert.assertTrue(written.isEmpty());
+
+        // frame bigger than the batch is written directly, after already batched frames.
+        final byte[] payload = new byte[20];
+        basic.sendBinary(ByteBuffer.wrap(payload));
+
+        Assert.assertArrayEquals(new byte[]{(byte) 0x81, 0x03, 'a', 'b', 'c'}, Utils.getRemainingArray(written.get(0)));
+        final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        for (ByteBuffer buffer : written.subList(1, written.size())) {
+            frame.write(Utils.getRemainingArray(buffer));
+        }
+        Assert.assertEquals(22, frame.size());
+        Assert.assertEquals((byte) 0x82, frame.toByteArray()[0]);
+
+        basic.flushBatch();
+        Assert.assertEquals(22, frame.size());
+    }
+
+    @Test
+    public void testBatchingStaleFlush() throws Exception {
+        final List<ByteBuffer> written = new ArrayList<ByteBuffer>();
+        final List<Long> startedBatches = new ArrayList<Long>();
+        final AtomicInteger flushedBatches = new AtomicInteger();
+
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false, null);
+        protocolHandler.setWriter(new RecordingWriter(written));
+        protocolHandler.setBatchListener(new ProtocolHandler.BatchListener() {
+            @Override
+            public void batchStarted(long batchNumber) {
+                startedBatches.add(batchNumber);
+            }
+
+            @Override
+            public void batchFlushed() {
+                flushedBatches.incrementAndGet();
+            }
+        });
+        protocolHandler.setBatchingAllowed(true);
+
+        protocolHandler.send("abc");
+        protocolHandler.flushBatch().get(1, TimeUnit.SECONDS);
+        Assert.assertEquals(1, flushedBatches.get());
+        Assert.assertEquals(1, written.size());
+
+        // empty batch - nothing written, listener not notified.
+        protocolHandler.flushBatch().get(1, TimeUnit.SECONDS);
+        Assert.assertEquals(1, flushedBatches.get());
+
+        protocolHandler.send("def");
+        Assert.assertEquals(2, startedBatches.size());
+
+        // delayed flush scheduled for the first batch does not write the second one.
+        protocolHandler.flushBatch(startedBatches.get(0)).get(1, TimeUnit.SECONDS);
+        Assert.assertEquals(1, written.size());
+
+        protocolHandler.flushBatch(startedBatches.get(1)).get(1, TimeUnit.SECONDS);
+        Assert.assertEquals(2, written.size());
+        Assert.assertEquals(2, flushedBatches.get());
+    }
+
+    private TyrusSession createBatchingSession(final List<ByteBuffer> written,
+                                               final ScheduledExecutorService executor) {
+        return createBatchingSession(new RecordingWriter(written), executor);
+    }
+
+    private TyrusSession createBatchingSession(org.glassfish.tyrus.spi.Writer writer,
+                                               final ScheduledExecutorService executor) {
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false, null);
+        protocolHandler.setWriter(writer);
+
+        // no endpoint wrapper, session is created below.
+        final TyrusWebSocket webSocket = new TyrusWebSocket(protocolHandler, null);
+        webSocket.onConnect(null, null, null, null, null);
+
+        return new TyrusSession(new TestContainer() {
+            @Override
+            public ScheduledExecutorService getScheduledExecutorService() {
+                return executor;
+            }
+        }, webSocket, endpointWrapper, null, null, true, null, null, Collections.<String, String>emptyMap(), null,
+                                new HashMap<String, List<String>>(), null, null, null, new DebugContext());
+    }
+
     private TyrusSession createTestSession(TyrusWebSocket webSocket, TyrusEndpointWrapper endpointWrapper) {
         return new TyrusSession(null, webSocket, endpointWrapper, null, null, true, null, null,
                                 Collections.<String, String>emptyMap(), null, new HashMap<String, List<String>>(), null,
                                 null, null, new DebugContext());
     }
 
+    private static class RecordingWriter extends org.glassfish.tyrus.spi.Writer {
+
+        private final List<ByteBuffer> written;
+
+        private RecordingWriter(List<ByteBuffer> written) {
+            this.written = written;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+            synchronized (written) {
+                written.add(buffer);
+            }
+            completionHandler.completed(buffer);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
     private class TestRemoteEndpoint extends TyrusWebSocket {
 
         private final ArrayList<Byte> bytesToSend = new ArrayList<Byte>();
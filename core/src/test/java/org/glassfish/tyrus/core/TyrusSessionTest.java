@@ -43,9 +43,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.websocket.Decoder;
 import javax.websocket.DeploymentException;
 import javax.websocket.Endpoint;
 import javax.websocket.EndpointConfig;
@@ -54,8 +58,12 @@ import javax.websocket.OnMessage;
 import javax.websocket.PongMessage;
 import javax.websocket.Session;
 import javax.websocket.server.ServerEndpoint;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.glassfish.tyrus.core.coder.CoderAdapter;
 
 import org.junit.Test;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -471,6 +479,88 @@ public class TyrusSessionTest {
         assertNotNull(session2.getUserProperties().get(test2));
     }
 
+    @Test
+    public void decoderDispatchTest() throws Exception {
+        final TyrusEndpointWrapper decodingEndpointWrapper = new TyrusEndpointWrapper(
+                EchoEndpoint.class,
+                ServerEndpointConfig.Builder.create(EchoEndpoint.class, "/echo").decoders(Arrays.asList(
+                        RejectingDecoder.class, IntegerDecoder.class, LongDecoder.class)).build(),
+                ComponentProviderService.create(), null, "", null, null, null, null, null);
+
+        final TyrusSession session = createSession(decodingEndpointWrapper);
+        final List<Integer> received = new ArrayList<Integer>();
+        session.addMessageHandler(Integer.class, new MessageHandler.Whole<Integer>() {
+            @Override
+            public void onMessage(Integer message) {
+                received.add(message);
+            }
+        });
+
+        IntegerDecoder.INSTANCES.set(0);
+        LongDecoder.WILL_DECODE.set(0);
+
+        session.notifyWholeMessageHandlers("1", true);
+        session.notifyWholeMessageHandlers("2", true);
+        session.notifyWholeMessageHandlers("3", true);
+
+        assertEquals(Arrays.asList(1, 2, 3), received);
+        // decoder instance is created once per session
+        assertEquals(1, IntegerDecoder.INSTANCES.get());
+        // there is no handler which would accept Long
+        assertEquals(0, LongDecoder.WILL_DECODE.get());
+
+        createSession(decodingEndpointWrapper).notifyWholeMessageHandlers("4", true);
+        assertEquals(Arrays.asList(1, 2, 3), received);
+    }
+
+    public static class RejectingDecoder extends CoderAdapter implements Decoder.Text<Integer> {
+
+        @Override
+        public Integer decode(String s) {
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public boolean willDecode(String s) {
+            return false;
+        }
+    }
+
+    public static class IntegerDecoder extends CoderAdapter implements Decoder.Text<Integer> {
+
+        static final AtomicInteger INSTANCES = new AtomicInteger();
+
+        public IntegerDecoder() {
+            INSTANCES.incrementAndGet();
+        }
+
+        @Override
+        public Integer decode(String s) {
+            return Integer.valueOf(s);
+        }
+
+        @Override
+        public boolean willDecode(String s) {
+            return true;
+        }
+    }
+
+    public static class LongDecoder extends CoderAdapter implements Decoder.Text<Long> {
+
+        static final AtomicInteger WILL_DECODE = new AtomicInteger();
+
+        @Override
+        public Long decode(String s) {
+            return Long.valueOf(s);
+        }
+
+        @Override
+        public boolean willDecode(String s) {
+            WILL_DECODE.incrementAndGet();
+            return true;
+        }
+    }
+
     private TyrusSession createSession(TyrusEndpointWrapper endpointWrapper) {
         return new TyrusSession(null, new TestRemoteEndpoint(), endpointWrapper, null, null, false, null, null, null,
                                 null, new HashMap<String, List<String>>(), null, null, null, new DebugContext());
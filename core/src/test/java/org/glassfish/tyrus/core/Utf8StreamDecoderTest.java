@@ -0,0 +1,197 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link Utf8StreamDecoder}.
+ */
+public class Utf8StreamDecoderTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String TEXT = "ascii \u00e9\u00e8 \u20ac\u4e2d \ud83d\ude00 end";
+
+    @Test
+    public void testDecode() {
+        assertEquals(TEXT, new Utf8StreamDecoder().decode(ByteBuffer.wrap(TEXT.getBytes(UTF_8)), true));
+        assertEquals("", new Utf8StreamDecoder().decode(ByteBuffer.allocate(0), true));
+    }
+
+    @Test
+    public void testDirectBuffer() {
+        final byte[] bytes = TEXT.getBytes(UTF_8);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+
+        assertEquals(TEXT, new Utf8StreamDecoder().decode(buffer, true));
+        assertEquals(bytes.length, buffer.remaining());
+    }
+
+    @Test
+    public void testFragments() {
+        final byte[] bytes = TEXT.getBytes(UTF_8);
+        final Utf8StreamDecoder decoder = new Utf8StreamDecoder();
+
+        for (int i = 0; i <= bytes.length; i++) {
+            for (int j = i; j <= bytes.length; j++) {
+                final String decoded = decoder.decode(bytes, 0, i, false)
+                        + decoder.decode(bytes, i, j - i, false)
+                        + decoder.decode(bytes, j, bytes.length - j, true);
+                assertEquals(TEXT, decoded);
+                assertEquals(0, decoder.getRemaining());
+            }
+        }
+    }
+
+    @Test
+    public void testByteByByte() {
+        final byte[] bytes = TEXT.getBytes(UTF_8);
+        final Utf8StreamDecoder decoder = new Utf8StreamDecoder();
+        final StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < bytes.length; i++) {
+            sb.append(decoder.decode(bytes, i, 1, i == bytes.length - 1));
+        }
+
+        assertEquals(TEXT, sb.toString());
+    }
+
+    @Test
+    public void testLargeMessage() {
+        final StringBuilder sb = new StringBuilder();
+        while (sb.length() < Utf8StreamDecoder.MAX_RETAINED_CHARS * 2) {
+            sb.append(TEXT);
+        }
+        final String text = sb.toString();
+
+        final Utf8StreamDecoder decoder = new Utf8StreamDecoder();
+        assertEquals(text, decoder.decode(ByteBuffer.wrap(text.getBytes(UTF_8)), true));
+        assertEquals(TEXT, decoder.decode(ByteBuffer.wrap(TEXT.getBytes(UTF_8)), true));
+    }
+
+    @Test
+    public void testDecodersOnSameThread() {
+        final byte[] bytes = TEXT.getBytes(UTF_8);
+        final Utf8StreamDecoder first = new Utf8StreamDecoder();
+        final Utf8StreamDecoder second = new Utf8StreamDecoder();
+
+        // decoders share the scratch buffer, but not the incomplete code points.
+        final StringBuilder firstText = new StringBuilder();
+        final StringBuilder secondText = new StringBuilder();
+        for (int i = 0; i < bytes.length; i++) {
+            firstText.append(first.decode(bytes, i, 1, i == bytes.length - 1));
+            secondText.append(second.decode(bytes, 0, bytes.length, true));
+        }
+
+        assertEquals(TEXT, firstText.toString());
+        assertEquals(TEXT.length() * bytes.length, secondText.length());
+    }
+
+    @Test
+    public void testInvalid() {
+        // unexpected continuation, overlong forms, surrogate, above U+10FFFF, invalid bytes
+        assertInvalid(0x80);
+        assertInvalid(0xc0, 0xaf);
+        assertInvalid(0xe0, 0x80, 0xaf);
+        assertInvalid(0xf0, 0x80, 0x80, 0xaf);
+        assertInvalid(0xed, 0xa0, 0x80);
+        assertInvalid(0xf4, 0x90, 0x80, 0x80);
+        assertInvalid(0xfe);
+        assertInvalid(0xc3, 0x41);
+        assertInvalid(0xe2, 0x82, 0x41);
+    }
+
+    @Test
+    public void testIncompleteLastFragment() {
+        final Utf8StreamDecoder decoder = new Utf8StreamDecoder();
+        assertEquals("a", decoder.decode(new byte[]{'a', (byte) 0xe2, (byte) 0x82}, 0, 3, false));
+        assertEquals(2, decoder.getRemaining());
+
+        try {
+            decoder.decode(new byte[0], 0, 0, true);
+            fail();
+        } catch (Utf8DecodingException e) {
+            // expected
+        }
+        assertEquals(0, decoder.getRemaining());
+    }
+
+    @Test
+    public void testFailFast() {
+        // invalid second byte is reported even though the sequence is not complete yet
+        final Utf8StreamDecoder decoder = new Utf8StreamDecoder();
+        assertEquals("", decoder.decode(new byte[]{(byte) 0xf4}, 0, 1, false));
+
+        try {
+            decoder.decode(new byte[]{(byte) 0x90}, 0, 1, false);
+            fail();
+        } catch (Utf8DecodingException e) {
+            // expected
+        }
+
+        try {
+            new Utf8StreamDecoder().decode(new byte[]{(byte) 0xed, (byte) 0xa0}, 0, 2, false);
+            fail();
+        } catch (Utf8DecodingException e) {
+            // expected
+        }
+    }
+
+    private static void assertInvalid(int... values) {
+        final byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+
+        try {
+            new Utf8StreamDecoder().decode(ByteBuffer.wrap(bytes), true);
+            fail();
+        } catch (Utf8DecodingException e) {
+            // expected
+        }
+    }
+}
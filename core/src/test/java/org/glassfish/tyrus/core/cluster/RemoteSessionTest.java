@@ -0,0 +1,425 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core.cluster;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+import javax.websocket.CloseReason;
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+
+import org.glassfish.tyrus.core.TyrusFuture;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link RemoteSession} sends.
+ */
+public class RemoteSessionTest {
+
+    @Test
+    public void testBatchingPipelinesSends() throws IOException {
+        final RecordingClusterContext clusterContext = new RecordingClusterContext(false);
+        final RemoteEndpoint.Basic basicRemote = createSession(clusterContext).getBasicRemote();
+
+        basicRemote.setBatchingAllowed(true);
+        assertTrue(basicRemote.getBatchingAllowed());
+
+        // sends don't wait for the confirmation.
+        basicRemote.sendText("a");
+        basicRemote.sendText("b");
+        basicRemote.sendBinary(ByteBuffer.wrap(new byte[]{1}));
+        assertEquals(3, clusterContext.sends.size());
+
+        for (Send send : clusterContext.sends) {
+            send.future.setResult(null);
+        }
+        basicRemote.flushBatch();
+    }
+
+    @Test
+    public void testFlushBatchReportsFailure() throws IOException {
+        final RecordingClusterContext clusterContext = new RecordingClusterContext(false);
+        final RemoteSession session = createSession(clusterContext);
+
+        session.getAsyncRemote().setBatchingAllowed(true);
+        assertTrue(session.getBasicRemote().getBatchingAllowed());
+
+        session.getBasicRemote().sendText("a");
+        session.getBasicRemote().sendText("b");
+        clusterContext.sends.get(0).future.setFailure(new IOException("failed"));
+        clusterContext.sends.get(1).future.setResult(null);
+
+        try {
+            session.getBasicRemote().setBatchingAllowed(false);
+            fail("IOException expected.");
+        } catch (IOException e) {
+            assertEquals("failed", e.getMessage());
+        }
+
+        assertFalse(session.getAsyncRemote().getBatchingAllowed());
+        // failure is reported only once.
+        session.getBasicRemote().flushBatch();
+    }
+
+    @Test
+    public void testSendWithoutBatching() {
+        final RecordingClusterContext clusterContext = new RecordingClusterContext(true);
+        clusterContext.failure = new IOException("failed");
+
+        try {
+            createSession(clusterContext).getBasicRemote().sendText("a");
+            fail("IOException expected.");
+        } catch (IOException e) {
+            assertEquals("failed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testBinaryNotCopied() throws IOException {
+        final RecordingClusterContext clusterContext = new RecordingClusterContext(true);
+        final RemoteSession session = createSession(clusterContext);
+
+        final byte[] data = new byte[]{1, 2, 3};
+        session.getBasicRemote().sendBinary(ByteBuffer.wrap(data));
+        assertSame(data, clusterContext.sends.get(0).data);
+
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        buffer.position(1);
+        session.getBasicRemote().sendBinary(buffer);
+        assertNotSame(data, clusterContext.sends.get(1).data);
+        assertArrayEquals(new byte[]{2, 3}, clusterContext.sends.get(1).data);
+    }
+
+    @Test
+    public void testBinaryCopiedWhenNotAwaited() throws IOException {
+        final RecordingClusterContext clusterContext = new RecordingClusterContext(false);
+        final RemoteSession session = createSession(clusterContext);
+
+        final byte[] data = new byte[]{1, 2, 3};
+        session.getAsyncRemote().sendBinary(ByteBuffer.wrap(data));
+
+        session.getBasicRemote().setBatchingAllowed(true);
+        session.getBasicRemote().sendBinary(ByteBuffer.wrap(data));
+        session.getBasicRemote().sendBinary(ByteBuffer.wrap(data), true);
+
+        // the caller may reuse the array as soon as the send methods return.
+        data[0] = 42;
+
+        assertEquals(3, clusterContext.sends.size());
+        for (Send send : clusterContext.sends) {
+            assertNotSame(data, send.data);
+            assertArrayEquals(new byte[]{1, 2, 3}, send.data);
+            send.future.setResult(null);
+        }
+        session.getBasicRemote().flushBatch();
+    }
+
+    @Test
+    public void testSendStream() throws IOException {
+        final RecordingClusterContext clusterContext = new RecordingClusterContext(true);
+        final OutputStream stream = createSession(clusterContext).getBasicRemote().getSendStream();
+
+        final byte[] data = new byte[20000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        stream.write(data[0]);
+        stream.write(data, 1, data.length - 1);
+        stream.close();
+
+        assertEquals(3, clusterContext.sends.size());
+        assertEquals(8192, clusterContext.sends.get(0).data.length);
+        assertFalse(clusterContext.sends.get(0).last);
+        assertEquals(8192, clusterContext.sends.get(1).data.length);
+        assertFalse(clusterContext.sends.get(1).last);
+        assertEquals(20000 - 2 * 8192, clusterContext.sends.get(2).data.length);
+        assertTrue(clusterContext.sends.get(2).last);
+
+        final ByteBuffer sent = ByteBuffer.allocate(data.length);
+        for (Send send : clusterContext.sends) {
+            sent.put(send.data);
+        }
+        assertArrayEquals(data, sent.array());
+    }
+
+    @Test
+    public void testSendWriter() throws IOException {
+        final RecordingClusterContext clusterContext = new RecordingClusterContext(true);
+        final Writer writer = createSession(clusterContext).getBasicRemote().getSendWriter();
+
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 8191; i++) {
+            sb.append('a');
+        }
+        // surrogate pair crossing the fragment boundary.
+        sb.append("\uD83D\uDE00");
+
+        writer.write(sb.toString());
+        writer.close();
+
+        assertEquals(2, clusterContext.sends.size());
+        assertEquals(sb.substring(0, 8191), clusterContext.sends.get(0).text);
+        assertFalse(clusterContext.sends.get(0).last);
+        assertEquals("\uD83D\uDE00", clusterContext.sends.get(1).text);
+        assertTrue(clusterContext.sends.get(1).last);
+    }
+
+    @Test
+    public void testSendWriterFlushHighSurrogate() throws IOException {
+        final RecordingClusterContext clusterContext = new RecordingClusterContext(true);
+        final Writer writer = createSession(clusterContext).getBasicRemote().getSendWriter();
+
+        // lone high surrogate is not sent, it is held back until the low one is written.
+        writer.write('\uD83D');
+        writer.flush();
+        assertTrue(clusterContext.sends.isEmpty());
+
+        writer.write('\uDE00');
+        writer.flush();
+        writer.close();
+
+        assertEquals(2, clusterContext.sends.size());
+        assertEquals("\uD83D\uDE00", clusterContext.sends.get(0).text);
+        assertEquals("", clusterContext.sends.get(1).text);
+        assertTrue(clusterContext.sends.get(1).last);
+    }
+
+    @Test
+    public void testSendStreamPartialFragments() throws IOException {
+        final RecordingClusterContext clusterContext = new RecordingClusterContext(true);
+        final OutputStream stream = createSession(clusterContext).getBasicRemote().getSendStream();
+
+        // partial fragments are copied, the buffer is reused.
+        stream.write(new byte[]{1, 2});
+        stream.flush();
+        stream.write(new byte[]{3});
+        stream.close();
+
+        assertEquals(2, clusterContext.sends.size());
+        assertArrayEquals(new byte[]{1, 2}, clusterContext.sends.get(0).data);
+        assertArrayEquals(new byte[]{3}, clusterContext.sends.get(1).data);
+    }
+
+    @Test(expected = IOException.class)
+    public void testSendStreamClosed() throws IOException {
+        final RecordingClusterContext clusterContext = new RecordingClusterContext(true);
+        final OutputStream stream = createSession(clusterContext).getBasicRemote().getSendStream();
+
+        stream.close();
+        assertEquals(1, clusterContext.sends.size());
+        stream.write(1);
+    }
+
+    private static RemoteSession createSession(ClusterContext clusterContext) {
+        final Map<RemoteSession.DistributedMapKey, Object> properties =
+                new HashMap<RemoteSession.DistributedMapKey, Object>();
+        properties.put(RemoteSession.DistributedMapKey.CONNECTION_ID, "connection");
+        return new RemoteSession("session", clusterContext, properties, null, null);
+    }
+
+    private static class Send {
+
+        private final String text;
+        private final byte[] data;
+        private final boolean last;
+        private final TyrusFuture<Void> future = new TyrusFuture<Void>();
+
+        private Send(String text, byte[] data, boolean last) {
+            this.text = text;
+            this.data = data;
+            this.last = last;
+        }
+    }
+
+    private static class RecordingClusterContext extends ClusterContext {
+
+        private final List<Send> sends = new ArrayList<Send>();
+        private final boolean complete;
+        private volatile Throwable failure;
+
+        // sends are completed immediately when complete is true.
+        private RecordingClusterContext(boolean complete) {
+            this.complete = complete;
+        }
+
+        private Future<Void> record(String text, byte[] data, boolean last) {
+            final Send send = new Send(text, data, last);
+            sends.add(send);
+            if (failure != null) {
+                send.future.setFailure(failure);
+            } else if (complete) {
+                send.future.setResult(null);
+            }
+            return send.future;
+        }
+
+        @Override
+        public Future<Void> sendText(String sessionId, String text) {
+            return record(text, null, true);
+        }
+
+        @Override
+        public Future<Void> sendText(String sessionId, String text, boolean isLast) {
+            return record(text, null, isLast);
+        }
+
+        @Override
+        public Future<Void> sendBinary(String sessionId, byte[] data) {
+            return record(null, data, true);
+        }
+
+        @Override
+        public Future<Void> sendBinary(String sessionId, byte[] data, boolean isLast) {
+            return record(null, data, isLast);
+        }
+
+        @Override
+        public Future<Void> sendPing(String sessionId, byte[] data) {
+            return record(null, data, true);
+        }
+
+        @Override
+        public Future<Void> sendPong(String sessionId, byte[] data) {
+            return record(null, data, true);
+        }
+
+        @Override
+        public void sendText(String sessionId, String text, SendHandler sendHandler) {
+            record(text, null, true);
+        }
+
+        @Override
+        public void sendBinary(String sessionId, byte[] data, SendHandler sendHandler) {
+            record(null, data, true);
+        }
+
+        @Override
+        public void broadcastText(String endpointPath, String text) {
+        }
+
+        @Override
+        public void broadcastBinary(String endpointPath, byte[] data) {
+        }
+
+        @Override
+        public boolean isSessionOpen(String sessionId, String endpointPath) {
+            return true;
+        }
+
+        @Override
+        public Future<Void> close(String sessionId) {
+            return record(null, null, true);
+        }
+
+        @Override
+        public Future<Void> close(String sessionId, CloseReason closeReason) {
+            return record(null, null, true);
+        }
+
+        @Override
+        public Set<String> getRemoteSessionIds(String endpointPath) {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public String createSessionId() {
+            return null;
+        }
+
+        @Override
+        public String createConnectionId() {
+            return null;
+        }
+
+        @Override
+        public void registerSession(String sessionId, String endpointPath, SessionEventListener listener) {
+        }
+
+        @Override
+        public void registerSessionListener(String endpointPath, SessionListener listener) {
+        }
+
+        @Override
+        public void registerBroadcastListener(String endpointPath, BroadcastListener listener) {
+        }
+
+        @Override
+        public Map<RemoteSession.DistributedMapKey, Object> getDistributedSessionProperties(String sessionId) {
+            return new HashMap<RemoteSession.DistributedMapKey, Object>();
+        }
+
+        @Override
+        public Map<String, Object> getDistributedUserProperties(String connectionId) {
+            return new HashMap<String, Object>();
+        }
+
+        @Override
+        public void destroyDistributedUserProperties(String connectionId) {
+        }
+
+        @Override
+        public void removeSession(String sessionId, String endpointPath) {
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
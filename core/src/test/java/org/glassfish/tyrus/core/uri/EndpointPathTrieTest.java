@@ -0,0 +1,146 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core.uri;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Session;
+
+import org.glassfish.tyrus.core.ComponentProviderService;
+import org.glassfish.tyrus.core.DebugContext;
+import org.glassfish.tyrus.core.TyrusEndpointWrapper;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link EndpointPathTrie}.
+ */
+public class EndpointPathTrieTest {
+
+    private static final String[] PATHS = {"/a", "/{var1}", "/a/b", "/{var1}/b", "/a/{var2}", "/a/b/c",
+            "/a/{var2}/c", "/{var1}/{var2}/{var3}", "/b/{var2}/d", "/{var1}/d", "/a%20b/c", "/echo", "/echo/{id}"};
+
+    private static final String[] REQUESTS = {"/", "", "/a", "/x", "/a/b", "/x/b", "/a/y", "/x/y", "/a/b/c", "/a/x/c",
+            "/a/x/y", "/b/x/d", "/x/d", "/a b/c", "/a%20b/c", "/echo", "/echo/1", "/echo/{id}", "/a/b/c/d", "/a/"};
+
+    @Test
+    public void testSameMatchesAsMatch() throws DeploymentException {
+        final Set<TyrusEndpointWrapper> endpoints = new LinkedHashSet<TyrusEndpointWrapper>();
+        final EndpointPathTrie trie = new EndpointPathTrie();
+
+        for (String path : PATHS) {
+            final TestWebSocketEndpoint endpoint = new TestWebSocketEndpoint(path);
+            endpoints.add(endpoint);
+            trie.add(endpoint);
+        }
+
+        for (String request : REQUESTS) {
+            final List<Match> expected = Match.getAllMatches(request, endpoints, new DebugContext());
+            final List<Match> actual = trie.getAllMatches(request, new DebugContext());
+
+            assertEquals(request, paths(expected), paths(actual));
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(request, expected.get(i).getParameters(), actual.get(i).getParameters());
+                assertEquals(request, expected.get(i).getVariableSegmentIndices(),
+                             actual.get(i).getVariableSegmentIndices());
+            }
+        }
+    }
+
+    @Test
+    public void testRemove() throws DeploymentException {
+        final EndpointPathTrie trie = new EndpointPathTrie();
+        final TestWebSocketEndpoint literal = new TestWebSocketEndpoint("/a/b");
+        final TestWebSocketEndpoint template = new TestWebSocketEndpoint("/a/{var}");
+
+        trie.add(literal);
+        trie.add(template);
+        assertEquals(2, trie.getAllMatches("/a/b", new DebugContext()).size());
+
+        assertTrue(trie.remove(literal));
+        final List<Match> matches = trie.getAllMatches("/a/b", new DebugContext());
+        assertEquals(1, matches.size());
+        assertEquals("/a/{var}", matches.get(0).getEndpointWrapper().getEndpointPath());
+        assertEquals("b", matches.get(0).getParameters().get("var"));
+
+        assertTrue(trie.remove(template));
+        assertTrue(trie.getAllMatches("/a/b", new DebugContext()).isEmpty());
+    }
+
+    private static List<String> paths(List<Match> matches) {
+        final List<String> paths = new ArrayList<String>();
+        for (Match match : matches) {
+            paths.add(match.getEndpointWrapper().getEndpointPath());
+        }
+        return paths;
+    }
+
+    private static class TestWebSocketEndpoint extends TyrusEndpointWrapper {
+
+        private final String path;
+
+        private TestWebSocketEndpoint(String path) throws DeploymentException {
+            super(TestEndpoint.class, null, ComponentProviderService.createClient(), null, null, null, null, null,
+                  null, null);
+            this.path = path;
+        }
+
+        @Override
+        public String getEndpointPath() {
+            return path;
+        }
+
+        public static class TestEndpoint extends Endpoint {
+            @Override
+            public void onOpen(Session session, EndpointConfig config) {
+
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.cluster.tcp;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Inbound connection from a cluster member.
+ * <p>
+ * Received envelopes are read and decoded by a dedicated thread; listeners and local sessions are invoked on a
+ * {@link SerialExecutor}, so the messages are still processed in the order in which they were sent.
+ */
+class InboundConnection implements Runnable {
+
+    private static final Logger LOGGER = Logger.getLogger(InboundConnection.class.getName());
+
+    private final TcpClusterContext context;
+    private final Socket socket;
+    private final Thread thread;
+    private final Executor executor;
+
+    private volatile String nodeId;
+    private volatile int port;
+    private volatile boolean closed;
+
+    /**
+     * Constructor.
+     *
+     * @param context cluster context.
+     * @param socket  accepted socket.
+     */
+    InboundConnection(TcpClusterContext context, Socket socket) {
+        this.context = context;
+        this.socket = socket;
+        this.thread = new Thread(this, "tyrus-cluster-inbound-" + socket.getRemoteSocketAddress());
+        this.thread.setDaemon(true);
+        this.executor = new SerialExecutor(context.getExecutorService());
+    }
+
+    /**
+     * Start reading from the connection.
+     */
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Get id of the connected node.
+     *
+     * @return id of the node or {@code null} when the handshake has not been completed yet.
+     */
+    String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Get executor processing messages received from the connected node.
+     *
+     * @return executor running tasks in the order of submission.
+     */
+    Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Get address the connected node listens on.
+     *
+     * @return address of the connected node.
+     */
+    InetSocketAddress getNodeAddress() {
+        return new InetSocketAddress(socket.getInetAddress(), port);
+    }
+
+    /**
+     * Close the connection.
+     */
+    void close() {
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignore.
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            socket.setTcpNoDelay(true);
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            final List<Message> hello = Message.readEnvelope(in, Message.MAX_HELLO_LENGTH);
+            if (hello.size() != 1 || hello.get(0).type != Message.HELLO || hello.get(0).id == null) {
+                throw new IOException("Unexpected handshake from " + socket.getRemoteSocketAddress());
+            }
+
+            port = hello.get(0).code;
+            if (!context.isMember(getNodeAddress())) {
+                LOGGER.log(Level.WARNING, "Connection from " + socket.getRemoteSocketAddress()
+                        + " rejected, the node is not a configured cluster member.");
+                return;
+            }
+
+            final Message.EnvelopeBuffer envelope = new Message.EnvelopeBuffer(Message.MAX_HELLO_LENGTH);
+            envelope.append(Message.hello(context.getNodeId(), context.getLocalAddress().getPort()));
+            envelope.flushTo(socket.getOutputStream());
+
+            nodeId = hello.get(0).id;
+            if (nodeId.equals(context.getNodeId())) {
+                return;
+            }
+
+            context.inboundConnected(this);
+
+            while (!closed) {
+                for (Message message : Message.readEnvelope(in, Integer.MAX_VALUE)) {
+                    context.onMessage(this, message);
+                }
+            }
+        } catch (EOFException e) {
+            LOGGER.log(Level.FINE, "Cluster member " + socket.getRemoteSocketAddress() + " disconnected.");
+        } catch (IOException e) {
+            if (!closed) {
+                LOGGER.log(Level.FINE, "Connection from cluster member " + socket.getRemoteSocketAddress()
+                        + " failed.", e);
+            }
+        } finally {
+            close();
+            context.inboundClosed(this);
+        }
+    }
+}
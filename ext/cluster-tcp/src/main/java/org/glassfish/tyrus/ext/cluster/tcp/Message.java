@@ -0,0 +1,425 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.cluster.tcp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Message exchanged between cluster nodes.
+ * <p>
+ * Messages are written in envelopes: {@code int} length of the envelope body followed by the body, which is a
+ * sequence of encoded messages (type byte followed by the fields used by the type). All messages queued for a node at
+ * the time of a write are put into one envelope, see {@link PeerConnection}.
+ */
+final class Message {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Maximal length of the envelope containing {@link #HELLO}; anything longer is not a cluster node.
+     */
+    static final int MAX_HELLO_LENGTH = 1024;
+
+    /**
+     * First message sent in both directions; {@link #id} is the node id, {@link #code} the port the node listens on.
+     */
+    static final byte HELLO = 1;
+    /**
+     * Session registered; {@link #id} is the session id, {@link #path} the endpoint path and {@link #data} encoded
+     * session properties.
+     */
+    static final byte SESSION_OPENED = 2;
+    /**
+     * Session removed; {@link #id} is the session id, {@link #path} the endpoint path.
+     */
+    static final byte SESSION_CLOSED = 3;
+    /**
+     * Distributed map entry put; {@link #kind} is the map kind, {@link #id} the map id and {@link #data} encoded
+     * entry.
+     */
+    static final byte PROPERTY_PUT = 4;
+    /**
+     * Distributed map entry removed; {@link #kind} is the map kind, {@link #id} the map id and {@link #data} encoded
+     * key.
+     */
+    static final byte PROPERTY_REMOVE = 5;
+    /**
+     * Distributed map content; {@link #kind} is the map kind, {@link #id} the map id and {@link #data} encoded
+     * entries.
+     */
+    static final byte PROPERTIES = 6;
+    /**
+     * Distributed map destroyed; {@link #kind} is the map kind, {@link #id} the map id.
+     */
+    static final byte PROPERTIES_DESTROYED = 7;
+    /**
+     * Request to send a message to (or close) a session owned by the receiving node; {@link #kind} is one of the
+     * {@code SEND_*} constants, {@link #id} the session id.
+     */
+    static final byte SEND = 8;
+    /**
+     * Response to {@link #SEND}; {@link #text} is the error message or {@code null} on success.
+     */
+    static final byte RESPONSE = 9;
+    /**
+     * Broadcast to all sessions of an endpoint; {@link #path} is the endpoint path, {@link #kind} is
+     * {@link #SEND_TEXT} or {@link #SEND_BINARY}.
+     */
+    static final byte BROADCAST = 10;
+
+    static final byte SEND_TEXT = 0;
+    static final byte SEND_PARTIAL_TEXT = 1;
+    static final byte SEND_BINARY = 2;
+    static final byte SEND_PARTIAL_BINARY = 3;
+    static final byte SEND_PING = 4;
+    static final byte SEND_PONG = 5;
+    static final byte SEND_CLOSE = 6;
+
+    static final byte SESSION_PROPERTIES = 0;
+    static final byte USER_PROPERTIES = 1;
+
+    final byte type;
+    byte kind;
+    long requestId;
+    String id;
+    String path;
+    String text;
+    byte[] data;
+    boolean last;
+    int code;
+
+    private Message(byte type) {
+        this.type = type;
+    }
+
+    static Message hello(String nodeId, int port) {
+        final Message message = new Message(HELLO);
+        message.id = nodeId;
+        message.code = port;
+        return message;
+    }
+
+    static Message sessionOpened(String sessionId, String endpointPath, byte[] properties) {
+        final Message message = new Message(SESSION_OPENED);
+        message.id = sessionId;
+        message.path = endpointPath;
+        message.data = properties;
+        return message;
+    }
+
+    static Message sessionClosed(String sessionId, String endpointPath) {
+        final Message message = new Message(SESSION_CLOSED);
+        message.id = sessionId;
+        message.path = endpointPath;
+        return message;
+    }
+
+    static Message property(byte type, byte mapKind, String mapId, byte[] data) {
+        final Message message = new Message(type);
+        message.kind = mapKind;
+        message.id = mapId;
+        message.data = data;
+        return message;
+    }
+
+    static Message send(byte kind, String sessionId) {
+        final Message message = new Message(SEND);
+        message.kind = kind;
+        message.id = sessionId;
+        return message;
+    }
+
+    static Message response(long requestId, String error) {
+        final Message message = new Message(RESPONSE);
+        message.requestId = requestId;
+        message.text = error;
+        return message;
+    }
+
+    static Message broadcast(String endpointPath, String text, byte[] data) {
+        final Message message = new Message(BROADCAST);
+        message.kind = text != null ? SEND_TEXT : SEND_BINARY;
+        message.path = endpointPath;
+        message.text = text;
+        message.data = data;
+        return message;
+    }
+
+    /**
+     * Write the message.
+     *
+     * @param out stream to write to.
+     * @throws IOException when the message cannot be written.
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeByte(type);
+        switch (type) {
+            case HELLO:
+                writeString(out, id);
+                out.writeInt(code);
+                break;
+            case SESSION_OPENED:
+                writeString(out, id);
+                writeString(out, path);
+                writeBytes(out, data);
+                break;
+            case SESSION_CLOSED:
+                writeString(out, id);
+                writeString(out, path);
+                break;
+            case PROPERTY_PUT:
+            case PROPERTY_REMOVE:
+            case PROPERTIES:
+            case PROPERTIES_DESTROYED:
+                out.writeByte(kind);
+                writeString(out, id);
+                writeBytes(out, data);
+                break;
+            case SEND:
+                out.writeLong(requestId);
+                out.writeByte(kind);
+                writeString(out, id);
+                writeString(out, text);
+                writeBytes(out, data);
+                out.writeBoolean(last);
+                out.writeInt(code);
+                break;
+            case RESPONSE:
+                out.writeLong(requestId);
+                writeString(out, text);
+                break;
+            case BROADCAST:
+                out.writeByte(kind);
+                writeString(out, path);
+                writeString(out, text);
+                writeBytes(out, data);
+                break;
+            default:
+                throw new IllegalStateException("Unknown message type: " + type);
+        }
+    }
+
+    /**
+     * Read next message.
+     *
+     * @param in stream to read from.
+     * @return read message.
+     * @throws IOException when the message cannot be read.
+     */
+    static Message read(DataInputStream in) throws IOException {
+        final Message message = new Message(in.readByte());
+        switch (message.type) {
+            case HELLO:
+                message.id = readString(in);
+                message.code = in.readInt();
+                break;
+            case SESSION_OPENED:
+                message.id = readString(in);
+                message.path = readString(in);
+                message.data = readBytes(in);
+                break;
+            case SESSION_CLOSED:
+                message.id = readString(in);
+                message.path = readString(in);
+                break;
+            case PROPERTY_PUT:
+            case PROPERTY_REMOVE:
+            case PROPERTIES:
+            case PROPERTIES_DESTROYED:
+                message.kind = in.readByte();
+                message.id = readString(in);
+                message.data = readBytes(in);
+                break;
+            case SEND:
+                message.requestId = in.readLong();
+                message.kind = in.readByte();
+                message.id = readString(in);
+                message.text = readString(in);
+                message.data = readBytes(in);
+                message.last = in.readBoolean();
+                message.code = in.readInt();
+                break;
+            case RESPONSE:
+                message.requestId = in.readLong();
+                message.text = readString(in);
+                break;
+            case BROADCAST:
+                message.kind = in.readByte();
+                message.path = readString(in);
+                message.text = readString(in);
+                message.data = readBytes(in);
+                break;
+            default:
+                throw new IOException("Unknown message type: " + message.type);
+        }
+
+        return message;
+    }
+
+    /**
+     * Read next envelope.
+     *
+     * @param in        stream to read from.
+     * @param maxLength maximal accepted length of the envelope body.
+     * @return messages contained in the envelope.
+     * @throws IOException when the envelope cannot be read or is longer than {@code maxLength}.
+     */
+    static List<Message> readEnvelope(DataInputStream in, int maxLength) throws IOException {
+        final int length = in.readInt();
+        if (length < 0 || length > maxLength) {
+            throw new IOException("Invalid envelope length: " + length);
+        }
+
+        final byte[] body = new byte[length];
+        in.readFully(body);
+
+        final ByteArrayInputStream bodyStream = new ByteArrayInputStream(body);
+        final DataInputStream bodyIn = new DataInputStream(bodyStream);
+        final List<Message> messages = new ArrayList<Message>();
+        while (bodyStream.available() > 0) {
+            messages.add(read(bodyIn));
+        }
+
+        return messages;
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        writeBytes(out, string == null ? null : string.getBytes(UTF_8));
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final byte[] bytes = readBytes(in);
+        return bytes == null ? null : new String(bytes, UTF_8);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Buffer used to encode an envelope; first four bytes are reserved for the envelope length.
+     */
+    static class EnvelopeBuffer extends ByteArrayOutputStream {
+
+        private final DataOutputStream out = new DataOutputStream(this);
+
+        EnvelopeBuffer(int size) {
+            super(size);
+            count = 4;
+        }
+
+        /**
+         * Append message to the envelope.
+         *
+         * @param message message to be appended.
+         * @throws IOException when the message cannot be encoded.
+         */
+        void append(Message message) throws IOException {
+            message.write(out);
+        }
+
+        /**
+         * Get length of the envelope body.
+         *
+         * @return number of bytes written since the last {@link #reset()}.
+         */
+        int bodyLength() {
+            return count - 4;
+        }
+
+        /**
+         * Complete the envelope.
+         *
+         * @return encoded envelope including its length. Valid until the next {@link #reset()}.
+         */
+        ByteBuffer envelope() {
+            final int length = bodyLength();
+            buf[0] = (byte) (length >>> 24);
+            buf[1] = (byte) (length >>> 16);
+            buf[2] = (byte) (length >>> 8);
+            buf[3] = (byte) length;
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+
+        /**
+         * Complete the envelope, write it and {@link #reset()} the buffer.
+         *
+         * @param out stream to write the envelope to.
+         * @throws IOException when the envelope cannot be written.
+         */
+        void flushTo(OutputStream out) throws IOException {
+            final ByteBuffer envelope = envelope();
+            out.write(envelope.array(), 0, envelope.limit());
+            out.flush();
+            reset();
+        }
+
+        @Override
+        public synchronized void reset() {
+            count = 4;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.cluster.tcp;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Outbound connection to a cluster member.
+ * <p>
+ * Messages for the member are queued and written by a dedicated thread; everything queued at the time of a write is
+ * put into one envelope (up to the configured maximal envelope size), so bursts of small messages (e.g. distributed
+ * property updates) are sent in a single write. The connection is re-established when it fails; all local state is
+ * sent to the member after each (re)connect.
+ */
+class PeerConnection implements Runnable {
+
+    private static final Logger LOGGER = Logger.getLogger(PeerConnection.class.getName());
+
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final Message DISCONNECT = Message.hello(null, 0);
+
+    private final TcpClusterContext context;
+    private final InetSocketAddress address;
+    private final Thread thread;
+
+    private volatile BlockingQueue<Message> queue;
+    private volatile Socket socket;
+    private volatile String nodeId;
+    private volatile boolean closed;
+
+    /**
+     * Constructor.
+     *
+     * @param context cluster context.
+     * @param address address of the cluster member.
+     */
+    PeerConnection(TcpClusterContext context, InetSocketAddress address) {
+        this.context = context;
+        this.address = address;
+        this.thread = new Thread(this, "tyrus-cluster-peer-" + address);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Start connecting to the member.
+     */
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Get id of the connected node.
+     *
+     * @return id of the node or {@code null} when not connected.
+     */
+    String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Queue message for the member.
+     *
+     * @param message message to be sent.
+     * @return {@code true} when the message was queued, {@code false} when the member is not connected.
+     */
+    boolean send(Message message) {
+        final BlockingQueue<Message> queue = this.queue;
+        if (queue == null) {
+            return false;
+        }
+
+        queue.add(message);
+        return true;
+    }
+
+    /**
+     * Close current connection; it will be re-established after the reconnect delay.
+     */
+    void disconnect() {
+        final BlockingQueue<Message> queue = this.queue;
+        closeSocket();
+        if (queue != null) {
+            // wake up the writer.
+            queue.add(DISCONNECT);
+        }
+    }
+
+    /**
+     * Close the connection; it won't be re-established.
+     */
+    void close() {
+        closed = true;
+        thread.interrupt();
+        closeSocket();
+    }
+
+    @Override
+    public void run() {
+        while (!closed) {
+            try {
+                connect();
+            } catch (IOException e) {
+                if (!closed) {
+                    LOGGER.log(Level.FINE, "Connection to cluster member " + address + " failed.", e);
+                }
+            } finally {
+                disconnected();
+            }
+
+            if (!closed) {
+                try {
+                    Thread.sleep(context.getReconnectDelay());
+                } catch (InterruptedException e) {
+                    // closed.
+                }
+            }
+        }
+    }
+
+    private void connect() throws IOException {
+        final Socket socket = new Socket();
+        this.socket = socket;
+        if (closed) {
+            closeSocket();
+            return;
+        }
+
+        socket.connect(address, CONNECT_TIMEOUT);
+        socket.setTcpNoDelay(true);
+
+        final OutputStream out = socket.getOutputStream();
+        final Message.EnvelopeBuffer envelope = new Message.EnvelopeBuffer(context.getMaxEnvelopeSize());
+        envelope.append(Message.hello(context.getNodeId(), context.getLocalAddress().getPort()));
+        envelope.flushTo(out);
+
+        final List<Message> hello =
+                Message.readEnvelope(new DataInputStream(socket.getInputStream()), Message.MAX_HELLO_LENGTH);
+        if (hello.size() != 1 || hello.get(0).type != Message.HELLO || hello.get(0).id == null) {
+            throw new IOException("Unexpected handshake response from " + address);
+        }
+
+        if (hello.get(0).id.equals(context.getNodeId())) {
+            // member list contains this node.
+            closed = true;
+            return;
+        }
+
+        final BlockingQueue<Message> queue = new LinkedBlockingQueue<Message>();
+        this.queue = queue;
+        this.nodeId = hello.get(0).id;
+        context.peerConnected(this);
+
+        // messages queued from now on are applied by the member on top of the snapshot.
+        write(out, envelope, context.snapshot());
+
+        final List<Message> batch = new ArrayList<Message>();
+        while (!closed) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+            write(out, envelope, batch);
+            batch.clear();
+        }
+    }
+
+    private void write(OutputStream out, Message.EnvelopeBuffer envelope, List<Message> messages) throws IOException {
+        for (Message message : messages) {
+            if (message == DISCONNECT) {
+                throw new IOException("Connection to " + address + " closed.");
+            }
+            envelope.append(message);
+            if (envelope.bodyLength() >= context.getMaxEnvelopeSize()) {
+                envelope.flushTo(out);
+            }
+        }
+
+        if (envelope.bodyLength() > 0) {
+            envelope.flushTo(out);
+        }
+    }
+
+    private void disconnected() {
+        queue = null;
+        final String nodeId = this.nodeId;
+        this.nodeId = null;
+        closeSocket();
+
+        if (nodeId != null) {
+            context.peerDisconnected(this, nodeId);
+        }
+    }
+
+    private void closeSocket() {
+        final Socket socket = this.socket;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore.
+            }
+        }
+    }
+}
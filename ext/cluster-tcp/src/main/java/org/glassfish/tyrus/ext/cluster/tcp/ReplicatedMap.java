@@ -0,0 +1,181 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.cluster.tcp;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Distributed map; local changes are propagated to all other cluster nodes.
+ * <p>
+ * Changes are sent to other nodes while holding the map lock, so all nodes receive them in the order in which they
+ * were applied. Unlike {@link java.util.concurrent.ConcurrentHashMap}, {@code null} values are supported. Views
+ * ({@link #entrySet()}, {@link #keySet()}, {@link #values()}) are unmodifiable snapshots.
+ *
+ * @param <K> key type.
+ * @param <V> value type.
+ */
+class ReplicatedMap<K, V> extends AbstractMap<K, V> {
+
+    private final Map<K, V> map = new HashMap<K, V>();
+    private final TcpClusterContext context;
+    private final byte kind;
+    private final String id;
+
+    private boolean replicated;
+
+    /**
+     * Constructor.
+     *
+     * @param context    cluster context used to propagate changes.
+     * @param kind       map kind, {@link Message#SESSION_PROPERTIES} or {@link Message#USER_PROPERTIES}.
+     * @param id         map id (session id or connection id).
+     * @param replicated {@code true} when changes should be propagated immediately, see {@link #setReplicated()}.
+     */
+    ReplicatedMap(TcpClusterContext context, byte kind, String id, boolean replicated) {
+        this.context = context;
+        this.kind = kind;
+        this.id = id;
+        this.replicated = replicated;
+    }
+
+    @Override
+    public synchronized V get(Object key) {
+        return map.get(key);
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public synchronized int size() {
+        return map.size();
+    }
+
+    @Override
+    public synchronized V put(K key, V value) {
+        final V previous = map.put(key, value);
+        if (replicated) {
+            context.replicatePut(kind, id, key, value);
+        }
+        return previous;
+    }
+
+    @Override
+    public synchronized V remove(Object key) {
+        if (!map.containsKey(key)) {
+            return null;
+        }
+
+        final V previous = map.remove(key);
+        if (replicated) {
+            context.replicateRemove(kind, id, key);
+        }
+        return previous;
+    }
+
+    @Override
+    public synchronized void clear() {
+        for (K key : new HashSet<K>(map.keySet())) {
+            remove(key);
+        }
+    }
+
+    @Override
+    public synchronized Set<Entry<K, V>> entrySet() {
+        return Collections.unmodifiableMap(new HashMap<K, V>(map)).entrySet();
+    }
+
+    /**
+     * Start propagating changes. Content of the map has to be sent to other nodes by the caller, which should hold
+     * the map lock to prevent concurrent changes.
+     */
+    synchronized void setReplicated() {
+        replicated = true;
+    }
+
+    /**
+     * Get copy of the map content.
+     *
+     * @return map content.
+     */
+    synchronized Map<K, V> snapshot() {
+        return new HashMap<K, V>(map);
+    }
+
+    /**
+     * Apply change received from other node.
+     *
+     * @param key   key.
+     * @param value value.
+     */
+    @SuppressWarnings("unchecked")
+    synchronized void putReplica(Object key, Object value) {
+        map.put((K) key, (V) value);
+    }
+
+    /**
+     * Apply change received from other node.
+     *
+     * @param entries entries to be put.
+     */
+    @SuppressWarnings("unchecked")
+    synchronized void putReplicas(Map<Object, Object> entries) {
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            map.put((K) entry.getKey(), (V) entry.getValue());
+        }
+    }
+
+    /**
+     * Apply change received from other node.
+     *
+     * @param key key to be removed.
+     */
+    synchronized void removeReplica(Object key) {
+        map.remove(key);
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.cluster.tcp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.glassfish.tyrus.core.cluster.RemoteSession;
+
+/**
+ * Java serialization of distributed map entries.
+ * <p>
+ * Keys and values are serialized separately, so an entry which cannot be serialized does not prevent replication of
+ * the other ones.
+ * <p>
+ * Only allowed classes are deserialized: {@link #DEFAULT_ALLOWED_CLASSES} and classes configured by the application.
+ * An item is either a fully qualified class name or a package name ending with {@code '.'}, which allows all classes
+ * of that package (but not of its subpackages). Arrays are allowed when their component type is. Entries containing
+ * any other class are skipped. Serialization filter configured for the JVM ({@code jdk.serialFilter}) is applied as
+ * well.
+ */
+class Serializer {
+
+    /**
+     * Classes allowed to be deserialized by default.
+     */
+    static final List<String> DEFAULT_ALLOWED_CLASSES = Collections.unmodifiableList(Arrays.asList(
+            "java.lang.Boolean", "java.lang.Byte", "java.lang.Character", "java.lang.Double", "java.lang.Enum",
+            "java.lang.Float", "java.lang.Integer", "java.lang.Long", "java.lang.Number", "java.lang.Short",
+            "java.lang.String", "java.math.", "java.util.", "java.util.concurrent.",
+            RemoteSession.DistributedMapKey.class.getName()));
+
+    private static final Logger LOGGER = Logger.getLogger(Serializer.class.getName());
+
+    private final ClassLoader classLoader;
+    private final List<String> allowedClasses;
+
+    /**
+     * Constructor.
+     *
+     * @param classLoader    class loader used to resolve classes of deserialized values.
+     * @param allowedClasses classes allowed to be deserialized in addition to {@link #DEFAULT_ALLOWED_CLASSES}.
+     */
+    Serializer(ClassLoader classLoader, Collection<String> allowedClasses) {
+        this.classLoader = classLoader;
+        this.allowedClasses = new ArrayList<String>(DEFAULT_ALLOWED_CLASSES);
+        this.allowedClasses.addAll(allowedClasses);
+    }
+
+    /**
+     * Encode map entries. Entries which cannot be serialized are skipped.
+     *
+     * @param entries entries to be encoded.
+     * @return encoded entries.
+     */
+    byte[] encodeEntries(Map<?, ?> entries) {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(baos);
+
+        try {
+            final Map<byte[], byte[]> encoded = new HashMap<byte[], byte[]>();
+            for (Map.Entry<?, ?> entry : entries.entrySet()) {
+                try {
+                    encoded.put(serialize(entry.getKey()), serialize(entry.getValue()));
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Distributed property " + entry.getKey() + " cannot be serialized.", e);
+                }
+            }
+
+            out.writeInt(encoded.size());
+            for (Map.Entry<byte[], byte[]> entry : encoded.entrySet()) {
+                out.writeInt(entry.getKey().length);
+                out.write(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                out.write(entry.getValue());
+            }
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw IOException.
+            throw new IllegalStateException(e);
+        }
+
+        return baos.toByteArray();
+    }
+
+    /**
+     * Decode map entries. Entries containing classes which are not allowed are skipped.
+     *
+     * @param data encoded entries.
+     * @return decoded entries.
+     * @throws IOException when the entries cannot be deserialized.
+     */
+    Map<Object, Object> decodeEntries(byte[] data) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        final int size = in.readInt();
+        final Map<Object, Object> entries = new HashMap<Object, Object>();
+
+        for (int i = 0; i < size; i++) {
+            final byte[] key = new byte[in.readInt()];
+            in.readFully(key);
+            final byte[] value = new byte[in.readInt()];
+            in.readFully(value);
+            try {
+                entries.put(deserialize(key), deserialize(value));
+            } catch (InvalidClassException e) {
+                LOGGER.log(Level.WARNING, "Distributed property cannot be deserialized: " + e.getMessage());
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * Serialize an object.
+     *
+     * @param object object to be serialized.
+     * @return serialized object.
+     * @throws IOException when the object cannot be serialized.
+     */
+    byte[] serialize(Object object) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(baos);
+        out.writeObject(object);
+        out.close();
+        return baos.toByteArray();
+    }
+
+    /**
+     * Deserialize an object.
+     *
+     * @param data serialized object.
+     * @return deserialized object.
+     * @throws InvalidClassException when the data contain a class which is not allowed.
+     * @throws IOException           when the object cannot be deserialized.
+     */
+    Object deserialize(byte[] data) throws IOException {
+        final ObjectInputStream in = new ClassLoaderObjectInputStream(new ByteArrayInputStream(data));
+        try {
+            return in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Check whether a class can be deserialized.
+     *
+     * @param className binary name of the class as returned by {@link Class#getName()}.
+     * @return {@code true} when the class is allowed, {@code false} otherwise.
+     */
+    boolean isAllowed(String className) {
+        String name = className;
+
+        if (name.startsWith("[")) {
+            final int dimensions = name.lastIndexOf('[') + 1;
+            if (name.charAt(dimensions) != 'L') {
+                // array of primitives.
+                return true;
+            }
+            name = name.substring(dimensions + 1, name.length() - 1);
+        }
+
+        for (String allowed : allowedClasses) {
+            if (allowed.endsWith(".")) {
+                if (name.startsWith(allowed) && name.indexOf('.', allowed.length()) == -1) {
+                    return true;
+                }
+            } else if (allowed.equals(name)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private class ClassLoaderObjectInputStream extends ObjectInputStream {
+
+        private ClassLoaderObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (!isAllowed(desc.getName())) {
+                throw new InvalidClassException(desc.getName(), "Class is not allowed to be deserialized.");
+            }
+
+            if (classLoader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, classLoader);
+                } catch (ClassNotFoundException e) {
+                    // try the default mechanism.
+                }
+            }
+
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+            throw new InvalidClassException(Arrays.toString(interfaces), "Proxy is not allowed to be deserialized.");
+        }
+    }
+}
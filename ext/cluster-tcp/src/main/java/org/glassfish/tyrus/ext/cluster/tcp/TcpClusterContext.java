@@ -0,0 +1,1034 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.cluster.tcp;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.websocket.CloseReason;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+
+import org.glassfish.tyrus.core.TyrusFuture;
+import org.glassfish.tyrus.core.cluster.BroadcastListener;
+import org.glassfish.tyrus.core.cluster.ClusterContext;
+import org.glassfish.tyrus.core.cluster.RemoteSession;
+import org.glassfish.tyrus.core.cluster.SessionEventListener;
+import org.glassfish.tyrus.core.cluster.SessionListener;
+
+/**
+ * {@link ClusterContext} implementation connecting cluster nodes directly over TCP.
+ * <p>
+ * Every node listens on a configured address and connects to all configured members of the cluster. Connections
+ * from nodes which are not configured members are rejected; a connection is accepted when its source address and
+ * the port the connecting node listens on match a configured member. All nodes have to be connected to each other, the
+ * simplest configuration is the same member list (including the node itself) on every node.
+ * Session directory, distributed session and user properties are replicated to all nodes, messages sent to a session
+ * owned by other node are forwarded to that node and acknowledged by it. Messages for one node are batched into
+ * envelopes, so bursts of small messages (broadcasts, property updates) do not result in one write per message.
+ * <p>
+ * Messages received from other nodes are decoded and acknowledged by the connection reader thread, listeners are
+ * notified and forwarded messages are sent to local sessions on the configured executor; messages from one node are
+ * still processed in the order in which they were sent.
+ * <p>
+ * Distributed properties are transferred using Java serialization; entries which cannot be serialized are not
+ * replicated. Only boxed primitives, strings, {@code java.math} and {@code java.util} classes are deserialized by
+ * default, other classes of distributed property values have to be allowed by {@link Builder#allowedClasses}.
+ * <p>
+ * Usage:
+ * <pre>
+ * final ClusterContext clusterContext = TcpClusterContext.builder()
+ *                                                        .bindAddress(new InetSocketAddress("node1", 9000))
+ *                                                        .member(new InetSocketAddress("node2", 9000))
+ *                                                        .build();
+ *
+ * final Map&lt;String, Object&gt; properties = new HashMap&lt;String, Object&gt;();
+ * properties.put(ClusterContext.CLUSTER_CONTEXT, clusterContext);
+ * final Server server = new Server("localhost", 8025, "/", properties, MyEndpoint.class);
+ * </pre>
+ */
+public class TcpClusterContext extends ClusterContext {
+
+    private static final Logger LOGGER = Logger.getLogger(TcpClusterContext.class.getName());
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ServerSocket serverSocket;
+    private final Thread acceptThread;
+    private final List<PeerConnection> peers = new CopyOnWriteArrayList<PeerConnection>();
+    private final List<InetSocketAddress> members;
+    private final Serializer serializer;
+    private final long reconnectDelay;
+    private final int maxEnvelopeSize;
+    private final ExecutorService executorService;
+    private final boolean ownExecutorService;
+
+    private final Map<String, PeerConnection> connectedPeers = new ConcurrentHashMap<String, PeerConnection>();
+    private final Map<String, InboundConnection> inbound = new ConcurrentHashMap<String, InboundConnection>();
+    private final Set<InboundConnection> accepted =
+            Collections.newSetFromMap(new ConcurrentHashMap<InboundConnection, Boolean>());
+
+    private final Map<String, LocalSession> localSessions = new ConcurrentHashMap<String, LocalSession>();
+    private final Map<String, RemoteSessionEntry> remoteSessions = new ConcurrentHashMap<String, RemoteSessionEntry>();
+    private final Map<String, ReplicatedMap<RemoteSession.DistributedMapKey, Object>> sessionProperties =
+            new ConcurrentHashMap<String, ReplicatedMap<RemoteSession.DistributedMapKey, Object>>();
+    private final Map<String, ReplicatedMap<String, Object>> userProperties =
+            new ConcurrentHashMap<String, ReplicatedMap<String, Object>>();
+    private final Set<String> localUserProperties = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final Map<String, List<SessionListener>> sessionListeners =
+            new ConcurrentHashMap<String, List<SessionListener>>();
+    private final Map<String, List<BroadcastListener>> broadcastListeners =
+            new ConcurrentHashMap<String, List<BroadcastListener>>();
+
+    private final Map<Long, Request> pending = new ConcurrentHashMap<Long, Request>();
+    private final AtomicLong requestIds = new AtomicLong();
+
+    private volatile boolean shutdown;
+
+    private TcpClusterContext(Builder builder) throws IOException {
+        this.reconnectDelay = builder.reconnectDelay;
+        this.maxEnvelopeSize = builder.maxEnvelopeSize;
+        this.ownExecutorService = builder.executorService == null;
+        this.executorService = ownExecutorService ? Executors.newCachedThreadPool(new ThreadFactory() {
+
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "tyrus-cluster-delivery-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }) : builder.executorService;
+        this.members = new ArrayList<InetSocketAddress>(builder.members);
+        this.serializer = new Serializer(Thread.currentThread().getContextClassLoader(), builder.allowedClasses);
+
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.setReuseAddress(true);
+        this.serverSocket.bind(builder.bindAddress);
+
+        this.acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "tyrus-cluster-accept-" + serverSocket.getLocalSocketAddress());
+        this.acceptThread.setDaemon(true);
+        this.acceptThread.start();
+
+        for (InetSocketAddress member : members) {
+            final PeerConnection peer = new PeerConnection(this, member);
+            peers.add(peer);
+            peer.start();
+        }
+    }
+
+    /**
+     * Create new {@link Builder}.
+     *
+     * @return new builder instance.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the address this node listens on.
+     *
+     * @return local address.
+     */
+    public InetSocketAddress getLocalAddress() {
+        return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+    }
+
+    @Override
+    public Future<Void> sendText(String sessionId, String text) {
+        final Message message = Message.send(Message.SEND_TEXT, sessionId);
+        message.text = text;
+        return send(message);
+    }
+
+    @Override
+    public Future<Void> sendText(String sessionId, String text, boolean isLast) {
+        final Message message = Message.send(Message.SEND_PARTIAL_TEXT, sessionId);
+        message.text = text;
+        message.last = isLast;
+        return send(message);
+    }
+
+    @Override
+    public Future<Void> sendBinary(String sessionId, byte[] data) {
+        final Message message = Message.send(Message.SEND_BINARY, sessionId);
+        message.data = data;
+        return send(message);
+    }
+
+    @Override
+    public Future<Void> sendBinary(String sessionId, byte[] data, boolean isLast) {
+        final Message message = Message.send(Message.SEND_PARTIAL_BINARY, sessionId);
+        message.data = data;
+        message.last = isLast;
+        return send(message);
+    }
+
+    @Override
+    public Future<Void> sendPing(String sessionId, byte[] data) {
+        final Message message = Message.send(Message.SEND_PING, sessionId);
+        message.data = data;
+        return send(message);
+    }
+
+    @Override
+    public Future<Void> sendPong(String sessionId, byte[] data) {
+        final Message message = Message.send(Message.SEND_PONG, sessionId);
+        message.data = data;
+        return send(message);
+    }
+
+    @Override
+    public void sendText(String sessionId, String text, SendHandler sendHandler) {
+        final Message message = Message.send(Message.SEND_TEXT, sessionId);
+        message.text = text;
+        send(message, new Request(null, null, sendHandler));
+    }
+
+    @Override
+    public void sendBinary(String sessionId, byte[] data, SendHandler sendHandler) {
+        final Message message = Message.send(Message.SEND_BINARY, sessionId);
+        message.data = data;
+        send(message, new Request(null, null, sendHandler));
+    }
+
+    @Override
+    public void broadcastText(String endpointPath, String text) {
+        broadcast(Message.broadcast(endpointPath, text, null));
+    }
+
+    @Override
+    public void broadcastBinary(String endpointPath, byte[] data) {
+        broadcast(Message.broadcast(endpointPath, null, data));
+    }
+
+    @Override
+    public boolean isSessionOpen(String sessionId, String endpointPath) {
+        final LocalSession localSession = localSessions.get(sessionId);
+        if (localSession != null) {
+            return localSession.endpointPath.equals(endpointPath);
+        }
+
+        final RemoteSessionEntry remoteSession = remoteSessions.get(sessionId);
+        return remoteSession != null && remoteSession.endpointPath.equals(endpointPath);
+    }
+
+    @Override
+    public Future<Void> close(String sessionId) {
+        final Message message = Message.send(Message.SEND_CLOSE, sessionId);
+        message.code = -1;
+        return send(message);
+    }
+
+    @Override
+    public Future<Void> close(String sessionId, CloseReason closeReason) {
+        final Message message = Message.send(Message.SEND_CLOSE, sessionId);
+        message.code = closeReason.getCloseCode().getCode();
+        message.text = closeReason.getReasonPhrase();
+        return send(message);
+    }
+
+    @Override
+    public Set<String> getRemoteSessionIds(String endpointPath) {
+        final Set<String> result = new HashSet<String>();
+        for (Map.Entry<String, RemoteSessionEntry> entry : remoteSessions.entrySet()) {
+            if (entry.getValue().endpointPath.equals(endpointPath)) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String createSessionId() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Override
+    public String createConnectionId() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Override
+    public void registerSession(String sessionId, String endpointPath, SessionEventListener listener) {
+        localSessions.put(sessionId, new LocalSession(endpointPath, listener));
+
+        final ReplicatedMap<RemoteSession.DistributedMapKey, Object> properties =
+                getSessionProperties(sessionId, false);
+        synchronized (properties) {
+            properties.setReplicated();
+            broadcast(Message.sessionOpened(sessionId, endpointPath,
+                                            serializer.encodeEntries(properties.snapshot())));
+        }
+    }
+
+    @Override
+    public void registerSessionListener(String endpointPath, SessionListener listener) {
+        getListeners(sessionListeners, endpointPath).add(listener);
+    }
+
+    @Override
+    public void registerBroadcastListener(String endpointPath, BroadcastListener listener) {
+        getListeners(broadcastListeners, endpointPath).add(listener);
+    }
+
+    @Override
+    public Map<RemoteSession.DistributedMapKey, Object> getDistributedSessionProperties(String sessionId) {
+        return getSessionProperties(sessionId, false);
+    }
+
+    @Override
+    public Map<String, Object> getDistributedUserProperties(String connectionId) {
+        ReplicatedMap<String, Object> properties = userProperties.get(connectionId);
+        if (properties == null) {
+            synchronized (userProperties) {
+                properties = userProperties.get(connectionId);
+                if (properties == null) {
+                    properties = new ReplicatedMap<String, Object>(this, Message.USER_PROPERTIES, connectionId, true);
+                    userProperties.put(connectionId, properties);
+                    localUserProperties.add(connectionId);
+                }
+            }
+        }
+        return properties;
+    }
+
+    @Override
+    public void destroyDistributedUserProperties(String connectionId) {
+        userProperties.remove(connectionId);
+        localUserProperties.remove(connectionId);
+        broadcast(Message.property(Message.PROPERTIES_DESTROYED, Message.USER_PROPERTIES, connectionId, null));
+    }
+
+    @Override
+    public void removeSession(String sessionId, String endpointPath) {
+        localSessions.remove(sessionId);
+        sessionProperties.remove(sessionId);
+        broadcast(Message.sessionClosed(sessionId, endpointPath));
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // ignore.
+        }
+
+        for (PeerConnection peer : peers) {
+            peer.close();
+        }
+        for (InboundConnection connection : accepted) {
+            connection.close();
+        }
+
+        for (Long requestId : new ArrayList<Long>(pending.keySet())) {
+            final Request request = pending.remove(requestId);
+            if (request != null) {
+                request.complete(new IOException("Cluster context has been shut down."));
+            }
+        }
+
+        if (ownExecutorService) {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Get ids of nodes this node is connected to.
+     *
+     * @return ids of connected nodes.
+     */
+    Set<String> getConnectedNodes() {
+        return new HashSet<String>(connectedPeers.keySet());
+    }
+
+    /**
+     * Get id of this node.
+     *
+     * @return node id.
+     */
+    String getNodeId() {
+        return nodeId;
+    }
+
+    long getReconnectDelay() {
+        return reconnectDelay;
+    }
+
+    int getMaxEnvelopeSize() {
+        return maxEnvelopeSize;
+    }
+
+    ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Propagate put to a distributed map.
+     *
+     * @param kind  map kind.
+     * @param mapId map id.
+     * @param key   key.
+     * @param value value.
+     */
+    void replicatePut(byte kind, String mapId, Object key, Object value) {
+        broadcast(Message.property(Message.PROPERTY_PUT, kind, mapId,
+                                   serializer.encodeEntries(Collections.singletonMap(key, value))));
+    }
+
+    /**
+     * Propagate remove from a distributed map.
+     *
+     * @param kind  map kind.
+     * @param mapId map id.
+     * @param key   removed key.
+     */
+    void replicateRemove(byte kind, String mapId, Object key) {
+        try {
+            broadcast(Message.property(Message.PROPERTY_REMOVE, kind, mapId, serializer.serialize(key)));
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Distributed property " + key + " cannot be serialized.", e);
+        }
+    }
+
+    /**
+     * Get current state of this node, sent to each member after it is connected.
+     *
+     * @return messages describing local sessions and user properties.
+     */
+    List<Message> snapshot() {
+        final List<Message> snapshot = new ArrayList<Message>();
+
+        for (Map.Entry<String, LocalSession> entry : localSessions.entrySet()) {
+            final ReplicatedMap<RemoteSession.DistributedMapKey, Object> properties =
+                    sessionProperties.get(entry.getKey());
+            if (properties != null) {
+                snapshot.add(Message.sessionOpened(entry.getKey(), entry.getValue().endpointPath,
+                                                   serializer.encodeEntries(properties.snapshot())));
+            }
+        }
+
+        for (String connectionId : localUserProperties) {
+            final ReplicatedMap<String, Object> properties = userProperties.get(connectionId);
+            if (properties != null) {
+                snapshot.add(Message.property(Message.PROPERTIES, Message.USER_PROPERTIES, connectionId,
+                                              serializer.encodeEntries(properties.snapshot())));
+            }
+        }
+
+        return snapshot;
+    }
+
+    void peerConnected(PeerConnection peer) {
+        connectedPeers.put(peer.getNodeId(), peer);
+    }
+
+    void peerDisconnected(PeerConnection peer, String peerNodeId) {
+        connectedPeers.remove(peerNodeId, peer);
+        failPending(peerNodeId);
+    }
+
+    /**
+     * Check whether a node connecting to this node is a configured member.
+     *
+     * @param address source address of the connection with the port the connecting node listens on.
+     * @return {@code true} when the address matches a configured member, {@code false} otherwise.
+     */
+    boolean isMember(InetSocketAddress address) {
+        for (InetSocketAddress member : members) {
+            if (member.getPort() != address.getPort()) {
+                continue;
+            }
+
+            final InetSocketAddress resolved =
+                    member.isUnresolved() ? new InetSocketAddress(member.getHostString(), member.getPort()) : member;
+            if (!resolved.isUnresolved() && resolved.getAddress().equals(address.getAddress())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void inboundConnected(InboundConnection connection) {
+        inbound.put(connection.getNodeId(), connection);
+    }
+
+    void inboundClosed(final InboundConnection connection) {
+        accepted.remove(connection);
+
+        final String peerNodeId = connection.getNodeId();
+        if (peerNodeId == null || !inbound.remove(peerNodeId, connection)) {
+            return;
+        }
+
+        // the node has left the cluster (or it will send its state again after reconnecting).
+        final PeerConnection peer = connectedPeers.get(peerNodeId);
+        if (peer != null) {
+            peer.disconnect();
+        }
+
+        for (Map.Entry<String, RemoteSessionEntry> entry : remoteSessions.entrySet()) {
+            if (entry.getValue().nodeId.equals(peerNodeId)) {
+                final ReplicatedMap<RemoteSession.DistributedMapKey, Object> properties =
+                        sessionProperties.get(entry.getKey());
+                if (properties != null) {
+                    final Object connectionId = properties.get(RemoteSession.DistributedMapKey.CONNECTION_ID);
+                    if (connectionId != null) {
+                        userProperties.remove(connectionId);
+                    }
+                }
+                sessionClosed(connection.getExecutor(), entry.getKey(), entry.getValue().endpointPath);
+            }
+        }
+
+        failPending(peerNodeId);
+    }
+
+    /**
+     * Process message received from other node.
+     * <p>
+     * Called by the connection reader thread. Replicated state is updated immediately, listeners and local sessions
+     * are invoked on the executor of the connection.
+     *
+     * @param connection connection the message has been received from.
+     * @param message    received message.
+     */
+    void onMessage(InboundConnection connection, final Message message) {
+        final String sourceNodeId = connection.getNodeId();
+        final Executor executor = connection.getExecutor();
+
+        try {
+            switch (message.type) {
+                case Message.SESSION_OPENED:
+                    sessionOpened(executor, sourceNodeId, message);
+                    break;
+                case Message.SESSION_CLOSED:
+                    sessionClosed(executor, message.id, message.path);
+                    break;
+                case Message.PROPERTY_PUT:
+                case Message.PROPERTIES:
+                    final ReplicatedMap<?, ?> map = getReplica(message.kind, message.id);
+                    if (map != null) {
+                        map.putReplicas(serializer.decodeEntries(message.data));
+                    }
+                    break;
+                case Message.PROPERTY_REMOVE:
+                    final ReplicatedMap<?, ?> replica = getReplica(message.kind, message.id);
+                    if (replica != null) {
+                        replica.removeReplica(serializer.deserialize(message.data));
+                    }
+                    break;
+                case Message.PROPERTIES_DESTROYED:
+                    userProperties.remove(message.id);
+                    break;
+                case Message.SEND:
+                    execute(executor, new Runnable() {
+                        @Override
+                        public void run() {
+                            final String error = deliver(message);
+                            final PeerConnection peer = connectedPeers.get(sourceNodeId);
+                            if (peer == null || !peer.send(Message.response(message.requestId, error))) {
+                                LOGGER.log(Level.FINE,
+                                           "Response to cluster member " + sourceNodeId + " cannot be sent.");
+                            }
+                        }
+                    });
+                    break;
+                case Message.RESPONSE:
+                    final Request request = pending.remove(message.requestId);
+                    if (request != null) {
+                        request.complete(executorService, message.text == null ? null : new IOException(message.text));
+                    }
+                    break;
+                case Message.BROADCAST:
+                    final List<BroadcastListener> listeners = broadcastListeners.get(message.path);
+                    if (listeners != null) {
+                        execute(executor, new Runnable() {
+                            @Override
+                            public void run() {
+                                for (BroadcastListener listener : listeners) {
+                                    if (message.kind == Message.SEND_TEXT) {
+                                        listener.onBroadcast(message.text);
+                                    } else {
+                                        listener.onBroadcast(message.data);
+                                    }
+                                }
+                            }
+                        });
+                    }
+                    break;
+                default:
+                    LOGGER.log(Level.FINE, "Unexpected message type: " + message.type);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Message from cluster member " + sourceNodeId + " cannot be processed.", e);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Message from cluster member " + sourceNodeId + " cannot be processed.", e);
+        }
+    }
+
+    private void execute(Executor executor, Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.FINE, "Message from cluster member cannot be processed, executor has been shut down.", e);
+        }
+    }
+
+    private void accept() {
+        while (!shutdown) {
+            try {
+                final Socket socket = serverSocket.accept();
+                final InboundConnection connection = new InboundConnection(this, socket);
+                accepted.add(connection);
+                if (shutdown) {
+                    connection.close();
+                } else {
+                    connection.start();
+                }
+            } catch (IOException e) {
+                if (!shutdown) {
+                    LOGGER.log(Level.WARNING, "Cluster connection cannot be accepted.", e);
+                }
+            }
+        }
+    }
+
+    private void sessionOpened(Executor executor, String ownerNodeId, final Message message) throws IOException {
+        final ReplicatedMap<RemoteSession.DistributedMapKey, Object> properties =
+                getSessionProperties(message.id, true);
+        properties.putReplicas(serializer.decodeEntries(message.data));
+
+        if (remoteSessions.put(message.id, new RemoteSessionEntry(message.path, ownerNodeId)) == null) {
+            final List<SessionListener> listeners = sessionListeners.get(message.path);
+            if (listeners != null) {
+                execute(executor, new Runnable() {
+                    @Override
+                    public void run() {
+                        for (SessionListener listener : listeners) {
+                            listener.onSessionOpened(message.id);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    private void sessionClosed(Executor executor, final String sessionId, String endpointPath) {
+        if (remoteSessions.remove(sessionId) != null) {
+            sessionProperties.remove(sessionId);
+
+            final List<SessionListener> listeners = sessionListeners.get(endpointPath);
+            if (listeners != null) {
+                execute(executor, new Runnable() {
+                    @Override
+                    public void run() {
+                        for (SessionListener listener : listeners) {
+                            listener.onSessionClosed(sessionId);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    private ReplicatedMap<?, ?> getReplica(byte kind, String mapId) {
+        if (kind == Message.SESSION_PROPERTIES) {
+            // properties of unknown sessions are ignored, they are sent with the session.
+            return sessionProperties.get(mapId);
+        }
+
+        ReplicatedMap<String, Object> properties = userProperties.get(mapId);
+        if (properties == null) {
+            synchronized (userProperties) {
+                properties = userProperties.get(mapId);
+                if (properties == null) {
+                    properties = new ReplicatedMap<String, Object>(this, Message.USER_PROPERTIES, mapId, true);
+                    userProperties.put(mapId, properties);
+                }
+            }
+        }
+        return properties;
+    }
+
+    private ReplicatedMap<RemoteSession.DistributedMapKey, Object> getSessionProperties(String sessionId,
+                                                                                       boolean replicated) {
+        ReplicatedMap<RemoteSession.DistributedMapKey, Object> properties = sessionProperties.get(sessionId);
+        if (properties == null) {
+            synchronized (sessionProperties) {
+                properties = sessionProperties.get(sessionId);
+                if (properties == null) {
+                    properties = new ReplicatedMap<RemoteSession.DistributedMapKey, Object>(
+                            this, Message.SESSION_PROPERTIES, sessionId, replicated);
+                    sessionProperties.put(sessionId, properties);
+                }
+            }
+        }
+        return properties;
+    }
+
+    private static <T> List<T> getListeners(Map<String, List<T>> listeners, String endpointPath) {
+        synchronized (listeners) {
+            List<T> result = listeners.get(endpointPath);
+            if (result == null) {
+                result = new CopyOnWriteArrayList<T>();
+                listeners.put(endpointPath, result);
+            }
+            return result;
+        }
+    }
+
+    private void broadcast(Message message) {
+        for (PeerConnection peer : connectedPeers.values()) {
+            peer.send(message);
+        }
+    }
+
+    private Future<Void> send(Message message) {
+        final TyrusFuture<Void> future = new TyrusFuture<Void>();
+        send(message, new Request(null, future, null));
+        return future;
+    }
+
+    private void send(Message message, Request request) {
+        final LocalSession localSession = localSessions.get(message.id);
+        if (localSession != null) {
+            final String error = deliver(message);
+            request.complete(error == null ? null : new IOException(error));
+            return;
+        }
+
+        final RemoteSessionEntry remoteSession = remoteSessions.get(message.id);
+        final PeerConnection peer = remoteSession == null ? null : connectedPeers.get(remoteSession.nodeId);
+        if (peer == null) {
+            request.complete(new IOException("Session " + message.id + " is not open."));
+            return;
+        }
+
+        message.requestId = requestIds.incrementAndGet();
+        pending.put(message.requestId, new Request(remoteSession.nodeId, request.future, request.handler));
+        if (!peer.send(message) && pending.remove(message.requestId) != null) {
+            request.complete(new IOException("Cluster member owning session " + message.id + " is not connected."));
+        }
+    }
+
+    private String deliver(Message message) {
+        final LocalSession localSession = localSessions.get(message.id);
+        if (localSession == null) {
+            return "Session " + message.id + " is not open.";
+        }
+
+        final SessionEventListener listener = localSession.listener;
+        try {
+            switch (message.kind) {
+                case Message.SEND_TEXT:
+                    listener.onSendText(message.text);
+                    break;
+                case Message.SEND_PARTIAL_TEXT:
+                    listener.onSendText(message.text, message.last);
+                    break;
+                case Message.SEND_BINARY:
+                    listener.onSendBinary(message.data);
+                    break;
+                case Message.SEND_PARTIAL_BINARY:
+                    listener.onSendBinary(message.data, message.last);
+                    break;
+                case Message.SEND_PING:
+                    listener.onSendPing(message.data);
+                    break;
+                case Message.SEND_PONG:
+                    listener.onSendPong(message.data);
+                    break;
+                case Message.SEND_CLOSE:
+                    if (message.code < 0) {
+                        listener.onClose();
+                    } else {
+                        listener.onClose(new CloseReason(CloseReason.CloseCodes.getCloseCode(message.code),
+                                                         message.text));
+                    }
+                    break;
+                default:
+                    return "Unknown send request: " + message.kind;
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Message cannot be sent to session " + message.id, e);
+            return e.getMessage() == null ? e.toString() : e.getMessage();
+        }
+
+        return null;
+    }
+
+    private void failPending(String peerNodeId) {
+        for (Map.Entry<Long, Request> entry : pending.entrySet()) {
+            if (peerNodeId.equals(entry.getValue().nodeId) && pending.remove(entry.getKey()) != null) {
+                entry.getValue().complete(new IOException("Cluster member " + peerNodeId + " has disconnected."));
+            }
+        }
+    }
+
+    private static class LocalSession {
+
+        private final String endpointPath;
+        private final SessionEventListener listener;
+
+        private LocalSession(String endpointPath, SessionEventListener listener) {
+            this.endpointPath = endpointPath;
+            this.listener = listener;
+        }
+    }
+
+    private static class RemoteSessionEntry {
+
+        private final String endpointPath;
+        private final String nodeId;
+
+        private RemoteSessionEntry(String endpointPath, String nodeId) {
+            this.endpointPath = endpointPath;
+            this.nodeId = nodeId;
+        }
+    }
+
+    private static class Request {
+
+        private final String nodeId;
+        private final TyrusFuture<Void> future;
+        private final SendHandler handler;
+
+        private Request(String nodeId, TyrusFuture<Void> future, SendHandler handler) {
+            this.nodeId = nodeId;
+            this.future = future;
+            this.handler = handler;
+        }
+
+        private void complete(Executor executor, final Throwable failure) {
+            // the handler is application code, don't invoke it on the connection reader thread.
+            if (handler == null) {
+                complete(failure);
+                return;
+            }
+
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        complete(failure);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                complete(failure);
+            }
+        }
+
+        private void complete(Throwable failure) {
+            if (future != null) {
+                if (failure == null) {
+                    future.setResult(null);
+                } else {
+                    future.setFailure(failure);
+                }
+            }
+
+            if (handler != null) {
+                handler.onResult(failure == null ? new SendResult() : new SendResult(failure));
+            }
+        }
+    }
+
+    /**
+     * {@link TcpClusterContext} builder.
+     */
+    public static class Builder {
+
+        private final List<InetSocketAddress> members = new ArrayList<InetSocketAddress>();
+        private final List<String> allowedClasses = new ArrayList<String>();
+        private InetSocketAddress bindAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        private long reconnectDelay = 500;
+        private int maxEnvelopeSize = 64 * 1024;
+        private ExecutorService executorService = null;
+
+        private Builder() {
+        }
+
+        /**
+         * Set the address this node listens on. Default value is an ephemeral port on the loopback interface.
+         *
+         * @param bindAddress address to listen on.
+         * @return updated {@link Builder} instance.
+         */
+        public Builder bindAddress(InetSocketAddress bindAddress) {
+            this.bindAddress = bindAddress;
+            return this;
+        }
+
+        /**
+         * Add cluster member. The list of members may contain address of the node itself, so the same list can be
+         * used for configuration of all nodes. Only configured members are allowed to connect to this node.
+         *
+         * @param address address of the member.
+         * @return updated {@link Builder} instance.
+         */
+        public Builder member(InetSocketAddress address) {
+            members.add(address);
+            return this;
+        }
+
+        /**
+         * Add cluster members.
+         *
+         * @param addresses addresses of the members.
+         * @return updated {@link Builder} instance.
+         * @see #member(InetSocketAddress)
+         */
+        public Builder members(Collection<InetSocketAddress> addresses) {
+            members.addAll(addresses);
+            return this;
+        }
+
+        /**
+         * Add cluster members.
+         *
+         * @param addresses addresses of the members.
+         * @return updated {@link Builder} instance.
+         * @see #member(InetSocketAddress)
+         */
+        public Builder members(InetSocketAddress... addresses) {
+            return members(Arrays.asList(addresses));
+        }
+
+        /**
+         * Set delay between attempts to connect to a member. Default value is 500 ms.
+         *
+         * @param reconnectDelay delay in milliseconds.
+         * @return updated {@link Builder} instance.
+         */
+        public Builder reconnectDelay(long reconnectDelay) {
+            this.reconnectDelay = reconnectDelay;
+            return this;
+        }
+
+        /**
+         * Set size of the envelope after which queued messages are written to the member even when other messages are
+         * waiting. Default value is 64 KiB.
+         *
+         * @param maxEnvelopeSize maximal envelope size in bytes.
+         * @return updated {@link Builder} instance.
+         */
+        public Builder maxEnvelopeSize(int maxEnvelopeSize) {
+            if (maxEnvelopeSize <= 0) {
+                throw new IllegalArgumentException("maxEnvelopeSize must be greater than 0.");
+            }
+            this.maxEnvelopeSize = maxEnvelopeSize;
+            return this;
+        }
+
+        /**
+         * Allow classes of distributed property values to be deserialized. Boxed primitives, strings and classes from
+         * {@code java.math}, {@code java.util} and {@code java.util.concurrent} are allowed by default.
+         *
+         * @param classNames fully qualified class names or package names ending with {@code '.'}, which allow all
+         *                   classes of the package (but not of its subpackages).
+         * @return updated {@link Builder} instance.
+         */
+        public Builder allowedClasses(String... classNames) {
+            allowedClasses.addAll(Arrays.asList(classNames));
+            return this;
+        }
+
+        /**
+         * Set executor used to notify listeners and to send messages forwarded by other nodes to local sessions.
+         * Default executor is a cached thread pool, which is shut down together with the context; executor set by
+         * this method is not shut down by the context.
+         *
+         * @param executorService executor service.
+         * @return updated {@link Builder} instance.
+         */
+        public Builder executorService(ExecutorService executorService) {
+            this.executorService = executorService;
+            return this;
+        }
+
+        /**
+         * Build new {@link TcpClusterContext}, bind its server socket and start connecting to configured members.
+         * <p>
+         * Context class loader of the calling thread is used to deserialize distributed properties.
+         *
+         * @return new cluster context.
+         * @throws IOException when the server socket cannot be bound.
+         */
+        public TcpClusterContext build() throws IOException {
+            return new TcpClusterContext(this);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.cluster.tcp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.glassfish.tyrus.core.cluster.RemoteSession;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link Message} encoding and {@link Serializer}.
+ */
+public class MessageTest {
+
+    @Test
+    public void testEnvelope() throws IOException {
+        final Serializer serializer = new Serializer(null, Collections.<String>emptyList());
+        final Message.EnvelopeBuffer envelope = new Message.EnvelopeBuffer(16);
+
+        final Message send = Message.send(Message.SEND_PARTIAL_BINARY, "session");
+        send.requestId = 42;
+        send.data = new byte[]{1, 2, 3};
+        send.last = true;
+
+        envelope.append(Message.sessionOpened("session", "/path",
+                                              serializer.encodeEntries(Collections.singletonMap("key", "value"))));
+        envelope.append(send);
+        envelope.append(Message.broadcast("/path", "text", null));
+        envelope.append(Message.response(42, null));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        envelope.flushTo(out);
+        assertEquals(0, envelope.bodyLength());
+
+        final List<Message> messages =
+                Message.readEnvelope(new DataInputStream(new ByteArrayInputStream(out.toByteArray())), out.size());
+        assertEquals(4, messages.size());
+
+        assertEquals(Message.SESSION_OPENED, messages.get(0).type);
+        assertEquals("session", messages.get(0).id);
+        assertEquals("/path", messages.get(0).path);
+        final Map<Object, Object> properties = serializer.decodeEntries(messages.get(0).data);
+        assertEquals(Collections.<Object, Object>singletonMap("key", "value"), properties);
+
+        assertEquals(Message.SEND, messages.get(1).type);
+        assertEquals(Message.SEND_PARTIAL_BINARY, messages.get(1).kind);
+        assertEquals(42, messages.get(1).requestId);
+        assertArrayEquals(new byte[]{1, 2, 3}, messages.get(1).data);
+        assertTrue(messages.get(1).last);
+        assertNull(messages.get(1).text);
+
+        assertEquals(Message.BROADCAST, messages.get(2).type);
+        assertEquals(Message.SEND_TEXT, messages.get(2).kind);
+        assertEquals("text", messages.get(2).text);
+
+        assertEquals(Message.RESPONSE, messages.get(3).type);
+        assertNull(messages.get(3).text);
+    }
+
+    @Test
+    public void testAllowedClasses() throws IOException {
+        final Serializer serializer = new Serializer(null, Collections.singletonList(Allowed.class.getName()));
+
+        final Map<Object, Object> entries = new HashMap<Object, Object>();
+        entries.put("list", new ArrayList<Object>(Arrays.asList(1, 2L, "3", new BigDecimal("4.5"))));
+        entries.put("key", RemoteSession.DistributedMapKey.QUERY_STRING);
+        entries.put("array", new String[][]{{"a"}});
+        entries.put("bytes", new byte[]{1});
+        entries.put("allowed", new Allowed());
+        entries.put("file", new File("file"));
+        entries.put("notAllowed", new NotAllowed());
+
+        final Map<Object, Object> decoded = serializer.decodeEntries(serializer.encodeEntries(entries));
+        assertEquals(5, decoded.size());
+        assertEquals(entries.get("list"), decoded.get("list"));
+        assertEquals(RemoteSession.DistributedMapKey.QUERY_STRING, decoded.get("key"));
+        assertTrue(decoded.get("allowed") instanceof Allowed);
+
+        assertTrue(serializer.isAllowed("java.util.HashMap"));
+        assertTrue(serializer.isAllowed("[[I"));
+        assertTrue(serializer.isAllowed("[Ljava.lang.Integer;"));
+        assertFalse(serializer.isAllowed("[Ljava.io.File;"));
+        assertFalse(serializer.isAllowed("java.util.logging.Level"));
+    }
+
+    @Test(expected = InvalidClassException.class)
+    public void testNotAllowedClass() throws IOException {
+        final Serializer serializer = new Serializer(null, Collections.<String>emptyList());
+        serializer.deserialize(serializer.serialize(new NotAllowed()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testEnvelopeTooLong() throws IOException {
+        final Message.EnvelopeBuffer envelope = new Message.EnvelopeBuffer(16);
+        envelope.append(Message.hello(new String(new char[Message.MAX_HELLO_LENGTH]), 0));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        envelope.flushTo(out);
+
+        Message.readEnvelope(new DataInputStream(new ByteArrayInputStream(out.toByteArray())),
+                             Message.MAX_HELLO_LENGTH);
+    }
+
+    private static class Allowed implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static class NotAllowed implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+    }
+}
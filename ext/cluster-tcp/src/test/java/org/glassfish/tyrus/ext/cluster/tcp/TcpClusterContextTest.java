@@ -0,0 +1,546 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.cluster.tcp;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.CloseReason;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.MessageHandler;
+import javax.websocket.OnMessage;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import javax.websocket.server.ServerEndpoint;
+
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.core.TyrusSession;
+import org.glassfish.tyrus.core.cluster.BroadcastListener;
+import org.glassfish.tyrus.core.cluster.ClusterContext;
+import org.glassfish.tyrus.core.cluster.DistributedSession;
+import org.glassfish.tyrus.core.cluster.RemoteSession;
+import org.glassfish.tyrus.core.cluster.SessionEventListener;
+import org.glassfish.tyrus.core.cluster.SessionListener;
+import org.glassfish.tyrus.server.Server;
+import org.glassfish.tyrus.test.tools.TestContainer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link TcpClusterContext} with several nodes running on localhost.
+ */
+public class TcpClusterContextTest extends TestContainer {
+
+    private static final String PATH = "/cluster";
+    private static final String CONTEXT_PATH = "/clusterTestApp";
+
+    /**
+     * Max time in milliseconds to wait for any asynchronous event.
+     */
+    private static final long TIMEOUT = 5000;
+
+    private final List<TcpClusterContext> nodes = new ArrayList<TcpClusterContext>();
+    private final List<InetSocketAddress> members = new ArrayList<InetSocketAddress>();
+
+    @Before
+    public void createNodes() throws IOException, InterruptedException {
+        // the last member is not started, it is used by tests of joining nodes.
+        for (int i = 0; i < 4; i++) {
+            members.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), getFreePort()));
+        }
+
+        // all nodes share the same member list.
+        for (InetSocketAddress member : members.subList(0, 3)) {
+            nodes.add(TcpClusterContext.builder().bindAddress(member).members(members).reconnectDelay(50).build());
+        }
+
+        for (final TcpClusterContext node : nodes) {
+            waitFor("all nodes connected", new Condition() {
+                @Override
+                public boolean isMet() {
+                    return node.getConnectedNodes().size() == 2;
+                }
+            });
+        }
+    }
+
+    @After
+    public void shutdownNodes() {
+        for (TcpClusterContext node : nodes) {
+            node.shutdown();
+        }
+    }
+
+    @Test
+    public void testSessionDirectory() throws InterruptedException {
+        final TcpClusterContext node0 = nodes.get(0);
+        final TcpClusterContext node1 = nodes.get(1);
+
+        final RecordingSessionListener sessionListener = new RecordingSessionListener();
+        node1.registerSessionListener(PATH, sessionListener);
+
+        final Map<RemoteSession.DistributedMapKey, Object> properties = node0.getDistributedSessionProperties("s1");
+        properties.put(RemoteSession.DistributedMapKey.QUERY_STRING, "a=b");
+        node0.registerSession("s1", PATH, new RecordingSessionEventListener());
+
+        assertEquals("opened s1", poll(sessionListener.events));
+        assertTrue(node1.isSessionOpen("s1", PATH));
+        assertFalse(node1.isSessionOpen("s1", "/other"));
+        assertEquals(Collections.singleton("s1"), node1.getRemoteSessionIds(PATH));
+        assertTrue(node0.getRemoteSessionIds(PATH).isEmpty());
+        assertEquals("a=b",
+                     node1.getDistributedSessionProperties("s1").get(RemoteSession.DistributedMapKey.QUERY_STRING));
+
+        // changes done after the registration are replicated as well.
+        properties.put(RemoteSession.DistributedMapKey.MAX_IDLE_TIMEOUT, 10L);
+        final Map<String, Object> userProperties = node0.getDistributedUserProperties("c1");
+        userProperties.put("user", "value");
+        userProperties.put("removed", "value");
+        userProperties.remove("removed");
+
+        waitFor("properties replicated", new Condition() {
+            @Override
+            public boolean isMet() {
+                return Long.valueOf(10L).equals(nodes.get(2).getDistributedSessionProperties("s1").get(
+                        RemoteSession.DistributedMapKey.MAX_IDLE_TIMEOUT))
+                        && Collections.singletonMap("user", "value")
+                                      .equals(nodes.get(2).getDistributedUserProperties("c1"));
+            }
+        });
+
+        node0.removeSession("s1", PATH);
+        assertEquals("closed s1", poll(sessionListener.events));
+        assertFalse(node1.isSessionOpen("s1", PATH));
+        assertTrue(node1.getRemoteSessionIds(PATH).isEmpty());
+    }
+
+    @Test
+    public void testSend() throws Exception {
+        final TcpClusterContext node0 = nodes.get(0);
+        final TcpClusterContext node1 = nodes.get(1);
+
+        final RecordingSessionListener sessionListener = new RecordingSessionListener();
+        node1.registerSessionListener(PATH, sessionListener);
+
+        final RecordingSessionEventListener sessionEventListener = new RecordingSessionEventListener();
+        node0.registerSession("s1", PATH, sessionEventListener);
+        assertEquals("opened s1", poll(sessionListener.events));
+
+        node1.sendText("s1", "text").get(TIMEOUT, TimeUnit.MILLISECONDS);
+        node1.sendText("s1", "part", false).get(TIMEOUT, TimeUnit.MILLISECONDS);
+        node1.sendBinary("s1", new byte[]{1, 2}).get(TIMEOUT, TimeUnit.MILLISECONDS);
+        node1.close("s1", new CloseReason(CloseReason.CloseCodes.GOING_AWAY, "bye"))
+             .get(TIMEOUT, TimeUnit.MILLISECONDS);
+
+        assertEquals("text text", poll(sessionEventListener.events));
+        assertEquals("text part false", poll(sessionEventListener.events));
+        assertEquals("binary 2", poll(sessionEventListener.events));
+        assertEquals("close 1001 bye", poll(sessionEventListener.events));
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        node1.sendBinary("s1", new byte[]{1, 2, 3}, new SendHandler() {
+            @Override
+            public void onResult(SendResult result) {
+                if (result.isOK()) {
+                    latch.countDown();
+                }
+            }
+        });
+        assertTrue(latch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals("binary 3", poll(sessionEventListener.events));
+
+        // failures are reported back to the sender.
+        try {
+            node1.sendPing("s1", new byte[0]).get(TIMEOUT, TimeUnit.MILLISECONDS);
+            fail("ExecutionException expected.");
+        } catch (ExecutionException e) {
+            assertEquals("ping failed", e.getCause().getMessage());
+        }
+
+        try {
+            node1.sendText("unknown", "text").get(TIMEOUT, TimeUnit.MILLISECONDS);
+            fail("ExecutionException expected.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testBlockedDelivery() throws Exception {
+        final TcpClusterContext node0 = nodes.get(0);
+        final TcpClusterContext node1 = nodes.get(1);
+
+        final RecordingSessionListener sessionListener = new RecordingSessionListener();
+        node1.registerSessionListener(PATH, sessionListener);
+
+        final CountDownLatch blocked = new CountDownLatch(1);
+        node0.registerSession("s1", PATH, new RecordingSessionEventListener() {
+            @Override
+            public void onSendText(String message) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    // ignore.
+                }
+                super.onSendText(message);
+            }
+        });
+        assertEquals("opened s1", poll(sessionListener.events));
+
+        try {
+            final Future<Void> sent = node1.sendText("s1", "text");
+
+            // replicated state is still processed while the session is sending the message.
+            node1.getDistributedUserProperties("c1").put("user", "value");
+            waitFor("property replicated", new Condition() {
+                @Override
+                public boolean isMet() {
+                    return "value".equals(nodes.get(0).getDistributedUserProperties("c1").get("user"));
+                }
+            });
+            assertFalse(sent.isDone());
+
+            blocked.countDown();
+            sent.get(TIMEOUT, TimeUnit.MILLISECONDS);
+        } finally {
+            blocked.countDown();
+        }
+    }
+
+    @Test
+    public void testBroadcast() throws InterruptedException {
+        final List<BlockingQueue<String>> received = new ArrayList<BlockingQueue<String>>();
+        for (TcpClusterContext node : nodes) {
+            final BlockingQueue<String> queue = new LinkedBlockingQueue<String>();
+            received.add(queue);
+            node.registerBroadcastListener(PATH, new BroadcastListener() {
+                @Override
+                public void onBroadcast(String text) {
+                    queue.add(text);
+                }
+
+                @Override
+                public void onBroadcast(byte[] data) {
+                    queue.add("binary " + data.length);
+                }
+            });
+        }
+
+        // broadcasts are received in the order in which they were sent.
+        for (int i = 0; i < 100; i++) {
+            nodes.get(0).broadcastText(PATH, "message " + i);
+        }
+        nodes.get(0).broadcastBinary(PATH, new byte[]{1, 2, 3});
+
+        for (int node = 1; node < nodes.size(); node++) {
+            for (int i = 0; i < 100; i++) {
+                assertEquals("message " + i, poll(received.get(node)));
+            }
+            assertEquals("binary 3", poll(received.get(node)));
+        }
+
+        // the sender is responsible for local broadcast.
+        assertTrue(received.get(0).isEmpty());
+    }
+
+    @Test
+    public void testNodeShutdown() throws InterruptedException {
+        final TcpClusterContext node0 = nodes.get(0);
+        final TcpClusterContext node1 = nodes.get(1);
+
+        final RecordingSessionListener sessionListener = new RecordingSessionListener();
+        node1.registerSessionListener(PATH, sessionListener);
+
+        node0.registerSession("s1", PATH, new RecordingSessionEventListener());
+        assertEquals("opened s1", poll(sessionListener.events));
+
+        node0.shutdown();
+
+        assertEquals("closed s1", poll(sessionListener.events));
+        assertTrue(node1.getRemoteSessionIds(PATH).isEmpty());
+        waitFor("node disconnected", new Condition() {
+            @Override
+            public boolean isMet() {
+                return nodes.get(1).getConnectedNodes().size() == 1;
+            }
+        });
+    }
+
+    @Test
+    public void testNodeJoin() throws IOException, InterruptedException {
+        nodes.get(0).registerSession("s1", PATH, new RecordingSessionEventListener());
+        nodes.get(0).getDistributedUserProperties("c1").put("user", "value");
+
+        final TcpClusterContext joined = TcpClusterContext.builder()
+                                                          .bindAddress(members.get(3))
+                                                          .members(members)
+                                                          .reconnectDelay(50)
+                                                          .build();
+        nodes.add(joined);
+
+        // the new node gets state of the other nodes and they connect to it.
+        waitFor("joined node connected", new Condition() {
+            @Override
+            public boolean isMet() {
+                return joined.isSessionOpen("s1", PATH)
+                        && "value".equals(joined.getDistributedUserProperties("c1").get("user"))
+                        && nodes.get(0).getConnectedNodes().contains(joined.getNodeId());
+            }
+        });
+
+        joined.registerSession("s2", PATH, new RecordingSessionEventListener());
+        waitFor("session of joined node replicated", new Condition() {
+            @Override
+            public boolean isMet() {
+                return nodes.get(0).isSessionOpen("s2", PATH);
+            }
+        });
+
+        joined.shutdown();
+        waitFor("joined node removed", new Condition() {
+            @Override
+            public boolean isMet() {
+                return !nodes.get(0).isSessionOpen("s2", PATH) && nodes.get(0).getConnectedNodes().size() == 2;
+            }
+        });
+    }
+
+    @Test
+    public void testNonMemberRejected() throws IOException {
+        final Socket socket = new Socket();
+        try {
+            socket.connect(nodes.get(0).getLocalAddress(), (int) TIMEOUT);
+            socket.setSoTimeout((int) TIMEOUT);
+
+            // node listening on a port which is not configured as a member.
+            final Message.EnvelopeBuffer envelope = new Message.EnvelopeBuffer(Message.MAX_HELLO_LENGTH);
+            envelope.append(Message.hello("stranger", getFreePort()));
+            envelope.flushTo(socket.getOutputStream());
+
+            // the connection is closed without handshake response.
+            assertEquals(-1, socket.getInputStream().read());
+        } finally {
+            socket.close();
+        }
+
+        assertFalse(nodes.get(0).getConnectedNodes().contains("stranger"));
+    }
+
+    @Test
+    public void testServers() throws Exception {
+        final List<Server> servers = new ArrayList<Server>();
+        final List<Session> sessions = new ArrayList<Session>();
+        try {
+            for (int i = 0; i < 2; i++) {
+                final Map<String, Object> properties = new HashMap<String, Object>();
+                properties.put(ClusterContext.CLUSTER_CONTEXT, nodes.get(i));
+                final Server server = new Server("localhost", getPort() + i, CONTEXT_PATH, properties,
+                                                 ClusterBroadcastEndpoint.class);
+                server.start();
+                servers.add(server);
+            }
+
+            // listeners are invoked in the order of registration, so the endpoint knows the remote session when
+            // this listener is notified.
+            final RecordingSessionListener sessionListener = new RecordingSessionListener();
+            nodes.get(0).registerSessionListener(CONTEXT_PATH + PATH, sessionListener);
+
+            final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+            final ClientManager client = createClient();
+            for (int i = 0; i < 2; i++) {
+                sessions.add(client.connectToServer(new Endpoint() {
+                    @Override
+                    public void onOpen(Session session, EndpointConfig config) {
+                        session.addMessageHandler(new MessageHandler.Whole<String>() {
+                            @Override
+                            public void onMessage(String message) {
+                                received.add(message);
+                            }
+                        });
+                    }
+                }, ClientEndpointConfig.Builder.create().build(), URI.create(
+                        "ws://localhost:" + (getPort() + i) + CONTEXT_PATH + PATH)));
+            }
+
+            final String event = poll(sessionListener.events);
+            assertEquals(Collections.singleton(event.substring("opened ".length())),
+                         nodes.get(0).getRemoteSessionIds(CONTEXT_PATH + PATH));
+
+            // message received on the first node is sent to the session connected to the second node as well.
+            sessions.get(0).getBasicRemote().sendText("hello");
+            assertEquals("hello", poll(received));
+            assertEquals("hello", poll(received));
+        } finally {
+            for (Session session : sessions) {
+                session.close();
+            }
+            for (Server server : servers) {
+                stopServer(server);
+            }
+        }
+    }
+
+    /**
+     * Sends every received message to all sessions connected to the cluster.
+     */
+    @ServerEndpoint(PATH)
+    public static class ClusterBroadcastEndpoint {
+
+        @OnMessage
+        public void onMessage(Session session, String message) throws IOException {
+            for (DistributedSession distributedSession : ((TyrusSession) session).getAllSessions()) {
+                distributedSession.getBasicRemote().sendText(message);
+            }
+        }
+    }
+
+    private static int getFreePort() throws IOException {
+        final ServerSocket serverSocket = new ServerSocket(0);
+        try {
+            return serverSocket.getLocalPort();
+        } finally {
+            serverSocket.close();
+        }
+    }
+
+    /**
+     * Wait until the condition is met, fail when it is not met within {@link #TIMEOUT}.
+     */
+    private static void waitFor(String description, Condition condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT);
+        while (!condition.isMet()) {
+            final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                fail("Condition \"" + description + "\" not met in " + TIMEOUT + " ms.");
+            }
+            Thread.sleep(Math.min(10, remaining));
+        }
+    }
+
+    /**
+     * Take next event, fail when there is none within {@link #TIMEOUT}.
+     */
+    private static <T> T poll(BlockingQueue<T> events) throws InterruptedException {
+        final T event = events.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        if (event == null) {
+            fail("No event received in " + TIMEOUT + " ms.");
+        }
+        return event;
+    }
+
+    private interface Condition {
+
+        boolean isMet();
+    }
+
+    private static class RecordingSessionListener implements SessionListener {
+
+        private final BlockingQueue<String> events = new LinkedBlockingQueue<String>();
+
+        @Override
+        public void onSessionOpened(String sessionId) {
+            events.add("opened " + sessionId);
+        }
+
+        @Override
+        public void onSessionClosed(String sessionId) {
+            events.add("closed " + sessionId);
+        }
+    }
+
+    private static class RecordingSessionEventListener extends SessionEventListener {
+
+        private final BlockingQueue<String> events = new LinkedBlockingQueue<String>();
+
+        private RecordingSessionEventListener() {
+            super(null);
+        }
+
+        @Override
+        public void onSendText(String message) {
+            events.add("text " + message);
+        }
+
+        @Override
+        public void onSendText(String message, boolean isLast) {
+            events.add("text " + message + " " + isLast);
+        }
+
+        @Override
+        public void onSendBinary(byte[] message) {
+            events.add("binary " + message.length);
+        }
+
+        @Override
+        public void onSendPing(byte[] payload) throws IOException {
+            throw new IOException("ping failed");
+        }
+
+        @Override
+        public void onClose(CloseReason closeReason) {
+            events.add("close " + closeReason.getCloseCode().getCode() + " " + closeReason.getReasonPhrase());
+        }
+    }
+}
@@ -42,8 +42,10 @@ package org.glassfish.tyrus.ext.extension.deflate;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -51,21 +53,38 @@ import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
 
-import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.TyrusExtension;
+import org.glassfish.tyrus.core.extension.CacheableExtension;
 import org.glassfish.tyrus.core.frame.Frame;
 
 /**
- * Compression Extensions for WebSocket draft-ietf-hybi-permessage-compression-15
+ * Compression Extensions for WebSocket (RFC 7692, previously draft-ietf-hybi-permessage-compression-15)
  * <p>
- * http://tools.ietf.org/html/draft-ietf-hybi-permessage-compression-15
+ * https://tools.ietf.org/html/rfc7692
+ * <p>
+ * Context takeover can be disabled for messages sent by server by requesting {@code server_no_context_takeover}
+ * parameter and for messages sent by client by {@code client_no_context_takeover} parameter. Both can be requested
+ * by either side (see {@link Builder#serverNoContextTakeover(boolean)} and {@link
+ * Builder#clientNoContextTakeover(boolean)}). Compression (or decompression) context is then reset after every
+ * message, so it does not have to be kept for every connection - {@link Deflater} and {@link Inflater} instances are
+ * taken from a pool shared by all connections using the same extension instance when a message is being sent (or
+ * received) and returned to it afterwards. Compressed frames can also be shared among sessions when broadcasting
+ * (see {@link CacheableExtension}).
+ * <p>
+ * Compression level and strategy can be configured by {@link Builder}, default level is {@link
+ * Deflater#BEST_COMPRESSION}.
+ * <p>
+ * Window size of {@link Deflater} cannot be limited (it is always 32K), so when the peer limits window size of the
+ * sent messages ({@code server_max_window_bits} requested by the client or {@code client_max_window_bits} returned by
+ * the server) to less than 15 bits, messages are compressed using {@link Deflater#HUFFMAN_ONLY} strategy, which does
+ * not refer to previous data at all. Messages received by {@link Inflater} can use any window size.
  * <pre>TODO:
- * - parameters (window sizes, context takeovers).
  * - context (some utility methods to get the typed params - T getParam(Class&lt;T&gt;))
  * </pre>
  *
  * @author Pavel Bucek (pavel.bucek at oracle.com)
  */
-public class PerMessageDeflateExtension implements ExtendedExtension {
+public class PerMessageDeflateExtension implements CacheableExtension {
 
     private static final Pool<byte[]> BYTE_ARRAY_POOL = new Pool<byte[]>() {
         @Override
@@ -76,15 +95,84 @@ public class PerMessageDeflateExtension implements ExtendedExtension {
 
     private static final String INFLATER = PerMessageDeflateExtension.class.getName() + ".INFLATER";
     private static final String DEFLATER = PerMessageDeflateExtension.class.getName() + ".DEFLATER";
+    private static final String NO_CONTEXT_TAKEOVER =
+            PerMessageDeflateExtension.class.getName() + ".NO_CONTEXT_TAKEOVER";
+    private static final String INFLATER_NO_CONTEXT_TAKEOVER =
+            PerMessageDeflateExtension.class.getName() + ".INFLATER_NO_CONTEXT_TAKEOVER";
+    private static final String HUFFMAN_ONLY = PerMessageDeflateExtension.class.getName() + ".HUFFMAN_ONLY";
+
+    private static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+    private static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+    private static final String SERVER_MAX_WINDOW_BITS = "server_max_window_bits";
+    private static final String CLIENT_MAX_WINDOW_BITS = "client_max_window_bits";
+
+    private static final int MIN_WINDOW_BITS = 8;
+    private static final int MAX_WINDOW_BITS = 15;
 
     private static final Logger LOGGER = Logger.getLogger(PerMessageDeflateExtension.class.getName());
     private static final boolean DEBUG = LOGGER.isLoggable(Level.FINE);
 
     private static final byte[] TAIL = {0x00, 0x00, (byte) 0xff, (byte) 0xff};
+    private static final byte[] EMPTY = new byte[0];
+
+    private final int compressionLevel;
+    private final int strategy;
+    private final boolean serverNoContextTakeover;
+    private final boolean clientNoContextTakeover;
+
+    private final Pool<Deflater> deflaterPool;
+    private final Pool<Deflater> huffmanOnlyDeflaterPool;
+    private final Pool<Inflater> inflaterPool = new Pool<Inflater>() {
+        @Override
+        Inflater create() {
+            return new Inflater(true);
+        }
+    };
+
+    private final Object encodingKey;
+    private final Object huffmanOnlyEncodingKey;
+
+    /**
+     * Create new extension with default configuration.
+     * <p>
+     * Server does not request any of the parties to reset compression context, client does not request it either.
+     */
+    public PerMessageDeflateExtension() {
+        this(new Builder());
+    }
+
+    /**
+     * Create new extension configured by provided {@link Builder}.
+     *
+     * @param builder extension configuration.
+     * @see #builder()
+     */
+    protected PerMessageDeflateExtension(Builder builder) {
+        this.compressionLevel = builder.compressionLevel;
+        this.strategy = builder.strategy;
+        this.serverNoContextTakeover = builder.serverNoContextTakeover;
+        this.clientNoContextTakeover = builder.clientNoContextTakeover;
+
+        this.deflaterPool = new DeflaterPool(compressionLevel, strategy);
+        this.huffmanOnlyDeflaterPool = new DeflaterPool(compressionLevel, Deflater.HUFFMAN_ONLY);
+
+        this.encodingKey = Arrays.<Object>asList(NO_CONTEXT_TAKEOVER, compressionLevel, strategy);
+        this.huffmanOnlyEncodingKey =
+                Arrays.<Object>asList(NO_CONTEXT_TAKEOVER, compressionLevel, Deflater.HUFFMAN_ONLY);
+    }
+
+    /**
+     * Create new {@link Builder}.
+     *
+     * @return new builder instance.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
 
     @Override
     public Frame processIncoming(ExtensionContext context, Frame frame) {
-        final Inflater decompresser = (Inflater) context.getProperties().get(INFLATER);
+        final Map<String, Object> properties = context.getProperties();
 
         if (DEBUG) {
             LOGGER.fine("Incoming frame: " + frame);
@@ -93,6 +181,13 @@ public class PerMessageDeflateExtension implements ExtendedExtension {
         // per-message-deflate draft, chapter 8.2.3.1:
         // "Note that the RSV1 bit is set only on the first frame."
         if ((frame.isRsv1() || frame.getOpcode() == 0x00) && !frame.isControlFrame()) {
+            final boolean pooled = properties.containsKey(INFLATER_NO_CONTEXT_TAKEOVER);
+            Inflater decompresser = (Inflater) properties.get(INFLATER);
+            if (decompresser == null && pooled) {
+                decompresser = inflaterPool.take();
+                properties.put(INFLATER, decompresser);
+            }
+
             // Decompress the bytes
             final int payloadLength = (int) frame.getPayloadLength();
 
@@ -101,6 +196,9 @@ public class PerMessageDeflateExtension implements ExtendedExtension {
 
             int tmp = processCompressed(decompresser, frame.getPayloadData(), payloadLength, wholeResult);
             if (tmp == -1) {
+                if (pooled) {
+                    releaseInflater(properties, decompresser);
+                }
                 return frame;
             } else {
                 wholeResultLength += tmp;
@@ -108,6 +206,12 @@ public class PerMessageDeflateExtension implements ExtendedExtension {
 
             if (frame.isFin()) {
                 tmp = processCompressed(decompresser, TAIL, 4, wholeResult);
+
+                // decompression context is not taken over to the next message
+                if (pooled) {
+                    releaseInflater(properties, decompresser);
+                }
+
                 if (tmp == -1) {
                     return frame;
                 } else {
@@ -158,13 +262,19 @@ public class PerMessageDeflateExtension implements ExtendedExtension {
 
     @Override
     public Frame processOutgoing(ExtensionContext context, Frame frame) {
-        final Deflater compresser = (Deflater) context.getProperties().get(DEFLATER);
+        final Map<String, Object> properties = context.getProperties();
 
         if (DEBUG) {
             LOGGER.fine("Outgoing frame: " + frame);
         }
 
         if (!frame.isControlFrame()) {
+            final boolean pooled = properties.containsKey(NO_CONTEXT_TAKEOVER);
+            Deflater compresser = (Deflater) properties.get(DEFLATER);
+            if (compresser == null && pooled) {
+                compresser = getDeflaterPool(properties).take();
+                properties.put(DEFLATER, compresser);
+            }
 
             List<PartialResultWithLength<byte[]>> wholeResult = new ArrayList<PartialResultWithLength<byte[]>>();
             int wholeResultLength = 0;
@@ -196,8 +306,9 @@ public class PerMessageDeflateExtension implements ExtendedExtension {
                 wholeResultLength += tmp;
             }
 
+            // the tail is removed only from the end of the message, see RFC 7692, chapter 7.2.1.
             boolean strip = false;
-            if (completeResult.length >= 4
+            if (frame.isFin() && completeResult.length >= 4
                     && completeResult[completeResult.length - 4] == TAIL[0]
                     && completeResult[completeResult.length - 3] == TAIL[1]
                     && completeResult[completeResult.length - 2] == TAIL[2]
@@ -205,6 +316,11 @@ public class PerMessageDeflateExtension implements ExtendedExtension {
                 strip = true;
             }
 
+            // compression context is not taken over to the next message
+            if (frame.isFin() && pooled) {
+                releaseDeflater(properties, compresser);
+            }
+
             return Frame.builder(frame)
                         .payloadData(completeResult)
                         .payloadLength(strip ? completeResult.length - 4 : completeResult.length)
@@ -214,43 +330,191 @@ public class PerMessageDeflateExtension implements ExtendedExtension {
         }
     }
 
-    private void init(ExtensionContext context) {
-        // TODO: configurable compression level
-        Deflater compresser = new Deflater(9, true);
-        Inflater decompresser = new Inflater(true);
+    /**
+     * Initialize the connection state once the parameters are negotiated.
+     * <p>
+     * Compression (decompression) context is created for the connection only when it is taken over to the next
+     * message, otherwise it is taken from the pool for every message.
+     *
+     * @param context                   extension context.
+     * @param deflaterNoContextTakeover {@code true} when compression context is reset after every sent message.
+     * @param inflaterNoContextTakeover {@code true} when the peer resets compression context after every message.
+     * @param huffmanOnly               {@code true} when the peer limited window size of sent messages.
+     */
+    private void init(ExtensionContext context, boolean deflaterNoContextTakeover, boolean inflaterNoContextTakeover,
+                      boolean huffmanOnly) {
+        final Map<String, Object> properties = context.getProperties();
 
-        compresser.setStrategy(Deflater.DEFAULT_STRATEGY);
+        if (huffmanOnly) {
+            properties.put(HUFFMAN_ONLY, true);
+        }
 
-        context.getProperties().put(INFLATER, decompresser);
-        context.getProperties().put(DEFLATER, compresser);
+        if (deflaterNoContextTakeover) {
+            properties.put(NO_CONTEXT_TAKEOVER, true);
+        } else {
+            properties.put(DEFLATER, createDeflater(compressionLevel, huffmanOnly ? Deflater.HUFFMAN_ONLY : strategy));
+        }
+
+        if (inflaterNoContextTakeover) {
+            properties.put(INFLATER_NO_CONTEXT_TAKEOVER, true);
+        } else {
+            properties.put(INFLATER, new Inflater(true));
+        }
     }
 
     @Override
     public List<Parameter> onExtensionNegotiation(ExtensionContext context, List<Parameter> requestedParameters) {
-        init(context);
-        return Collections.<Parameter>emptyList();
+        final List<Parameter> responseParameters = new ArrayList<Parameter>();
+
+        final boolean deflaterNoContextTakeover =
+                serverNoContextTakeover || containsParameter(requestedParameters, SERVER_NO_CONTEXT_TAKEOVER);
+        if (deflaterNoContextTakeover) {
+            responseParameters.add(new TyrusExtension.TyrusParameter(SERVER_NO_CONTEXT_TAKEOVER, null));
+        }
+
+        // the client does not take over compression context when requested to do so (or when it says it won't).
+        final boolean inflaterNoContextTakeover =
+                clientNoContextTakeover || containsParameter(requestedParameters, CLIENT_NO_CONTEXT_TAKEOVER);
+        if (inflaterNoContextTakeover) {
+            responseParameters.add(new TyrusExtension.TyrusParameter(CLIENT_NO_CONTEXT_TAKEOVER, null));
+        }
+
+        // client_max_window_bits is a hint only, the client can use any window size when it is not returned.
+        boolean huffmanOnly = false;
+        final Integer serverMaxWindowBits = getWindowBits(requestedParameters, SERVER_MAX_WINDOW_BITS);
+        if (serverMaxWindowBits != null) {
+            responseParameters.add(new TyrusExtension.TyrusParameter(SERVER_MAX_WINDOW_BITS,
+                                                                     serverMaxWindowBits.toString()));
+            huffmanOnly = serverMaxWindowBits < MAX_WINDOW_BITS;
+        }
+
+        init(context, deflaterNoContextTakeover, inflaterNoContextTakeover, huffmanOnly);
+
+        return responseParameters;
     }
 
     @Override
     public void onHandshakeResponse(ExtensionContext context, List<Parameter> responseParameters) {
-        init(context);
+        // resetting the own compression context is always allowed.
+        final boolean deflaterNoContextTakeover =
+                clientNoContextTakeover || containsParameter(responseParameters, CLIENT_NO_CONTEXT_TAKEOVER);
+        final boolean inflaterNoContextTakeover = containsParameter(responseParameters, SERVER_NO_CONTEXT_TAKEOVER);
+
+        final Integer clientMaxWindowBits = getWindowBits(responseParameters, CLIENT_MAX_WINDOW_BITS);
+
+        init(context, deflaterNoContextTakeover, inflaterNoContextTakeover,
+             clientMaxWindowBits != null && clientMaxWindowBits < MAX_WINDOW_BITS);
     }
 
+    /**
+     * Compressed frames can be shared only when the compression context is reset after every message, otherwise the
+     * output depends on previously sent messages. Frames compressed with the same level and strategy are equal.
+     */
     @Override
-    public void destroy(ExtensionContext context) {
-        final Inflater decompresser = (Inflater) context.getProperties().get(INFLATER);
-        final Deflater compresser = (Deflater) context.getProperties().get(DEFLATER);
+    public Object getEncodingKey(ExtensionContext context) {
+        final Map<String, Object> properties = context.getProperties();
+
+        if (!properties.containsKey(NO_CONTEXT_TAKEOVER)) {
+            return null;
+        }
+
+        return properties.containsKey(HUFFMAN_ONLY) ? huffmanOnlyEncodingKey : encodingKey;
+    }
+
+    private static Deflater createDeflater(int compressionLevel, int strategy) {
+        final Deflater compresser = new Deflater(compressionLevel, true);
+        compresser.setStrategy(strategy);
+        // changed strategy is applied by the next deflate call, which would otherwise compress part of its input
+        // using the previous one.
+        compresser.deflate(EMPTY);
+        return compresser;
+    }
+
+    private Pool<Deflater> getDeflaterPool(Map<String, Object> properties) {
+        return properties.containsKey(HUFFMAN_ONLY) ? huffmanOnlyDeflaterPool : deflaterPool;
+    }
+
+    private void releaseDeflater(Map<String, Object> properties, Deflater compresser) {
+        properties.remove(DEFLATER);
+        compresser.reset();
+        getDeflaterPool(properties).recycle(compresser);
+    }
+
+    private void releaseInflater(Map<String, Object> properties, Inflater decompresser) {
+        properties.remove(INFLATER);
+        decompresser.reset();
+        inflaterPool.recycle(decompresser);
+    }
+
+    private static boolean containsParameter(List<Parameter> parameters, String name) {
+        if (parameters != null) {
+            for (Parameter parameter : parameters) {
+                if (name.equals(parameter.getName())) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Get value of {@code *_max_window_bits} parameter.
+     *
+     * @param parameters negotiated parameters.
+     * @param name       parameter name.
+     * @return window bits or {@code null} when the parameter is not present or its value is not valid.
+     */
+    private static Integer getWindowBits(List<Parameter> parameters, String name) {
+        if (parameters != null) {
+            for (Parameter parameter : parameters) {
+                if (name.equals(parameter.getName())) {
+                    try {
+                        final int windowBits = Integer.parseInt(parameter.getValue());
+                        if (windowBits >= MIN_WINDOW_BITS && windowBits <= MAX_WINDOW_BITS) {
+                            return windowBits;
+                        }
+                    } catch (NumberFormatException e) {
+                        // invalid value, logged below.
+                    }
+
+                    LOGGER.log(Level.FINE, "Ignoring invalid parameter {0}={1}",
+                               new Object[]{name, parameter.getValue()});
+                    return null;
+                }
+            }
+        }
 
-        context.getProperties().remove(DEFLATER);
-        context.getProperties().remove(INFLATER);
+        return null;
+    }
+
+    @Override
+    public void destroy(ExtensionContext context) {
+        final Map<String, Object> properties = context.getProperties();
+        final Inflater decompresser = (Inflater) properties.get(INFLATER);
+        final Deflater compresser = (Deflater) properties.get(DEFLATER);
 
         if (decompresser != null) {
-            decompresser.end();
+            if (properties.containsKey(INFLATER_NO_CONTEXT_TAKEOVER)) {
+                releaseInflater(properties, decompresser);
+            } else {
+                decompresser.end();
+            }
         }
 
         if (compresser != null) {
-            compresser.end();
+            if (properties.containsKey(NO_CONTEXT_TAKEOVER)) {
+                releaseDeflater(properties, compresser);
+            } else {
+                compresser.end();
+            }
         }
+
+        properties.remove(DEFLATER);
+        properties.remove(INFLATER);
+        properties.remove(NO_CONTEXT_TAKEOVER);
+        properties.remove(INFLATER_NO_CONTEXT_TAKEOVER);
+        properties.remove(HUFFMAN_ONLY);
     }
 
     @Override
@@ -258,11 +522,132 @@ public class PerMessageDeflateExtension implements ExtendedExtension {
         return "permessage-deflate";
     }
 
+    /**
+     * Parameters of the extension negotiation offer sent by the client.
+     *
+     * @return configured {@code *_no_context_takeover} parameters and {@code client_max_window_bits}, which signals
+     * that the server can limit window size of messages sent by the client.
+     */
     @Override
     public List<Parameter> getParameters() {
-        return Collections.<Parameter>emptyList();
+        final List<Parameter> parameters = new ArrayList<Parameter>();
+
+        if (serverNoContextTakeover) {
+            parameters.add(new TyrusExtension.TyrusParameter(SERVER_NO_CONTEXT_TAKEOVER, null));
+        }
+        if (clientNoContextTakeover) {
+            parameters.add(new TyrusExtension.TyrusParameter(CLIENT_NO_CONTEXT_TAKEOVER, null));
+        }
+        parameters.add(new TyrusExtension.TyrusParameter(CLIENT_MAX_WINDOW_BITS, null));
+
+        return Collections.unmodifiableList(parameters);
     }
 
+    /**
+     * {@link PerMessageDeflateExtension} builder.
+     */
+    public static final class Builder {
+
+        private int compressionLevel = Deflater.BEST_COMPRESSION;
+        private int strategy = Deflater.DEFAULT_STRATEGY;
+        private boolean serverNoContextTakeover = false;
+        private boolean clientNoContextTakeover = false;
+
+        /**
+         * Constructor.
+         */
+        public Builder() {
+        }
+
+        /**
+         * Set compression level.
+         *
+         * @param compressionLevel compression level (0-9 or {@link Deflater#DEFAULT_COMPRESSION}).
+         * @return updated {@link Builder} instance.
+         */
+        public Builder compressionLevel(int compressionLevel) {
+            if ((compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION)
+                    && compressionLevel != Deflater.DEFAULT_COMPRESSION) {
+                throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+            }
+
+            this.compressionLevel = compressionLevel;
+            return this;
+        }
+
+        /**
+         * Set compression strategy.
+         *
+         * @param strategy {@link Deflater#DEFAULT_STRATEGY}, {@link Deflater#FILTERED} or {@link
+         *                 Deflater#HUFFMAN_ONLY}.
+         * @return updated {@link Builder} instance.
+         */
+        public Builder strategy(int strategy) {
+            if (strategy != Deflater.DEFAULT_STRATEGY && strategy != Deflater.FILTERED
+                    && strategy != Deflater.HUFFMAN_ONLY) {
+                throw new IllegalArgumentException("Invalid compression strategy: " + strategy);
+            }
+
+            this.strategy = strategy;
+            return this;
+        }
+
+        /**
+         * Reset compression context of messages sent by the server after every message.
+         * <p>
+         * Server sets {@code server_no_context_takeover} parameter in the handshake response, client requests it in
+         * the extension negotiation offer.
+         *
+         * @param serverNoContextTakeover {@code true} if server compression context should not be taken over.
+         * @return updated {@link Builder} instance.
+         */
+        public Builder serverNoContextTakeover(boolean serverNoContextTakeover) {
+            this.serverNoContextTakeover = serverNoContextTakeover;
+            return this;
+        }
+
+        /**
+         * Reset compression context of messages sent by the client after every message.
+         * <p>
+         * Server sets {@code client_no_context_takeover} parameter in the handshake response, client sets it in the
+         * extension negotiation offer (and does not take over the compression context regardless of the response).
+         *
+         * @param clientNoContextTakeover {@code true} if client compression context should not be taken over.
+         * @return updated {@link Builder} instance.
+         */
+        public Builder clientNoContextTakeover(boolean clientNoContextTakeover) {
+            this.clientNoContextTakeover = clientNoContextTakeover;
+            return this;
+        }
+
+        /**
+         * Build new extension.
+         *
+         * @return configured extension.
+         */
+        public PerMessageDeflateExtension build() {
+            return new PerMessageDeflateExtension(this);
+        }
+    }
+
+    /**
+     * Pool of {@link Deflater} instances with the same configuration.
+     */
+    private static class DeflaterPool extends Pool<Deflater> {
+
+        private final int compressionLevel;
+        private final int strategy;
+
+        private DeflaterPool(int compressionLevel, int strategy) {
+            this.compressionLevel = compressionLevel;
+            this.strategy = strategy;
+        }
+
+        @Override
+        Deflater create() {
+            return createDeflater(compressionLevel, strategy);
+        }
+    }
 
     /**
      * Generic pool that instances of T which are expensive to create.
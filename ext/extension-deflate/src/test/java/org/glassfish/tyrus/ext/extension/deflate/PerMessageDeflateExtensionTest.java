@@ -46,11 +46,15 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import javax.websocket.ClientEndpointConfig;
 import javax.websocket.DeploymentException;
@@ -63,11 +67,19 @@ import javax.websocket.Session;
 import javax.websocket.server.ServerEndpointConfig;
 
 import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.core.TyrusExtension;
+import org.glassfish.tyrus.core.TyrusSession;
+import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.frame.Frame;
 import org.glassfish.tyrus.server.Server;
 import org.glassfish.tyrus.server.TyrusServerConfiguration;
 import org.glassfish.tyrus.test.tools.TestContainer;
 
 import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -75,6 +87,8 @@ import static org.junit.Assert.assertTrue;
  */
 public class PerMessageDeflateExtensionTest extends TestContainer {
 
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
     public static class ServerDeployApplicationConfig extends TyrusServerConfiguration {
         public ServerDeployApplicationConfig() {
             super(Collections.<Class<?>>emptySet(), new HashSet<ServerEndpointConfig>() {
@@ -107,6 +121,112 @@ public class PerMessageDeflateExtensionTest extends TestContainer {
         }
     }
 
+    public static class BroadcastApplicationConfig extends TyrusServerConfiguration {
+        public BroadcastApplicationConfig() {
+            super(Collections.<Class<?>>emptySet(), new HashSet<ServerEndpointConfig>() {
+                {
+                    add(ServerEndpointConfig.Builder.create(BroadcastEndpoint.class, "/compressionBroadcastTest")
+                                                    .extensions(Arrays.<Extension>asList(
+                                                            new CountingPerMessageDeflateExtension()))
+                                                    .build());
+                }
+
+                private static final long serialVersionUID = 2593398011556137417L;
+            });
+        }
+    }
+
+    public static class BroadcastEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(final Session session, EndpointConfig config) {
+            session.addMessageHandler(new MessageHandler.Whole<String>() {
+                @Override
+                public void onMessage(String message) {
+                    CountingPerMessageDeflateExtension.OUTGOING.set(0);
+                    ((TyrusSession) session).broadcast(message);
+                }
+            });
+        }
+    }
+
+    /**
+     * Counts compressed outgoing data frames.
+     */
+    public static class CountingPerMessageDeflateExtension extends PerMessageDeflateExtension {
+
+        static final AtomicInteger OUTGOING = new AtomicInteger(0);
+
+        @Override
+        public Frame processOutgoing(ExtensionContext context, Frame frame) {
+            if (!frame.isControlFrame()) {
+                OUTGOING.incrementAndGet();
+            }
+            return super.processOutgoing(context, frame);
+        }
+    }
+
+    /**
+     * Client side extension requesting server not to take over compression context.
+     */
+    public static class NoContextTakeoverPerMessageDeflateExtension extends PerMessageDeflateExtension {
+
+        @Override
+        public List<Parameter> getParameters() {
+            return Collections.<Parameter>singletonList(
+                    new TyrusExtension.TyrusParameter("server_no_context_takeover", null));
+        }
+    }
+
+    @Test
+    public void testBroadcastSharesCompressedFrame() throws Exception {
+        Server server = startServer(BroadcastApplicationConfig.class);
+
+        final int clientCount = 5;
+        final String message = "Do. Or do not. There is no try. Do. Or do not. There is no try. Do. Or do not.";
+        final CountDownLatch firstBroadcastLatch = new CountDownLatch(clientCount);
+        final CountDownLatch messageLatch = new CountDownLatch(clientCount * 2);
+        final List<Session> sessions = new ArrayList<Session>();
+
+        try {
+            ClientManager client = ClientManager.createClient();
+
+            for (int i = 0; i < clientCount; i++) {
+                final ClientEndpointConfig clientConfiguration =
+                        ClientEndpointConfig.Builder.create().extensions(Arrays.<Extension>asList(
+                                new NoContextTakeoverPerMessageDeflateExtension())).build();
+
+                sessions.add(client.connectToServer(new Endpoint() {
+                    @Override
+                    public void onOpen(Session session, EndpointConfig config) {
+                        session.addMessageHandler(new MessageHandler.Whole<String>() {
+                            @Override
+                            public void onMessage(String received) {
+                                if (message.equals(received)) {
+                                    firstBroadcastLatch.countDown();
+                                    messageLatch.countDown();
+                                }
+                            }
+                        });
+                    }
+                }, clientConfiguration, getURI("/compressionBroadcastTest")));
+            }
+
+            // second broadcast verifies that the compression context was reset after the first one
+            sessions.get(0).getBasicRemote().sendText(message);
+            assertTrue(firstBroadcastLatch.await(3, TimeUnit.SECONDS));
+            sessions.get(1).getBasicRemote().sendText(message);
+
+            assertTrue(messageLatch.await(3, TimeUnit.SECONDS));
+            assertEquals(1, CountingPerMessageDeflateExtension.OUTGOING.get());
+        } finally {
+            for (Session session : sessions) {
+                session.close();
+            }
+            stopServer(server);
+        }
+    }
+
     @Test
     public void testCompressedExtension() throws DeploymentException {
         Server server = startServer(ServerDeployApplicationConfig.class);
@@ -167,6 +287,175 @@ public class PerMessageDeflateExtensionTest extends TestContainer {
 
     }
 
+    @Test
+    public void testNegotiation() {
+        final PerMessageDeflateExtension server =
+                PerMessageDeflateExtension.builder().clientNoContextTakeover(true).build();
+        final ExtendedExtension.ExtensionContext context = new Context();
+
+        final List<Extension.Parameter> response = server.onExtensionNegotiation(
+                context, Arrays.<Extension.Parameter>asList(
+                        new TyrusExtension.TyrusParameter("server_no_context_takeover", null),
+                        new TyrusExtension.TyrusParameter("server_max_window_bits", "10"),
+                        new TyrusExtension.TyrusParameter("client_max_window_bits", null)));
+
+        final Map<String, String> parameters = new HashMap<String, String>();
+        for (Extension.Parameter parameter : response) {
+            parameters.put(parameter.getName(), parameter.getValue());
+        }
+
+        assertEquals(3, parameters.size());
+        assertTrue(parameters.containsKey("server_no_context_takeover"));
+        assertTrue(parameters.containsKey("client_no_context_takeover"));
+        assertEquals("10", parameters.get("server_max_window_bits"));
+
+        // no per-connection compression context is kept
+        assertNoCompressionContext(context);
+        server.destroy(context);
+    }
+
+    @Test
+    public void testInvalidWindowBitsIgnored() {
+        final PerMessageDeflateExtension server = new PerMessageDeflateExtension();
+        final ExtendedExtension.ExtensionContext context = new Context();
+
+        final List<Extension.Parameter> response = server.onExtensionNegotiation(
+                context, Collections.<Extension.Parameter>singletonList(
+                        new TyrusExtension.TyrusParameter("server_max_window_bits", "16")));
+
+        assertTrue(response.isEmpty());
+        assertNull(server.getEncodingKey(context));
+        server.destroy(context);
+    }
+
+    @Test
+    public void testNoContextTakeoverRoundTrip() throws Exception {
+        final PerMessageDeflateExtension server = PerMessageDeflateExtension.builder().compressionLevel(1)
+                                                                            .serverNoContextTakeover(true)
+                                                                            .clientNoContextTakeover(true).build();
+        final PerMessageDeflateExtension client = new PerMessageDeflateExtension();
+        final ExtendedExtension.ExtensionContext serverContext = new Context();
+        final ExtendedExtension.ExtensionContext clientContext = new Context();
+
+        client.onHandshakeResponse(clientContext, server.onExtensionNegotiation(serverContext, client.getParameters()));
+        assertNoCompressionContext(serverContext);
+        assertNoCompressionContext(clientContext);
+
+        final String message = "Do. Or do not. There is no try. Do. Or do not. There is no try.";
+        for (int i = 0; i < 3; i++) {
+            assertEquals(message, roundTrip(server, serverContext, client, clientContext, message));
+            assertEquals(message, roundTrip(client, clientContext, server, serverContext, message));
+        }
+
+        // compression context is reset, so the same message is always compressed to the same frame
+        assertTrue(Arrays.equals(compress(server, serverContext, message).getPayloadData(),
+                                 compress(server, serverContext, message).getPayloadData()));
+
+        // fragmented message keeps the compression context until the last frame is sent
+        final Frame first = server.processOutgoing(serverContext, textFrame(message, false, false));
+        assertFalse(first.isFin());
+        final Frame last = server.processOutgoing(serverContext, textFrame(message, true, true));
+        assertNoCompressionContext(serverContext);
+        final byte[] firstPayload = client.processIncoming(clientContext, first).getPayloadData();
+        final byte[] lastPayload = client.processIncoming(clientContext, last).getPayloadData();
+        assertEquals(message + message,
+                     new String(firstPayload, UTF_8) + new String(lastPayload, UTF_8));
+        assertNoCompressionContext(clientContext);
+
+        server.destroy(serverContext);
+        client.destroy(clientContext);
+    }
+
+    @Test
+    public void testEncodingKey() {
+        final PerMessageDeflateExtension server = PerMessageDeflateExtension.builder().compressionLevel(1).build();
+        final List<Extension.Parameter> noContextTakeover = Collections.<Extension.Parameter>singletonList(
+                new TyrusExtension.TyrusParameter("server_no_context_takeover", null));
+
+        final ExtendedExtension.ExtensionContext context = new Context();
+        server.onExtensionNegotiation(context, noContextTakeover);
+        final PerMessageDeflateExtension sameLevel = PerMessageDeflateExtension.builder().compressionLevel(1).build();
+        final ExtendedExtension.ExtensionContext sameLevelContext = new Context();
+        sameLevel.onExtensionNegotiation(sameLevelContext, noContextTakeover);
+        final PerMessageDeflateExtension otherLevel = new PerMessageDeflateExtension();
+        final ExtendedExtension.ExtensionContext otherLevelContext = new Context();
+        otherLevel.onExtensionNegotiation(otherLevelContext, noContextTakeover);
+        final ExtendedExtension.ExtensionContext contextTakeoverContext = new Context();
+        server.onExtensionNegotiation(contextTakeoverContext, null);
+
+        assertNotNull(server.getEncodingKey(context));
+        assertEquals(server.getEncodingKey(context), sameLevel.getEncodingKey(sameLevelContext));
+        assertFalse(server.getEncodingKey(context).equals(otherLevel.getEncodingKey(otherLevelContext)));
+        assertNull(server.getEncodingKey(contextTakeoverContext));
+    }
+
+    @Test
+    public void testLimitedWindowUsesHuffmanOnly() throws Exception {
+        final PerMessageDeflateExtension server = new PerMessageDeflateExtension();
+        final ExtendedExtension.ExtensionContext context = new Context();
+        server.onExtensionNegotiation(context, Collections.<Extension.Parameter>singletonList(
+                new TyrusExtension.TyrusParameter("server_max_window_bits", "8")));
+
+        final String message = "Do. Or do not. There is no try. Do. Or do not. There is no try.";
+
+        final Deflater huffmanOnly = new Deflater(Deflater.BEST_COMPRESSION, true);
+        huffmanOnly.setStrategy(Deflater.HUFFMAN_ONLY);
+        huffmanOnly.deflate(new byte[0]);
+        huffmanOnly.setInput(message.getBytes(UTF_8));
+        final byte[] expected = new byte[1024];
+        final int expectedLength = huffmanOnly.deflate(expected, 0, expected.length, Deflater.SYNC_FLUSH) - 4;
+        huffmanOnly.end();
+
+        final Frame compressed = compress(server, context, message);
+        assertTrue(Arrays.equals(Arrays.copyOf(expected, expectedLength), compressed.getPayloadData()));
+
+        final Inflater inflater = new Inflater(true);
+        inflater.setInput(Arrays.copyOf(expected, expectedLength + 4));
+        final byte[] decompressed = new byte[1024];
+        assertEquals(message, new String(decompressed, 0, inflater.inflate(decompressed), UTF_8));
+        inflater.end();
+
+        server.destroy(context);
+    }
+
+    private static Frame textFrame(String message, boolean continuation, boolean fin) {
+        return Frame.builder().opcode(continuation ? (byte) 0x00 : (byte) 0x01).fin(fin)
+                    .payloadData(message.getBytes(UTF_8)).build();
+    }
+
+    private static Frame compress(PerMessageDeflateExtension extension, ExtendedExtension.ExtensionContext context,
+                                  String message) {
+        final Frame frame = extension.processOutgoing(context, textFrame(message, false, true));
+        assertTrue(frame.isRsv1());
+        return frame;
+    }
+
+    private static String roundTrip(PerMessageDeflateExtension sender, ExtendedExtension.ExtensionContext senderContext,
+                                    PerMessageDeflateExtension receiver,
+                                    ExtendedExtension.ExtensionContext receiverContext, String message) {
+        final Frame compressed = compress(sender, senderContext, message);
+        assertNoCompressionContext(senderContext);
+        final Frame decompressed = receiver.processIncoming(receiverContext, compressed);
+        assertNoCompressionContext(receiverContext);
+        return new String(decompressed.getPayloadData(), UTF_8);
+    }
+
+    private static void assertNoCompressionContext(ExtendedExtension.ExtensionContext context) {
+        for (Object value : context.getProperties().values()) {
+            assertFalse(value instanceof Deflater || value instanceof Inflater);
+        }
+    }
+
+    private static class Context implements ExtendedExtension.ExtensionContext {
+
+        private final Map<String, Object> properties = new HashMap<String, Object>();
+
+        @Override
+        public Map<String, Object> getProperties() {
+            return properties;
+        }
+    }
+
     public static class LoggingClientEndpointConfigurator extends ClientEndpointConfig.Configurator {
         @Override
         public void beforeRequest(Map<String, List<String>> headers) {
@@ -65,4 +65,62 @@ public abstract class Writer implements Closeable {
      * @param completionHandler completion handler to know the write status.
      */
     public abstract void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler);
+
+    /**
+     * Gathering variant of {@link #write(ByteBuffer, CompletionHandler)}.
+     * <p>
+     * Tyrus runtime calls this method when the data for a connection are split into more than one buffer, typically
+     * frame header and (unmodified) frame payload. The transport writes remaining bytes of all passed buffers to the
+     * underlying connection in the same order as they are present in the array. Tyrus runtime must not use the buffers
+     * until the write is completed.
+     * <p>
+     * Default implementation coalesces all buffers into one and delegates to {@link #write(ByteBuffer,
+     * CompletionHandler)}. Transports which are able to perform gathering (vectored) writes should override this
+     * method to avoid the copy.
+     *
+     * @param buffers           bytes to write.
+     * @param completionHandler completion handler to know the write status.
+     */
+    public void write(final ByteBuffer[] buffers, final CompletionHandler<ByteBuffer[]> completionHandler) {
+        int length = 0;
+        for (ByteBuffer buffer : buffers) {
+            length += buffer.remaining();
+        }
+
+        final ByteBuffer coalesced = ByteBuffer.allocate(length);
+        for (ByteBuffer buffer : buffers) {
+            coalesced.put(buffer.duplicate());
+        }
+        coalesced.flip();
+
+        write(coalesced, new CompletionHandler<ByteBuffer>() {
+            @Override
+            public void cancelled() {
+                if (completionHandler != null) {
+                    completionHandler.cancelled();
+                }
+            }
+
+            @Override
+            public void failed(Throwable throwable) {
+                if (completionHandler != null) {
+                    completionHandler.failed(throwable);
+                }
+            }
+
+            @Override
+            public void completed(ByteBuffer result) {
+                if (completionHandler != null) {
+                    completionHandler.completed(buffers);
+                }
+            }
+
+            @Override
+            public void updated(ByteBuffer result) {
+                if (completionHandler != null) {
+                    completionHandler.updated(buffers);
+                }
+            }
+        });
+    }
 }
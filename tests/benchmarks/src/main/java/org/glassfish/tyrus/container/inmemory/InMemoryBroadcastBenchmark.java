@@ -0,0 +1,161 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.container.inmemory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.MessageHandler;
+import javax.websocket.OnMessage;
+import javax.websocket.Session;
+import javax.websocket.server.ServerApplicationConfig;
+import javax.websocket.server.ServerEndpoint;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.core.TyrusSession;
+import org.glassfish.tyrus.server.TyrusServerConfiguration;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end {@link TyrusSession#broadcast(String)} throughput over the in-memory container.
+ * <p>
+ * One of the connected clients sends a message, the server endpoint broadcasts it to all {@code sessions} connected
+ * clients (including the sender). Broadcast is parallel (default server configuration) and it returns when the message
+ * was handed over to all sessions; in-memory delivery is synchronous, so every benchmark invocation measures one
+ * complete broadcast.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class InMemoryBroadcastBenchmark implements MessageHandler.Whole<String> {
+
+    @Param({"10", "100", "1000"})
+    public int sessions;
+
+    @Param({"16", "4096"})
+    public int messageSize;
+
+    private final ServerApplicationConfig serverConfig =
+            new TyrusServerConfiguration(new HashSet<Class<?>>(Arrays.<Class<?>>asList(BroadcastEndpoint.class)),
+                                         Collections.<ServerEndpointConfig>emptySet());
+    private final ClientManager client = ClientManager.createClient(InMemoryClientContainer.class.getName());
+    private final List<Session> clientSessions = new ArrayList<Session>();
+    private final AtomicInteger received = new AtomicInteger();
+
+    private InMemoryServer server;
+    private String message;
+
+    @Setup
+    public void setup() throws Exception {
+        final char[] chars = new char[messageSize];
+        Arrays.fill(chars, 'a');
+        message = new String(chars);
+
+        server = InMemoryServer.start(serverConfig);
+
+        final ClientEndpointConfig cec = ClientEndpointConfig.Builder.create().build();
+        cec.getUserProperties().put(InMemoryClientContainer.SERVER_CONFIG, serverConfig);
+        for (int i = 0; i < sessions; i++) {
+            clientSessions.add(client.connectToServer(new Endpoint() {
+                @Override
+                public void onOpen(Session session, EndpointConfig config) {
+                    session.addMessageHandler(String.class, InMemoryBroadcastBenchmark.this);
+                }
+            }, cec, URI.create("ws://inmemory/broadcast")));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        for (Session session : clientSessions) {
+            session.close();
+        }
+        server.stop();
+        client.shutdown();
+    }
+
+    @Override
+    public void onMessage(String message) {
+        received.incrementAndGet();
+    }
+
+    @Benchmark
+    public int broadcast() throws IOException {
+        received.set(0);
+        clientSessions.get(0).getBasicRemote().sendText(message);
+        return received.get();
+    }
+
+    @ServerEndpoint("/broadcast")
+    public static class BroadcastEndpoint {
+
+        @OnMessage
+        public void onMessage(Session session, String message) {
+            ((TyrusSession) session).broadcast(message);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.container.inmemory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.MessageHandler;
+import javax.websocket.OnMessage;
+import javax.websocket.Session;
+import javax.websocket.server.ServerApplicationConfig;
+import javax.websocket.server.ServerEndpoint;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.server.TyrusServerConfiguration;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Transport-free baseline: echo round trip and connection handshake over the in-memory container.
+ * <p>
+ * Everything runs in the benchmark thread: the client frame is handed directly to the server read handler, the echo
+ * reply directly to the client read handler, so the numbers show the cost of Tyrus itself without any network
+ * transport.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class InMemoryEchoBenchmark {
+
+    /**
+     * Server deployed once for all benchmark threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Server {
+
+        final ServerApplicationConfig serverConfig =
+                new TyrusServerConfiguration(new HashSet<Class<?>>(Arrays.<Class<?>>asList(EchoEndpoint.class)),
+                                             Collections.<ServerEndpointConfig>emptySet());
+        final ClientManager client = ClientManager.createClient(InMemoryClientContainer.class.getName());
+
+        InMemoryServer server;
+
+        @Setup
+        public void setup() throws Exception {
+            server = InMemoryServer.start(serverConfig);
+        }
+
+        @TearDown
+        public void tearDown() {
+            server.stop();
+            client.shutdown();
+        }
+
+        Session connect(MessageHandler.Whole<String> messageHandler) throws Exception {
+            final ClientEndpointConfig cec = ClientEndpointConfig.Builder.create().build();
+            cec.getUserProperties().put(InMemoryClientContainer.SERVER_CONFIG, serverConfig);
+
+            return client.connectToServer(new Endpoint() {
+                @Override
+                public void onOpen(Session session, EndpointConfig config) {
+                    if (messageHandler != null) {
+                        session.addMessageHandler(String.class, messageHandler);
+                    }
+                }
+            }, cec, URI.create("ws://inmemory/echo"));
+        }
+    }
+
+    /**
+     * Client connection owned by single benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Connection implements MessageHandler.Whole<String> {
+
+        @Param({"16", "4096"})
+        public int messageSize;
+
+        String message;
+        String received;
+        Session session;
+
+        @Setup
+        public void setup(Server server) throws Exception {
+            final char[] chars = new char[messageSize];
+            Arrays.fill(chars, 'a');
+            message = new String(chars);
+            session = server.connect(this);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            session.close();
+        }
+
+        @Override
+        public void onMessage(String message) {
+            received = message;
+        }
+    }
+
+    @Benchmark
+    public String echo(Connection connection) throws IOException {
+        connection.received = null;
+        connection.session.getBasicRemote().sendText(connection.message);
+        // echo is delivered synchronously, in this thread.
+        return connection.received;
+    }
+
+    @Benchmark
+    public void connect(Server server) throws Exception {
+        server.connect(null).close();
+    }
+
+    @ServerEndpoint("/echo")
+    public static class EchoEndpoint {
+
+        @OnMessage
+        public String onMessage(String message) {
+            return message;
+        }
+    }
+}
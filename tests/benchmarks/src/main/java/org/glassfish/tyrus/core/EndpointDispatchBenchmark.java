@@ -0,0 +1,179 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Extension;
+import javax.websocket.MessageHandler;
+import javax.websocket.OnMessage;
+import javax.websocket.Session;
+import javax.websocket.server.ServerEndpoint;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.glassfish.tyrus.spi.CompletionHandler;
+import org.glassfish.tyrus.spi.Writer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares dispatch of a text message to an annotated {@code @OnMessage} method with dispatch to a programmatic
+ * {@link MessageHandler.Whole}.
+ * <p>
+ * Both endpoints echo the received message back; the message goes from {@link TyrusEndpointWrapper} through the
+ * session message handlers to the endpoint and the reply is framed by {@link ProtocolHandler} and passed to a
+ * {@link Writer} which discards it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class EndpointDispatchBenchmark {
+
+    @Param({"annotated", "programmatic"})
+    public String endpoint;
+
+    private TyrusEndpointWrapper endpointWrapper;
+    private TyrusWebSocket socket;
+
+    @Setup
+    public void setup() throws Exception {
+        final ComponentProviderService componentProvider = ComponentProviderService.create();
+        final TyrusEndpointWrapper.SessionListener sessionListener = new TyrusEndpointWrapper.SessionListener() {
+        };
+
+        if ("annotated".equals(endpoint)) {
+            final ErrorCollector collector = new ErrorCollector();
+            final AnnotatedEndpoint annotatedEndpoint = AnnotatedEndpoint.fromClass(
+                    AnnotatedEchoEndpoint.class, componentProvider, true, Integer.MAX_VALUE, collector, null);
+            if (!collector.isEmpty()) {
+                throw collector.composeComprehensiveException();
+            }
+
+            final EndpointConfig config = annotatedEndpoint.getEndpointConfig();
+            endpointWrapper = new TyrusEndpointWrapper(annotatedEndpoint, config, componentProvider, null, "",
+                                                       ((ServerEndpointConfig) config).getConfigurator(),
+                                                       sessionListener, null, null, null);
+        } else {
+            final ServerEndpointConfig config =
+                    ServerEndpointConfig.Builder.create(ProgrammaticEchoEndpoint.class, "/echo").build();
+            endpointWrapper = new TyrusEndpointWrapper(ProgrammaticEchoEndpoint.class, config, componentProvider,
+                                                       null, "", config.getConfigurator(), sessionListener, null, null,
+                                                       null);
+        }
+
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false, null);
+        protocolHandler.setWriter(new DiscardingWriter());
+        socket = endpointWrapper.createSocket(protocolHandler);
+        socket.onConnect(RequestContext.Builder.create().requestURI(URI.create("/echo")).build(), null,
+                         Collections.<Extension>emptyList(), null, new DebugContext());
+    }
+
+    @Benchmark
+    public void echo() {
+        endpointWrapper.onMessage(socket, "Hello World!");
+    }
+
+    @ServerEndpoint("/echo")
+    public static class AnnotatedEchoEndpoint {
+
+        @OnMessage
+        public String echo(String message) {
+            return message;
+        }
+    }
+
+    public static class ProgrammaticEchoEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(final Session session, EndpointConfig config) {
+            session.addMessageHandler(new MessageHandler.Whole<String>() {
+                @Override
+                public void onMessage(String message) {
+                    try {
+                        session.getBasicRemote().sendObject(message);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+        }
+    }
+
+    private static class DiscardingWriter extends Writer {
+
+        @Override
+        public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+            if (completionHandler != null) {
+                completionHandler.completed(buffer);
+            }
+        }
+
+        @Override
+        public void write(ByteBuffer[] buffers, CompletionHandler<ByteBuffer[]> completionHandler) {
+            if (completionHandler != null) {
+                completionHandler.completed(buffers);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.tyrus.core.frame.BinaryFrame;
+import org.glassfish.tyrus.core.frame.Frame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serialization ({@link ProtocolHandler#frameBuffers(Frame)}) and parsing ({@link ProtocolHandler#unframe(ByteBuffer)})
+ * of binary frames.
+ * <p>
+ * {@code client} parameter selects the side: client frames are masked when serialized (with {@link
+ * ThreadLocalMaskingKeyGenerator}), server frames are not; {@code unframe} parses frames sent by the other side, so
+ * masked frames are parsed (and unmasked in place) on the server.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FramingBenchmark {
+
+    @Param({"16", "1024", "65536"})
+    public int payloadSize;
+
+    @Param({"true", "false"})
+    public boolean client;
+
+    private ProtocolHandler protocolHandler;
+    private Frame frame;
+    private ByteBuffer received;
+
+    @Setup
+    public void setup() {
+        final byte[] payload = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(payload);
+        frame = new BinaryFrame(payload, false, true);
+
+        protocolHandler = new ProtocolHandler(client, new ThreadLocalMaskingKeyGenerator());
+
+        // frame sent by the other side
+        final ProtocolHandler peer = new ProtocolHandler(!client, new ThreadLocalMaskingKeyGenerator());
+        final ByteBuffer[] buffers = peer.frameBuffers(frame);
+        int length = 0;
+        for (ByteBuffer buffer : buffers) {
+            length += buffer.remaining();
+        }
+        received = ByteBuffer.allocate(length);
+        for (ByteBuffer buffer : buffers) {
+            received.put(buffer);
+        }
+        received.flip();
+    }
+
+    @Benchmark
+    public ByteBuffer[] frame() {
+        return protocolHandler.frameBuffers(frame);
+    }
+
+    @Benchmark
+    public Frame unframe() {
+        // payload is unmasked in place, repeated unmasking just flips it between masked and unmasked form.
+        received.rewind();
+        return protocolHandler.unframe(received);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares word-at-a-time {@link Masker} with byte-at-a-time masking.
+ * <p>
+ * {@code byteAtATime*} benchmarks replicate the original implementation, which XORed one byte per iteration with
+ * {@code mask[index++ % MASK_SIZE]} and (when unmasking) copied the data out of the read buffer first.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MaskerBenchmark {
+
+    private static final int MASKING_KEY = 0x12345678;
+
+    @Param({"16", "128", "1024", "16384", "262144"})
+    public int payloadSize;
+
+    private byte[] payload;
+    private byte[] target;
+    private ByteBuffer readBuffer;
+
+    @Setup
+    public void setup() {
+        payload = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(payload);
+        target = new byte[payloadSize];
+
+        readBuffer = ByteBuffer.allocate(ProtocolHandler.MASK_SIZE + payloadSize);
+        readBuffer.putInt(MASKING_KEY).put(payload).flip();
+    }
+
+    @Benchmark
+    public byte[] mask() {
+        new Masker(MASKING_KEY).mask(target, 0, payload, payloadSize);
+        return target;
+    }
+
+    @Benchmark
+    public byte[] byteAtATimeMask() {
+        final byte[] mask = new Masker(MASKING_KEY).getMask();
+        int index = 0;
+        for (int i = 0; i < payloadSize; i++) {
+            target[i] = (byte) (payload[i] ^ mask[index++ % ProtocolHandler.MASK_SIZE]);
+        }
+        return target;
+    }
+
+    @Benchmark
+    public byte[] unmask() {
+        readBuffer.rewind();
+        final Masker masker = new Masker(readBuffer);
+        masker.readMask();
+        return masker.unmask(payloadSize);
+    }
+
+    @Benchmark
+    public ByteBuffer unmaskInPlace() {
+        readBuffer.rewind();
+        final Masker masker = new Masker(readBuffer);
+        masker.readMask();
+        return masker.unmaskInPlace(payloadSize);
+    }
+
+    @Benchmark
+    public byte[] byteAtATimeUnmask() {
+        readBuffer.rewind();
+        final byte[] mask = new byte[ProtocolHandler.MASK_SIZE];
+        readBuffer.get(mask);
+        final byte[] bytes = new byte[payloadSize];
+        readBuffer.get(bytes);
+        int index = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] ^= mask[index++ % ProtocolHandler.MASK_SIZE];
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.tyrus.core.frame.Frame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the default {@link java.security.SecureRandom} based {@link MaskingKeyGenerator} with {@link
+ * ThreadLocalMaskingKeyGenerator} when client frames are serialized from multiple threads.
+ * <p>
+ * Each benchmark thread owns its {@link ProtocolHandler} (as a connection would), while the masking key generator is
+ * shared by all of them, which is how a generator configured via {@code ClientProperties.MASKING_KEY_GENERATOR} is
+ * used. Number of threads can be changed by JMH {@code -t} option.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+public class MaskingKeyGeneratorBenchmark {
+
+    /**
+     * Masking key generator shared by all benchmark threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Generator {
+
+        @Param({"secureRandom", "threadLocal"})
+        public String generator;
+
+        MaskingKeyGenerator maskingKeyGenerator;
+
+        @Setup
+        public void setup() {
+            if ("threadLocal".equals(generator)) {
+                maskingKeyGenerator = new ThreadLocalMaskingKeyGenerator();
+            } else {
+                // same as ProtocolHandler default
+                maskingKeyGenerator = new MaskingKeyGenerator() {
+
+                    private final SecureRandom secureRandom = new SecureRandom();
+
+                    @Override
+                    public int nextInt() {
+                        return secureRandom.nextInt();
+                    }
+                };
+            }
+        }
+    }
+
+    /**
+     * Client side connection owned by single benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Connection {
+
+        @Param({"16", "1024"})
+        public int payloadSize;
+
+        ProtocolHandler protocolHandler;
+        Frame frame;
+
+        @Setup
+        public void setup(Generator generator) {
+            protocolHandler = new ProtocolHandler(true, generator.maskingKeyGenerator);
+            frame = Frame.builder().fin(true).opcode((byte) 0x02).payloadData(new byte[payloadSize]).build();
+        }
+    }
+
+    @Benchmark
+    public int nextInt(Generator generator) {
+        return generator.maskingKeyGenerator.nextInt();
+    }
+
+    @Benchmark
+    public ByteBuffer frame(Connection connection) {
+        return connection.protocolHandler.frame(connection.frame);
+    }
+}
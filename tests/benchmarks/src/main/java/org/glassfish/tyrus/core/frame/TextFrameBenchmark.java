@@ -0,0 +1,120 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core.frame;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.tyrus.core.Utf8StreamDecoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * UTF-8 encoding and decoding of {@link TextFrame} payload.
+ * <p>
+ * {@code decode} uses the per-connection {@link Utf8StreamDecoder}, {@code decodeWithRemainder} the original
+ * remainder-based decoding, which copies the payload out of the frame first. {@code text} parameter selects ASCII
+ * only text or text where most of the characters are encoded as two or three bytes, {@code messageLength} is the
+ * number of characters of the message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TextFrameBenchmark {
+
+    private static final String ASCII = "The quick brown fox jumps over the lazy dog. ";
+    // "Prilis zlutoucky kun" with Czech diacritics (two bytes per accented character) followed by Japanese text
+    // (three bytes per character).
+    private static final String MULTIBYTE = "P\u0159\u00edli\u0161 \u017elu\u0165ou\u010dk\u00fd k\u016f\u0148 "
+            + "\u65e5\u672c\u8a9e\u306e\u30c6\u30ad\u30b9\u30c8 ";
+
+    @Param({"16", "1024", "65536"})
+    public int messageLength;
+
+    @Param({"ascii", "multibyte"})
+    public String text;
+
+    private final Utf8StreamDecoder decoder = new Utf8StreamDecoder();
+
+    private String message;
+    private Frame frame;
+
+    @Setup
+    public void setup() {
+        final String pattern = "ascii".equals(text) ? ASCII : MULTIBYTE;
+        final StringBuilder sb = new StringBuilder(messageLength);
+        while (sb.length() < messageLength) {
+            sb.append(pattern);
+        }
+        message = sb.substring(0, messageLength);
+
+        frame = Frame.builder().fin(true).opcode((byte) 0x01)
+                     .payloadData(message.getBytes(Charset.forName("UTF-8"))).build();
+    }
+
+    @Benchmark
+    public TextFrame encode() {
+        return new TextFrame(message, false, true);
+    }
+
+    @Benchmark
+    public String decode() {
+        return new TextFrame(frame, decoder, false).getTextPayload();
+    }
+
+    @Benchmark
+    public String decodeWithRemainder() {
+        return new TextFrame(frame, null).getTextPayload();
+    }
+}
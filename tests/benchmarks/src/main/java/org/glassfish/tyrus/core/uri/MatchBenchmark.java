@@ -0,0 +1,139 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core.uri;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Session;
+
+import org.glassfish.tyrus.core.ComponentProviderService;
+import org.glassfish.tyrus.core.DebugContext;
+import org.glassfish.tyrus.core.TyrusEndpointWrapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Matching of the upgrade request path against deployed endpoints: linear {@link Match#getAllMatches(String, Set,
+ * DebugContext)} compared with {@link EndpointPathTrie}.
+ * <p>
+ * Every deployed application contributes three endpoints ({@code /app<i>/echo}, {@code /app<i>/chat/{room}} and
+ * {@code /app<i>/{resource}/{id}}); the request matches two endpoints of the last application.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MatchBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int applications;
+
+    private final Set<TyrusEndpointWrapper> endpoints = new LinkedHashSet<TyrusEndpointWrapper>();
+    private final EndpointPathTrie trie = new EndpointPathTrie();
+    private final DebugContext debugContext = DebugContext.create();
+
+    private String requestPath;
+
+    @Setup
+    public void setup() throws DeploymentException {
+        for (int i = 0; i < applications; i++) {
+            for (String path : new String[]{"/app" + i + "/echo", "/app" + i + "/chat/{room}",
+                    "/app" + i + "/{resource}/{id}"}) {
+                final TyrusEndpointWrapper endpoint = new PathEndpointWrapper(path);
+                endpoints.add(endpoint);
+                trie.add(endpoint);
+            }
+        }
+
+        requestPath = "/app" + (applications - 1) + "/chat/lobby";
+    }
+
+    @Benchmark
+    public List<Match> linear() {
+        return Match.getAllMatches(requestPath, endpoints, debugContext);
+    }
+
+    @Benchmark
+    public List<Match> trie() {
+        return trie.getAllMatches(requestPath, debugContext);
+    }
+
+    private static class PathEndpointWrapper extends TyrusEndpointWrapper {
+
+        private final String path;
+
+        private PathEndpointWrapper(String path) throws DeploymentException {
+            super(EmptyEndpoint.class, null, ComponentProviderService.createClient(), null, null, null, null, null,
+                  null, null);
+            this.path = path;
+        }
+
+        @Override
+        public String getEndpointPath() {
+            return path;
+        }
+    }
+
+    public static class EmptyEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.extension.deflate;
+
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.Extension;
+
+import org.glassfish.tyrus.core.TyrusExtension;
+import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.frame.Frame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compression ({@code processOutgoing} on the server) and decompression ({@code processIncoming} on the client) of
+ * text messages by {@link PerMessageDeflateExtension}.
+ * <p>
+ * Messages are made of words randomly chosen from a small vocabulary, which compresses roughly as well as typical
+ * JSON payloads. {@code noContextTakeover} parameter controls whether {@code server_no_context_takeover} is
+ * negotiated, i.e. whether the compressor is reset after every message (and taken from the pool for every message).
+ * Note that with context takeover the same message is sent repeatedly, so it is mostly compressed to references to
+ * the previous one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PerMessageDeflateBenchmark {
+
+    private static final String[] WORDS = {"\"id\"", "\"name\"", "\"value\"", "\"timestamp\"", "\"session\"", "{",
+            "}", ":", ",", "true", "false", "null", "42", "1024", "\"tyrus\"", "\"websocket\"", "\"message\""};
+
+    @Param({"128", "4096", "65536"})
+    public int payloadSize;
+
+    @Param({"true", "false"})
+    public boolean noContextTakeover;
+
+    @Param({"1", "9"})
+    public int compressionLevel;
+
+    private PerMessageDeflateExtension extension;
+    private final ExtendedExtension.ExtensionContext serverContext = new Context();
+    private final ExtendedExtension.ExtensionContext clientContext = new Context();
+
+    private Frame frame;
+    private Frame compressedFrame;
+
+    @Setup
+    public void setup() {
+        extension = PerMessageDeflateExtension.builder().compressionLevel(compressionLevel).build();
+
+        final List<Extension.Parameter> parameters = noContextTakeover
+                ? Collections.<Extension.Parameter>singletonList(
+                new TyrusExtension.TyrusParameter("server_no_context_takeover", null))
+                : Collections.<Extension.Parameter>emptyList();
+
+        extension.onHandshakeResponse(clientContext, extension.onExtensionNegotiation(serverContext, parameters));
+
+        final Random random = new Random(payloadSize);
+        final StringBuilder sb = new StringBuilder(payloadSize);
+        while (sb.length() < payloadSize) {
+            sb.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        frame = Frame.builder().fin(true).opcode((byte) 0x01)
+                     .payloadData(sb.substring(0, payloadSize).getBytes(Charset.forName("UTF-8"))).build();
+
+        // first message does not refer to any previous one, so it can be decompressed repeatedly.
+        compressedFrame = extension.processOutgoing(serverContext, frame);
+    }
+
+    @TearDown
+    public void tearDown() {
+        extension.destroy(serverContext);
+        extension.destroy(clientContext);
+    }
+
+    @Benchmark
+    public Frame compress() {
+        return extension.processOutgoing(serverContext, frame);
+    }
+
+    @Benchmark
+    public Frame decompress() {
+        return extension.processIncoming(clientContext, compressedFrame);
+    }
+
+    private static class Context implements ExtendedExtension.ExtensionContext {
+
+        private final Map<String, Object> properties = new HashMap<String, Object>();
+
+        @Override
+        public Map<String, Object> getProperties() {
+            return properties;
+        }
+    }
+}